@@ -20,6 +20,7 @@ package org.fcrepo.auth.webac;
 import static java.util.stream.Stream.of;
 import static javax.servlet.http.HttpServletResponse.SC_FORBIDDEN;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.apache.jena.riot.WebContent.contentTypeSPARQLUpdate;
 import static org.fcrepo.auth.common.ServletContainerAuthFilter.FEDORA_ADMIN_ROLE;
 import static org.fcrepo.auth.common.ServletContainerAuthFilter.FEDORA_USER_ROLE;
@@ -30,15 +31,21 @@ import static org.fcrepo.auth.webac.URIConstants.WEBAC_MODE_WRITE;
 import static org.fcrepo.http.commons.session.TransactionConstants.ATOMIC_ID_HEADER;
 import static org.fcrepo.kernel.api.FedoraTypes.FEDORA_BINARY;
 import static org.fcrepo.kernel.api.RdfLexicon.BASIC_CONTAINER;
+import static org.fcrepo.kernel.api.RdfLexicon.DIRECT_CONTAINER;
+import static org.fcrepo.kernel.api.RdfLexicon.HAS_MEMBER_RELATION;
+import static org.fcrepo.kernel.api.RdfLexicon.LDP_NAMESPACE;
+import static org.fcrepo.kernel.api.RdfLexicon.MEMBERSHIP_RESOURCE;
 import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
 import static org.fcrepo.kernel.api.RdfLexicon.REPOSITORY_NAMESPACE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import org.fcrepo.kernel.api.TransactionManager;
+import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.kernel.api.exception.PathNotFoundException;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
 import org.fcrepo.kernel.api.models.ResourceFactory;
@@ -47,7 +54,10 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.mgt.SecurityManager;
 import org.apache.shiro.subject.Subject;
@@ -727,6 +737,26 @@ public class WebACFilterTest {
         assertEquals(SC_OK, response.getStatus());
     }
 
+    @Test
+    public void testAuthUserReadAppendWritePostToDirectContainerClosesTriples() throws Exception {
+        setupAuthUserReadAppendWrite();
+        final URI membershipResource = URI.create(baseURL + "/members");
+        when(mockSubject.isPermitted(new WebACPermission(WEBAC_MODE_WRITE, membershipResource))).thenReturn(true);
+        when(mockContainer.getTypes()).thenReturn(Arrays.asList(URI.create(DIRECT_CONTAINER.getURI())));
+        final AtomicBoolean closed = new AtomicBoolean();
+        final Node subject = createURI(testURI.toString());
+        when(mockContainer.getTriples()).thenReturn(new DefaultRdfStream(subject, of(
+                new Triple(subject, MEMBERSHIP_RESOURCE.asNode(), createURI(membershipResource.toString())),
+                new Triple(subject, HAS_MEMBER_RELATION.asNode(), createURI(LDP_NAMESPACE + "member"))))
+                .onClose(() -> closed.set(true)));
+        // POST => 200
+        request.setMethod("POST");
+        webacFilter.doFilter(request, response, filterChain);
+        assertEquals(SC_OK, response.getStatus());
+        // only the first triple is needed, the rest of the stream is never read
+        assertTrue(closed.get());
+    }
+
     @Test
     public void testAuthUserAppendPutNewChild() throws Exception {
         setupAuthUserAppendOnly();
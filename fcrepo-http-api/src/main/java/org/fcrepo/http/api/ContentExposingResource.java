@@ -128,7 +128,6 @@ import org.fcrepo.http.commons.domain.MultiPrefer;
 import org.fcrepo.http.commons.domain.PreferTag;
 import org.fcrepo.http.commons.domain.Range;
 import org.fcrepo.http.commons.domain.ldp.LdpPreferTag;
-import org.fcrepo.http.commons.responses.RangeRequestInputStream;
 import org.fcrepo.http.commons.responses.RdfNamespacedStream;
 import org.fcrepo.kernel.api.FedoraTypes;
 import org.fcrepo.kernel.api.RdfStream;
@@ -402,8 +401,7 @@ public abstract class ContentExposingResource extends FedoraBaseResource {
                             .header("Content-Range", contentRangeValue);
                 } else {
                     @SuppressWarnings("resource")
-                    final RangeRequestInputStream rangeInputStream =
-                            new RangeRequestInputStream(binary.getContent(), range.start(), range.size());
+                    final InputStream rangeInputStream = binary.getRange(range.start(), range.end());
 
                     builder = status(PARTIAL_CONTENT).entity(rangeInputStream)
                             .header("Content-Range", contentRangeValue)
@@ -121,6 +121,9 @@ public class RdfStreamStreamingOutput extends AbstractFuture<Void> implements
             setException(e);
             LOGGER.debug("Error serializing RDF", e.getMessage());
             throw new WebApplicationException(e);
+        } finally {
+            // release whatever backs the stream, e.g. a file still being parsed
+            rdfStream.close();
         }
     }
 
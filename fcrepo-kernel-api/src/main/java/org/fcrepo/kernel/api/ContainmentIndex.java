@@ -17,6 +17,8 @@
  */
 package org.fcrepo.kernel.api;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import org.fcrepo.kernel.api.identifiers.FedoraId;
@@ -39,6 +41,30 @@ public interface ContainmentIndex {
      */
     Stream<String> getContains(Transaction tx, FedoraResource fedoraResource);
 
+    /**
+     * Return a stream of fedora identifiers contained by the specified fedora resource, starting after the given
+     * identifier. The order is stable: committed children in the order they were first added to the index, then
+     * children added in the transaction. Passing the last identifier read from a previous stream resumes where it
+     * left off.
+     * The stream is produced lazily, so a consumer that only reads part of it does not pay for the rest.
+     *
+     * @param tx The transaction.  If no transaction, null is okay.
+     * @param fedoraResource The containing fedora resource
+     * @param after Only identifiers after this one are returned. If null, start at the beginning.
+     * @return A stream of contained identifiers
+     */
+    Stream<String> getContains(Transaction tx, FedoraResource fedoraResource, String after);
+
+    /**
+     * Return a stream of fedora identifiers for every resource below the specified fedora resource, its children,
+     * their children and so on. Each identifier comes after the identifier of its container.
+     *
+     * @param tx The transaction.  If no transaction, null is okay.
+     * @param fedoraResource The containing fedora resource
+     * @return A stream of descendant identifiers
+     */
+    Stream<String> getDescendants(Transaction tx, FedoraResource fedoraResource);
+
     /**
      * Return the ID of the containing resource for resourceID.
      * @param txID The transaction. If no transaction, null is okay.
@@ -47,6 +73,15 @@ public interface ContainmentIndex {
      */
     String getContainedBy(String txID, final FedoraId resource);
 
+    /**
+     * Return the IDs of the containing resources for several resources at once.
+     * @param txID The transaction. If no transaction, null is okay.
+     * @param resources The FedoraIds of the resources to find the containing resources for.
+     * @return The id of the containing resource keyed by the full id of each resource. Resources without a
+     *         containing resource are left out.
+     */
+    Map<String, String> getContainedBy(String txID, final Collection<FedoraId> resources);
+
     /**
      * Remove a contained by relation between the child resource and its parent.
      *
@@ -63,6 +98,13 @@ public interface ContainmentIndex {
      */
     void removeResource(final String txID, final FedoraId resource);
 
+    /**
+     * Remove all relationships to each of the specified resources.
+     * @param txID The transaction ID. If no transaction, null is okay.
+     * @param resources The FedoraIds of the resources to remove.
+     */
+    void removeResources(final String txID, final Collection<FedoraId> resources);
+
     /**
      * Add a contained by relation between the child resource and its parent.
      *
@@ -72,6 +114,16 @@ public interface ContainmentIndex {
      */
     void addContainedBy(final String txID, final FedoraId parent, final FedoraId child);
 
+    /**
+     * Add contained by relations for many resources at once. Outside of a transaction the relations are written in
+     * a single batch and replace any existing relation of each child, so loading the same relations again is
+     * harmless.
+     *
+     * @param txID The transaction ID.  If no transaction, null is okay.
+     * @param parents The containing resource fedoraID keyed by the contained resource fedoraID.
+     */
+    void addContainedBy(final String txID, final Map<FedoraId, FedoraId> parents);
+
     /**
      * Commit the changes made in the transaction.
      * @param tx The transaction.
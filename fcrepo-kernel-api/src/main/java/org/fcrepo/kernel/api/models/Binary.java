@@ -35,6 +35,13 @@ public interface Binary extends FedoraResource {
      */
     InputStream getContent();
 
+    /**
+     * @param start offset of the first byte of the range
+     * @param end offset of the last byte of the range, inclusive. -1 reads to the end of the content.
+     * @return The InputStream of a byte range of the content associated with this datastream.
+     */
+    InputStream getRange(long start, long end);
+
     /**
      * Sets the content of this Datastream.
      *
@@ -21,6 +21,8 @@ import org.fcrepo.kernel.api.Transaction;
 import org.fcrepo.kernel.api.exception.PathNotFoundException;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
 
+import java.util.stream.Stream;
+
 /**
  * Interface to a factory to instantiate FedoraResources
  *
@@ -90,4 +92,14 @@ public interface ResourceFactory {
      * @return The containing resource or null if none.
      */
     public FedoraResource getContainer(final Transaction transaction, final FedoraId resourceId);
+
+    /**
+     * Get the resources contained by a resource, optionally including everything below them.
+     * @param transaction The current transaction or null if read-only.
+     * @param resource The containing resource
+     * @param recursive Whether to include the children of the children and so on.
+     * @return A stream of the contained resources.
+     */
+    public Stream<FedoraResource> getChildren(final Transaction transaction, final FedoraResource resource,
+                                              final boolean recursive);
 }
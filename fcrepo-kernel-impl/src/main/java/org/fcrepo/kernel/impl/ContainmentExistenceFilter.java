@@ -0,0 +1,140 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * A probabilistic set of the committed resource IDs in the containment index. A resource which is not in the filter
+ * is definitely not in the index, so the database need not be asked. Resources are never removed, a deleted resource
+ * only adds to the false positive rate until the filter is rebuilt.
+ *
+ * @author agent
+ */
+public final class ContainmentExistenceFilter {
+
+    private final BloomFilter<CharSequence> filter;
+
+    private final long expectedInsertions;
+
+    private final double fpp;
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * @param expectedInsertions the number of resource IDs the filter is sized for
+     * @param fpp the desired false positive probability once it holds that many
+     */
+    ContainmentExistenceFilter(final long expectedInsertions, final double fpp) {
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.filter = BloomFilter.create(Funnels.stringFunnel(UTF_8), expectedInsertions, fpp);
+    }
+
+    /**
+     * @param resourceID the full ID of a resource
+     * @return false if the resource is definitely not in the index
+     */
+    boolean mightContain(final String resourceID) {
+        lookups.increment();
+        if (filter.mightContain(resourceID)) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    /**
+     * @param resourceID the full ID of a resource added to the index
+     */
+    void put(final String resourceID) {
+        filter.put(resourceID);
+    }
+
+    /**
+     * @return true if the filter holds more IDs than it was sized for, and should be rebuilt larger
+     */
+    boolean isFull() {
+        return filter.approximateElementCount() > expectedInsertions;
+    }
+
+    /**
+     * @return the number of resource IDs the filter is sized for
+     */
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * @return the approximate number of resource IDs added to the filter
+     */
+    public long getApproximateSize() {
+        return filter.approximateElementCount();
+    }
+
+    /**
+     * @return the configured false positive probability
+     */
+    public double getConfiguredFpp() {
+        return fpp;
+    }
+
+    /**
+     * @return the estimated false positive probability given the resource IDs added so far
+     */
+    public double getExpectedFpp() {
+        return filter.expectedFpp();
+    }
+
+    /**
+     * @return the approximate size of the filter's bit array in bytes
+     */
+    public long getSizeInBytes() {
+        final double bits = -expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2));
+        return (long) Math.ceil(bits / Long.SIZE) * Long.BYTES;
+    }
+
+    /**
+     * @return the number of lookups made against the filter
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return the number of lookups which the filter answered without going to the database
+     */
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ContainmentExistenceFilter{size=" + getApproximateSize() + ", expectedInsertions=" +
+                expectedInsertions + ", bytes=" + getSizeInBytes() + ", fpp=" + fpp + ", expectedFpp=" +
+                String.format("%.6f", getExpectedFpp()) + ", lookups=" + getLookupCount() + ", skipped=" +
+                getSkippedCount() + "}";
+    }
+}
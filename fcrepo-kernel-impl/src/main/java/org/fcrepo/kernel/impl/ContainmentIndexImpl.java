@@ -17,28 +17,65 @@
  */
 package org.fcrepo.kernel.impl;
 
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
 import static org.fcrepo.kernel.api.FedoraTypes.FEDORA_ID_PREFIX;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.fcrepo.kernel.api.ContainmentIndex;
 import org.fcrepo.kernel.api.Transaction;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
 import org.fcrepo.kernel.api.models.FedoraResource;
 import org.slf4j.Logger;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.TransactionStatus;
-import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.sql.DataSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author peichman
@@ -56,156 +93,230 @@ public class ContainmentIndexImpl implements ContainmentIndex {
     @Inject
     private PlatformTransactionManager platformTransactionManager;
 
-    private static final String RESOURCES_TABLE = "resources";
+    /**
+     * System property for the number of committed child to parent relationships to cache.
+     */
+    public static final String CONTAINED_BY_CACHE_SIZE_PROPERTY = "fcrepo.containment.cache.containedby.size";
 
-    private static final String RESOURCES_TABLE_IDX = "resources_idx";
+    /**
+     * System property for the total number of committed children to cache across all containers.
+     */
+    public static final String CONTAINS_CACHE_SIZE_PROPERTY = "fcrepo.containment.cache.contains.size";
 
-    private static final String TRANSACTION_OPERATIONS_TABLE = "transactionOperations";
+    /**
+     * System property for the number of resource ID to database key lookups to cache.
+     */
+    public static final String KEY_CACHE_SIZE_PROPERTY = "fcrepo.containment.cache.key.size";
 
-    private static final String TRANSACTION_OPERATIONS_TABLE_IDX_1 = "transactionOperations_idx1";
+    private static final long DEFAULT_CONTAINED_BY_CACHE_SIZE = 100000;
 
-    private static final String TRANSACTION_OPERATIONS_TABLE_IDX_2 = "transactionOperations_idx2";
+    private static final long DEFAULT_CONTAINS_CACHE_SIZE = 100000;
 
-    private static final String FEDORA_ID_COLUMN = "fedoraId";
+    private static final long DEFAULT_KEY_CACHE_SIZE = 100000;
 
-    private static final String PARENT_COLUMN = "parent";
+    /**
+     * System property for the number of children fetched from the database at a time when streaming the children of a
+     * container. Containers with fewer children than this are cached.
+     */
+    public static final String CONTAINS_FETCH_SIZE_PROPERTY = "fcrepo.containment.fetch.size";
 
-    private static final String TRANSACTION_ID_COLUMN = "transactionId";
+    private static final int DEFAULT_CONTAINS_FETCH_SIZE = 1000;
 
-    private static final String OPERATION_COLUMN = "operation";
+    private int fetchSize;
 
     /**
-     * Holds the ID and its parent.
+     * System property for the number of committed resources the existence filter is sized for. The filter is rebuilt
+     * twice as large if the index outgrows it.
      */
-    private static final String RESOURCES_TABLE_DDL = "CREATE TABLE IF NOT EXISTS " + RESOURCES_TABLE + " (" +
-            FEDORA_ID_COLUMN + " varchar(65535) NOT NULL PRIMARY KEY, " +
-            PARENT_COLUMN + " varchar(65535) NOT NULL)";
+    public static final String EXISTENCE_FILTER_SIZE_PROPERTY = "fcrepo.containment.filter.expected.size";
 
     /**
-     * Create an index to speed searches for children of a parent.
+     * System property for the false positive probability of the existence filter.
      */
-    private static final String RESOURCES_TABLE_INDEX_DDL = "CREATE INDEX IF NOT EXISTS " + RESOURCES_TABLE_IDX +
-            " ON " + RESOURCES_TABLE + " (" + PARENT_COLUMN + ")";
+    public static final String EXISTENCE_FILTER_FPP_PROPERTY = "fcrepo.containment.filter.fpp";
+
+    private static final long DEFAULT_EXISTENCE_FILTER_SIZE = 1000000;
+
+    private static final String DEFAULT_EXISTENCE_FILTER_FPP = "0.01";
 
     /**
-     * Holds operations to add or delete records from the RESOURCES_TABLE.
+     * Every committed resource, so that lookups of resources which do not exist can skip the database. Only replaced
+     * while holding the cache write lock.
      */
-    private static final String TRANSACTION_OPERATIONS_TABLE_DDL = "CREATE TABLE IF NOT EXISTS " +
-            TRANSACTION_OPERATIONS_TABLE +
-            " (" + FEDORA_ID_COLUMN + " varchar(65535) NOT NULL, " +
-            PARENT_COLUMN + " varchar(65535) NOT NULL, " +
-            TRANSACTION_ID_COLUMN + " varchar(255) NOT NULL, " +
-            OPERATION_COLUMN + " varchar(10) NOT NULL)";
+    private volatile ContainmentExistenceFilter existenceFilter;
 
     /**
-     * Create an index to speed searches for records related to adding/excluding transaction records
+     * The existence filter being built to replace the current one, if any. Resources committed while it is built are
+     * added to it as well. Guarded by the cache write lock.
      */
-    private static final String TRANSACTION_OPERATIONS_TABLE_INDEX_1_DDL = "CREATE INDEX IF NOT EXISTS " +
-            TRANSACTION_OPERATIONS_TABLE_IDX_1 + " ON " + TRANSACTION_OPERATIONS_TABLE + " (" + PARENT_COLUMN + ", " +
-            TRANSACTION_ID_COLUMN + ", " + OPERATION_COLUMN + ")";
+    private ContainmentExistenceFilter pendingExistenceFilter;
 
     /**
-     * Create an index to speed finding records related to a transaction.
+     * Set while a replacement existence filter is being built, so that only one is built at a time.
      */
-    private static final String TRANSACTION_OPERATIONS_TABLE_INDEX_2_DDL = "CREATE INDEX IF NOT EXISTS " +
-            TRANSACTION_OPERATIONS_TABLE_IDX_2 + " ON " + TRANSACTION_OPERATIONS_TABLE + " (" + TRANSACTION_ID_COLUMN +
-            ")";
+    private final AtomicBoolean buildingExistenceFilter = new AtomicBoolean();
 
-    private static final String SELECT_CHILDREN = "SELECT " + FEDORA_ID_COLUMN +
-            " FROM " + RESOURCES_TABLE + " WHERE " + PARENT_COLUMN + " = :parent";
+    /**
+     * Builds replacement existence filters, so that the request which fills the current one is not held up scanning
+     * every committed resource.
+     */
+    private final ExecutorService existenceFilterExecutor = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "containment-existence-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    private static final String SELECT_ADDED_CHILDREN = "SELECT " + FEDORA_ID_COLUMN +
-            " FROM " + TRANSACTION_OPERATIONS_TABLE +
-            " WHERE " + PARENT_COLUMN + " = :parent AND " +
-            TRANSACTION_ID_COLUMN + " = :transactionId AND " +
-            OPERATION_COLUMN + " = 'add'";
+    /**
+     * Committed parent of each child, empty if the child does not exist.
+     */
+    private Cache<String, Optional<String>> containedByCache;
 
-    private static final String SELECT_DELETED_CHILDREN = "SELECT " + FEDORA_ID_COLUMN +
-            " FROM " + TRANSACTION_OPERATIONS_TABLE +
-            " WHERE " + PARENT_COLUMN + " = :parent AND " +
-            TRANSACTION_ID_COLUMN + " = :transactionId AND " +
-            OPERATION_COLUMN + " = 'delete'";
+    /**
+     * Committed children of each parent with fewer than fetchSize children, with their keys in key order, weighted by
+     * the number of children.
+     */
+    private Cache<String, List<Map.Entry<Long, String>>> containsCache;
 
-    private static final String INSERT_CHILD = "INSERT INTO " + RESOURCES_TABLE +
-            " (" + FEDORA_ID_COLUMN + ", " + PARENT_COLUMN + ") VALUES (:child, :parent)";
+    /**
+     * Key of each resource ID.
+     */
+    private Cache<String, Long> keyCache;
 
-    private static final String DELETE_CHILD = "DELETE FROM " + RESOURCES_TABLE +
-            " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + PARENT_COLUMN + " = :parent";
+    /**
+     * Held while loading cache entries and exclusively while applying committed changes to the caches, so that a
+     * lookup which read the database before a commit cannot cache its result after the commit has been applied.
+     */
+    private final ReadWriteLock cacheLock = new ReentrantReadWriteLock();
 
-    private static final String INSERT_CHILD_IN_TRANSACTION = "INSERT INTO " + TRANSACTION_OPERATIONS_TABLE +
-            " ( " + PARENT_COLUMN + ", " + FEDORA_ID_COLUMN + ", " + TRANSACTION_ID_COLUMN + ", " + OPERATION_COLUMN +
-            " ) VALUES (:parent, :child, :transactionId, 'add')";
+    /**
+     * Containment changes staged by each open transaction, applied to the database on commit.
+     */
+    private final Map<String, ContainmentTransaction> transactions = new ConcurrentHashMap<>();
 
-    private static final String UNDO_INSERT_CHILD_IN_TRANSACTION = "DELETE FROM " + TRANSACTION_OPERATIONS_TABLE +
-            " WHERE " + PARENT_COLUMN + " = :parent AND " + FEDORA_ID_COLUMN + " = :child AND " + TRANSACTION_ID_COLUMN
-            + " = :transactionId AND " + OPERATION_COLUMN + " = 'add'";
+    /**
+     * Resource IDs are interned in this table, relationships refer to them by a numeric key.
+     */
+    private static final String IDS_TABLE = "containment_ids";
 
-    private static final String DELETE_CHILD_IN_TRANSACTION = "INSERT INTO " + TRANSACTION_OPERATIONS_TABLE +
-            " ( " + PARENT_COLUMN + ", " + FEDORA_ID_COLUMN + ", " + TRANSACTION_ID_COLUMN + ", " + OPERATION_COLUMN +
-            " ) VALUES (:parent, :child, :transactionId, 'delete')";
+    private static final String CONTAINMENT_TABLE = "containment";
 
-    private static final String UNDO_DELETE_CHILD_IN_TRANSACTION = "DELETE FROM " + TRANSACTION_OPERATIONS_TABLE +
-            " WHERE " + PARENT_COLUMN + " = :parent AND " + FEDORA_ID_COLUMN + " = :child AND " + TRANSACTION_ID_COLUMN
-            + " = :transactionId AND " + OPERATION_COLUMN + " = 'delete'";
+    private static final String CONTAINMENT_TABLE_IDX = "containment_parent_idx";
 
-    private static final String IS_CHILD_ADDED_IN_TRANSACTION = "SELECT TRUE FROM " + TRANSACTION_OPERATIONS_TABLE +
-            " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + PARENT_COLUMN + " = :parent" +
-            " AND " + TRANSACTION_ID_COLUMN + " = :transactionId AND " + OPERATION_COLUMN + " = 'add'";
+    private static final String ID_COLUMN = "id";
 
-    private static final String IS_CHILD_DELETED_IN_TRANSACTION = "SELECT TRUE FROM " + TRANSACTION_OPERATIONS_TABLE +
-            " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + PARENT_COLUMN + " = :parent" +
-            " AND " + TRANSACTION_ID_COLUMN + " = :transactionId AND " + OPERATION_COLUMN + " = 'delete'";
+    private static final String FEDORA_ID_COLUMN = "fedoraId";
 
-    private static final String ROLLBACK_TRANSACTION = "DELETE FROM " + TRANSACTION_OPERATIONS_TABLE + " WHERE " +
-            " transactionId = :transactionId";
+    private static final String CHILD_COLUMN = "child";
 
-    private static final String COMMIT_ADD_RECORDS = "INSERT INTO " + RESOURCES_TABLE + " ( " + FEDORA_ID_COLUMN + ", "
-            + PARENT_COLUMN + " ) SELECT " + FEDORA_ID_COLUMN + ", " + PARENT_COLUMN + " FROM " +
-            TRANSACTION_OPERATIONS_TABLE + " WHERE " + TRANSACTION_ID_COLUMN + " = :transactionId AND " +
-            OPERATION_COLUMN + " = 'add'";
+    private static final String PARENT_COLUMN = "parent";
 
-    private static final String COMMIT_DELETE_RECORDS = "DELETE FROM " + RESOURCES_TABLE + " WHERE " +
-            "EXISTS (SELECT * FROM " + TRANSACTION_OPERATIONS_TABLE + " WHERE " +
-            TRANSACTION_ID_COLUMN + " = :transactionId AND " +  OPERATION_COLUMN + " = 'delete' AND " +
-            RESOURCES_TABLE + "." + FEDORA_ID_COLUMN + " = " + TRANSACTION_OPERATIONS_TABLE + "." + FEDORA_ID_COLUMN +
-            " AND " + RESOURCES_TABLE + "." + PARENT_COLUMN + " = " + TRANSACTION_OPERATIONS_TABLE + "." +
-            PARENT_COLUMN + ")";
+    /**
+     * Containment used to be held in this table, with the full ID of the child and its parent on each row.
+     */
+    private static final String RESOURCES_TABLE = "resources";
 
-    private static final String COMMIT_CLEANUP = "DELETE FROM " + TRANSACTION_OPERATIONS_TABLE + " WHERE " +
-            TRANSACTION_ID_COLUMN + " = :transactionId";
+    private static final String TRANSACTION_OPERATIONS_TABLE = "transactionOperations";
 
-    private static final String RESOURCE_EXISTS = "SELECT " + FEDORA_ID_COLUMN + " FROM " + RESOURCES_TABLE +
-            " WHERE " + FEDORA_ID_COLUMN + " = :child";
+    /**
+     * Holds each ID once, keys are never reused or removed.
+     */
+    private static final String IDS_TABLE_DDL = "CREATE TABLE IF NOT EXISTS " + IDS_TABLE + " (" +
+            ID_COLUMN + " BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            FEDORA_ID_COLUMN + " varchar(65535) NOT NULL UNIQUE)";
 
-    private static final String RESOURCE_EXISTS_ADDITIONS = "SELECT " + FEDORA_ID_COLUMN + " FROM "
-            + TRANSACTION_OPERATIONS_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + TRANSACTION_ID_COLUMN
-            + " = :transactionId AND " + OPERATION_COLUMN + " = 'add'";
+    /**
+     * Holds the key of each child and the key of its parent.
+     */
+    private static final String CONTAINMENT_TABLE_DDL = "CREATE TABLE IF NOT EXISTS " + CONTAINMENT_TABLE + " (" +
+            CHILD_COLUMN + " BIGINT NOT NULL PRIMARY KEY, " +
+            PARENT_COLUMN + " BIGINT NOT NULL)";
+
+    /**
+     * Create an index to speed searches for children of a parent, in key order.
+     */
+    private static final String CONTAINMENT_TABLE_INDEX_DDL = "CREATE INDEX IF NOT EXISTS " + CONTAINMENT_TABLE_IDX +
+            " ON " + CONTAINMENT_TABLE + " (" + PARENT_COLUMN + ", " + CHILD_COLUMN + ")";
+
+    /**
+     * Transaction operations used to be staged in this table, they are now held in memory.
+     */
+    private static final String TRANSACTION_OPERATIONS_TABLE_DROP = "DROP TABLE IF EXISTS " +
+            TRANSACTION_OPERATIONS_TABLE;
+
+    private static final String RESOURCES_TABLE_EXISTS = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES" +
+            " WHERE TABLE_SCHEMA = SCHEMA() AND UPPER(TABLE_NAME) = UPPER('" + RESOURCES_TABLE + "')";
 
-    private static final String RESOURCE_EXISTS_DELETIONS = "SELECT " + FEDORA_ID_COLUMN + " FROM "
-            + TRANSACTION_OPERATIONS_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + TRANSACTION_ID_COLUMN
-            + " = :transactionId AND " + OPERATION_COLUMN + " = 'delete'";
+    private static final String MIGRATE_IDS = "INSERT INTO " + IDS_TABLE + " (" + FEDORA_ID_COLUMN + ")" +
+            " SELECT r." + FEDORA_ID_COLUMN + " FROM (SELECT " + FEDORA_ID_COLUMN + " FROM " + RESOURCES_TABLE +
+            " UNION SELECT " + PARENT_COLUMN + " FROM " + RESOURCES_TABLE + ") r WHERE NOT EXISTS (SELECT 1 FROM " +
+            IDS_TABLE + " i WHERE i." + FEDORA_ID_COLUMN + " = r." + FEDORA_ID_COLUMN + ")";
 
-    private static final String PARENT_EXISTS = "SELECT " + PARENT_COLUMN + " FROM " + RESOURCES_TABLE +
-            " WHERE " + FEDORA_ID_COLUMN + " = :child";
+    private static final String MIGRATE_CONTAINMENT = "INSERT INTO " + CONTAINMENT_TABLE + " (" + CHILD_COLUMN +
+            ", " + PARENT_COLUMN + ") SELECT c." + ID_COLUMN + ", p." + ID_COLUMN + " FROM " + RESOURCES_TABLE +
+            " r JOIN " + IDS_TABLE + " c ON c." + FEDORA_ID_COLUMN + " = r." + FEDORA_ID_COLUMN +
+            " JOIN " + IDS_TABLE + " p ON p." + FEDORA_ID_COLUMN + " = r." + PARENT_COLUMN +
+            " WHERE NOT EXISTS (SELECT 1 FROM " + CONTAINMENT_TABLE + " e WHERE e." + CHILD_COLUMN + " = c." +
+            ID_COLUMN + ")";
 
-    private static final String PARENT_EXISTS_ADDITIONS = "SELECT " + PARENT_COLUMN + " FROM "
-            + TRANSACTION_OPERATIONS_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + TRANSACTION_ID_COLUMN
-            + " = :transactionId AND " + OPERATION_COLUMN + " = 'add'";
+    private static final String RESOURCES_TABLE_DROP = "DROP TABLE IF EXISTS " + RESOURCES_TABLE;
 
-    private static final String PARENT_EXISTS_DELETIONS = "SELECT " + PARENT_COLUMN + " FROM "
-            + TRANSACTION_OPERATIONS_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + TRANSACTION_ID_COLUMN
-            + " = :transactionId AND " + OPERATION_COLUMN + " = 'delete'";
+    private static final String SELECT_KEYS = "SELECT " + ID_COLUMN + ", " + FEDORA_ID_COLUMN + " FROM " +
+            IDS_TABLE + " WHERE " + FEDORA_ID_COLUMN + " IN (:ids)";
 
-    private static final String DELETE_ALL_RESOURCE = "DELETE FROM " + RESOURCES_TABLE + " WHERE " + FEDORA_ID_COLUMN +
-            " = :child";
+    private static final int MAX_INTERN_ATTEMPTS = 3;
 
-    private static final String IS_CHILD_ADDED_IN_TRANSACTION_NO_PARENT = "SELECT TRUE FROM " +
-            TRANSACTION_OPERATIONS_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :child AND " +
-            TRANSACTION_ID_COLUMN + " = :transactionId AND " + OPERATION_COLUMN + " = 'add'";
+    private static final String MERGE_KEY = "MERGE INTO " + IDS_TABLE + " (" + FEDORA_ID_COLUMN + ") KEY (" +
+            FEDORA_ID_COLUMN + ") VALUES (:fedoraId)";
 
-    private static final String UNDO_INSERT_CHILD_IN_TRANSACTION_NO_PARENT = "DELETE FROM " +
-            TRANSACTION_OPERATIONS_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :child AND " + TRANSACTION_ID_COLUMN
-            + " = :transactionId AND " + OPERATION_COLUMN + " = 'add'";
+    /**
+     * Select a page of children in key order, starting after the last child of the previous page.
+     */
+    private static final String SELECT_CHILDREN_PAGE = "SELECT e." + CHILD_COLUMN + ", c." + FEDORA_ID_COLUMN +
+            " FROM " + CONTAINMENT_TABLE + " e JOIN " + IDS_TABLE + " c ON c." + ID_COLUMN + " = e." + CHILD_COLUMN +
+            " WHERE e." + PARENT_COLUMN + " = :parent AND e." + CHILD_COLUMN + " > :after ORDER BY e." +
+            CHILD_COLUMN + " LIMIT :limit";
+
+    private static final String INSERT_CHILD = "INSERT INTO " + CONTAINMENT_TABLE +
+            " (" + CHILD_COLUMN + ", " + PARENT_COLUMN + ") VALUES (:child, :parent)";
+
+    private static final String MERGE_CHILD = "MERGE INTO " + CONTAINMENT_TABLE +
+            " (" + CHILD_COLUMN + ", " + PARENT_COLUMN + ") KEY (" + CHILD_COLUMN + ") VALUES (:child, :parent)";
+
+    private static final String DELETE_CHILD = "DELETE FROM " + CONTAINMENT_TABLE +
+            " WHERE " + CHILD_COLUMN + " = :child AND " + PARENT_COLUMN + " = :parent";
+
+    /**
+     * Select the full IDs of children and their parents.
+     */
+    private static final String SELECT_WITH_PARENT = "SELECT c." + FEDORA_ID_COLUMN + ", p." + FEDORA_ID_COLUMN +
+            " AS " + PARENT_COLUMN + " FROM " + CONTAINMENT_TABLE + " e JOIN " + IDS_TABLE + " c ON c." + ID_COLUMN +
+            " = e." + CHILD_COLUMN + " JOIN " + IDS_TABLE + " p ON p." + ID_COLUMN + " = e." + PARENT_COLUMN;
+
+    private static final String PARENT_EXISTS = "SELECT p." + FEDORA_ID_COLUMN + " FROM " + CONTAINMENT_TABLE +
+            " e JOIN " + IDS_TABLE + " c ON c." + ID_COLUMN + " = e." + CHILD_COLUMN + " JOIN " + IDS_TABLE +
+            " p ON p." + ID_COLUMN + " = e." + PARENT_COLUMN + " WHERE c." + FEDORA_ID_COLUMN + " = :child";
+
+    private static final String SELECT_PARENTS = SELECT_WITH_PARENT + " WHERE c." + FEDORA_ID_COLUMN +
+            " IN (:children)";
+
+    private static final String SELECT_ALL_IDS = "SELECT c." + FEDORA_ID_COLUMN + " FROM " + CONTAINMENT_TABLE +
+            " e JOIN " + IDS_TABLE + " c ON c." + ID_COLUMN + " = e." + CHILD_COLUMN;
+
+    private static final String COUNT_RESOURCES = "SELECT COUNT(*) FROM " + CONTAINMENT_TABLE;
+
+    /**
+     * Select every resource below any of the given parents with its own parent, shallowest first.
+     */
+    private static final String SELECT_DESCENDANTS = "WITH RECURSIVE descendants(" + CHILD_COLUMN + ", " +
+            PARENT_COLUMN + ", depth) AS (" +
+            "SELECT e." + CHILD_COLUMN + ", e." + PARENT_COLUMN + ", 1 FROM " + CONTAINMENT_TABLE + " e JOIN " +
+            IDS_TABLE + " i ON i." + ID_COLUMN + " = e." + PARENT_COLUMN + " WHERE i." + FEDORA_ID_COLUMN +
+            " IN (:parents)" +
+            " UNION ALL SELECT e." + CHILD_COLUMN + ", e." + PARENT_COLUMN + ", d.depth + 1 FROM " +
+            CONTAINMENT_TABLE + " e JOIN descendants d ON e." + PARENT_COLUMN + " = d." + CHILD_COLUMN + ")" +
+            " SELECT c." + FEDORA_ID_COLUMN + ", p." + FEDORA_ID_COLUMN + " AS " + PARENT_COLUMN +
+            " FROM descendants d JOIN " + IDS_TABLE + " c ON c." + ID_COLUMN + " = d." + CHILD_COLUMN +
+            " JOIN " + IDS_TABLE + " p ON p." + ID_COLUMN + " = d." + PARENT_COLUMN + " ORDER BY d.depth";
 
     /**
      * Connect to the database
@@ -215,11 +326,131 @@ public class ContainmentIndexImpl implements ContainmentIndex {
         jdbcTemplate = getNamedParameterJdbcTemplate();
         final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
         // create the tables that don't already exist
-        jdbcTemplate.update(RESOURCES_TABLE_DDL, parameterSource);
-        jdbcTemplate.update(RESOURCES_TABLE_INDEX_DDL, parameterSource);
-        jdbcTemplate.update(TRANSACTION_OPERATIONS_TABLE_DDL, parameterSource);
-        jdbcTemplate.update(TRANSACTION_OPERATIONS_TABLE_INDEX_1_DDL, parameterSource);
-        jdbcTemplate.update(TRANSACTION_OPERATIONS_TABLE_INDEX_2_DDL, parameterSource);
+        jdbcTemplate.update(IDS_TABLE_DDL, parameterSource);
+        jdbcTemplate.update(CONTAINMENT_TABLE_DDL, parameterSource);
+        jdbcTemplate.update(CONTAINMENT_TABLE_INDEX_DDL, parameterSource);
+        jdbcTemplate.update(TRANSACTION_OPERATIONS_TABLE_DROP, parameterSource);
+        migrateResourcesTable();
+        fetchSize = Integer.getInteger(CONTAINS_FETCH_SIZE_PROPERTY, DEFAULT_CONTAINS_FETCH_SIZE);
+        keyCache = CacheBuilder.newBuilder()
+                .maximumSize(Long.getLong(KEY_CACHE_SIZE_PROPERTY, DEFAULT_KEY_CACHE_SIZE))
+                .build();
+        containedByCache = CacheBuilder.newBuilder()
+                .maximumSize(Long.getLong(CONTAINED_BY_CACHE_SIZE_PROPERTY, DEFAULT_CONTAINED_BY_CACHE_SIZE))
+                .recordStats()
+                .build();
+        containsCache = CacheBuilder.newBuilder()
+                .maximumWeight(Long.getLong(CONTAINS_CACHE_SIZE_PROPERTY, DEFAULT_CONTAINS_CACHE_SIZE))
+                .weigher((final String parent, final List<Map.Entry<Long, String>> children) ->
+                        children.size() + 1)
+                .recordStats()
+                .build();
+        buildExistenceFilter(Long.getLong(EXISTENCE_FILTER_SIZE_PROPERTY, DEFAULT_EXISTENCE_FILTER_SIZE));
+    }
+
+    /**
+     * Move the relationships from the resources table used by earlier versions into the keyed tables, then drop it.
+     */
+    private void migrateResourcesTable() {
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        if (jdbcTemplate.queryForObject(RESOURCES_TABLE_EXISTS, parameterSource, Long.class) == 0) {
+            return;
+        }
+        LOGGER.info("Migrating containment index from the {} table", RESOURCES_TABLE);
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRED);
+        transactionTemplate.execute(status -> {
+            final int ids = jdbcTemplate.update(MIGRATE_IDS, parameterSource);
+            final int relationships = jdbcTemplate.update(MIGRATE_CONTAINMENT, parameterSource);
+            LOGGER.info("Migrated {} relationships between {} resources", relationships, ids);
+            return null;
+        });
+        jdbcTemplate.update(RESOURCES_TABLE_DROP, parameterSource);
+    }
+
+    /**
+     * Build a new existence filter from every committed resource. The database is read without holding the cache lock,
+     * resources committed in the meantime are added to the new filter as they are to the current one, and the new
+     * filter replaces the current one once it is complete.
+     *
+     * @param minimumSize the least number of resources the filter should be sized for
+     */
+    private void buildExistenceFilter(final long minimumSize) {
+        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        final long count = jdbcTemplate.queryForObject(COUNT_RESOURCES, parameterSource, Long.class);
+        final double fpp = Double.parseDouble(System.getProperty(EXISTENCE_FILTER_FPP_PROPERTY,
+                DEFAULT_EXISTENCE_FILTER_FPP));
+        final ContainmentExistenceFilter filter = new ContainmentExistenceFilter(Math.max(minimumSize, 2 * count),
+                fpp);
+        cacheLock.writeLock().lock();
+        try {
+            pendingExistenceFilter = filter;
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+        boolean built = false;
+        try {
+            jdbcTemplate.query(SELECT_ALL_IDS, parameterSource, (RowCallbackHandler) rs ->
+                    filter.put(rs.getString(FEDORA_ID_COLUMN)));
+            built = true;
+        } finally {
+            cacheLock.writeLock().lock();
+            try {
+                if (built) {
+                    existenceFilter = filter;
+                }
+                pendingExistenceFilter = null;
+            } finally {
+                cacheLock.writeLock().unlock();
+            }
+        }
+        LOGGER.info("Built containment index existence filter: {}", filter);
+    }
+
+    /**
+     * Add a committed resource to the existence filter, and to the filter being built to replace it if any. Must be
+     * called holding the cache write lock.
+     *
+     * @param resourceID the full ID of the resource
+     */
+    private void addToExistenceFilter(final String resourceID) {
+        existenceFilter.put(resourceID);
+        if (pendingExistenceFilter != null) {
+            pendingExistenceFilter.put(resourceID);
+        }
+    }
+
+    /**
+     * Replace the existence filter with a larger one, in the background, if it holds more resources than it was sized
+     * for. Must be called without holding the cache lock. Lookups keep using the current filter, which still holds
+     * every committed resource though with more false positives, until the new one is swapped in.
+     */
+    private void growExistenceFilterIfFull() {
+        if (existenceFilter.isFull() && buildingExistenceFilter.compareAndSet(false, true)) {
+            final long size = 2 * existenceFilter.getExpectedInsertions();
+            try {
+                existenceFilterExecutor.submit(() -> {
+                    try {
+                        buildExistenceFilter(size);
+                    } catch (final RuntimeException e) {
+                        LOGGER.warn("Failed to grow the containment index existence filter: {}", e.getMessage(), e);
+                    } finally {
+                        buildingExistenceFilter.set(false);
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                // shutting down
+                buildingExistenceFilter.set(false);
+            }
+        }
+    }
+
+    /**
+     * Stop building replacement existence filters
+     */
+    @PreDestroy
+    private void shutdown() {
+        existenceFilterExecutor.shutdownNow();
     }
 
     private NamedParameterJdbcTemplate getNamedParameterJdbcTemplate() {
@@ -227,76 +458,489 @@ public class ContainmentIndexImpl implements ContainmentIndex {
     }
 
     /**
-     * Do the actual database query to get the contained IDs.
+     * Stream the contained IDs in the order they were first added to the index, followed by those added in the
+     * transaction. Committed children are read from the database a page at a time as the stream is consumed.
      *
      * @param resource Containing resource
      * @param transactionId ID of the current transaction (if any)
+     * @param after Only return IDs after this one, or null to start at the beginning
      * @return A stream of contained identifiers
      */
-    private Stream<String> getChildren(final FedoraResource resource, final String transactionId) {
+    private Stream<String> getChildren(final FedoraResource resource, final String transactionId,
+                                       final String after) {
         final String resourceId = resource.getFedoraId().getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("parent", resourceId);
-
-        final List<String> children;
-        if (transactionId != null) {
-            // we are in a transaction
-            parameterSource.addValue("transactionId", transactionId);
-            final String currentChildrenQuery = SELECT_CHILDREN +
-                    " UNION " + SELECT_ADDED_CHILDREN +
-                    " EXCEPT " + SELECT_DELETED_CHILDREN;
-            children = jdbcTemplate.queryForList(currentChildrenQuery, parameterSource, String.class);
+        LOGGER.debug("getChildren for {} in transaction {} after {}", resourceId, transactionId, after);
+        final ContainmentTransaction transaction = transactionId != null ? transactions.get(transactionId) : null;
+        List<String> staged = List.of();
+        Set<String> deleted = Set.of();
+        if (transaction != null) {
+            // we are in a transaction, overlay a snapshot of its staged changes
+            synchronized (transaction) {
+                staged = transaction.childrenAdded(resourceId);
+                deleted = transaction.childrenDeleted(resourceId);
+            }
+            // a committed child re-added in the transaction is already in the committed pages
+            final Map<String, String> committedParents = getCommittedParents(staged);
+            staged.removeIf(child -> resourceId.equals(committedParents.get(child)));
+        }
+
+        final Iterator<String> committed;
+        if (after == null) {
+            committed = new CommittedChildren(resourceId, 0);
+        } else if (staged.contains(after)) {
+            committed = Collections.emptyIterator();
+            staged = staged.subList(staged.indexOf(after) + 1, staged.size());
         } else {
-            // not in a transaction
-            children = jdbcTemplate.queryForList(SELECT_CHILDREN, parameterSource, String.class);
+            final Long afterKey = getKeys(List.of(after)).get(after);
+            if (afterKey == null) {
+                // never a child of anything
+                return Stream.empty();
+            }
+            committed = new CommittedChildren(resourceId, afterKey);
         }
-        LOGGER.debug("getChildren for {} in transaction {} found {} children", resourceId, transactionId,
-                children.size());
-        return children.stream();
+        final Set<String> committedDeleted = deleted;
+        return stream(Iterators.concat(Iterators.filter(committed, c -> !committedDeleted.contains(c)),
+                staged.iterator()));
+    }
+
+    private static Stream<String> stream(final Iterator<String> children) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(children,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
     }
 
     @Override
     public Stream<String> getContains(final Transaction tx, final FedoraResource fedoraResource) {
+        return getContains(tx, fedoraResource, null);
+    }
+
+    @Override
+    public Stream<String> getContains(final Transaction tx, final FedoraResource fedoraResource, final String after) {
         final String txId = (tx != null) ? tx.getId() : null;
-        return getChildren(fedoraResource, txId);
+        return getChildren(fedoraResource, txId, after);
+    }
+
+    @Override
+    public Stream<String> getDescendants(final Transaction tx, final FedoraResource fedoraResource) {
+        final String resourceId = fedoraResource.getFedoraId().getFullId();
+        final String txId = (tx != null) ? tx.getId() : null;
+        final ContainmentTransaction transaction = txId != null ? transactions.get(txId) : null;
+        final List<String[]> committed = getCommittedDescendants(List.of(resourceId));
+        if (transaction == null) {
+            return committed.stream().map(pair -> pair[1]);
+        }
+
+        // we are in a transaction, walk the committed tree applying a snapshot of its staged changes
+        final List<String[]> additions;
+        final List<String[]> deletions;
+        synchronized (transaction) {
+            additions = transaction.additions();
+            deletions = transaction.deletions();
+        }
+        final Map<String, Set<String>> addedChildren = groupByParent(additions);
+        final Map<String, Set<String>> deletedChildren = groupByParent(deletions);
+        final Map<String, Set<String>> committedChildren = groupByParent(committed);
+        // children moved in the transaction bring along their committed descendants, all looked up at once
+        final Set<String> staged = additions.stream().map(pair -> pair[1]).collect(toCollection(LinkedHashSet::new));
+        final Set<String> moved = getCommittedParents(staged).keySet();
+        if (!moved.isEmpty()) {
+            groupByParent(getCommittedDescendants(moved)).forEach((parent, children) ->
+                    committedChildren.computeIfAbsent(parent, k -> new LinkedHashSet<>()).addAll(children));
+        }
+
+        final List<String> descendants = new ArrayList<>();
+        final Deque<String> parents = new ArrayDeque<>(List.of(resourceId));
+        while (!parents.isEmpty()) {
+            final String parent = parents.poll();
+            final Set<String> children = committedChildren.getOrDefault(parent, Set.of());
+            final Set<String> deleted = deletedChildren.getOrDefault(parent, Set.of());
+            children.stream().filter(c -> !deleted.contains(c)).forEach(parents::add);
+            addedChildren.getOrDefault(parent, Set.of()).stream().filter(c -> !children.contains(c))
+                    .forEach(parents::add);
+            if (!parent.equals(resourceId)) {
+                descendants.add(parent);
+            }
+        }
+        return descendants.stream();
+    }
+
+    /**
+     * Get all of the committed descendants of resources, querying the database a page of resources at a time.
+     *
+     * @param resourceIDs the full IDs of the resources
+     * @return parent, child pairs for every descendant, shallowest first below each resource
+     */
+    private List<String[]> getCommittedDescendants(final Collection<String> resourceIDs) {
+        final List<String[]> descendants = new ArrayList<>();
+        for (final List<String> page : Lists.partition(new ArrayList<>(resourceIDs), fetchSize)) {
+            final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+            parameterSource.addValue("parents", page);
+            jdbcTemplate.query(SELECT_DESCENDANTS, parameterSource, (RowCallbackHandler) rs ->
+                    descendants.add(new String[]{rs.getString(PARENT_COLUMN), rs.getString(FEDORA_ID_COLUMN)}));
+        }
+        LOGGER.debug("Found {} committed descendants of {}", descendants.size(), resourceIDs);
+        return descendants;
+    }
+
+    private static Map<String, Set<String>> groupByParent(final List<String[]> pairs) {
+        return pairs.stream().collect(groupingBy(pair -> pair[0], HashMap::new,
+                mapping(pair -> pair[1], toCollection(LinkedHashSet::new))));
     }
 
     @Override
     public String getContainedBy(final String txID, final FedoraId resource) {
-        final String resourceID = resource.getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("child", resourceID);
-        final List<String> parentID;
-        if (txID != null) {
-            parameterSource.addValue("transactionId", txID);
-            final String currentResourceQuery = PARENT_EXISTS +
-                    " UNION " + PARENT_EXISTS_ADDITIONS +
-                    " EXCEPT " + PARENT_EXISTS_DELETIONS;
-            parentID = jdbcTemplate.queryForList(currentResourceQuery, parameterSource, String.class);
-        } else {
-            parentID = jdbcTemplate.queryForList(PARENT_EXISTS, parameterSource, String.class);
+        return getParent(txID, resource.getFullId());
+    }
+
+    @Override
+    public Map<String, String> getContainedBy(final String txID, final Collection<FedoraId> resources) {
+        final List<String> resourceIDs = resources.stream().map(FedoraId::getFullId).collect(toList());
+        final Map<String, String> parents = getCommittedParents(resourceIDs);
+        final ContainmentTransaction transaction = txID != null ? transactions.get(txID) : null;
+        if (transaction != null) {
+            synchronized (transaction) {
+                for (final String resourceID : resourceIDs) {
+                    final String parent = transaction.parent(resourceID, parents.get(resourceID));
+                    if (parent != null) {
+                        parents.put(resourceID, parent);
+                    } else {
+                        parents.remove(resourceID);
+                    }
+                }
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Get the parent of a resource, as seen from within the transaction if there is one.
+     *
+     * @param txID the transaction ID or null if no transaction
+     * @param resourceID the full ID of the child resource
+     * @return the full ID of the parent or null if the resource is not in the index
+     */
+    private String getParent(final String txID, final String resourceID) {
+        final String committed = getCommittedParent(resourceID);
+        final ContainmentTransaction transaction = txID != null ? transactions.get(txID) : null;
+        if (transaction != null) {
+            synchronized (transaction) {
+                return transaction.parent(resourceID, committed);
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * Get a page of the committed children of a resource, from the cache if possible. A page with fewer than
+     * fetchSize children is the last page.
+     *
+     * @param resourceID the full ID of the parent resource
+     * @param afterKey the key of the last child of the previous page, or 0 for the first page
+     * @return the key and full ID of each child in key order
+     */
+    private List<Map.Entry<Long, String>> getCommittedChildren(final String resourceID, final long afterKey) {
+        cacheLock.readLock().lock();
+        try {
+            if (afterKey == 0) {
+                final List<Map.Entry<Long, String>> cached = containsCache.getIfPresent(resourceID);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            final Long parentKey = getKeys(List.of(resourceID)).get(resourceID);
+            if (parentKey == null) {
+                return List.of();
+            }
+            final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+            parameterSource.addValue("parent", parentKey);
+            parameterSource.addValue("after", afterKey);
+            parameterSource.addValue("limit", fetchSize);
+            final List<Map.Entry<Long, String>> page = List.copyOf(jdbcTemplate.query(SELECT_CHILDREN_PAGE,
+                    parameterSource, (rs, rowNum) -> Map.entry(rs.getLong(CHILD_COLUMN),
+                            rs.getString(FEDORA_ID_COLUMN))));
+            if (afterKey == 0 && page.size() < fetchSize) {
+                // all of the children fit in one page, keep them for next time
+                containsCache.put(resourceID, page);
+            }
+            return page;
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Iterates over the committed children of a resource, fetching the next page when the current one is used up.
+     */
+    private final class CommittedChildren extends AbstractIterator<String> {
+
+        private final String resourceID;
+
+        private long lastKey;
+
+        private Iterator<Map.Entry<Long, String>> page = Collections.emptyIterator();
+
+        private boolean lastPage = false;
+
+        CommittedChildren(final String resourceID, final long afterKey) {
+            this.resourceID = resourceID;
+            this.lastKey = afterKey;
+        }
+
+        @Override
+        protected String computeNext() {
+            while (!page.hasNext()) {
+                if (lastPage) {
+                    return endOfData();
+                }
+                final List<Map.Entry<Long, String>> children = getCommittedChildren(resourceID, lastKey);
+                lastPage = children.size() < fetchSize;
+                page = children.iterator();
+            }
+            final Map.Entry<Long, String> child = page.next();
+            lastKey = child.getKey();
+            return child.getValue();
+        }
+    }
+
+    /**
+     * Get the keys of resources, from the cache where possible and otherwise querying the database a page of
+     * resources at a time.
+     *
+     * @param resourceIDs the full IDs of the resources
+     * @return the key of each resource which has one
+     */
+    private Map<String, Long> getKeys(final Collection<String> resourceIDs) {
+        final Map<String, Long> keys = new HashMap<>();
+        final List<String> uncached = new ArrayList<>();
+        for (final String resourceID : resourceIDs) {
+            final Long cached = keyCache.getIfPresent(resourceID);
+            if (cached != null) {
+                keys.put(resourceID, cached);
+            } else {
+                uncached.add(resourceID);
+            }
+        }
+        for (final List<String> page : Lists.partition(uncached, fetchSize)) {
+            final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+            parameterSource.addValue("ids", page);
+            jdbcTemplate.query(SELECT_KEYS, parameterSource, (RowCallbackHandler) rs -> {
+                final String resourceID = rs.getString(FEDORA_ID_COLUMN);
+                final long key = rs.getLong(ID_COLUMN);
+                keys.put(resourceID, key);
+                // keys never change, so they can be cached without regard to transactions
+                keyCache.put(resourceID, key);
+            });
+        }
+        return keys;
+    }
+
+    /**
+     * Get the keys of resources, adding keys for any which do not have one yet.
+     *
+     * @param resourceIDs the full IDs of the resources
+     * @return the key of each resource
+     */
+    private Map<String, Long> internKeys(final Collection<String> resourceIDs) {
+        final Map<String, Long> keys = getKeys(resourceIDs);
+        for (int attempt = 1; ; attempt++) {
+            final List<String> missing = resourceIDs.stream().distinct()
+                    .filter(resourceID -> !keys.containsKey(resourceID))
+                    .collect(toList());
+            if (missing.isEmpty()) {
+                return keys;
+            }
+            try {
+                jdbcTemplate.batchUpdate(MERGE_KEY, missing.stream()
+                        .map(resourceID -> new MapSqlParameterSource(FEDORA_ID_COLUMN, resourceID))
+                        .toArray(SqlParameterSource[]::new));
+            } catch (final DuplicateKeyException e) {
+                // another thread added some of the same keys at the same time, pick those up and add the rest again
+                if (attempt == MAX_INTERN_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.debug("Concurrent insert of containment keys, retrying: {}", e.getMessage());
+            }
+            keys.putAll(getKeys(missing));
+        }
+    }
+
+    /**
+     * Get the committed parents of many resources, from the cache where possible and otherwise querying the database
+     * a page of resources at a time.
+     *
+     * @param resourceIDs the full IDs of the child resources
+     * @return the full ID of the parent of each resource which is in the index
+     */
+    private Map<String, String> getCommittedParents(final Collection<String> resourceIDs) {
+        final Map<String, String> parents = new HashMap<>();
+        final List<String> uncached = new ArrayList<>();
+        for (final String resourceID : resourceIDs) {
+            if (!existenceFilter.mightContain(resourceID)) {
+                continue;
+            }
+            final Optional<String> cached = containedByCache.getIfPresent(resourceID);
+            if (cached != null) {
+                cached.ifPresent(parent -> parents.put(resourceID, parent));
+            } else {
+                uncached.add(resourceID);
+            }
+        }
+        if (uncached.isEmpty()) {
+            return parents;
+        }
+        // cache what was read, including the resources which were not found, as getCommittedParent does
+        cacheLock.readLock().lock();
+        try {
+            for (final List<String> page : Lists.partition(uncached, fetchSize)) {
+                final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+                parameterSource.addValue("children", page);
+                jdbcTemplate.query(SELECT_PARENTS, parameterSource, (RowCallbackHandler) rs ->
+                        parents.put(rs.getString(FEDORA_ID_COLUMN), rs.getString(PARENT_COLUMN)));
+                for (final String resourceID : page) {
+                    containedByCache.put(resourceID, Optional.ofNullable(parents.get(resourceID)));
+                }
+            }
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+        return parents;
+    }
+
+    /**
+     * Get the staged changes of a transaction, starting a new set of changes if there are none.
+     *
+     * @param txID the transaction ID
+     * @return the staged changes
+     */
+    private ContainmentTransaction getTransaction(final String txID) {
+        return transactions.computeIfAbsent(txID, k -> new ContainmentTransaction());
+    }
+
+    /**
+     * Get the committed parent of a resource, from the cache if possible.
+     *
+     * @param resourceID the full ID of the child resource
+     * @return the full ID of the parent or null if the resource is not in the index
+     */
+    private String getCommittedParent(final String resourceID) {
+        if (!existenceFilter.mightContain(resourceID)) {
+            return null;
+        }
+        return getCached(containedByCache, resourceID, () -> {
+            final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+            parameterSource.addValue("child", resourceID);
+            return jdbcTemplate.queryForList(PARENT_EXISTS, parameterSource, String.class).stream().findFirst();
+        }).orElse(null);
+    }
+
+    /**
+     * Get a value from one of the committed state caches, loading it if absent.
+     *
+     * @param cache the cache
+     * @param key the cache key
+     * @param loader loads the committed value from the database
+     * @param <V> the type of cached value
+     * @return the value
+     */
+    private <V> V getCached(final Cache<String, V> cache, final String key, final Callable<V> loader) {
+        cacheLock.readLock().lock();
+        try {
+            return cache.get(key, loader);
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            throw new RepositoryRuntimeException("Unable to query containment index for " + key, e.getCause());
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Update the caches after a relationship between parent and child has been committed.
+     *
+     * @param parentID the full ID of the parent
+     * @param childID the full ID of the child
+     * @param added true if the relationship was added, false if it was removed
+     */
+    private void updateCaches(final String parentID, final String childID, final boolean added) {
+        cacheLock.writeLock().lock();
+        try {
+            containsCache.invalidate(parentID);
+            if (added) {
+                containedByCache.put(childID, Optional.of(parentID));
+                addToExistenceFilter(childID);
+            } else {
+                containedByCache.invalidate(childID);
+            }
+        } finally {
+            cacheLock.writeLock().unlock();
         }
-        return parentID.stream().findFirst().orElse(null);
+        if (added) {
+            growExistenceFilterIfFull();
+        }
+    }
+
+    /**
+     * @return statistics for the cache of committed child to parent relationships
+     */
+    public CacheStats getContainedByCacheStats() {
+        return containedByCache.stats();
+    }
+
+    /**
+     * @return statistics for the cache of committed children
+     */
+    public CacheStats getContainsCacheStats() {
+        return containsCache.stats();
+    }
+
+    /**
+     * @return the filter of committed resources
+     */
+    public ContainmentExistenceFilter getExistenceFilter() {
+        return existenceFilter;
     }
 
     @Override
     public void addContainedBy(final String txID, final FedoraId parent, final FedoraId child) {
         final String parentID = parent.getFullId();
         final String childID = child.getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("parent", parentID);
-        parameterSource.addValue("child", childID);
         if (txID != null) {
-            parameterSource.addValue("transactionId", txID);
-            final boolean removedInTxn = !jdbcTemplate.queryForList(IS_CHILD_DELETED_IN_TRANSACTION, parameterSource)
-                    .isEmpty();
-            if (removedInTxn) {
-                jdbcTemplate.update(UNDO_DELETE_CHILD_IN_TRANSACTION, parameterSource);
-            } else {
-                jdbcTemplate.update(INSERT_CHILD_IN_TRANSACTION, parameterSource);
+            final ContainmentTransaction transaction = getTransaction(txID);
+            synchronized (transaction) {
+                transaction.add(parentID, childID);
             }
         } else {
-            jdbcTemplate.update(INSERT_CHILD, parameterSource);
+            final List<String[]> added = List.<String[]>of(new String[]{parentID, childID});
+            jdbcTemplate.update(INSERT_CHILD, toParameterSources(added, internKeys(List.of(parentID, childID)))[0]);
+            updateCaches(parentID, childID, true);
+        }
+    }
+
+    @Override
+    public void addContainedBy(final String txID, final Map<FedoraId, FedoraId> parents) {
+        final List<String[]> added = parents.entrySet().stream()
+                .map(e -> new String[]{e.getValue().getFullId(), e.getKey().getFullId()})
+                .collect(toList());
+        if (txID != null) {
+            final ContainmentTransaction transaction = getTransaction(txID);
+            synchronized (transaction) {
+                added.forEach(pair -> transaction.add(pair[0], pair[1]));
+            }
+        } else if (!added.isEmpty()) {
+            final SqlParameterSource[] merges = toParameterSources(added, internKeys(resourceIDsOf(added)));
+            final TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
+            transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRED);
+            transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(MERGE_CHILD, merges));
+            // a merge may have moved a child away from a parent we don't know of, so drop all cached children
+            cacheLock.writeLock().lock();
+            try {
+                containsCache.invalidateAll();
+                for (final String[] pair : added) {
+                    containedByCache.invalidate(pair[1]);
+                    addToExistenceFilter(pair[1]);
+                }
+            } finally {
+                cacheLock.writeLock().unlock();
+            }
+            growExistenceFilterIfFull();
         }
     }
 
@@ -304,45 +948,51 @@ public class ContainmentIndexImpl implements ContainmentIndex {
     public void removeContainedBy(final String txID, final FedoraId parent, final FedoraId child) {
         final String parentID = parent.getFullId();
         final String childID = child.getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("parent", parentID);
-        parameterSource.addValue("child", childID);
         if (txID != null) {
-            parameterSource.addValue("transactionId", txID);
-            final boolean addedInTxn = !jdbcTemplate.queryForList(IS_CHILD_ADDED_IN_TRANSACTION, parameterSource)
-                    .isEmpty();
-            if (addedInTxn) {
-                jdbcTemplate.update(UNDO_INSERT_CHILD_IN_TRANSACTION, parameterSource);
-            } else {
-                jdbcTemplate.update(DELETE_CHILD_IN_TRANSACTION, parameterSource);
+            final ContainmentTransaction transaction = getTransaction(txID);
+            synchronized (transaction) {
+                transaction.remove(parentID, childID);
             }
         } else {
-            jdbcTemplate.update(DELETE_CHILD, parameterSource);
+            final List<String[]> removed = List.<String[]>of(new String[]{parentID, childID});
+            jdbcTemplate.batchUpdate(DELETE_CHILD, toParameterSources(removed, getKeys(List.of(parentID, childID))));
+            updateCaches(parentID, childID, false);
         }
     }
 
     @Override
     public void removeResource(final String txID, final FedoraId resource) {
-        final String resourceID = resource.getFullId();
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("child", resourceID);
+        removeResources(txID, List.of(resource));
+    }
+
+    @Override
+    public void removeResources(final String txID, final Collection<FedoraId> resources) {
+        final Set<String> resourceIDs = resources.stream().map(FedoraId::getFullId)
+                .collect(toCollection(LinkedHashSet::new));
+        final Map<String, String> parents = getCommittedParents(resourceIDs);
         if (txID != null) {
-            parameterSource.addValue("transactionId", txID);
-            final boolean addedInTxn = !jdbcTemplate.queryForList(IS_CHILD_ADDED_IN_TRANSACTION_NO_PARENT,
-                    parameterSource).isEmpty();
-            if (addedInTxn) {
-                jdbcTemplate.update(UNDO_INSERT_CHILD_IN_TRANSACTION_NO_PARENT, parameterSource);
-            } else {
-                final String parent = getContainedBy(txID, resource);
-                if (parent != null) {
-                    LOGGER.debug("Removing containment relationship between parent ({}) and child ({})", parent,
-                            resourceID);
-                    parameterSource.addValue("parent", parent);
-                    jdbcTemplate.update(DELETE_CHILD_IN_TRANSACTION, parameterSource);
+            final ContainmentTransaction transaction = getTransaction(txID);
+            synchronized (transaction) {
+                for (final String resourceID : resourceIDs) {
+                    if (!transaction.cancelAdditions(resourceID)) {
+                        final String parent = transaction.parent(resourceID, parents.get(resourceID));
+                        if (parent != null) {
+                            LOGGER.debug("Removing containment relationship between parent ({}) and child ({})",
+                                    parent, resourceID);
+                            transaction.remove(parent, resourceID);
+                        }
+                    }
                 }
             }
-        } else {
-            jdbcTemplate.update(DELETE_ALL_RESOURCE, parameterSource);
+        } else if (!parents.isEmpty()) {
+            final List<String[]> removed = parents.entrySet().stream()
+                    .map(e -> new String[]{e.getValue(), e.getKey()})
+                    .collect(toList());
+            final TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
+            transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRED);
+            final SqlParameterSource[] deletes = toParameterSources(removed, getKeys(resourceIDsOf(removed)));
+            transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(DELETE_CHILD, deletes));
+            removed.forEach(pair -> updateCaches(pair[0], pair[1], false));
         }
     }
 
@@ -350,37 +1000,73 @@ public class ContainmentIndexImpl implements ContainmentIndex {
     public void commitTransaction(final Transaction tx) {
         if (tx != null) {
             final String txId = tx.getId();
-            final TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
-            final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-            parameterSource.addValue("transactionId", txId);
-            // Seemingly setting the name ensures that we don't re-use a transaction.
-            transactionTemplate.setName("tx-" + txId);
-            transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRED);
-            transactionTemplate.execute(
-                new TransactionCallbackWithoutResult() {
-                    protected void doInTransactionWithoutResult(final TransactionStatus status) {
-                        try {
-                            jdbcTemplate.update(COMMIT_DELETE_RECORDS, parameterSource);
-                            jdbcTemplate.update(COMMIT_ADD_RECORDS, parameterSource);
-                            jdbcTemplate.update(COMMIT_CLEANUP, parameterSource);
-                        } catch (final Exception e) {
-                            status.setRollbackOnly();
-                            LOGGER.warn("Unable to commit containment index transaction {}: {}", txId, e.getMessage());
-                            throw new RepositoryRuntimeException("Unable to commit containment index transaction", e);
-                        }
-                    }
+            final ContainmentTransaction transaction = txId != null ? transactions.get(txId) : null;
+            if (transaction == null) {
+                return;
+            }
+            synchronized (transaction) {
+                if (transaction.isEmpty()) {
+                    // nothing staged, or every staged change was undone, so there is nothing to write
+                    transactions.remove(txId);
+                    LOGGER.debug("Nothing to commit in transaction {}", txId);
+                    return;
                 }
-            );
+                final List<String[]> deletions = transaction.deletions();
+                final List<String[]> additions = transaction.additions();
+                // keys are added outside of the transaction, they are harmless if it fails
+                final SqlParameterSource[] deletes = toParameterSources(deletions,
+                        getKeys(resourceIDsOf(deletions)));
+                final SqlParameterSource[] inserts = toParameterSources(additions,
+                        internKeys(resourceIDsOf(additions)));
+                final TransactionTemplate transactionTemplate = new TransactionTemplate(platformTransactionManager);
+                // Seemingly setting the name ensures that we don't re-use a transaction.
+                transactionTemplate.setName("tx-" + txId);
+                transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRED);
+                transactionTemplate.execute(status -> {
+                    try {
+                        // deletes are applied before adds, so a child moved within the transaction can be re-added
+                        jdbcTemplate.batchUpdate(DELETE_CHILD, deletes);
+                        jdbcTemplate.batchUpdate(INSERT_CHILD, inserts);
+                        return null;
+                    } catch (final Exception e) {
+                        status.setRollbackOnly();
+                        LOGGER.warn("Unable to commit containment index transaction {}: {}", txId, e.getMessage());
+                        throw new RepositoryRuntimeException("Unable to commit containment index transaction", e);
+                    }
+                });
+                transactions.remove(txId);
+                deletions.forEach(pair -> updateCaches(pair[0], pair[1], false));
+                additions.forEach(pair -> updateCaches(pair[0], pair[1], true));
+                LOGGER.debug("Committed {} additions and {} deletions in transaction {}", additions.size(),
+                        deletions.size(), txId);
+            }
+            LOGGER.debug("Containment cache after transaction {}: containedBy {}, contains {}, {}", txId,
+                    containedByCache.stats(), containsCache.stats(), existenceFilter);
         }
     }
 
+    /**
+     * @param pairs parent, child pairs
+     * @param keys the keys of the resources in the pairs
+     * @return parameters for each pair with a key for both parent and child
+     */
+    private static SqlParameterSource[] toParameterSources(final List<String[]> pairs, final Map<String, Long> keys) {
+        return pairs.stream()
+                .filter(pair -> keys.containsKey(pair[0]) && keys.containsKey(pair[1]))
+                .map(pair -> new MapSqlParameterSource()
+                        .addValue("parent", keys.get(pair[0]))
+                        .addValue("child", keys.get(pair[1])))
+                .toArray(SqlParameterSource[]::new);
+    }
+
+    private static Set<String> resourceIDsOf(final List<String[]> pairs) {
+        return pairs.stream().flatMap(Arrays::stream).collect(toCollection(LinkedHashSet::new));
+    }
+
     @Override
     public void rollbackTransaction(final Transaction tx) {
-        if (tx != null) {
-            final String txId = tx.getId();
-            final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-            parameterSource.addValue("transactionId", txId);
-            jdbcTemplate.update(ROLLBACK_TRANSACTION, parameterSource);
+        if (tx != null && tx.getId() != null) {
+            transactions.remove(tx.getId());
         }
     }
 
@@ -393,19 +1079,7 @@ public class ContainmentIndexImpl implements ContainmentIndex {
             // Root always exists.
             return true;
         }
-        final MapSqlParameterSource parameterSource = new MapSqlParameterSource();
-        parameterSource.addValue("child", resourceID);
-        final boolean exists;
-        if (txID != null) {
-            parameterSource.addValue("transactionId", txID);
-            final String currentResourceQuery = RESOURCE_EXISTS +
-                    " UNION " + RESOURCE_EXISTS_ADDITIONS +
-                    " EXCEPT " + RESOURCE_EXISTS_DELETIONS;
-            exists = !jdbcTemplate.queryForList(currentResourceQuery, parameterSource, String.class).isEmpty();
-        } else {
-            exists = !jdbcTemplate.queryForList(RESOURCE_EXISTS, parameterSource, String.class).isEmpty();
-        }
-        return exists;
+        return getParent(txID, resourceID) != null;
     }
 
     @Override
@@ -414,19 +1088,34 @@ public class ContainmentIndexImpl implements ContainmentIndex {
             // If we are root then we are the top.
             return fedoraId;
         }
-        final String parent = getContainedBy(txID, fedoraId);
-        if (parent != null) {
-            return FedoraId.create(parent);
+        // the resource itself followed by each of its possible containers, nearest first
+        final List<String> candidates = new ArrayList<>();
+        candidates.add(fedoraId.getFullId());
+        String path = fedoraId.getResourceId();
+        while (path.contains("/")) {
+            path = path.substring(0, path.lastIndexOf("/"));
+            if (path.equals(FEDORA_ID_PREFIX)) {
+                break;
+            }
+            candidates.add(FedoraId.create(path).getContainingId());
         }
-        String fullId = fedoraId.getFullId();
-        while (fullId.contains("/")) {
-            fullId = fedoraId.getResourceId().substring(0, fullId.lastIndexOf("/"));
-            if (fullId.equals(FEDORA_ID_PREFIX)) {
-                return FedoraId.getRepositoryRootId();
+
+        // look all of them up at once
+        final Map<String, String> committed = getCommittedParents(candidates);
+        final ContainmentTransaction transaction = txID != null ? transactions.get(txID) : null;
+        for (int i = 0; i < candidates.size(); i++) {
+            final String candidate = candidates.get(i);
+            final String parent;
+            if (transaction != null) {
+                synchronized (transaction) {
+                    parent = transaction.parent(candidate, committed.get(candidate));
+                }
+            } else {
+                parent = committed.get(candidate);
             }
-            final FedoraId testID = FedoraId.create(fullId);
-            if (resourceExists(txID, testID)) {
-                return testID;
+            if (parent != null) {
+                // if the resource exists use its actual container, otherwise the nearest one which exists
+                return FedoraId.create(i == 0 ? parent : candidate);
             }
         }
         return FedoraId.getRepositoryRootId();
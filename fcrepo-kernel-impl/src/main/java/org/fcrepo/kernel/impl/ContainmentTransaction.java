@@ -0,0 +1,185 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The containment changes staged in a single transaction. Added and deleted parent to child relationships are held
+ * in memory and merged with the committed state of the index when read.
+ *
+ * Instances are not thread safe, callers must synchronize on the instance.
+ *
+ * @author agent
+ */
+final class ContainmentTransaction {
+
+    /**
+     * Relationships added in the transaction, indexed by parent and by child.
+     */
+    private final Map<String, Set<String>> addedChildren = new HashMap<>();
+
+    private final Map<String, Set<String>> addedParents = new HashMap<>();
+
+    /**
+     * Committed relationships removed in the transaction, indexed by parent and by child.
+     */
+    private final Map<String, Set<String>> deletedChildren = new HashMap<>();
+
+    private final Map<String, Set<String>> deletedParents = new HashMap<>();
+
+    /**
+     * Stage the addition of a relationship, cancelling a staged deletion of the same relationship.
+     *
+     * @param parent the full ID of the parent
+     * @param child the full ID of the child
+     */
+    void add(final String parent, final String child) {
+        if (!unlink(deletedChildren, deletedParents, parent, child)) {
+            link(addedChildren, addedParents, parent, child);
+        }
+    }
+
+    /**
+     * Stage the removal of a relationship, cancelling a staged addition of the same relationship.
+     *
+     * @param parent the full ID of the parent
+     * @param child the full ID of the child
+     */
+    void remove(final String parent, final String child) {
+        if (!unlink(addedChildren, addedParents, parent, child)) {
+            link(deletedChildren, deletedParents, parent, child);
+        }
+    }
+
+    /**
+     * Cancel all relationships added to the child in this transaction.
+     *
+     * @param child the full ID of the child
+     * @return true if any relationships were cancelled
+     */
+    boolean cancelAdditions(final String child) {
+        final Set<String> parents = addedParents.remove(child);
+        if (parents == null) {
+            return false;
+        }
+        parents.forEach(parent -> removeFrom(addedChildren, parent, child));
+        return true;
+    }
+
+    /**
+     * @param parent the full ID of the parent
+     * @return a copy of the children added to the parent in this transaction, in the order they were added
+     */
+    List<String> childrenAdded(final String parent) {
+        return new ArrayList<>(addedChildren.getOrDefault(parent, Set.of()));
+    }
+
+    /**
+     * @param parent the full ID of the parent
+     * @return a copy of the committed children removed from the parent in this transaction
+     */
+    Set<String> childrenDeleted(final String parent) {
+        return Set.copyOf(deletedChildren.getOrDefault(parent, Set.of()));
+    }
+
+    /**
+     * Merge the staged changes with the committed parent of a child.
+     *
+     * @param child the full ID of the child
+     * @param committed the committed parent of the child, or null if it has none
+     * @return the parent visible in the transaction, or null if it has none
+     */
+    String parent(final String child, final String committed) {
+        final var parents = merge(committed == null ? Set.of() : Set.of(committed), addedParents.get(child),
+                deletedParents.get(child));
+        return parents.isEmpty() ? null : parents.get(0);
+    }
+
+    /**
+     * @return parent, child pairs for every staged addition
+     */
+    List<String[]> additions() {
+        return pairs(addedChildren);
+    }
+
+    /**
+     * @return parent, child pairs for every staged deletion
+     */
+    List<String[]> deletions() {
+        return pairs(deletedChildren);
+    }
+
+    /**
+     * @return true if nothing is staged
+     */
+    boolean isEmpty() {
+        return addedChildren.isEmpty() && deletedChildren.isEmpty();
+    }
+
+    private static List<String> merge(final Collection<String> committed, final Set<String> added,
+                                      final Set<String> deleted) {
+        final Set<String> merged = new LinkedHashSet<>(committed);
+        if (added != null) {
+            merged.addAll(added);
+        }
+        if (deleted != null) {
+            merged.removeAll(deleted);
+        }
+        return List.copyOf(merged);
+    }
+
+    private static List<String[]> pairs(final Map<String, Set<String>> byParent) {
+        return byParent.entrySet().stream()
+                .flatMap(e -> e.getValue().stream().map(child -> new String[]{e.getKey(), child}))
+                .collect(Collectors.toList());
+    }
+
+    private static void link(final Map<String, Set<String>> byParent, final Map<String, Set<String>> byChild,
+                             final String parent, final String child) {
+        byParent.computeIfAbsent(parent, k -> new LinkedHashSet<>()).add(child);
+        byChild.computeIfAbsent(child, k -> new LinkedHashSet<>()).add(parent);
+    }
+
+    private static boolean unlink(final Map<String, Set<String>> byParent, final Map<String, Set<String>> byChild,
+                                  final String parent, final String child) {
+        final boolean removed = removeFrom(byParent, parent, child);
+        if (removed) {
+            removeFrom(byChild, child, parent);
+        }
+        return removed;
+    }
+
+    private static boolean removeFrom(final Map<String, Set<String>> map, final String key, final String value) {
+        final Set<String> values = map.get(key);
+        if (values == null || !values.remove(value)) {
+            return false;
+        }
+        if (values.isEmpty()) {
+            map.remove(key);
+        }
+        return true;
+    }
+}
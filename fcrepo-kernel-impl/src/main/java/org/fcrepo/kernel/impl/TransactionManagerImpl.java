@@ -58,7 +58,8 @@ public class TransactionManagerImpl implements TransactionManager {
     }
 
     /**
-     * Periodically scan for closed transactions for cleanup
+     * Periodically scan for closed transactions for cleanup. The persistent storage session of each removed
+     * transaction is released as well.
      */
     @Scheduled(fixedDelayString = "#{systemProperties['fcrepo.session.timeout'] ?: 180000}")
     public void cleanupClosedTransactions() {
@@ -71,6 +72,7 @@ public class TransactionManagerImpl implements TransactionManager {
             if (tx.isCommitted() || tx.isRolledBack()) {
                 if (tx.hasExpired()) {
                     txIt.remove();
+                    pSessionManager.removeSession(txEntry.getKey());
                 }
             } else if (tx.hasExpired()) {
                 // If the tx has expired but is not already closed, then rollback
@@ -86,6 +86,18 @@ public class BinaryImpl extends FedoraResourceImpl implements Binary {
         }
     }
 
+    @Override
+    public InputStream getRange(final long start, final long end) {
+        try {
+            return getSession().getBinaryContent(getId(), getMementoDatetime(), start, end);
+        } catch (final PersistentItemNotFoundException e) {
+            throw new ItemNotFoundException("Unable to find content for " + getId()
+                    + " version " + getMementoDatetime(), e);
+        } catch (final PersistentStorageException e) {
+            throw new RepositoryRuntimeException(e);
+        }
+    }
+
     @Override
     public void setContent(final InputStream content, final String contentType, final Collection<URI> checksums,
             final String originalFileName, final StoragePolicyDecisionPoint storagePolicyDecisionPoint)
@@ -104,8 +104,7 @@ public class FedoraResourceImpl implements FedoraResource {
 
     @Override
     public Stream<FedoraResource> getChildren(final Boolean recursive) {
-        // TODO Auto-generated method stub
-        return null;
+        return resourceFactory.getChildren(tx, this, Boolean.TRUE.equals(recursive));
     }
 
     @Override
@@ -20,6 +20,7 @@ package org.fcrepo.kernel.impl.models;
 import org.fcrepo.kernel.api.ContainmentIndex;
 import org.fcrepo.kernel.api.Transaction;
 import org.fcrepo.kernel.api.exception.PathNotFoundException;
+import org.fcrepo.kernel.api.exception.PathNotFoundRuntimeException;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.exception.ResourceTypeException;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
@@ -36,6 +37,7 @@ import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
 import java.time.Instant;
+import java.util.stream.Stream;
 
 import static org.fcrepo.kernel.api.RdfLexicon.BASIC_CONTAINER;
 import static org.fcrepo.kernel.api.RdfLexicon.DIRECT_CONTAINER;
@@ -140,6 +142,20 @@ public class ResourceFactoryImpl implements ResourceFactory {
         }
     }
 
+    @Override
+    public Stream<FedoraResource> getChildren(final Transaction transaction, final FedoraResource resource,
+                                              final boolean recursive) {
+        final Stream<String> childIds = recursive ? containmentIndex.getDescendants(transaction, resource) :
+                containmentIndex.getContains(transaction, resource);
+        return childIds.map(childId -> {
+            try {
+                return getResource(transaction, FedoraId.create(childId));
+            } catch (final PathNotFoundException exc) {
+                throw new PathNotFoundRuntimeException(exc);
+            }
+        });
+    }
+
     /**
      * Returns the appropriate FedoraResource class for an object based on the provided headers
      *
@@ -18,7 +18,6 @@
 package org.fcrepo.kernel.impl.services;
 
 import org.fcrepo.kernel.api.Transaction;
-import org.fcrepo.kernel.api.exception.PathNotFoundException;
 import org.fcrepo.kernel.api.exception.PathNotFoundRuntimeException;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
@@ -26,21 +25,27 @@ import org.fcrepo.kernel.api.models.Binary;
 import org.fcrepo.kernel.api.models.Container;
 import org.fcrepo.kernel.api.models.FedoraResource;
 import org.fcrepo.kernel.api.models.NonRdfSourceDescription;
-import org.fcrepo.kernel.api.models.ResourceFactory;
+import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.kernel.api.operations.DeleteResourceOperationFactory;
 import org.fcrepo.kernel.api.operations.ResourceOperation;
 import org.fcrepo.kernel.api.services.DeleteResourceService;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.PersistentStorageSessionManager;
+import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.List;
 
 import static java.lang.String.format;
+import static org.fcrepo.kernel.api.FedoraTypes.FCR_ACL;
+import static org.fcrepo.kernel.api.FedoraTypes.FCR_METADATA;
+import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
+import static java.util.stream.Collectors.toList;
 
 /**
  * This class mediates delete operations between the kernel and persistent storage layers
@@ -52,9 +57,6 @@ public class DeleteResourceServiceImpl extends AbstractService implements Delete
 
     private final static Logger log = LoggerFactory.getLogger(DeleteResourceService.class);
 
-    @Inject
-    private ResourceFactory resourceFactory;
-
     @Inject
     private DeleteResourceOperationFactory deleteResourceFactory;
 
@@ -86,48 +88,96 @@ public class DeleteResourceServiceImpl extends AbstractService implements Delete
                                   final FedoraResource fedoraResource, final String userPrincipal)
             throws PersistentStorageException {
 
-        final FedoraId fedoraId = fedoraResource.getFedoraId();
+        final List<FedoraId> deleted = new ArrayList<>();
 
         if (fedoraResource instanceof Container) {
-            final Stream<String> children = containmentIndex.getContains(tx, fedoraResource);
-            children.forEach(childResourceId -> {
-                try {
-                    final FedoraResource res = resourceFactory.getResource(tx, FedoraId.create(childResourceId));
-                    deleteDepthFirst(tx, pSession, res, userPrincipal);
-                } catch (final PathNotFoundException ex) {
-                    log.error("Path not found for {}: {}", fedoraId.getFullId(), ex.getMessage());
-                    throw new PathNotFoundRuntimeException(ex);
-                } catch (final PersistentStorageException ex) {
-                    throw new RepositoryRuntimeException(format("failed to delete resource %s", fedoraId.getFullId()),
-                            ex);
-                }
-            });
-        } else if (fedoraResource instanceof Binary) {
+            // every container comes before its children, so walk backwards to delete children first
+            final List<String> descendants = containmentIndex.getDescendants(tx, fedoraResource).collect(toList());
+            final var it = descendants.listIterator(descendants.size());
+            while (it.hasPrevious()) {
+                deleteDescendant(tx, pSession, FedoraId.create(it.previous()), userPrincipal, deleted);
+            }
+        }
+        deleteResource(tx, pSession, fedoraResource, userPrincipal, deleted);
+
+        containmentIndex.removeResources(tx.getId(), deleted);
+    }
+
+    /**
+     * Delete a descendant found in the containment index along with its description and acl. Only the headers of
+     * the descendant are read, to tell binaries from containers, rather than instantiating it as a resource.
+     */
+    private void deleteDescendant(final Transaction tx, final PersistentStorageSession pSession,
+                                  final FedoraId descendantId, final String userPrincipal,
+                                  final List<FedoraId> deleted)
+            throws PersistentStorageException {
+        final ResourceHeaders headers;
+        try {
+            headers = pSession.getHeaders(descendantId.getFullId(), null);
+        } catch (final PersistentItemNotFoundException ex) {
+            log.error("Path not found for {}: {}", descendantId.getFullId(), ex.getMessage());
+            throw new PathNotFoundRuntimeException(ex);
+        }
+        if (NON_RDF_SOURCE.getURI().equals(headers.getInteractionModel())) {
+            //delete described resource if binary
+            delete(tx, pSession, descendantId.resolve("/" + FCR_METADATA), userPrincipal, deleted);
+        }
+
+        //delete the acl if there is one
+        final FedoraId aclId = descendantId.resolve("/" + FCR_ACL);
+        if (aclExists(pSession, aclId)) {
+            delete(tx, pSession, aclId, userPrincipal, deleted);
+        }
+
+        //delete the resource itself
+        delete(tx, pSession, descendantId, userPrincipal, deleted);
+    }
+
+    /**
+     * Check for an acl through the headers of the session, without instantiating it.
+     */
+    private boolean aclExists(final PersistentStorageSession pSession, final FedoraId aclId)
+            throws PersistentStorageException {
+        try {
+            return !pSession.getHeaders(aclId.getFullId(), null).isDeleted();
+        } catch (final PersistentItemNotFoundException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Delete a single resource along with its description and acl, but not its children.
+     */
+    private void deleteResource(final Transaction tx, final PersistentStorageSession pSession,
+                                final FedoraResource fedoraResource, final String userPrincipal,
+                                final List<FedoraId> deleted)
+            throws PersistentStorageException {
+        if (fedoraResource instanceof Binary) {
             //delete described resource if binary
-            delete(tx, pSession, fedoraResource.getDescribedResource().getFedoraId(), userPrincipal);
+            delete(tx, pSession, fedoraResource.getDescribedResource().getFedoraId(), userPrincipal, deleted);
         }
 
         //delete the acl if this is not the acl
         if (!fedoraResource.isAcl()) {
             final FedoraResource acl = fedoraResource.getAcl();
             if (acl != null) {
-                delete(tx, pSession, acl.getFedoraId(), userPrincipal);
+                delete(tx, pSession, acl.getFedoraId(), userPrincipal, deleted);
             }
         }
 
         //delete the resource itself
-        delete(tx, pSession, fedoraId, userPrincipal);
+        delete(tx, pSession, fedoraResource.getFedoraId(), userPrincipal, deleted);
     }
 
     private void delete(final Transaction tx, final PersistentStorageSession pSession,
-                        final FedoraId fedoraId, final String userPrincipal)
+                        final FedoraId fedoraId, final String userPrincipal, final List<FedoraId> deleted)
             throws PersistentStorageException {
         log.debug("starting delete of {}", fedoraId.getFullId());
         final ResourceOperation deleteOp = deleteResourceFactory.deleteBuilder(fedoraId.getFullId())
                 .userPrincipal(userPrincipal)
                 .build();
         pSession.persist(deleteOp);
-        containmentIndex.removeResource(tx.getId(), fedoraId);
+        deleted.add(fedoraId);
         recordEvent(tx.getId(), fedoraId, deleteOp);
         log.debug("deleted {}", fedoraId.getFullId());
     }
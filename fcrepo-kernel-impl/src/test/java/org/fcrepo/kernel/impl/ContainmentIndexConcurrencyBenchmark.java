@@ -0,0 +1,168 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.impl;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+
+import org.fcrepo.kernel.api.identifiers.FedoraId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Concurrent lookups against a containment index backed by a connection pool. Reports the lookup throughput
+ * reached at each thread count. Run with the benchmarks profile, {@code mvn test -Pbenchmarks}.
+ *
+ * @author agent
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("/containmentIndexBenchmark.xml")
+public class ContainmentIndexConcurrencyBenchmark {
+
+    private static final Logger LOGGER = getLogger(ContainmentIndexConcurrencyBenchmark.class);
+
+    private static final int CHILD_COUNT = 500;
+
+    private static final int LOOKUPS_PER_THREAD = 2000;
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+    @Inject
+    private ContainmentIndexImpl containmentIndex;
+
+    private FedoraId parentId;
+
+    private final List<FedoraId> childIds = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        parentId = FedoraId.create("concurrency-parent");
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            final FedoraId childId = FedoraId.create("concurrency-parent/child" + i);
+            containmentIndex.addContainedBy(null, parentId, childId);
+            childIds.add(childId);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        childIds.forEach(childId -> containmentIndex.removeResource(null, childId));
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        for (final int threads : THREAD_COUNTS) {
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                final List<Callable<Integer>> workers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    final int offset = t;
+                    workers.add(() -> {
+                        int found = 0;
+                        for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+                            final FedoraId childId = childIds.get((offset + i) % CHILD_COUNT);
+                            if (containmentIndex.resourceExists(null, childId) &&
+                                    parentId.getFullId().equals(containmentIndex.getContainedBy(null, childId))) {
+                                found++;
+                            }
+                        }
+                        return found;
+                    });
+                }
+                final long start = System.nanoTime();
+                final List<Future<Integer>> results = executor.invokeAll(workers);
+                final long elapsed = System.nanoTime() - start;
+                for (final Future<Integer> result : results) {
+                    assertEquals(LOOKUPS_PER_THREAD, result.get().intValue());
+                }
+                final long lookups = 2L * threads * LOOKUPS_PER_THREAD;
+                final double perSecond = lookups * (double) SECONDS.toNanos(1) / elapsed;
+                LOGGER.info("{} threads performed {} containment lookups at {} lookups/sec", threads, lookups,
+                        String.format("%.0f", perSecond));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentBulkLoads() throws Exception {
+        final int threads = 4;
+        final int batches = 20;
+        final int batchSize = 100;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<FedoraId> loaded = new ArrayList<>();
+        try {
+            final List<Callable<Void>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                workers.add(() -> {
+                    for (int b = 0; b < batches; b++) {
+                        // every thread adds children to the same, new, parents
+                        final FedoraId bulkParent = FedoraId.create("bulk-parent" + b);
+                        final Map<FedoraId, FedoraId> parents = new HashMap<>();
+                        for (int i = 0; i < batchSize; i++) {
+                            parents.put(FedoraId.create(bulkParent.getResourceId() + "/t" + thread + "-" + i),
+                                    bulkParent);
+                        }
+                        containmentIndex.addContainedBy(null, parents);
+                        synchronized (loaded) {
+                            loaded.addAll(parents.keySet());
+                        }
+                    }
+                    return null;
+                });
+            }
+            final long start = System.nanoTime();
+            for (final Future<Void> result : executor.invokeAll(workers)) {
+                result.get();
+            }
+            final long elapsed = System.nanoTime() - start;
+            assertEquals(threads * batches * batchSize, loaded.size());
+            for (int b = 0; b < batches; b++) {
+                final FedoraId bulkParent = FedoraId.create("bulk-parent" + b);
+                for (int t = 0; t < threads; t++) {
+                    final FedoraId child = FedoraId.create(bulkParent.getResourceId() + "/t" + t + "-0");
+                    assertEquals(bulkParent.getFullId(), containmentIndex.getContainedBy(null, child));
+                }
+            }
+            LOGGER.info("{} threads loaded {} containment relationships at {} rows/sec", threads, loaded.size(),
+                    String.format("%.0f", loaded.size() * (double) SECONDS.toNanos(1) / elapsed));
+        } finally {
+            executor.shutdownNow();
+            containmentIndex.removeResources(null, loaded);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.impl;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+
+import org.fcrepo.kernel.api.Transaction;
+import org.fcrepo.kernel.api.identifiers.FedoraId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Resolves the nearest existing container of new resources below deeply nested containers, as when a client PUTs
+ * to a new pairtree style path. Reports the lookup throughput at each depth. Run with the benchmarks profile,
+ * {@code mvn test -Pbenchmarks}.
+ *
+ * @author agent
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("/containmentIndexBenchmark.xml")
+public class ContainmentIndexDeepPathBenchmark {
+
+    private static final Logger LOGGER = getLogger(ContainmentIndexDeepPathBenchmark.class);
+
+    private static final int[] DEPTHS = {10, 15, 20};
+
+    private static final int LOOKUPS = 2000;
+
+    /**
+     * Path segments below the deepest existing container which do not exist yet.
+     */
+    private static final int MISSING_LEVELS = 4;
+
+    @Inject
+    private ContainmentIndexImpl containmentIndex;
+
+    private final List<FedoraId> containers = new ArrayList<>();
+
+    private Transaction transaction;
+
+    @Before
+    public void setUp() {
+        transaction = mock(Transaction.class);
+        when(transaction.getId()).thenReturn("deep-path-tx");
+        FedoraId parent = FedoraId.getRepositoryRootId();
+        String path = "deep";
+        for (int level = 0; level < DEPTHS[DEPTHS.length - 1]; level++) {
+            final FedoraId container = FedoraId.create(path);
+            containmentIndex.addContainedBy(null, parent, container);
+            containers.add(container);
+            parent = container;
+            path = path + "/l" + level;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        containmentIndex.rollbackTransaction(transaction);
+        containmentIndex.removeResources(null, containers);
+    }
+
+    @Test
+    public void testDeepPathLookups() {
+        for (final int depth : DEPTHS) {
+            final FedoraId expected = containers.get(depth - 1);
+            final StringBuilder newPath = new StringBuilder(expected.getFullId());
+            for (int i = 0; i < MISSING_LEVELS; i++) {
+                newPath.append("/new").append(i);
+            }
+            final FedoraId newId = FedoraId.create(newPath.toString());
+
+            time("committed", depth, () -> containmentIndex.getContainerIdByPath(null, newId), expected);
+
+            // a container created at the first missing level in the transaction is only visible in it
+            final FedoraId staged = FedoraId.create(expected.getFullId() + "/new0");
+            containmentIndex.addContainedBy(transaction.getId(), expected, staged);
+            time("transaction", depth, () -> containmentIndex.getContainerIdByPath(transaction.getId(), newId),
+                    staged);
+            assertEquals(expected, containmentIndex.getContainerIdByPath(null, newId));
+            containmentIndex.rollbackTransaction(transaction);
+        }
+    }
+
+    private void time(final String view, final int depth, final Supplier<FedoraId> lookup,
+                      final FedoraId expected) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            assertEquals(expected, lookup.get());
+        }
+        final long elapsed = System.nanoTime() - start;
+        LOGGER.info("{} levels deep, {} view: {} lookups/sec", depth + MISSING_LEVELS, view,
+                String.format("%.0f", LOOKUPS * (double) SECONDS.toNanos(1) / elapsed));
+    }
+}
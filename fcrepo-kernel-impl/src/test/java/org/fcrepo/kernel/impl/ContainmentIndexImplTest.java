@@ -21,29 +21,47 @@ import org.fcrepo.kernel.api.Transaction;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
 import org.fcrepo.kernel.api.models.FedoraResource;
+import org.h2.jdbcx.JdbcDataSource;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import javax.inject.Inject;
+import javax.sql.DataSource;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.getField;
+import static org.springframework.test.util.ReflectionTestUtils.invokeMethod;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+import static java.util.stream.Collectors.toList;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration("/containmentIndexTest.xml")
@@ -72,6 +90,9 @@ public class ContainmentIndexImplTest {
     @Rule
     public MockitoRule rule = MockitoJUnit.rule();
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private Map<String, FedoraResource> id_to_resource = new HashMap<>();
     private Map<String, Transaction> id_to_transaction = new HashMap<>();
 
@@ -159,6 +180,19 @@ public class ContainmentIndexImplTest {
         assertNull(containmentIndex.getContainedBy(transaction1.getId(), child1.getFedoraId()));
     }
 
+    @Test
+    public void testCommitUndoneTransaction() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("transaction1");
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.removeContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.commitTransaction(transaction1);
+        assertFalse(((Map<?, ?>) getField(containmentIndex, "transactions")).containsKey(transaction1.getId()));
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        assertNull(containmentIndex.getContainedBy(null, child1.getFedoraId()));
+    }
+
     @Test
     public void testRemoveChildInTransaction() {
         stubObject("parent1");
@@ -490,6 +524,360 @@ public class ContainmentIndexImplTest {
         assertTrue(containmentIndex.resourceExists(null, child1.getFedoraId()));
         assertTrue(containmentIndex.resourceExists(null, fedoraID));
     }
-}
 
+    @Test
+    public void testCommittedLookupsAreCached() {
+        stubObject("parent1");
+        stubObject("child1");
+        containmentIndex.addContainedBy(null, parent1.getFedoraId(), child1.getFedoraId());
+        assertEquals(1, containmentIndex.getContains(null, parent1).count());
+        final long containsHits = containmentIndex.getContainsCacheStats().hitCount();
+        assertEquals(1, containmentIndex.getContains(null, parent1).count());
+        assertEquals(containsHits + 1, containmentIndex.getContainsCacheStats().hitCount());
+
+        final long containedByHits = containmentIndex.getContainedByCacheStats().hitCount();
+        assertEquals(parent1.getFedoraId().getFullId(),
+                containmentIndex.getContainedBy(null, child1.getFedoraId()));
+        assertTrue(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertEquals(containedByHits + 2, containmentIndex.getContainedByCacheStats().hitCount());
+    }
+
+    @Test
+    public void testCachedMissUpdatedOnCommit() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("transaction1");
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        containmentIndex.commitTransaction(transaction1);
+        assertTrue(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertEquals(1, containmentIndex.getContains(null, parent1).count());
+        containmentIndex.removeResource(transaction1.getId(), child1.getFedoraId());
+        containmentIndex.commitTransaction(transaction1);
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+    }
+
+    @Test
+    public void testMoveChildInTransaction() {
+        stubObject("parent1");
+        stubObject("parent2");
+        stubObject("child1");
+        stubObject("transaction1");
+        containmentIndex.addContainedBy(null, parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.removeContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.addContainedBy(transaction1.getId(), parent2.getFedoraId(), child1.getFedoraId());
+        assertTrue(containmentIndex.resourceExists(transaction1.getId(), child1.getFedoraId()));
+        assertEquals(parent2.getFedoraId().getFullId(),
+                containmentIndex.getContainedBy(transaction1.getId(), child1.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(transaction1, parent1).count());
+        assertEquals(parent1.getFedoraId().getFullId(), containmentIndex.getContainedBy(null, child1.getFedoraId()));
+        containmentIndex.commitTransaction(transaction1);
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        assertEquals(1, containmentIndex.getContains(null, parent2).count());
+        assertEquals(parent2.getFedoraId().getFullId(), containmentIndex.getContainedBy(null, child1.getFedoraId()));
+    }
+
+    @Test
+    public void testReAddCommittedChildrenInTransaction() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("child2");
+        stubObject("transaction1");
+        containmentIndex.addContainedBy(null, parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child2.getFedoraId());
+        assertEquals(List.of(child1.getFedoraId().getFullId(), child2.getFedoraId().getFullId()),
+                containmentIndex.getContains(transaction1, parent1).collect(toList()));
+    }
+
+    @Test
+    public void testGetContainsPagedInStableOrder() {
+        stubObject("parent1");
+        stubObject("transaction1");
+        final int fetchSize = (int) getField(containmentIndex, "fetchSize");
+        setField(containmentIndex, "fetchSize", 2);
+        try {
+            final String prefix = parent1.getFedoraId().getFullId() + "/paged-";
+            for (final String child : List.of("e", "b", "d", "a", "c")) {
+                containmentIndex.addContainedBy(null, parent1.getFedoraId(), FedoraId.create(prefix + child));
+            }
+            assertEquals(List.of(prefix + "e", prefix + "b", prefix + "d", prefix + "a", prefix + "c"),
+                    containmentIndex.getContains(null, parent1).collect(toList()));
+            assertEquals(List.of(prefix + "d", prefix + "a"),
+                    containmentIndex.getContains(null, parent1, prefix + "b").limit(2).collect(toList()));
+
+            containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(),
+                    FedoraId.create(prefix + "bb"));
+            containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(),
+                    FedoraId.create(prefix + "ab"));
+            containmentIndex.removeContainedBy(transaction1.getId(), parent1.getFedoraId(),
+                    FedoraId.create(prefix + "d"));
+            assertEquals(List.of(prefix + "e", prefix + "b", prefix + "a", prefix + "c", prefix + "bb", prefix + "ab"),
+                    containmentIndex.getContains(transaction1, parent1).collect(toList()));
+            assertEquals(List.of(prefix + "a", prefix + "c", prefix + "bb", prefix + "ab"),
+                    containmentIndex.getContains(transaction1, parent1, prefix + "b").collect(toList()));
+            assertEquals(List.of(prefix + "ab"),
+                    containmentIndex.getContains(transaction1, parent1, prefix + "bb").collect(toList()));
+        } finally {
+            setField(containmentIndex, "fetchSize", fetchSize);
+        }
+    }
+
+    @Test
+    public void testGetDescendants() {
+        stubObject("parent1");
+        stubObject("transaction1");
+        final String prefix = parent1.getFedoraId().getFullId() + "/";
+        final FedoraId a = FedoraId.create(prefix + "a");
+        final FedoraId ab = FedoraId.create(prefix + "a/b");
+        final FedoraId abc = FedoraId.create(prefix + "a/b/c");
+        final FedoraId d = FedoraId.create(prefix + "d");
+        containmentIndex.addContainedBy(null, parent1.getFedoraId(), a);
+        containmentIndex.addContainedBy(null, a, ab);
+        containmentIndex.addContainedBy(null, ab, abc);
+        containmentIndex.addContainedBy(null, parent1.getFedoraId(), d);
+        try {
+            final List<String> descendants = containmentIndex.getDescendants(null, parent1).collect(toList());
+            assertEquals(4, descendants.size());
+            assertTrue(descendants.indexOf(a.getFullId()) < descendants.indexOf(ab.getFullId()));
+            assertTrue(descendants.indexOf(ab.getFullId()) < descendants.indexOf(abc.getFullId()));
+            assertTrue(descendants.contains(d.getFullId()));
+
+            // move c under d and remove b in the transaction
+            final FedoraId e = FedoraId.create(prefix + "d/e");
+            containmentIndex.removeContainedBy(transaction1.getId(), ab, abc);
+            containmentIndex.addContainedBy(transaction1.getId(), d, abc);
+            containmentIndex.addContainedBy(transaction1.getId(), d, e);
+            containmentIndex.removeResource(transaction1.getId(), ab);
+            assertEquals(List.of(a.getFullId(), d.getFullId(), abc.getFullId(), e.getFullId()),
+                    containmentIndex.getDescendants(transaction1, parent1).collect(toList()));
+            assertEquals(4, containmentIndex.getDescendants(null, parent1).count());
+        } finally {
+            containmentIndex.rollbackTransaction(transaction1);
+            containmentIndex.removeResources(null, List.of(abc, ab, a, d));
+        }
+    }
+
+    @Test
+    public void testRemoveResources() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("child2");
+        stubObject("transaction1");
+        containmentIndex.addContainedBy(null, parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child2.getFedoraId());
+        containmentIndex.removeResources(transaction1.getId(), List.of(child1.getFedoraId(), child2.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(transaction1, parent1).count());
+        assertTrue(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        containmentIndex.commitTransaction(transaction1);
+        assertFalse(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertFalse(containmentIndex.resourceExists(null, child2.getFedoraId()));
+
+        containmentIndex.addContainedBy(null, parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.addContainedBy(null, parent1.getFedoraId(), child2.getFedoraId());
+        containmentIndex.removeResources(null, List.of(child1.getFedoraId(), child2.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        assertNull(containmentIndex.getContainedBy(null, child2.getFedoraId()));
+    }
+
+    @Test
+    public void testGetContainedByMany() {
+        stubObject("parent1");
+        stubObject("parent2");
+        stubObject("child1");
+        stubObject("child2");
+        stubObject("transaction1");
+        containmentIndex.addContainedBy(null, parent1.getFedoraId(), child1.getFedoraId());
+        containmentIndex.addContainedBy(transaction1.getId(), parent2.getFedoraId(), child2.getFedoraId());
+        final List<FedoraId> children = List.of(child1.getFedoraId(), child2.getFedoraId());
+
+        final Map<String, String> committed = containmentIndex.getContainedBy(null, children);
+        assertEquals(Map.of(child1.getFedoraId().getFullId(), parent1.getFedoraId().getFullId()), committed);
 
+        containmentIndex.removeContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        final Map<String, String> staged = containmentIndex.getContainedBy(transaction1.getId(), children);
+        assertEquals(Map.of(child2.getFedoraId().getFullId(), parent2.getFedoraId().getFullId()), staged);
+        containmentIndex.rollbackTransaction(transaction1);
+    }
+
+    @Test
+    public void testAddContainedByMany() {
+        stubObject("parent1");
+        stubObject("parent2");
+        stubObject("child1");
+        stubObject("child2");
+        stubObject("transaction1");
+        containmentIndex.addContainedBy(transaction1.getId(), Map.of(child1.getFedoraId(), parent1.getFedoraId()));
+        assertEquals(0, containmentIndex.getContains(null, parent1).count());
+        assertEquals(1, containmentIndex.getContains(transaction1, parent1).count());
+        containmentIndex.rollbackTransaction(transaction1);
+
+        containmentIndex.addContainedBy(null, Map.of(child1.getFedoraId(), parent1.getFedoraId(),
+                child2.getFedoraId(), parent1.getFedoraId()));
+        assertEquals(2, containmentIndex.getContains(null, parent1).count());
+        assertTrue(containmentIndex.resourceExists(null, child2.getFedoraId()));
+
+        // loading again replaces the existing relationships
+        containmentIndex.addContainedBy(null, Map.of(child1.getFedoraId(), parent1.getFedoraId(),
+                child2.getFedoraId(), parent2.getFedoraId()));
+        assertEquals(1, containmentIndex.getContains(null, parent1).count());
+        assertEquals(child2.getFedoraId().getFullId(), containmentIndex.getContains(null, parent2).findFirst().get());
+        assertEquals(parent2.getFedoraId().getFullId(), containmentIndex.getContainedBy(null, child2.getFedoraId()));
+    }
+
+    @Test
+    public void testExistenceFilterSkipsMisses() {
+        stubObject("parent1");
+        stubObject("child1");
+        stubObject("transaction1");
+        final ContainmentExistenceFilter filter = containmentIndex.getExistenceFilter();
+        final FedoraId missing = FedoraId.create(child1.getFedoraId().getFullId() + "-never-created");
+        final long skipped = filter.getSkippedCount();
+        final long misses = containmentIndex.getContainedByCacheStats().missCount();
+        assertFalse(containmentIndex.resourceExists(null, missing));
+        assertEquals(skipped + 1, filter.getSkippedCount());
+        assertEquals(misses, containmentIndex.getContainedByCacheStats().missCount());
+
+        containmentIndex.addContainedBy(transaction1.getId(), parent1.getFedoraId(), child1.getFedoraId());
+        assertTrue(containmentIndex.resourceExists(transaction1.getId(), child1.getFedoraId()));
+        containmentIndex.commitTransaction(transaction1);
+        assertTrue(containmentIndex.resourceExists(null, child1.getFedoraId()));
+        assertTrue(filter.getSizeInBytes() > 0);
+    }
+
+    @Test
+    public void testExistenceFilterGrowsWhenFull() throws Exception {
+        stubObject("parent1");
+        // start from a filter which is as small as the committed resources allow
+        invokeMethod(containmentIndex, "buildExistenceFilter", 1L);
+        final ContainmentExistenceFilter filter = containmentIndex.getExistenceFilter();
+        final Map<FedoraId, FedoraId> children = new HashMap<>();
+        for (long i = 0; i < 2 * filter.getExpectedInsertions() + 10; i++) {
+            children.put(FedoraId.create(parent1.getFedoraId().getFullId() + "/grow" + i), parent1.getFedoraId());
+        }
+        containmentIndex.addContainedBy(null, children);
+        // the full filter is still used while the larger one is built in the background
+        children.keySet().forEach(child -> assertTrue(containmentIndex.resourceExists(null, child)));
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (containmentIndex.getExistenceFilter() == filter && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        final ContainmentExistenceFilter grown = containmentIndex.getExistenceFilter();
+        assertNotSame(filter, grown);
+        assertTrue(grown.getExpectedInsertions() > filter.getExpectedInsertions());
+        children.keySet().forEach(child -> assertTrue(containmentIndex.resourceExists(null, child)));
+    }
+
+    @Test
+    public void testGetContainerIdByDeepPath() {
+        stubObject("parent1");
+        stubObject("transaction1");
+        final List<FedoraId> containers = new ArrayList<>();
+        FedoraId parent = parent1.getFedoraId();
+        for (int level = 0; level < 20; level++) {
+            final FedoraId container = FedoraId.create(parent.getFullId() + "/l" + level);
+            containmentIndex.addContainedBy(null, parent, container);
+            containers.add(container);
+            parent = container;
+        }
+        try {
+            final FedoraId newId = FedoraId.create(parent.getFullId() + "/new0/new1/new2/new3");
+            assertEquals(parent, containmentIndex.getContainerIdByPath(null, newId));
+
+            // a container created at the first missing level in the transaction is only visible in it
+            final FedoraId staged = FedoraId.create(parent.getFullId() + "/new0");
+            containmentIndex.addContainedBy(transaction1.getId(), parent, staged);
+            assertEquals(staged, containmentIndex.getContainerIdByPath(transaction1.getId(), newId));
+            assertEquals(parent, containmentIndex.getContainerIdByPath(null, newId));
+        } finally {
+            containmentIndex.removeResources(null, containers);
+        }
+    }
+
+    @Test
+    public void testConcurrentBulkLoads() throws Exception {
+        stubObject("parent1");
+        final int threads = 4;
+        final int batches = 5;
+        final int batchSize = 20;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<FedoraId> loaded = new ArrayList<>();
+        try {
+            final List<Callable<Void>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                workers.add(() -> {
+                    for (int b = 0; b < batches; b++) {
+                        // every thread adds children to the same, new, parents
+                        final FedoraId bulkParent = FedoraId.create(parent1.getFedoraId().getFullId() + "/bulk" + b);
+                        final Map<FedoraId, FedoraId> parents = new HashMap<>();
+                        for (int i = 0; i < batchSize; i++) {
+                            parents.put(FedoraId.create(bulkParent.getFullId() + "/t" + thread + "-" + i),
+                                    bulkParent);
+                        }
+                        containmentIndex.addContainedBy(null, parents);
+                        synchronized (loaded) {
+                            loaded.addAll(parents.keySet());
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (final Future<Void> result : executor.invokeAll(workers)) {
+                result.get();
+            }
+            assertEquals(threads * batches * batchSize, loaded.size());
+            for (final FedoraId child : loaded) {
+                final String childId = child.getFullId();
+                assertEquals(childId.substring(0, childId.lastIndexOf('/')),
+                        containmentIndex.getContainedBy(null, child));
+            }
+        } finally {
+            executor.shutdownNow();
+            containmentIndex.removeResources(null, loaded);
+        }
+    }
+
+    @Test
+    public void testMigratesResourcesTable() throws Exception {
+        stubObject("parent1");
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:" + tempFolder.newFolder().getAbsolutePath() + "/index;DB_CLOSE_DELAY=-1");
+        final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        // the table as created by earlier versions
+        jdbcTemplate.update("CREATE TABLE resources (fedoraId varchar(65535) NOT NULL PRIMARY KEY, " +
+                "parent varchar(65535) NOT NULL)");
+        final String container = FedoraId.create("migrated").getFullId();
+        jdbcTemplate.update("INSERT INTO resources (fedoraId, parent) VALUES (?, ?)", container,
+                FedoraId.getRepositoryRootId().getFullId());
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO resources (fedoraId, parent) VALUES (?, ?)", container + "/child" + i,
+                    container);
+        }
+
+        // the index migrates the resources table as it starts
+        try (final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(DataSource.class, () -> dataSource);
+            context.registerBean(DataSourceTransactionManager.class,
+                    () -> new DataSourceTransactionManager(dataSource));
+            context.registerBean(ContainmentIndexImpl.class);
+            context.refresh();
+            final ContainmentIndexImpl migrated = context.getBean(ContainmentIndexImpl.class);
+
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_NAME = 'RESOURCES'", Long.class).longValue());
+            assertEquals(FedoraId.getRepositoryRootId().getFullId(),
+                    migrated.getContainedBy(null, FedoraId.create(container)));
+            assertEquals(container, migrated.getContainedBy(null, FedoraId.create(container + "/child2")));
+            final FedoraResource resource = mock(FedoraResource.class);
+            when(resource.getFedoraId()).thenReturn(FedoraId.create(container));
+            assertEquals(List.of(container + "/child0", container + "/child1", container + "/child2"),
+                    migrated.getContains(null, resource).sorted().collect(toList()));
+            assertNull(migrated.getContainedBy(null, FedoraId.create(container + "/missing")));
+        }
+    }
+}
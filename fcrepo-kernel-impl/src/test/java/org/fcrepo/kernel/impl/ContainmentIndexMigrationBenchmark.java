@@ -0,0 +1,141 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.kernel.impl;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.fcrepo.kernel.api.identifiers.FedoraId;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Migrates a containment index from the resources table, holding full IDs, to the keyed tables. Reports the space
+ * used and the parent lookup throughput of both. Run with the benchmarks profile, {@code mvn test -Pbenchmarks}.
+ *
+ * @author agent
+ */
+public class ContainmentIndexMigrationBenchmark {
+
+    private static final Logger LOGGER = getLogger(ContainmentIndexMigrationBenchmark.class);
+
+    private static final int CONTAINERS = 50;
+
+    private static final int CHILDREN = 200;
+
+    private static final int LOOKUPS = 5000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private JdbcDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<String> children = new ArrayList<>();
+
+    private AnnotationConfigApplicationContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:" + tempFolder.newFolder().getAbsolutePath() + "/index;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // the table as created by earlier versions
+        jdbcTemplate.update("CREATE TABLE resources (fedoraId varchar(65535) NOT NULL PRIMARY KEY, " +
+                "parent varchar(65535) NOT NULL)");
+        jdbcTemplate.update("CREATE INDEX resources_idx ON resources (parent)");
+        final List<Object[]> rows = new ArrayList<>();
+        for (int c = 0; c < CONTAINERS; c++) {
+            final String container = FedoraId.create("some/long/path/to/the/containers/container" + c).getFullId();
+            rows.add(new Object[]{container, FedoraId.getRepositoryRootId().getFullId()});
+            for (int i = 0; i < CHILDREN; i++) {
+                final String child = container + "/child-with-a-reasonably-long-name-" + i;
+                rows.add(new Object[]{child, container});
+                children.add(child);
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO resources (fedoraId, parent) VALUES (?, ?)", rows);
+    }
+
+    @After
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testMigration() throws SQLException {
+        final long before = diskSpaceUsed("RESOURCES");
+        lookups("resources table", "SELECT parent FROM resources WHERE fedoraId = ?");
+
+        // the index migrates the resources table as it starts
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(DataSource.class, () -> dataSource);
+        context.registerBean(DataSourceTransactionManager.class, () -> new DataSourceTransactionManager(dataSource));
+        context.registerBean(ContainmentIndexImpl.class);
+        context.refresh();
+
+        final long after = diskSpaceUsed("CONTAINMENT") + diskSpaceUsed("CONTAINMENT_IDS");
+        lookups("keyed tables", "SELECT p.fedoraId FROM containment e JOIN containment_ids c ON c.id = e.child " +
+                "JOIN containment_ids p ON p.id = e.parent WHERE c.fedoraId = ?");
+        LOGGER.info("{} relationships used {} bytes in the resources table and {} bytes in the keyed tables",
+                children.size() + CONTAINERS, before, after);
+    }
+
+    private long diskSpaceUsed(final String table) {
+        // write everything out so the pages in memory are counted
+        jdbcTemplate.execute("CHECKPOINT SYNC");
+        return jdbcTemplate.queryForObject("CALL DISK_SPACE_USED(?)", Long.class, table);
+    }
+
+    private void lookups(final String schema, final String sql) throws SQLException {
+        // one connection throughout, so that only the query is timed
+        final SingleConnectionDataSource connection = new SingleConnectionDataSource(dataSource.getConnection(),
+                false);
+        final JdbcTemplate lookupTemplate = new JdbcTemplate(connection);
+        final long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            final String child = children.get((i * 7919) % children.size());
+            assertEquals(child.substring(0, child.lastIndexOf('/')),
+                    lookupTemplate.queryForObject(sql, String.class, child));
+        }
+        final long elapsed = System.nanoTime() - start;
+        connection.destroy();
+        LOGGER.info("{}: {} parent lookups/sec", schema,
+                String.format("%.0f", LOOKUPS * (double) SECONDS.toNanos(1) / elapsed));
+    }
+}
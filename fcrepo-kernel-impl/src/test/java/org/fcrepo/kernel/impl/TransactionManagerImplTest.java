@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
@@ -135,6 +136,7 @@ public class TransactionManagerImplTest {
                 testTxManager.get(continuingTx.getId()));
 
         testTxManager.cleanupClosedTransactions();
+        verify(pssManager, never()).removeSession(any());
 
         // Verify that the closed transactions are stick around since they haven't expired yet
         try {
@@ -171,6 +173,10 @@ public class TransactionManagerImplTest {
 
         assertNotNull("Continuing transaction must be present",
                 testTxManager.get(continuingTx.getId()));
+
+        verify(pssManager).removeSession(commitTx.getId());
+        verify(pssManager).removeSession(rollbackTx.getId());
+        verify(pssManager, never()).removeSession(continuingTx.getId());
     }
 
     // Check that the scheduled cleanup process rolls back expired transactions, but leaves
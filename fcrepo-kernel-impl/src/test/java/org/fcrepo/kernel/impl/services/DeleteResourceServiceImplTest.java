@@ -25,12 +25,14 @@ import org.fcrepo.kernel.api.models.Binary;
 import org.fcrepo.kernel.api.models.Container;
 import org.fcrepo.kernel.api.models.NonRdfSourceDescription;
 import org.fcrepo.kernel.api.models.ResourceFactory;
+import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.kernel.api.models.WebacAcl;
 import org.fcrepo.kernel.api.observer.EventAccumulator;
 import org.fcrepo.kernel.impl.operations.DeleteResourceOperation;
 import org.fcrepo.kernel.impl.operations.DeleteResourceOperationFactoryImpl;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.PersistentStorageSessionManager;
+import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -46,9 +48,14 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import javax.inject.Inject;
 import java.util.List;
 
+import static org.fcrepo.kernel.api.FedoraTypes.FCR_ACL;
+import static org.fcrepo.kernel.api.FedoraTypes.FCR_METADATA;
 import static org.fcrepo.kernel.api.FedoraTypes.FEDORA_ID_PREFIX;
+import static org.fcrepo.kernel.api.RdfLexicon.BASIC_CONTAINER;
+import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -98,6 +105,12 @@ public class DeleteResourceServiceImplTest {
     @Mock
     private NonRdfSourceDescription binaryDesc;
 
+    @Mock
+    private ResourceHeaders childHeaders;
+
+    @Mock
+    private ResourceHeaders aclHeaders;
+
     @Captor
     private ArgumentCaptor<DeleteResourceOperation> operationCaptor;
 
@@ -147,10 +160,11 @@ public class DeleteResourceServiceImplTest {
         when(container.isAcl()).thenReturn(false);
         when(container.getAcl()).thenReturn(null);
         when(childContainer.getFedoraId()).thenReturn(CHILD_RESOURCE_FEDORA_ID);
-        when(childContainer.isAcl()).thenReturn(false);
-        when(childContainer.getAcl()).thenReturn(null);
 
-        when(resourceFactory.getResource(tx, CHILD_RESOURCE_FEDORA_ID)).thenReturn(childContainer);
+        when(childHeaders.getInteractionModel()).thenReturn(BASIC_CONTAINER.getURI());
+        when(pSession.getHeaders(CHILD_RESOURCE_ID, null)).thenReturn(childHeaders);
+        when(pSession.getHeaders(CHILD_RESOURCE_ID + "/" + FCR_ACL, null))
+                .thenThrow(new PersistentItemNotFoundException("not found"));
         containmentIndex.addContainedBy(tx.getId(), container.getFedoraId(), childContainer.getFedoraId());
 
         when(container.isAcl()).thenReturn(false);
@@ -169,6 +183,32 @@ public class DeleteResourceServiceImplTest {
         assertEquals(0, containmentIndex.getContains(tx, container).count());
     }
 
+    @Test
+    public void testRecursiveDeleteWithBinaryChild() throws Exception {
+        when(container.isAcl()).thenReturn(false);
+        when(container.getAcl()).thenReturn(null);
+
+        when(childHeaders.getInteractionModel()).thenReturn(NON_RDF_SOURCE.getURI());
+        when(pSession.getHeaders(CHILD_RESOURCE_ID, null)).thenReturn(childHeaders);
+        when(aclHeaders.isDeleted()).thenReturn(false);
+        when(pSession.getHeaders(CHILD_RESOURCE_ID + "/" + FCR_ACL, null)).thenReturn(aclHeaders);
+        containmentIndex.addContainedBy(tx.getId(), container.getFedoraId(), CHILD_RESOURCE_FEDORA_ID);
+
+        service.perform(tx, container, USER);
+
+        verify(pSession, times(4)).persist(operationCaptor.capture());
+        final List<DeleteResourceOperation> operations = operationCaptor.getAllValues();
+        assertEquals(4, operations.size());
+
+        assertEquals(CHILD_RESOURCE_ID + "/" + FCR_METADATA, operations.get(0).getResourceId());
+        assertEquals(CHILD_RESOURCE_ID + "/" + FCR_ACL, operations.get(1).getResourceId());
+        assertEquals(CHILD_RESOURCE_ID, operations.get(2).getResourceId());
+        assertEquals(RESOURCE_ID, operations.get(3).getResourceId());
+
+        verify(resourceFactory, never()).getResource(tx, CHILD_RESOURCE_FEDORA_ID);
+        assertEquals(0, containmentIndex.getContains(tx, container).count());
+    }
+
     private void verifyResourceOperation(final FedoraId fedoraID,
                                          final ArgumentCaptor<DeleteResourceOperation> captor,
                                          final PersistentStorageSession pSession) throws Exception {
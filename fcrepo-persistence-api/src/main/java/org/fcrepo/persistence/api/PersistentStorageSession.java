@@ -86,6 +86,21 @@ public interface PersistentStorageSession {
     public InputStream getBinaryContent(final String identifier, final Instant version)
             throws PersistentStorageException;
 
+    /**
+     * Get a byte range of the persisted binary content for the provided resource. The bytes before the range are not
+     * read where the storage allows it.
+     *
+     * @param identifier identifier for the resource.
+     * @param version instant identifying the version of the resource to read from. If null, then the head version is
+     *        used.
+     * @param start offset of the first byte of the range.
+     * @param end offset of the last byte of the range, inclusive. -1 reads to the end of the content.
+     * @return the binary content of the range.
+     * @throws PersistentStorageException  Either a PersistentItemNotFoundException or PersistentSessionClosedException
+     */
+    public InputStream getBinaryContent(final String identifier, final Instant version, final long start,
+                                        final long end) throws PersistentStorageException;
+
     /**
      * Returns a list of immutable versions associated with the specified fedora identifier
      *
@@ -42,4 +42,12 @@ public interface PersistentStorageSessionManager {
      */
     PersistentStorageSession getReadOnlySession();
 
+    /**
+     * Release a PersistentStorageSession that has been committed or rolled back, along with anything it still
+     * holds in storage. The session must not be used afterwards. Unknown session IDs are ignored.
+     *
+     * @param sessionId the externally generated session ID.
+     */
+    void removeSession(final String sessionId);
+
 }
@@ -0,0 +1,179 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.common;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.fcrepo.kernel.api.models.ResourceHeaders;
+
+/**
+ * Resource header codec producing a compact, versioned binary encoding. The encoding starts with {@link #MAGIC},
+ * which can never start a JSON document, followed by a format version and then each header in a fixed order.
+ * Strings, sizes and dates are only written when present.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+public class BinaryResourceHeaderCodec implements ResourceHeaderCodec {
+
+    /**
+     * First byte of binary encoded headers
+     */
+    public static final int MAGIC = 0xFC;
+
+    private static final int VERSION = 1;
+
+    private static final int ARCHIVAL_GROUP = 1;
+
+    private static final int OBJECT_ROOT = 1 << 1;
+
+    private static final int DELETED = 1 << 2;
+
+    @Override
+    public void encode(final ResourceHeaders headers, final OutputStream outputStream) throws IOException {
+        final var out = new DataOutputStream(outputStream);
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        writeString(out, headers.getId());
+        writeString(out, headers.getParent());
+        writeString(out, headers.getStateToken());
+        writeString(out, headers.getInteractionModel());
+        writeString(out, headers.getMimeType());
+        writeString(out, headers.getFilename());
+        writeLong(out, headers.getContentSize());
+        writeDigests(out, headers.getDigests());
+        writeString(out, headers.getExternalUrl());
+        writeString(out, headers.getExternalHandling());
+        writeInstant(out, headers.getCreatedDate());
+        writeString(out, headers.getCreatedBy());
+        writeInstant(out, headers.getLastModifiedDate());
+        writeString(out, headers.getLastModifiedBy());
+        out.writeByte((headers.isArchivalGroup() ? ARCHIVAL_GROUP : 0)
+                | (headers.isObjectRoot() ? OBJECT_ROOT : 0)
+                | (headers.isDeleted() ? DELETED : 0));
+        out.flush();
+    }
+
+    @Override
+    public ResourceHeaders decode(final InputStream inputStream) throws IOException {
+        final var in = new DataInputStream(inputStream);
+        if (in.readUnsignedByte() != MAGIC) {
+            throw new IOException("Not binary encoded resource headers");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported resource header encoding version " + version);
+        }
+        final var headers = new ResourceHeadersImpl();
+        headers.setId(readString(in));
+        headers.setParent(readString(in));
+        headers.setStateToken(readString(in));
+        headers.setInteractionModel(readString(in));
+        headers.setMimeType(readString(in));
+        headers.setFilename(readString(in));
+        headers.setContentSize(readLong(in));
+        headers.setDigests(readDigests(in));
+        headers.setExternalUrl(readString(in));
+        headers.setExternalHandling(readString(in));
+        headers.setCreatedDate(readInstant(in));
+        headers.setCreatedBy(readString(in));
+        headers.setLastModifiedDate(readInstant(in));
+        headers.setLastModifiedBy(readString(in));
+        final int flags = in.readUnsignedByte();
+        headers.setArchivalGroup((flags & ARCHIVAL_GROUP) != 0);
+        headers.setObjectRoot((flags & OBJECT_ROOT) != 0);
+        headers.setDeleted((flags & DELETED) != 0);
+        return headers;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeLong(final DataOutputStream out, final Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeInstant(final DataOutputStream out, final Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Instant readInstant(final DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+
+    private static void writeDigests(final DataOutputStream out, final Collection<URI> digests) throws IOException {
+        if (digests == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(digests.size());
+        for (final URI digest : digests) {
+            writeString(out, digest.toString());
+        }
+    }
+
+    private static Collection<URI> readDigests(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        final var digests = new ArrayList<URI>(count);
+        for (int i = 0; i < count; i++) {
+            digests.add(URI.create(readString(in)));
+        }
+        return digests;
+    }
+}
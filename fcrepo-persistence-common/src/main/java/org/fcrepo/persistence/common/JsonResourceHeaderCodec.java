@@ -0,0 +1,62 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.common;
+
+import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.fcrepo.kernel.api.models.ResourceHeaders;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Resource header codec producing JSON, with dates written as ISO-8601 strings.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+public class JsonResourceHeaderCodec implements ResourceHeaderCodec {
+
+    private static final ObjectMapper HEADER_MAPPER = new ObjectMapper()
+            .configure(WRITE_DATES_AS_TIMESTAMPS, false)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .registerModule(new JavaTimeModule())
+            .setSerializationInclusion(Include.NON_NULL);
+
+    private static final ObjectReader HEADER_READER = HEADER_MAPPER.readerFor(ResourceHeadersImpl.class);
+
+    private static final ObjectWriter HEADER_WRITER = HEADER_MAPPER.writerFor(ResourceHeaders.class);
+
+    @Override
+    public void encode(final ResourceHeaders headers, final OutputStream outputStream) throws IOException {
+        HEADER_WRITER.writeValue(outputStream, headers);
+    }
+
+    @Override
+    public ResourceHeaders decode(final InputStream inputStream) throws IOException {
+        return HEADER_READER.readValue(inputStream);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.common;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collection;
+
+import org.fcrepo.persistence.api.WriteOutcome;
+
+/**
+ * Outcome information from writing content that was kept in memory.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+public class MemoryWriteOutcome implements WriteOutcome {
+
+    private final long contentSize;
+
+    private final Instant timeWritten;
+
+    private Collection<URI> digests;
+
+    /**
+     * Construct outcome
+     *
+     * @param contentSize number of bytes written
+     */
+    public MemoryWriteOutcome(final long contentSize) {
+        this.contentSize = contentSize;
+        this.timeWritten = Instant.now();
+    }
+
+    @Override
+    public Long getContentSize() {
+        return contentSize;
+    }
+
+    @Override
+    public Instant getTimeWritten() {
+        return timeWritten;
+    }
+
+    @Override
+    public Collection<URI> getDigests() {
+        return digests;
+    }
+}
@@ -20,6 +20,7 @@ package org.fcrepo.persistence.common;
 import static java.lang.String.format;
 import static org.apache.commons.codec.binary.Hex.encodeHexString;
 import static org.apache.commons.lang3.StringUtils.substringAfterLast;
+import static org.fcrepo.kernel.api.utils.ContentDigest.asURI;
 import static org.fcrepo.kernel.api.utils.ContentDigest.getAlgorithm;
 
 import java.io.InputStream;
@@ -27,8 +28,12 @@ import java.net.URI;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.fcrepo.kernel.api.exception.InvalidChecksumException;
@@ -48,6 +53,10 @@ public class MultiDigestInputStreamWrapper {
 
     private Map<String, DigestInputStream> algToDigestStream;
 
+    private List<String> algorithms;
+
+    private Map<String, String> algToComputed;
+
     private boolean streamRetrieved;
 
     /**
@@ -57,14 +66,37 @@ public class MultiDigestInputStreamWrapper {
      * @param digests collection of digests for the input stream
      */
     public MultiDigestInputStreamWrapper(final InputStream sourceStream, final Collection<URI> digests) {
+        this(sourceStream, digests, Collections.emptyList());
+    }
+
+    /**
+     * Construct a MultiDigestInputStreamWrapper which also computes digests that are not checked
+     *
+     * @param sourceStream the original source input stream
+     * @param digests collection of digests for the input stream, may be null
+     * @param wantDigests MessageDigest algorithms to compute in addition to those of the provided digests
+     */
+    public MultiDigestInputStreamWrapper(final InputStream sourceStream, final Collection<URI> digests,
+                                         final Collection<String> wantDigests) {
         this.sourceStream = sourceStream;
         algToDigest = new HashMap<>();
         algToDigestStream = new HashMap<>();
+        algorithms = new ArrayList<>();
 
-        for (final URI digestUri : digests) {
-            final String algorithm = getAlgorithm(digestUri);
-            final String hash = substringAfterLast(digestUri.toString(), ":");
-            algToDigest.put(algorithm, hash);
+        if (digests != null) {
+            for (final URI digestUri : digests) {
+                final String algorithm = getAlgorithm(digestUri);
+                final String hash = substringAfterLast(digestUri.toString(), ":");
+                algToDigest.put(algorithm, hash);
+                if (!algorithms.contains(algorithm)) {
+                    algorithms.add(algorithm);
+                }
+            }
+        }
+        for (final String algorithm : wantDigests) {
+            if (!algorithms.contains(algorithm)) {
+                algorithms.add(algorithm);
+            }
         }
     }
 
@@ -76,7 +108,7 @@ public class MultiDigestInputStreamWrapper {
     public InputStream getInputStream() {
         streamRetrieved = true;
         InputStream digestStream = sourceStream;
-        for (final String algorithm : algToDigest.keySet()) {
+        for (final String algorithm : algorithms) {
             try {
                 // Progressively wrap the original stream in layers of digest streams
                 digestStream = new DigestInputStream(
@@ -100,16 +132,45 @@ public class MultiDigestInputStreamWrapper {
         if (!streamRetrieved) {
             throw new RepositoryRuntimeException("Cannot check fixity before stream has been read");
         }
-        for (final var entry: algToDigestStream.entrySet()) {
+        for (final var entry: computeDigests().entrySet()) {
             final String algorithm = entry.getKey();
             final String originalDigest = algToDigest.get(algorithm);
-            final String computed = encodeHexString(entry.getValue().getMessageDigest().digest());
+            final String computed = entry.getValue();
 
-            if (!originalDigest.equalsIgnoreCase(computed)) {
+            if (originalDigest != null && !originalDigest.equalsIgnoreCase(computed)) {
                 throw new InvalidChecksumException(format(
                         "Checksum mismatch, computed %s digest %s did not match expected value %s",
                         algorithm, computed, originalDigest));
             }
         }
     }
+
+    /**
+     * After consuming the inputstream, get all of the computed digests
+     *
+     * @return digests of the content, in the order the algorithms were requested
+     */
+    public Collection<URI> getDigests() {
+        if (!streamRetrieved) {
+            throw new RepositoryRuntimeException("Cannot get digests before stream has been read");
+        }
+        final var digests = new ArrayList<URI>();
+        computeDigests().forEach((algorithm, computed) -> digests.add(asURI(algorithm, computed)));
+        return digests;
+    }
+
+    /**
+     * Finish the digests of the consumed stream. A MessageDigest is reset once it is finished, so the values are
+     * only computed once.
+     */
+    private Map<String, String> computeDigests() {
+        if (algToComputed == null) {
+            algToComputed = new LinkedHashMap<>();
+            for (final String algorithm : algorithms) {
+                algToComputed.put(algorithm,
+                        encodeHexString(algToDigestStream.get(algorithm).getMessageDigest().digest()));
+            }
+        }
+        return algToComputed;
+    }
 }
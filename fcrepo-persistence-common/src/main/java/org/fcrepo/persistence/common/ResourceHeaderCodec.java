@@ -0,0 +1,51 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.fcrepo.kernel.api.models.ResourceHeaders;
+
+/**
+ * Encodes resource headers to, and decodes them from, their stored form.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+public interface ResourceHeaderCodec {
+
+    /**
+     * Write the encoded headers to the provided stream.
+     *
+     * @param headers resource headers to encode
+     * @param outputStream stream to write the encoded headers to
+     * @throws IOException if unable to write the headers
+     */
+    void encode(ResourceHeaders headers, OutputStream outputStream) throws IOException;
+
+    /**
+     * Read resource headers in this codec's encoding from the provided stream.
+     *
+     * @param inputStream stream containing the encoded headers
+     * @return the decoded headers
+     * @throws IOException if the stream cannot be read or does not contain headers in this encoding
+     */
+    ResourceHeaders decode(InputStream inputStream) throws IOException;
+}
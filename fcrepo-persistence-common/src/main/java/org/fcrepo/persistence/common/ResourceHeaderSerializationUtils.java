@@ -17,9 +17,11 @@
  */
 package org.fcrepo.persistence.common;
 
-import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS;
+import static java.lang.System.getProperty;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -27,13 +29,6 @@ import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 
-import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectReader;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-
 /**
  * Utility for working with serializations of resource headers
  *
@@ -43,35 +38,56 @@ public class ResourceHeaderSerializationUtils {
 
     public static final String RESOURCE_HEADER_EXTENSION = ".json";
 
-    private static final ObjectMapper HEADER_MAPPER = new ObjectMapper()
-            .configure(WRITE_DATES_AS_TIMESTAMPS, false)
-            .registerModule(new JavaTimeModule())
-            .setSerializationInclusion(Include.NON_NULL);
+    /**
+     * The extension of headers written in the binary encoding
+     */
+    public static final String BINARY_RESOURCE_HEADER_EXTENSION = ".hdr";
+
+    /**
+     * System property selecting the encoding of newly written headers, either "json" (the default) or "binary".
+     * Headers are read in whichever encoding they were written in, and each encoding is stored under its own extension.
+     */
+    public static final String RESOURCE_HEADER_FORMAT_KEY = "fcrepo.persistence.headers.format";
+
+    private static final ResourceHeaderCodec JSON_CODEC = new JsonResourceHeaderCodec();
 
-    private static final ObjectReader HEADER_READER = HEADER_MAPPER.readerFor(ResourceHeadersImpl.class);
+    private static final ResourceHeaderCodec BINARY_CODEC = new BinaryResourceHeaderCodec();
 
-    private static final ObjectWriter HEADER_WRITER = HEADER_MAPPER.writerFor(ResourceHeaders.class);
+    private static final ResourceHeaderCodec WRITE_CODEC =
+            "binary".equalsIgnoreCase(getProperty(RESOURCE_HEADER_FORMAT_KEY)) ? BINARY_CODEC : JSON_CODEC;
 
     private ResourceHeaderSerializationUtils() {
     }
 
     /**
-     * Deserialize the provided inputstream containing JSON as a ResourceHeaders object.
+     * @return the extension of headers written in the configured encoding
+     */
+    public static String getResourceHeaderExtension() {
+        return WRITE_CODEC == BINARY_CODEC ? BINARY_RESOURCE_HEADER_EXTENSION : RESOURCE_HEADER_EXTENSION;
+    }
+
+    /**
+     * Deserialize the provided inputstream containing encoded headers as a ResourceHeaders object. Binary headers are
+     * recognized by their leading magic byte, which cannot start a JSON document; anything else is decoded as JSON.
      *
-     * @param bodyStream inputstream containing json
+     * @param bodyStream inputstream containing the headers
      * @return Deserialized resource headers
      * @throws PersistentStorageException thrown if unable to deserialize the inputstream
      */
     public static ResourceHeaders deserializeHeaders(final InputStream bodyStream) throws PersistentStorageException {
         try {
-            return HEADER_READER.readValue(bodyStream);
+            final InputStream is = bodyStream.markSupported() ? bodyStream : new BufferedInputStream(bodyStream);
+            is.mark(1);
+            final int first = is.read();
+            is.reset();
+            return (first == BinaryResourceHeaderCodec.MAGIC ? BINARY_CODEC : JSON_CODEC).decode(is);
         } catch (final IOException e) {
             throw new PersistentStorageException("Unable to read resource headers", e);
         }
     }
 
     /**
-     * Serializes the provided headers to JSON contained by an InputStream
+     * Serializes the provided headers, in the configured encoding, to an InputStream
      *
      * @param headers resource headers to serialize
      * @return
@@ -82,9 +98,10 @@ public class ResourceHeaderSerializationUtils {
         }
 
         try {
-            final byte[] bytes = HEADER_WRITER.writeValueAsBytes(headers);
-            return new ByteArrayInputStream(bytes);
-        } catch (final JsonProcessingException e) {
+            final var os = new ByteArrayOutputStream(512);
+            WRITE_CODEC.encode(headers, os);
+            return new ByteArrayInputStream(os.toByteArray());
+        } catch (final IOException e) {
             throw new RepositoryRuntimeException("Failed to serialize headers", e);
         }
     }
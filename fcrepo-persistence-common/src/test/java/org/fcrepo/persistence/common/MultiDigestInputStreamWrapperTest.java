@@ -20,6 +20,7 @@ package org.fcrepo.persistence.common;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
@@ -118,4 +119,15 @@ public class MultiDigestInputStreamWrapperTest {
         // Expect no failures
         wrapper.checkFixity();
     }
+
+    @Test
+    public void getDigests_ComputesWantedDigestsInSamePass() throws Exception {
+        final var wrapper = new MultiDigestInputStreamWrapper(contentStream, asList(SHA1_URI),
+                asList("SHA-512", "MD5"));
+
+        IOUtils.toString(wrapper.getInputStream(), UTF_8);
+
+        wrapper.checkFixity();
+        assertEquals(asList(SHA1_URI, SHA512_URI, MD5_URI), wrapper.getDigests());
+    }
 }
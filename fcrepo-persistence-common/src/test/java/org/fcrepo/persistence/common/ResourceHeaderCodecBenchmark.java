@@ -0,0 +1,141 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.common;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.fcrepo.kernel.api.RdfLexicon.BASIC_CONTAINER;
+import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
+import static org.fcrepo.persistence.common.ResourceHeaderUtils.newResourceHeaders;
+import static org.fcrepo.persistence.common.ResourceHeaderUtils.populateBinaryHeaders;
+import static org.fcrepo.persistence.common.ResourceHeaderUtils.populateExternalBinaryHeaders;
+import static org.fcrepo.persistence.common.ResourceHeaderUtils.touchCreationHeaders;
+import static org.fcrepo.persistence.common.ResourceHeaderUtils.touchModificationHeaders;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+
+import org.fcrepo.kernel.api.models.ResourceHeaders;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+
+/**
+ * Compares the JSON and binary resource header codecs on the headers of a container and of an external binary.
+ * A JMH benchmark measures how long encoding and decoding the headers takes, and their encoded size is logged as each
+ * trial is set up. Run with the benchmarks profile, {@code mvn test -Pbenchmarks}.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceHeaderCodecBenchmark {
+
+    private static final Logger LOGGER = getLogger(ResourceHeaderCodecBenchmark.class);
+
+    private static final String PARENT_ID = "info:fedora/collection";
+
+    private static final String RESOURCE_ID = "info:fedora/collection/object";
+
+    private static final String USER_PRINCIPAL = "fedoraAdmin";
+
+    @Param({"container", "externalBinary"})
+    public String resource;
+
+    @Param({"JSON", "binary"})
+    public String encoding;
+
+    private ResourceHeaders headers;
+
+    private ResourceHeaderCodec codec;
+
+    private byte[] encoded;
+
+    @Test
+    public void testHeaderCodecs() throws Exception {
+        new Runner(new OptionsBuilder().include(ResourceHeaderCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Encode the resource's headers once, and report their encoded size
+     */
+    @Setup
+    public void encodeHeaders() throws IOException {
+        headers = resource.equals("container") ? container() : externalBinary();
+        codec = encoding.equals("JSON") ? new JsonResourceHeaderCodec() : new BinaryResourceHeaderCodec();
+        final var outputStream = new ByteArrayOutputStream();
+        codec.encode(headers, outputStream);
+        encoded = outputStream.toByteArray();
+        if (!headers.getLastModifiedDate().equals(decode().getLastModifiedDate())) {
+            throw new IllegalStateException("The " + encoding + " codec does not round trip the " + resource);
+        }
+        LOGGER.info("{} headers as {}: {} bytes", resource, encoding, encoded.length);
+    }
+
+    @Benchmark
+    public void encode(final Blackhole blackhole) throws IOException {
+        final var outputStream = new ByteArrayOutputStream();
+        codec.encode(headers, outputStream);
+        blackhole.consume(outputStream.toByteArray());
+    }
+
+    @Benchmark
+    public ResourceHeaders decode() throws IOException {
+        return codec.decode(new ByteArrayInputStream(encoded));
+    }
+
+    private static ResourceHeaders container() {
+        final var headers = newResourceHeaders(PARENT_ID, RESOURCE_ID, BASIC_CONTAINER.toString());
+        touchCreationHeaders(headers, USER_PRINCIPAL, Instant.parse("2020-03-04T10:15:30.123456Z"));
+        touchModificationHeaders(headers, USER_PRINCIPAL, Instant.parse("2020-03-05T08:01:12.456789Z"));
+        headers.setArchivalGroup(true);
+        return headers;
+    }
+
+    private static ResourceHeaders externalBinary() {
+        final var headers = newResourceHeaders(PARENT_ID, RESOURCE_ID + "/file", NON_RDF_SOURCE.toString());
+        touchCreationHeaders(headers, USER_PRINCIPAL, Instant.parse("2020-03-04T10:15:30.123456Z"));
+        touchModificationHeaders(headers, USER_PRINCIPAL, Instant.parse("2020-03-05T08:01:12.456789Z"));
+        populateBinaryHeaders(headers, "image/tiff", "page-0001.tif", 48318273L,
+                asList(URI.create("urn:sha1:6d0c5a0f8e9c3b2f2e1d4c3b2a190807f6e5d4c3"),
+                        URI.create("urn:md5:9e107d9d372bb6826bd81d3542a419d6")));
+        populateExternalBinaryHeaders(headers, "http://images.example.org/scans/page-0001.tif", "proxy");
+        return headers;
+    }
+}
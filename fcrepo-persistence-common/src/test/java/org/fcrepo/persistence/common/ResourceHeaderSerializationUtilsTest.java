@@ -20,16 +20,20 @@ package org.fcrepo.persistence.common;
 import static java.util.Arrays.asList;
 import static org.fcrepo.kernel.api.RdfLexicon.BASIC_CONTAINER;
 import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
+import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.RESOURCE_HEADER_EXTENSION;
 import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.deserializeHeaders;
+import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.getResourceHeaderExtension;
 import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.serializeHeaders;
 import static org.fcrepo.persistence.common.ResourceHeaderUtils.newResourceHeaders;
 import static org.fcrepo.persistence.common.ResourceHeaderUtils.populateBinaryHeaders;
 import static org.fcrepo.persistence.common.ResourceHeaderUtils.populateExternalBinaryHeaders;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.time.Instant;
 import java.util.Collection;
@@ -66,6 +70,11 @@ public class ResourceHeaderSerializationUtilsTest {
 
     private static final String EXTERNAL_HANDLING = "proxy";
 
+    @Test
+    public void getResourceHeaderExtension_DefaultsToJson() {
+        assertEquals(RESOURCE_HEADER_EXTENSION, getResourceHeaderExtension());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void serializeHeaders_NullHeaders() {
         serializeHeaders(null);
@@ -165,4 +174,42 @@ public class ResourceHeaderSerializationUtilsTest {
         assertFalse(resultHeaders.isArchivalGroup());
         assertTrue(resultHeaders.isObjectRoot());
     }
+
+    @Test
+    public void deserializeHeaders_BinaryEncoding() throws Exception {
+        final var headers = newResourceHeaders(PARENT_ID, RESOURCE_ID, NON_RDF_SOURCE.toString());
+        headers.setLastModifiedBy(USER_PRINCIPAL);
+        headers.setLastModifiedDate(Instant.parse(MODIFIED_DATE));
+        headers.setCreatedDate(Instant.parse(CREATED_DATE));
+        headers.setDeleted(true);
+        populateBinaryHeaders(headers, MIMETYPE, FILENAME, FILESIZE, DIGESTS);
+
+        final var os = new ByteArrayOutputStream();
+        new BinaryResourceHeaderCodec().encode(headers, os);
+
+        final var resultHeaders = deserializeHeaders(new ByteArrayInputStream(os.toByteArray()));
+
+        assertEquals(PARENT_ID, resultHeaders.getParent());
+        assertEquals(RESOURCE_ID, resultHeaders.getId());
+        assertEquals(headers.getStateToken(), resultHeaders.getStateToken());
+        assertEquals(NON_RDF_SOURCE.toString(), resultHeaders.getInteractionModel());
+        assertNull(resultHeaders.getCreatedBy());
+        assertEquals(USER_PRINCIPAL, resultHeaders.getLastModifiedBy());
+        assertEquals(MODIFIED_DATE, resultHeaders.getLastModifiedDate().toString());
+        assertEquals(CREATED_DATE, resultHeaders.getCreatedDate().toString());
+        assertEquals(MIMETYPE, resultHeaders.getMimeType());
+        assertEquals(FILENAME, resultHeaders.getFilename());
+        assertEquals(FILESIZE, resultHeaders.getContentSize());
+        assertTrue(DIGESTS.containsAll(resultHeaders.getDigests()));
+        assertNull(resultHeaders.getExternalUrl());
+        assertFalse(resultHeaders.isArchivalGroup());
+        assertTrue(resultHeaders.isDeleted());
+    }
+
+    @Test(expected = PersistentStorageException.class)
+    public void deserializeHeaders_UnsupportedBinaryVersion() throws Exception {
+        final var contentStream = new ByteArrayInputStream(new byte[] { (byte) BinaryResourceHeaderCodec.MAGIC, 99 });
+
+        deserializeHeaders(contentStream);
+    }
 }
@@ -28,13 +28,13 @@ import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.IndexBuilder;
 import org.fcrepo.persistence.ocfl.impl.OCFLConstants;
 import org.fcrepo.persistence.ocfl.impl.OCFLPersistentSessionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
-import java.io.File;
 import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -65,6 +65,9 @@ public class RepositoryInitializer {
     @Inject
     private OCFLConstants ocflConstants;
 
+    @Inject
+    private FedoraToOCFLObjectIndex fedoraToOCFLObjectIndex;
+
     /**
      * Initializes the repository
      */
@@ -74,12 +77,14 @@ public class RepositoryInitializer {
         final PersistentStorageSession session = this.sessionManager.getSession("initializationSession" +
                                                                                  System.currentTimeMillis());
 
-        final File fedoraToOcflIndexFile = this.ocflConstants.getFedoraToOCFLIndexFile();
-        if (!fedoraToOcflIndexFile.exists()) {
-            LOGGER.info("The Fedora to OCFL Index not found at {}. Rebuilding...", fedoraToOcflIndexFile);
+        if (this.ocflConstants.isIndexReconcileEnabled()) {
+            LOGGER.info("Reconciling the Fedora to OCFL Index with the OCFL repository...");
+            indexBuilder.reconcile();
+        } else if (this.fedoraToOCFLObjectIndex.isEmpty()) {
+            LOGGER.info("The Fedora to OCFL Index is empty. Rebuilding...");
             indexBuilder.rebuild();
         } else {
-            LOGGER.info("The Fedora to OCFL Index already exists at {}. Skipping rebuild.", fedoraToOcflIndexFile);
+            LOGGER.info("The Fedora to OCFL Index is already populated. Skipping rebuild.");
         }
 
         try {
@@ -103,6 +108,8 @@ public class RepositoryInitializer {
 
         } catch (PersistentStorageException ex) {
             throw new RepositoryRuntimeException(ex);
+        } finally {
+            this.sessionManager.removeSession(session.getId());
         }
     }
 
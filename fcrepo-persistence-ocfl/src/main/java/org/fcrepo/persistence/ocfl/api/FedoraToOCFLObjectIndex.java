@@ -19,6 +19,10 @@ package org.fcrepo.persistence.ocfl.api;
 
 import org.fcrepo.persistence.ocfl.impl.FedoraOCFLMapping;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Stream;
+
 /**
  * @author dbernstein
  * @since 6.0.0
@@ -53,6 +57,50 @@ public interface FedoraToOCFLObjectIndex {
     public FedoraOCFLMapping addMapping(final String fedoraResourceIdentifier, final String fedoraRootObjectIdentifier,
                            final String ocflObjectId);
 
+    /**
+     * Adds or replaces many mappings at once, without checking the mappings of their root resources.
+     *
+     * @param mappings The mappings, keyed by fedora resource identifier
+     */
+    void addMappings(final Map<String, FedoraOCFLMapping> mappings);
+
+    /**
+     * Removes the mapping of a fedora resource from the index. Other resources mapped to the same OCFL object keep
+     * their mappings.
+     *
+     * @param fedoraResourceIdentifier The fedora resource
+     */
+    void removeMapping(final String fedoraResourceIdentifier);
+
+    /**
+     * Removes the mappings of many fedora resources at once.
+     *
+     * @param fedoraResourceIdentifiers The fedora resources
+     */
+    void removeMappings(final Collection<String> fedoraResourceIdentifiers);
+
+    /**
+     * Count the fedora resources mapped to each of the given OCFL objects.
+     *
+     * @param ocflObjectIds The ocfl object ids
+     * @return The number of mappings of each OCFL object which has any, keyed by ocfl object id
+     */
+    Map<String, Integer> countMappings(final Collection<String> ocflObjectIds);
+
+    /**
+     * Return every mapping in the index, keyed by fedora resource identifier.
+     *
+     * @return A stream of fedora resource identifiers and their mappings
+     */
+    Stream<Map.Entry<String, FedoraOCFLMapping>> getMappings();
+
+    /**
+     * Check whether the index holds any mappings.
+     *
+     * @return true if there are no mappings in the index
+     */
+    boolean isEmpty();
+
     /**
      * Remove all persistent state associated with the index.
      */
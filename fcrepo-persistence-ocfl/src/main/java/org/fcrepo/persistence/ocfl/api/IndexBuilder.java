@@ -32,5 +32,17 @@ public interface IndexBuilder {
      * Rebuild the index.
      */
     public void rebuild();
+
+    /**
+     * Bring the index up to date with the OCFL repository without resetting it. Only objects that changed since the
+     * last reconciliation are read, and an interrupted reconciliation resumes where it left off.
+     */
+    public void reconcile();
+
+    /**
+     * Write a snapshot of the index state, which a later rebuild may restore instead of reading every object in the
+     * OCFL repository.
+     */
+    public void snapshot();
 }
 
@@ -22,7 +22,9 @@ import org.fcrepo.persistence.api.CommitOption;
 import org.fcrepo.persistence.api.WriteOutcome;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.util.List;
 import java.util.stream.Stream;
@@ -44,6 +46,17 @@ public interface OCFLObjectSession {
      */
     WriteOutcome write(String subpath, InputStream stream) throws PersistentStorageException;
 
+    /**
+     * Write content to the specified subpath by handing the writer a stream bound directly to the staged file, so
+     * that the content does not need to be buffered before it is written.
+     *
+     * @param subpath path of the resource to write, relative to the OCFL object
+     * @param writer produces the content of the file
+     * @return information about the data written.
+     * @throws PersistentStorageException thrown if unable to persist content
+     */
+    WriteOutcome writeWith(String subpath, ContentWriter writer) throws PersistentStorageException;
+
     /**
      * Delete a file from this ocfl object.
      *
@@ -52,6 +65,16 @@ public interface OCFLObjectSession {
      */
     void delete(String subpath) throws PersistentStorageException;
 
+    /**
+     * Determine whether a file exists at the specified subpath within the current session, either staged in this
+     * session or present in the head version of the object and not deleted in this session.
+     *
+     * @param subpath path of the file relative to a version of an ocfl object
+     * @return true if the file exists
+     * @throws PersistentStorageException if the session is closed
+     */
+    boolean exists(String subpath) throws PersistentStorageException;
+
     /**
      * Delete the object specified by this session
      *
@@ -79,6 +102,19 @@ public interface OCFLObjectSession {
      */
     InputStream read(String subpath, String version) throws PersistentStorageException;
 
+    /**
+     * Read a byte range of the file at subpath, without reading the part of the file before the range where the
+     * storage allows it.
+     *
+     * @param subpath path relative to the object
+     * @param version identifier of the version. If null, the state of the file within the current session is read.
+     * @param start offset of the first byte of the range
+     * @param end offset of the last byte of the range, inclusive. -1 reads to the end of the file.
+     * @return the contents of the range
+     * @throws PersistentStorageException if unable to read the file
+     */
+    InputStream readRange(String subpath, String version, long start, long end) throws PersistentStorageException;
+
     /**
      * Overrides the default {@link CommitOption} to use when the session is committed. By default, is
      * {@link CommitOption#NEW_VERSION} when fcrepo.autoversioning.enabled is true,
@@ -149,4 +185,18 @@ public interface OCFLObjectSession {
      */
     Stream<String> listHeadSubpaths() throws PersistentStorageException;
 
+    /**
+     * Produces the content of a file written to an OCFL object session.
+     */
+    @FunctionalInterface
+    interface ContentWriter {
+
+        /**
+         * Write the content to the provided stream. The stream is closed by the session.
+         *
+         * @param outputStream stream to write the content to
+         * @throws IOException if unable to write the content
+         */
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
 }
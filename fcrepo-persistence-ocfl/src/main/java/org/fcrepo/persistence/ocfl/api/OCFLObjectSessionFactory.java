@@ -17,6 +17,8 @@
  */
 package org.fcrepo.persistence.ocfl.api;
 
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+
 /**
  * A factory interface for creating {@link org.fcrepo.persistence.ocfl.api.OCFLObjectSession}.
  * @author dbernstein
@@ -31,4 +33,17 @@ public interface OCFLObjectSessionFactory {
      * @return The newly created session.
      */
     OCFLObjectSession create(final String ocflId, final String persistentStorageSessionId);
+
+    /**
+     * Remove everything staged by the sessions of a persistent storage session. The sessions must no longer be in use.
+     * @param persistentStorageSessionId The id of the persistent storage session.
+     * @throws PersistentStorageException If the staged files could not be removed.
+     */
+    void cleanupStaging(final String persistentStorageSessionId) throws PersistentStorageException;
+
+    /**
+     * Total size of the files currently staged by all sessions.
+     * @return The number of staged bytes.
+     */
+    long getStagedBytes();
 }
@@ -18,6 +18,7 @@
 package org.fcrepo.persistence.ocfl.impl;
 
 import static java.lang.String.format;
+import static java.util.stream.Collectors.toSet;
 import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
 import static org.fcrepo.kernel.api.operations.ResourceOperationType.CREATE;
 import static org.fcrepo.persistence.common.ResourceHeaderUtils.newResourceHeaders;
@@ -28,13 +29,17 @@ import static org.fcrepo.persistence.common.ResourceHeaderUtils.touchModificatio
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.relativizeSubpath;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveOCFLSubpath;
 
-import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.kernel.api.operations.CreateResourceOperation;
 import org.fcrepo.kernel.api.operations.NonRdfSourceOperation;
 import org.fcrepo.kernel.api.operations.ResourceOperation;
 import org.fcrepo.kernel.api.operations.ResourceOperationType;
+import org.fcrepo.kernel.api.utils.ContentDigest;
 import org.fcrepo.persistence.api.WriteOutcome;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.common.MultiDigestInputStreamWrapper;
@@ -54,6 +59,9 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
 
     private static final Logger log = LoggerFactory.getLogger(AbstractNonRdfSourcePersister.class);
 
+    // digests computed for every internal binary, in addition to any provided with the content
+    private final List<String> digestAlgorithms;
+
     /**
      * Constructor
      */
@@ -61,6 +69,7 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
                                   final ResourceOperationType resourceOperationType,
                                   final FedoraToOCFLObjectIndex index) {
         super(resourceOperation, resourceOperationType, index);
+        this.digestAlgorithms = new OCFLConstants().getDigestAlgorithms();
     }
 
     /**
@@ -83,32 +92,33 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
         final var nonRdfSourceOperation = (NonRdfSourceOperation) operation;
 
         final WriteOutcome outcome;
+        final Collection<URI> digests;
         if (forExternalBinary(nonRdfSourceOperation)) {
             outcome = null;
+            digests = nonRdfSourceOperation.getContentDigests();
         } else {
-            // if transmission digests provided, wrap inputstream to calculate for incoming data
-            final var digests = nonRdfSourceOperation.getContentDigests();
-            MultiDigestInputStreamWrapper multiDigestWrapper = null;
-            final InputStream contentStream;
-            if (digests == null || digests.isEmpty()) {
-                contentStream = nonRdfSourceOperation.getContentStream();
+            final var providedDigests = nonRdfSourceOperation.getContentDigests();
+            if ((providedDigests == null || providedDigests.isEmpty()) && digestAlgorithms.isEmpty()) {
+                outcome = objectSession.write(subpath, nonRdfSourceOperation.getContentStream());
+                digests = providedDigests;
             } else {
-                multiDigestWrapper = new MultiDigestInputStreamWrapper(
+                // calculate the transmission digests provided and the configured digests in the same pass that
+                // stages the incoming data
+                final var multiDigestWrapper = new MultiDigestInputStreamWrapper(
                         nonRdfSourceOperation.getContentStream(),
-                        nonRdfSourceOperation.getContentDigests());
-                contentStream = multiDigestWrapper.getInputStream();
-            }
+                        providedDigests,
+                        digestAlgorithms);
 
-            outcome = objectSession.write(subpath, contentStream);
+                outcome = objectSession.write(subpath, multiDigestWrapper.getInputStream());
 
-            // Verify that the content matches the provided digests
-            if (multiDigestWrapper != null) {
+                // Verify that the content matches the provided digests
                 multiDigestWrapper.checkFixity();
+                digests = mergeDigests(providedDigests, multiDigestWrapper.getDigests());
             }
         }
 
         // Write resource headers
-        final var headers = populateHeaders(objectSession, subpath, nonRdfSourceOperation, outcome,
+        final var headers = populateHeaders(objectSession, subpath, nonRdfSourceOperation, outcome, digests,
                 fedoraSubpath.isEmpty());
         writeHeaders(objectSession, headers, subpath);
     }
@@ -121,13 +131,15 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
      * @param subpath the subpath of the file
      * @param op the operation being persisted
      * @param writeOutcome outcome of persisting the original file
+     * @param digests digests of the file
      * @param objectRoot flag indicating whether or not subpath represents the object root resource
      * @return populated resource headers
      * @throws PersistentStorageException if unexpectedly unable to retrieve existing object headers
      */
     private ResourceHeaders populateHeaders(final OCFLObjectSession objSession, final String subpath,
                                             final NonRdfSourceOperation op, final WriteOutcome writeOutcome,
-                                            final boolean objectRoot) throws PersistentStorageException {
+                                            final Collection<URI> digests, final boolean objectRoot)
+            throws PersistentStorageException {
 
         final ResourceHeadersImpl headers;
         final var timeWritten = writeOutcome != null ? writeOutcome.getTimeWritten() : null;
@@ -148,7 +160,7 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
         populateBinaryHeaders(headers, op.getMimeType(),
                 op.getFilename(),
                 contentSize,
-                op.getContentDigests());
+                digests);
 
         if (forExternalBinary(op)) {
             populateExternalBinaryHeaders(headers, op.getContentUri().toString(),
@@ -183,6 +195,25 @@ abstract class AbstractNonRdfSourcePersister extends AbstractPersister {
         }
     }
 
+    /**
+     * Combine the digests provided with the content and the digests computed while writing it. The provided digests
+     * are kept as they were given, computed digests are added for the remaining algorithms.
+     *
+     * @param provided digests provided with the content, may be null
+     * @param computed digests computed from the content
+     * @return all digests of the content
+     */
+    private static Collection<URI> mergeDigests(final Collection<URI> provided, final Collection<URI> computed) {
+        if (provided == null || provided.isEmpty()) {
+            return computed;
+        }
+        final var digests = new ArrayList<>(provided);
+        final var providedAlgorithms = provided.stream().map(ContentDigest::getAlgorithm).collect(toSet());
+        computed.stream().filter(digest -> !providedAlgorithms.contains(ContentDigest.getAlgorithm(digest)))
+                .forEach(digests::add);
+        return digests;
+    }
+
     /**
      * @param op the operation
      * @return Returns true if the operation involved persisting an external binary
@@ -24,7 +24,9 @@ import static org.fcrepo.kernel.api.RdfLexicon.FEDORA_NON_RDF_SOURCE_DESCRIPTION
 import static org.fcrepo.kernel.api.operations.ResourceOperationType.CREATE;
 import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.deserializeHeaders;
 import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.serializeHeaders;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getAlternateSidecarSubpath;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getSidecarSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.readSidecar;
 
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.models.ResourceHeaders;
@@ -78,6 +80,11 @@ abstract class AbstractPersister implements Persister {
             final String subpath) throws PersistentStorageException {
         final var headerStream = serializeHeaders(headers);
         session.write(getSidecarSubpath(subpath), headerStream);
+        // drop headers written in the other encoding so that reads cannot pick up stale headers
+        final var alternate = getAlternateSidecarSubpath(subpath);
+        if (session.exists(alternate)) {
+            session.delete(alternate);
+        }
     }
 
     /**
@@ -89,8 +96,7 @@ abstract class AbstractPersister implements Persister {
      */
     protected static ResourceHeaders readHeaders(final OCFLObjectSession objSession, final String subpath)
             throws PersistentStorageException {
-        final var headerStream = objSession.read(getSidecarSubpath(subpath));
-        return deserializeHeaders(headerStream);
+        return deserializeHeaders(readSidecar(objSession, subpath, null));
     }
 
     @Override
@@ -0,0 +1,223 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+
+/**
+ * A bounded cache of state read from the committed resources, such as their headers or triples, shared by all
+ * persistent storage sessions. Cached values must not be modified.
+ *
+ * The state of a memento never changes, so it stays cached until it is evicted. The state of the head of a
+ * resource is dropped whenever a session that changed its OCFL object commits. A read that overlaps such a commit
+ * is not cached, as it may have seen the state from before the commit.
+ *
+ * @param <V> the type of the cached state
+ * @author agent
+ * @since 6.0.0
+ */
+final class CommittedStateCache<V> {
+
+    /**
+     * Loads state from storage on a cache miss.
+     *
+     * @param <V> the type of the state
+     */
+    @FunctionalInterface
+    interface Loader<V> {
+        V load() throws PersistentStorageException;
+    }
+
+    private final Cache<Key, V> cache;
+
+    /**
+     * The cached head state of each OCFL object, so it can be dropped when the object changes.
+     */
+    private final ConcurrentMap<String, Set<Key>> headKeysByObject = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time head state is invalidated.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param maximumSize the maximum number of values to keep
+     */
+    CommittedStateCache(final long maximumSize) {
+        this(maximumSize, (key, value) -> 1);
+    }
+
+    /**
+     * @param maximumWeight the maximum total weight of the values to keep
+     * @param weigher the weight of a value
+     */
+    CommittedStateCache(final long maximumWeight, final Weigher<String, V> weigher) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Key key, V value) -> weigher.weigh(key.fedoraId, value))
+                .recordStats()
+                .removalListener(this::onRemoval)
+                .build();
+    }
+
+    /**
+     * Get the state of the head of a resource or of one of its mementos, loading it on a miss.
+     *
+     * @param ocflId the OCFL object holding the resource
+     * @param fedoraId the fedora identifier of the resource
+     * @param version the memento instant, or null for the head
+     * @param loader reads the state from storage
+     * @return the state
+     * @throws PersistentStorageException if the state could not be loaded
+     */
+    V get(final String ocflId, final String fedoraId, final Instant version, final Loader<V> loader)
+            throws PersistentStorageException {
+        final var cached = getIfPresent(ocflId, fedoraId, version);
+        if (cached != null) {
+            return cached;
+        }
+        final long loadGeneration = generation();
+        final var value = loader.load();
+        put(ocflId, fedoraId, version, value, loadGeneration);
+        return value;
+    }
+
+    /**
+     * Get the cached state of the head of a resource or of one of its mementos.
+     *
+     * @param ocflId the OCFL object holding the resource
+     * @param fedoraId the fedora identifier of the resource
+     * @param version the memento instant, or null for the head
+     * @return the state, or null if it is not cached
+     */
+    V getIfPresent(final String ocflId, final String fedoraId, final Instant version) {
+        return cache.getIfPresent(new Key(ocflId, fedoraId, version));
+    }
+
+    /**
+     * @return the current generation, to be read before loading state that is later passed to
+     *         {@link #put(String, String, Instant, Object, long)}
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Cache state that was loaded from storage. Head state is only cached if no commit invalidated it since it
+     * started loading.
+     *
+     * @param ocflId the OCFL object holding the resource
+     * @param fedoraId the fedora identifier of the resource
+     * @param version the memento instant, or null for the head
+     * @param value the state
+     * @param loadGeneration the generation read before loading started
+     */
+    void put(final String ocflId, final String fedoraId, final Instant version, final V value,
+             final long loadGeneration) {
+        final var key = new Key(ocflId, fedoraId, version);
+        if (version != null) {
+            cache.put(key, value);
+        } else if (generation.get() == loadGeneration) {
+            // index the key first, so that an eviction straight after the put finds it
+            headKeysByObject.computeIfAbsent(ocflId, k -> ConcurrentHashMap.newKeySet()).add(key);
+            cache.put(key, value);
+            // a commit that invalidated after the check above may have missed the entry
+            if (generation.get() != loadGeneration) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Drop the cached head state of every resource in the given OCFL objects.
+     *
+     * @param ocflIds the OCFL objects that changed
+     */
+    void invalidate(final Collection<String> ocflIds) {
+        generation.incrementAndGet();
+        for (final String ocflId : ocflIds) {
+            final var keys = headKeysByObject.remove(ocflId);
+            if (keys != null) {
+                cache.invalidateAll(keys);
+            }
+        }
+    }
+
+    private void onRemoval(final RemovalNotification<Key, V> notification) {
+        final var key = notification.getKey();
+        if (key.version == null && notification.getCause() != RemovalCause.REPLACED) {
+            headKeysByObject.computeIfPresent(key.ocflId, (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    /**
+     * @return hit, miss and eviction statistics
+     */
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static final class Key {
+
+        private final String ocflId;
+
+        private final String fedoraId;
+
+        private final Instant version;
+
+        private Key(final String ocflId, final String fedoraId, final Instant version) {
+            this.ocflId = ocflId;
+            this.fedoraId = fedoraId;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return ocflId.equals(key.ocflId) && fedoraId.equals(key.fedoraId) && Objects.equals(version, key.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ocflId, fedoraId, version);
+        }
+    }
+}
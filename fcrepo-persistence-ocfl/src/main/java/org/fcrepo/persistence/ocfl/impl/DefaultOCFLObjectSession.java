@@ -18,15 +18,21 @@
 package org.fcrepo.persistence.ocfl.impl;
 
 import edu.wisc.library.ocfl.api.MutableOcflRepository;
+import edu.wisc.library.ocfl.api.OcflObjectVersion;
+import edu.wisc.library.ocfl.api.OcflObjectVersionFile;
 import edu.wisc.library.ocfl.api.OcflObjectUpdater;
+import edu.wisc.library.ocfl.api.OcflOption;
 import edu.wisc.library.ocfl.api.exception.NotFoundException;
 import edu.wisc.library.ocfl.api.model.CommitInfo;
 import edu.wisc.library.ocfl.api.model.FileChangeType;
 import edu.wisc.library.ocfl.api.model.FileDetails;
+import edu.wisc.library.ocfl.api.model.ObjectDetails;
 import edu.wisc.library.ocfl.api.model.ObjectVersionId;
 import edu.wisc.library.ocfl.api.model.VersionDetails;
 import edu.wisc.library.ocfl.api.model.VersionId;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.fcrepo.persistence.api.CommitOption;
@@ -35,11 +41,13 @@ import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentSessionClosedException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.common.FileWriteOutcome;
+import org.fcrepo.persistence.common.MemoryWriteOutcome;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
 import org.fcrepo.persistence.ocfl.api.OCFLVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -49,16 +57,18 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -95,6 +105,36 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     private CommitOption commitOption;
 
     private Instant created;
+
+    // Whether the committed state of the object read from the repository is kept for the life of the session
+    private final boolean cacheCommittedState;
+
+    // Parsed inventory of the object, null if the object does not exist. Only valid while inventoryLoaded is set.
+    private ObjectDetails inventory;
+
+    private boolean inventoryLoaded;
+
+    // Committed versions of the object read in this session, keyed by version id, "head" for the head version
+    private final Map<String, OcflObjectVersion> objectVersions = new HashMap<>();
+
+    // Limits for staging files in memory instead of the staging path, null to stage every file on disk
+    private final StagingMemory stagingMemory;
+
+    // Staged files small enough to be kept in memory, keyed by encoded subpath. Read without the session lock.
+    private final Map<String, byte[]> memoryStaged = new ConcurrentHashMap<>();
+
+    // Number of bytes held in memoryStaged
+    private long memoryStagedBytes;
+
+    // Sizes of the files in the staging path, keyed by encoded subpath. Read without the session lock.
+    private final Map<String, Long> fileStaged = new ConcurrentHashMap<>();
+
+    // Number of bytes held in fileStaged
+    private long fileStagedBytes;
+
+    // Root of the OCFL storage, for reading ranges of committed files directly. May be null.
+    private final Path storageRoot;
+
     /**
      * Instantiate an OCFL object session
      *
@@ -105,6 +145,64 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
      */
     public DefaultOCFLObjectSession(final String objectIdentifier, final Path stagingPath,
             final MutableOcflRepository ocflRepository, final CommitOption commitOption) {
+        this(objectIdentifier, stagingPath, ocflRepository, commitOption, false);
+    }
+
+    /**
+     * Instantiate an OCFL object session
+     *
+     * @param objectIdentifier identifier for the OCFL object
+     * @param stagingPath path in which changes to the OCFL object will be staged.
+     * @param ocflRepository the OCFL repository in which the object is stored.
+     * @param commitOption the commit option to use
+     * @param cacheCommittedState whether to read the inventory and versions of the object once and keep them until
+     *        the session commits. Only suitable for sessions that do not outlive commits made by other sessions.
+     */
+    public DefaultOCFLObjectSession(final String objectIdentifier, final Path stagingPath,
+            final MutableOcflRepository ocflRepository, final CommitOption commitOption,
+            final boolean cacheCommittedState) {
+        this(objectIdentifier, stagingPath, ocflRepository, commitOption, cacheCommittedState, null);
+    }
+
+    /**
+     * Instantiate an OCFL object session
+     *
+     * @param objectIdentifier identifier for the OCFL object
+     * @param stagingPath path in which changes to the OCFL object will be staged.
+     * @param ocflRepository the OCFL repository in which the object is stored.
+     * @param commitOption the commit option to use
+     * @param cacheCommittedState whether to read the inventory and versions of the object once and keep them until
+     *        the session commits. Only suitable for sessions that do not outlive commits made by other sessions.
+     * @param stagingMemory limits for staging files in memory rather than in the staging path. If null, every file
+     *        is staged on disk.
+     */
+    public DefaultOCFLObjectSession(final String objectIdentifier, final Path stagingPath,
+            final MutableOcflRepository ocflRepository, final CommitOption commitOption,
+            final boolean cacheCommittedState, final StagingMemory stagingMemory) {
+        this(objectIdentifier, stagingPath, ocflRepository, commitOption, cacheCommittedState,
+                stagingMemory, null);
+    }
+
+    /**
+     * Instantiate an OCFL object session
+     *
+     * @param objectIdentifier identifier for the OCFL object
+     * @param stagingPath path in which changes to the OCFL object will be staged.
+     * @param ocflRepository the OCFL repository in which the object is stored.
+     * @param commitOption the commit option to use
+     * @param cacheCommittedState whether to read the inventory and versions of the object once and keep them until
+     *        the session commits. Only suitable for sessions that do not outlive commits made by other sessions.
+     * @param stagingMemory limits for staging files in memory rather than in the staging path. If null, every file
+     *        is staged on disk.
+     * @param storageRoot root directory of the OCFL storage, used to read ranges of committed files directly. If
+     *        null, ranges are read by skipping through the content stream.
+     */
+    public DefaultOCFLObjectSession(final String objectIdentifier, final Path stagingPath,
+            final MutableOcflRepository ocflRepository, final CommitOption commitOption,
+            final boolean cacheCommittedState, final StagingMemory stagingMemory, final Path storageRoot) {
+        this.cacheCommittedState = cacheCommittedState;
+        this.stagingMemory = stagingMemory;
+        this.storageRoot = storageRoot;
         this.objectIdentifier = objectIdentifier;
         this.stagingPath = stagingPath.resolve(encode(objectIdentifier));
         this.ocflRepository = ocflRepository;
@@ -143,36 +241,128 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     @Override
     public synchronized WriteOutcome write(final String subpath, final InputStream stream)
             throws PersistentStorageException {
-        final var encodedSubpath = encode(subpath);
-
-        // Check that the staging path exists now that we are writing.
-        if (!this.stagingPath.toFile().exists()) {
-            this.stagingPath.toFile().mkdirs();
+        try {
+            // write contents to subpath within the staging path
+            return writeWith(subpath, stream::transferTo);
+        } finally {
+            try {
+                stream.close();
+            } catch (final IOException e) {
+                log.error("Failed to close inputstream while writing {}", subpath, e);
+            }
         }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Content no larger than the staging memory threshold is kept in memory until commit, as long as neither the
+     * session nor all sessions together have used up their staging memory budget. Anything else is written to the
+     * staging path.
+     */
+    @Override
+    public synchronized WriteOutcome writeWith(final String subpath, final ContentWriter writer)
+            throws PersistentStorageException {
+        assertSessionOpen();
+
+        final var encodedSubpath = encode(subpath);
         // Determine the staging path for the incoming content
         final var stagedPath = resolveStagedPath(encodedSubpath);
+        // the reservation covers the content while it is written, it is counted as staged once it is kept
+        final long reserved = stagingMemory == null ? 0 : stagingMemory.reserve(memoryThreshold(encodedSubpath));
         try {
-            assertSessionOpen();
-
-            final var parentPath = stagedPath.getParent();
-
-            // Fill in any missing parent directories
-            Files.createDirectories(parentPath);
-            // write contents to subpath within the staging path
-            Files.copy(stream, stagedPath, StandardCopyOption.REPLACE_EXISTING);
+            final var outputStream = new SpillingOutputStream((int) reserved, stagedPath);
+            try (outputStream) {
+                writer.writeTo(outputStream);
+            }
 
-            return new FileWriteOutcome(stagedPath);
+            if (outputStream.isSpilled()) {
+                removeMemoryStaged(encodedSubpath);
+                putFileStaged(encodedSubpath, Files.size(stagedPath));
+                return new FileWriteOutcome(stagedPath);
+            }
+            // replace any earlier version of the file that was too large to keep in memory
+            if (removeFileStaged(encodedSubpath)) {
+                Files.deleteIfExists(stagedPath);
+            }
+            putMemoryStaged(encodedSubpath, outputStream.toByteArray());
+            return new MemoryWriteOutcome(outputStream.size());
         } catch (final IOException e) {
             throw new PersistentStorageException("Unable to persist content to " + stagedPath, e);
         } finally {
-            try {
-                stream.close();
-            } catch (final IOException e) {
-                log.error("Failed to close inputstream while writing {}", subpath, e);
+            if (reserved > 0) {
+                stagingMemory.release(reserved);
             }
         }
     }
 
+    /**
+     * @return largest number of bytes the file at the subpath may be staged in memory with by this session, before
+     *         the total budget of all sessions is applied
+     */
+    private int memoryThreshold(final String encodedSubpath) {
+        if (stagingMemory == null) {
+            return 0;
+        }
+        // the memory of an earlier version of the file is released when it is replaced
+        final var previous = memoryStaged.get(encodedSubpath);
+        final long available = stagingMemory.getSessionBudget() - memoryStagedBytes
+                + (previous == null ? 0 : previous.length);
+        return (int) Math.max(0, Math.min(stagingMemory.getFileThreshold(), available));
+    }
+
+    private void putMemoryStaged(final String encodedSubpath, final byte[] content) {
+        final var previous = memoryStaged.put(encodedSubpath, content);
+        addMemoryStagedBytes(content.length - (previous == null ? 0 : previous.length));
+    }
+
+    private boolean removeMemoryStaged(final String encodedSubpath) {
+        final var previous = memoryStaged.remove(encodedSubpath);
+        if (previous == null) {
+            return false;
+        }
+        addMemoryStagedBytes(-previous.length);
+        return true;
+    }
+
+    private void clearMemoryStaged() {
+        memoryStaged.clear();
+        addMemoryStagedBytes(-memoryStagedBytes);
+    }
+
+    private void addMemoryStagedBytes(final long delta) {
+        memoryStagedBytes += delta;
+        if (stagingMemory != null) {
+            stagingMemory.addStagedBytes(delta);
+        }
+    }
+
+    private void putFileStaged(final String encodedSubpath, final long size) {
+        final var previous = fileStaged.put(encodedSubpath, size);
+        addFileStagedBytes(size - (previous == null ? 0 : previous));
+    }
+
+    private boolean removeFileStaged(final String encodedSubpath) {
+        final var previous = fileStaged.remove(encodedSubpath);
+        if (previous == null) {
+            return false;
+        }
+        addFileStagedBytes(-previous);
+        return true;
+    }
+
+    private void clearFileStaged() {
+        fileStaged.clear();
+        addFileStagedBytes(-fileStagedBytes);
+    }
+
+    private void addFileStagedBytes(final long delta) {
+        fileStagedBytes += delta;
+        if (stagingMemory != null) {
+            stagingMemory.addStagedFileBytes(delta);
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -186,16 +376,18 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         final var encodedSubpath = encode(subpath);
 
         final var stagedPath = resolveStagedPath(encodedSubpath);
-        final var hasStagedChanges = hasStagedChanges(stagedPath);
+        final var stagedInMemory = removeMemoryStaged(encodedSubpath);
+        final var hasStagedChanges = stagedInMemory || hasStagedFile(encodedSubpath);
 
         // If the subpath exists in the staging path for this session, then delete from there
-        if (hasStagedChanges) {
+        if (hasStagedChanges && !stagedInMemory) {
             // delete the file from the staging path
             try {
                 Files.delete(stagedPath);
             } catch (final IOException e) {
                 throw new PersistentStorageException("Unable to delete " + stagedPath, e);
             }
+            removeFileStaged(encodedSubpath);
         }
 
         // for file that existed before this session, queue up its deletion for commit time
@@ -214,10 +406,23 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         }
     }
 
+    @Override
+    public synchronized boolean exists(final String subpath) throws PersistentStorageException {
+        assertSessionOpen();
+
+        final var encodedSubpath = encode(subpath);
+        if (memoryStaged.containsKey(encodedSubpath) || hasStagedFile(encodedSubpath)) {
+            return true;
+        }
+        return !deletePaths.contains(encodedSubpath) && !newInSession(encodedSubpath);
+    }
+
     @Override
     public synchronized void deleteObject() throws PersistentStorageException {
         assertSessionOpen();
 
+        // other sessions may have created or changed the object since its state was read
+        invalidateCommittedState();
         objectDeleted = true;
         // Reset state of the object
         if (!isStagingEmpty()) {
@@ -231,6 +436,8 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     }
 
     private void cleanupStaging() throws PersistentStorageException {
+        clearMemoryStaged();
+        clearFileStaged();
         try {
             final var stagingDir = stagingPath.toFile();
             if (stagingDir.exists()) {
@@ -247,12 +454,56 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
             return true;
         }
         // If the object isn't created yet, then there is no history for the subpath
-        if (!ocflRepository.containsObject(objectIdentifier)) {
+        final var details = describeObject();
+        if (details == null) {
             return true;
         }
         // determine if this subpath exists in the OCFL object
-        return !ocflRepository.getObject(ObjectVersionId.head(objectIdentifier))
-                .containsFile(encodedSubpath);
+        return !details.getHeadVersion().containsFile(encodedSubpath);
+    }
+
+    /**
+     * @return the inventory of the object, or null if the object does not exist
+     */
+    private synchronized ObjectDetails describeObject() {
+        if (inventoryLoaded) {
+            return inventory;
+        }
+        ObjectDetails details;
+        try {
+            details = ocflRepository.describeObject(objectIdentifier);
+        } catch (final NotFoundException e) {
+            details = null;
+        }
+        if (cacheCommittedState) {
+            inventory = details;
+            inventoryLoaded = true;
+        }
+        return details;
+    }
+
+    private synchronized OcflObjectVersion getObjectVersion(final String version) {
+        final var versionId = version == null ? ObjectVersionId.head(objectIdentifier) :
+                ObjectVersionId.version(objectIdentifier, version);
+        if (!cacheCommittedState) {
+            return ocflRepository.getObject(versionId);
+        }
+        final var key = version == null ? "head" : version;
+        var objectVersion = objectVersions.get(key);
+        if (objectVersion == null) {
+            objectVersion = ocflRepository.getObject(versionId);
+            objectVersions.put(key, objectVersion);
+        }
+        return objectVersion;
+    }
+
+    /**
+     * Forget the committed state read so far, after the object has been changed by this session.
+     */
+    private synchronized void invalidateCommittedState() {
+        inventory = null;
+        inventoryLoaded = false;
+        objectVersions.clear();
     }
 
     /**
@@ -266,7 +517,10 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
 
         final var stagedPath = resolveStagedPath(encodedSubpath);
 
-        if (hasStagedChanges(stagedPath)) {
+        final var stagedContent = memoryStaged.get(encodedSubpath);
+        if (stagedContent != null) {
+            return new ByteArrayInputStream(stagedContent);
+        } else if (hasStagedFile(encodedSubpath)) {
             // prioritize read of the staged version of the file
             try {
                 return new FileInputStream(stagedPath.toFile());
@@ -276,7 +530,7 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
             }
         } else if (!objectDeleted) {
             // Fall back to the head version
-            return readVersion(subpath, ObjectVersionId.head(objectIdentifier));
+            return readVersion(subpath, null);
         }
 
         throw new PersistentItemNotFoundException(format("Could not find %s within object %s",
@@ -296,27 +550,78 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
                     subpath, objectIdentifier));
         }
 
-        return readVersion(subpath, ObjectVersionId.version(objectIdentifier, version));
+        return readVersion(subpath, version);
     }
 
-    private InputStream readVersion(final String subpath, final ObjectVersionId version)
+    private InputStream readVersion(final String subpath, final String version)
+            throws PersistentItemNotFoundException {
+        // Disable automatic fixity check
+        return getVersionFile(subpath, version).getStream().enableFixityCheck(false);
+    }
+
+    private OcflObjectVersionFile getVersionFile(final String subpath, final String version)
             throws PersistentItemNotFoundException {
         final var encodedSubpath = encode(subpath);
 
         try {
-            // read the head version of the file from the ocfl object
-            final var file = ocflRepository.getObject(version)
+            // read the file from the requested version of the ocfl object, the head version if null
+            final var file = getObjectVersion(version)
                     .getFile(encodedSubpath);
             if (file == null) {
                 throw new PersistentItemNotFoundException(format("Could not find %s within object %s version %s",
-                        subpath, objectIdentifier, version.getVersionId()));
+                        subpath, objectIdentifier, version));
             }
-            // Disable automatic fixity check
-            return file.getStream().enableFixityCheck(false);
+            return file;
         } catch (final NotFoundException e) {
             throw new PersistentItemNotFoundException(format(
                     "Unable to read %s from object %s version %s, object was not found.",
-                    subpath, objectIdentifier, version.getVersionId()), e);
+                    subpath, objectIdentifier, version), e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Files staged on disk and committed files in the OCFL storage are read with positioned reads.
+     */
+    @Override
+    public InputStream readRange(final String subpath, final String version, final long start, final long end)
+            throws PersistentStorageException {
+        assertSessionOpen();
+
+        final var encodedSubpath = encode(subpath);
+        try {
+            if (version == null) {
+                final var stagedContent = memoryStaged.get(encodedSubpath);
+                if (stagedContent != null) {
+                    final int from = (int) Math.min(start, stagedContent.length);
+                    final int to = end < 0 ? stagedContent.length : (int) Math.min(end + 1, stagedContent.length);
+                    return new ByteArrayInputStream(stagedContent, from, Math.max(0, to - from));
+                }
+                if (hasStagedFile(encodedSubpath)) {
+                    return new FileRangeInputStream(resolveStagedPath(encodedSubpath), start, end);
+                }
+            }
+            // If the object was deleted, then only uncommitted staged files can be available
+            if (objectDeleted) {
+                throw new PersistentItemNotFoundException(format("Could not find %s within object %s",
+                        subpath, objectIdentifier));
+            }
+
+            final var file = getVersionFile(subpath, version);
+            if (storageRoot != null) {
+                final var storagePath = storageRoot.resolve(file.getStorageRelativePath());
+                if (Files.isRegularFile(storagePath)) {
+                    return new FileRangeInputStream(storagePath, start, end);
+                }
+            }
+            // the file is not on a local file system, skip to the start of the range
+            final InputStream stream = file.getStream().enableFixityCheck(false);
+            IOUtils.skip(stream, start);
+            return end < 0 ? stream : new BoundedInputStream(stream, end - start + 1);
+        } catch (final IOException e) {
+            throw new PersistentStorageException(format("Unable to read range %s-%s of %s within object %s",
+                    start, end, subpath, objectIdentifier), e);
         }
     }
 
@@ -355,29 +660,40 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
             throw new IllegalArgumentException("Invalid commit option provided: " + commitOption);
         }
 
+        // decide how to commit from the live state of the object, other sessions may have committed to it
+        invalidateCommittedState();
+
         // Close the session
         sessionClosed = true;
 
-        // Perform requested deletion of the object
-        if (objectDeleted) {
-            deleteExistingObject();
-            // no new state provided for the object, this is just committing the delete
-            if (isStagingEmpty()) {
-                return null;
+        try {
+            // Perform requested deletion of the object
+            if (objectDeleted) {
+                deleteExistingObject();
+                // no new state provided for the object, this is just committing the delete
+                if (isStagingEmpty()) {
+                    return null;
+                }
+                // new state exists, object is being recreated after delete
             }
-            // new state exists, object is being recreated after delete
-        }
 
-        // Determine if a new object needs to be created
-        if (isNewObject()) {
-            return commitNewObject(commitOption);
-        } else {
-            return commitUpdates(commitOption);
+            // Determine if a new object needs to be created
+            if (isNewObject()) {
+                return commitNewObject(commitOption);
+            } else {
+                return commitUpdates(commitOption);
+            }
+        } finally {
+            invalidateCommittedState();
+            // staged files have been moved into the object, or are removed with the staging path of the transaction
+            clearMemoryStaged();
+            clearFileStaged();
         }
     }
 
     private void deleteExistingObject() {
         ocflRepository.purgeObject(objectIdentifier);
+        invalidateCommittedState();
     }
 
     private String commitNewObject(final CommitOption commitOption) throws PersistentStorageException {
@@ -389,18 +705,22 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         }
 
         if (NEW_VERSION.equals(commitOption)) {
-            // perform commit to new version
-            return ocflRepository.putObject(ObjectVersionId.head(objectIdentifier),
-                    stagingPath,
-                    commitInfo,
-                    MOVE_SOURCE)
-                    .getVersionId()
-                    .toString();
+            if (memoryStaged.isEmpty()) {
+                // perform commit to new version
+                return ocflRepository.putObject(ObjectVersionId.head(objectIdentifier),
+                        stagingPath,
+                        commitInfo,
+                        MOVE_SOURCE)
+                        .getVersionId()
+                        .toString();
+            }
+            // files staged in memory have to be handed to an updater
+            return ocflRepository.updateObject(ObjectVersionId.head(objectIdentifier), commitInfo,
+                    this::addStagedFiles).getVersionId().toString();
         } else {
             // perform commit to head version
-            return ocflRepository.stageChanges(ObjectVersionId.head(objectIdentifier), commitInfo, updater -> {
-                updater.addPath(stagingPath, "", MOVE_SOURCE);
-            }).getVersionId().toString();
+            return ocflRepository.stageChanges(ObjectVersionId.head(objectIdentifier), commitInfo,
+                    this::addStagedFiles).getVersionId().toString();
         }
     }
 
@@ -414,9 +734,7 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
 
         // Updater which pushes all updated files and then performs queued deletes
         final Consumer<OcflObjectUpdater> commitChangeUpdater = updater -> {
-            if (!isStagingEmpty()) {
-                updater.addPath(stagingPath, "", MOVE_SOURCE, OVERWRITE);
-            }
+            addStagedFiles(updater, OVERWRITE);
             deletePaths.forEach(updater::removeFile);
         };
 
@@ -461,26 +779,25 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     public List<OCFLVersion> listVersions() throws PersistentStorageException {
         assertSessionOpen();
         //get a list of all versions in the object.
-        try {
-            return this.ocflRepository.describeObject(this.objectIdentifier)
-                    .getVersionMap().values().stream()
-                    // do not include mutable versions
-                    .filter(version -> !version.isMutable())
-                    // do not include empty v1s, they were likely created as a mutable HEAD placeholder
-                    .filter(version -> !(VersionId.V1.equals(version.getVersionId()) && version.getFiles().isEmpty()))
-                    .sorted(VERSION_COMPARATOR)
-                    .map(version -> {
-                        return new OCFLVersionImpl()
-                                .setOcflObjectId(version.getObjectId())
-                                .setOcflVersionId(version.getVersionId().toString())
-                                .setCreatedBy(getCreatedBy(version.getCommitInfo()))
-                                .setCreated(toMementoInstant(version.getCreated()));
-                    }).collect(Collectors.toList());
-        } catch (final NotFoundException e) {
+        final var details = describeObject();
+        if (details == null) {
             throw new PersistentItemNotFoundException(format(
                     "Could not list versions, object %s was not found.",
-                    objectIdentifier), e);
+                    objectIdentifier));
         }
+        return details.getVersionMap().values().stream()
+                // do not include mutable versions
+                .filter(version -> !version.isMutable())
+                // do not include empty v1s, they were likely created as a mutable HEAD placeholder
+                .filter(version -> !(VersionId.V1.equals(version.getVersionId()) && version.getFiles().isEmpty()))
+                .sorted(VERSION_COMPARATOR)
+                .map(version -> {
+                    return new OCFLVersionImpl()
+                            .setOcflObjectId(version.getObjectId())
+                            .setOcflVersionId(version.getVersionId().toString())
+                            .setCreatedBy(getCreatedBy(version.getCommitInfo()))
+                            .setCreated(toMementoInstant(version.getCreated()));
+                }).collect(Collectors.toList());
     }
 
     @Override
@@ -493,8 +810,14 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
 
         final var encodedSubpath = encode(subpath);
 
+        final var details = describeObject();
+        if (details == null) {
+            throw new PersistentItemNotFoundException(format(
+                    "Could not list versions, object %s subpath %s was not found.",
+                    objectIdentifier, subpath));
+        }
         try {
-            final var headDesc = ocflRepository.describeVersion(ObjectVersionId.head(objectIdentifier));
+            final var headDesc = details.getHeadVersion();
 
             return ocflRepository.fileChangeHistory(objectIdentifier, encodedSubpath).getFileChanges().stream()
                     .filter(change -> change.getChangeType() == FileChangeType.UPDATE)
@@ -518,7 +841,11 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
     public Stream<String> listHeadSubpaths() throws PersistentStorageException {
         assertSessionOpen();
 
-        return this.ocflRepository.describeVersion(ObjectVersionId.head(this.objectIdentifier))
+        final var details = describeObject();
+        if (details == null) {
+            throw new PersistentItemNotFoundException(format("Object %s was not found.", objectIdentifier));
+        }
+        return details.getHeadVersion()
                 .getFiles().stream()
                 .map(FileDetails::getPath)
                 .map(this::decode);
@@ -537,16 +864,36 @@ public class DefaultOCFLObjectSession implements OCFLObjectSession {
         }
     }
 
+    /**
+     * Add the files staged on disk and in memory to the object
+     *
+     * @param updater updater of the object
+     * @param options options for adding the files
+     */
+    private void addStagedFiles(final OcflObjectUpdater updater, final OcflOption... options) {
+        if (!isStagingDirEmpty()) {
+            final var pathOptions = Arrays.copyOf(options, options.length + 1);
+            pathOptions[options.length] = MOVE_SOURCE;
+            updater.addPath(stagingPath, "", pathOptions);
+        }
+        memoryStaged.forEach((subpath, content) ->
+                updater.writeFile(new ByteArrayInputStream(content), subpath, options));
+    }
+
     private boolean isStagingEmpty() {
+        return memoryStaged.isEmpty() && isStagingDirEmpty();
+    }
+
+    private boolean isStagingDirEmpty() {
         return !stagingPath.toFile().exists() || Objects.requireNonNull(stagingPath.toFile().listFiles()).length == 0;
     }
 
-    private boolean hasStagedChanges(final Path path) {
-        return path.toFile().exists();
+    private boolean hasStagedFile(final String encodedSubpath) {
+        return fileStaged.containsKey(encodedSubpath);
     }
 
     private boolean isNewObject() {
-        return !ocflRepository.containsObject(objectIdentifier);
+        return describeObject() == null;
     }
 
     private Path resolveStagedPath(final String encodedSubpath) {
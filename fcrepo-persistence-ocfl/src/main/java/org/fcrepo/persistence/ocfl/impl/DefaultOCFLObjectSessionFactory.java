@@ -21,8 +21,12 @@ import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
 import static org.fcrepo.persistence.api.CommitOption.UNVERSIONED;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 
+import org.apache.commons.io.FileUtils;
 import org.fcrepo.persistence.api.CommitOption;
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
 
@@ -54,6 +58,10 @@ public class DefaultOCFLObjectSessionFactory implements OCFLObjectSessionFactory
 
     private File ocflStagingDir;
 
+    private final StagingMemory stagingMemory;
+
+    private final Path ocflStorageRoot;
+
     @Inject
     private MutableOcflRepository ocflRepository;
 
@@ -77,6 +85,10 @@ public class DefaultOCFLObjectSessionFactory implements OCFLObjectSessionFactory
 
         ocflStagingDir.mkdirs();
         this.ocflStagingDir = ocflStagingDir;
+        final var ocflConstants = new OCFLConstants();
+        this.stagingMemory = new StagingMemory(ocflConstants.getStagingMemoryThreshold(),
+                ocflConstants.getStagingMemorySessionMax(), ocflConstants.getStagingMemoryMax());
+        this.ocflStorageRoot = ocflConstants.getStorageRootDir().toPath();
     }
 
     @Override
@@ -84,8 +96,31 @@ public class DefaultOCFLObjectSessionFactory implements OCFLObjectSessionFactory
 
         final File stagingDirectory = new File(this.ocflStagingDir,
                 persistentStorageSessionId == null ? "read-only" : persistentStorageSessionId);
+        // the read-only object sessions outlive commits by other sessions, so only transactions keep the committed
+        // state of their objects
         return new DefaultOCFLObjectSession(ocflId, stagingDirectory.toPath(),
-                this.ocflRepository, defaultCommitOption());
+                this.ocflRepository, defaultCommitOption(), persistentStorageSessionId != null,
+                this.stagingMemory, this.ocflStorageRoot);
+    }
+
+    @Override
+    public void cleanupStaging(final String persistentStorageSessionId) throws PersistentStorageException {
+        if (persistentStorageSessionId == null) {
+            // the read-only staging directory is shared and never holds changes
+            return;
+        }
+        final File stagingDirectory = new File(this.ocflStagingDir, persistentStorageSessionId);
+        try {
+            FileUtils.deleteDirectory(stagingDirectory);
+        } catch (final IOException e) {
+            throw new PersistentStorageException("Unable to remove staging directory " + stagingDirectory, e);
+        }
+    }
+
+    @Override
+    public long getStagedBytes() {
+        // the sessions count the files they stage on disk as well as the files they keep in memory until they commit
+        return this.stagingMemory.getStagedFileBytes() + this.stagingMemory.getStagedBytes();
     }
 
     private CommitOption defaultCommitOption() {
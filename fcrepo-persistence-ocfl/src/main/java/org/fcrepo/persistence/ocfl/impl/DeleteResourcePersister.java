@@ -19,6 +19,7 @@ package org.fcrepo.persistence.ocfl.impl;
 
 import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
 import static org.fcrepo.kernel.api.operations.ResourceOperationType.DELETE;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.deleteRdf;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.isSidecarSubpath;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.relativizeSubpath;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveExtensions;
@@ -108,7 +109,11 @@ class DeleteResourcePersister extends AbstractPersister {
     private void deletePath(final String path, final OCFLObjectSession session, final ResourceHeadersImpl headers,
                             final String user, final Instant deleteTime)
         throws PersistentStorageException {
-        session.delete(path);
+        if (Objects.equals(NON_RDF_SOURCE.toString(), headers.getInteractionModel())) {
+            session.delete(path);
+        } else {
+            deleteRdf(session, path);
+        }
         headers.setDeleted(true);
         ResourceHeaderUtils.touchModificationHeaders(headers, user, deleteTime);
         // readHeaders and writeHeaders need the subpath where as delete needs the file name. So remove any extensions.
@@ -17,6 +17,8 @@
  */
 package org.fcrepo.persistence.ocfl.impl;
 
+import java.util.Objects;
+
 import static org.apache.commons.lang3.builder.ToStringBuilder.reflectionToString;
 
 /**
@@ -54,6 +56,24 @@ public class FedoraOCFLMapping {
         return ocflObjectId;
     }
 
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FedoraOCFLMapping)) {
+            return false;
+        }
+        final FedoraOCFLMapping that = (FedoraOCFLMapping) o;
+        return Objects.equals(rootObjectIdentifier, that.rootObjectIdentifier) &&
+                Objects.equals(ocflObjectId, that.ocflObjectId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(rootObjectIdentifier, ocflObjectId);
+    }
+
     @Override
     public String toString() {
         return reflectionToString(this);
@@ -17,23 +17,46 @@
  */
 package org.fcrepo.persistence.ocfl.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Streams;
+import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedWriter;
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.sql.DataSource;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.util.Collections;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 /**
- * An simple in-memory implementation of the {@link org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex}
+ * A database backed implementation of the {@link org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex}. The
+ * mappings are kept in a table of the index database, with a bounded cache of recently used mappings in front of it,
+ * so heap usage and start-up time do not grow with the size of the repository.
  *
  * @author dbernstein
  * @since 6.0.0
@@ -43,38 +66,125 @@ public class FedoraToOCFLObjectIndexImpl implements FedoraToOCFLObjectIndex {
 
     private static Logger LOGGER = LoggerFactory.getLogger(FedoraToOCFLObjectIndexImpl.class);
 
-    private Map<String, FedoraOCFLMapping> fedoraOCFLMappingMap = Collections.synchronizedMap(new HashMap<>());
+    /**
+     * System property for the number of mappings to cache.
+     */
+    public static final String MAPPING_CACHE_SIZE_PROPERTY = "fcrepo.ocfl.index.mapping.cache.size";
+
+    private static final long DEFAULT_MAPPING_CACHE_SIZE = 100000;
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String MAPPING_TABLE = "ocfl_id_map";
+
+    private static final String FEDORA_ID_COLUMN = "fedora_id";
+
+    private static final String FEDORA_ROOT_ID_COLUMN = "fedora_root_id";
+
+    private static final String OCFL_ID_COLUMN = "ocfl_id";
+
+    private static final String MAPPING_TABLE_DDL = "CREATE TABLE IF NOT EXISTS " + MAPPING_TABLE + " (" +
+            FEDORA_ID_COLUMN + " varchar(65535) PRIMARY KEY, " + FEDORA_ROOT_ID_COLUMN + " varchar(65535) NOT NULL, " +
+            OCFL_ID_COLUMN + " varchar(65535) NOT NULL)";
+
+    private static final String MAPPING_TABLE_OCFL_ID_IDX = "ocfl_id_map_ocfl_id_idx";
+
+    /**
+     * Create an index to find the mappings of an OCFL object.
+     */
+    private static final String MAPPING_TABLE_INDEX_DDL = "CREATE INDEX IF NOT EXISTS " + MAPPING_TABLE_OCFL_ID_IDX +
+            " ON " + MAPPING_TABLE + " (" + OCFL_ID_COLUMN + ")";
+
+    private static final String SELECT_MAPPING = "SELECT " + FEDORA_ROOT_ID_COLUMN + ", " + OCFL_ID_COLUMN +
+            " FROM " + MAPPING_TABLE + " WHERE " + FEDORA_ID_COLUMN + " = :fedoraId";
+
+    /**
+     * Select a page of mappings in identifier order, starting after the last mapping of the previous page.
+     */
+    private static final String SELECT_MAPPING_PAGE = "SELECT " + FEDORA_ID_COLUMN + ", " + FEDORA_ROOT_ID_COLUMN +
+            ", " + OCFL_ID_COLUMN + " FROM " + MAPPING_TABLE + " WHERE " + FEDORA_ID_COLUMN + " > :after ORDER BY " +
+            FEDORA_ID_COLUMN + " LIMIT :limit";
+
+    private static final String COUNT_MAPPINGS = "SELECT " + OCFL_ID_COLUMN + ", COUNT(*) AS mappings FROM " +
+            MAPPING_TABLE + " WHERE " + OCFL_ID_COLUMN + " IN (:ocflIds) GROUP BY " + OCFL_ID_COLUMN;
+
+    private static final String SELECT_ANY = "SELECT " + FEDORA_ID_COLUMN + " FROM " + MAPPING_TABLE + " LIMIT 1";
+
+    private static final String INSERT_MAPPING = "INSERT INTO " + MAPPING_TABLE + " (" + FEDORA_ID_COLUMN + ", " +
+            FEDORA_ROOT_ID_COLUMN + ", " + OCFL_ID_COLUMN + ") VALUES (:fedoraId, :fedoraRootId, :ocflId)";
+
+    private static final String MERGE_MAPPING = "MERGE INTO " + MAPPING_TABLE + " (" + FEDORA_ID_COLUMN + ", " +
+            FEDORA_ROOT_ID_COLUMN + ", " + OCFL_ID_COLUMN + ") KEY (" + FEDORA_ID_COLUMN +
+            ") VALUES (:fedoraId, :fedoraRootId, :ocflId)";
+
+    private static final String DELETE_MAPPING = "DELETE FROM " + MAPPING_TABLE + " WHERE " + FEDORA_ID_COLUMN +
+            " = :fedoraId";
 
-    private final File fedoraToOcflIndexFile;
+    private static final String TRUNCATE_MAPPINGS = "TRUNCATE TABLE " + MAPPING_TABLE;
+
+    @Inject
+    private DataSource dataSource;
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private Cache<String, FedoraOCFLMapping> mappingCache;
+
+    /**
+     * Incremented after every write to the mapping table, so that a lookup which overlapped a write is not cached.
+     */
+    private final AtomicLong writes = new AtomicLong();
+
+    @PostConstruct
+    private void setup() {
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        jdbcTemplate.update(MAPPING_TABLE_DDL, new MapSqlParameterSource());
+        jdbcTemplate.update(MAPPING_TABLE_INDEX_DDL, new MapSqlParameterSource());
+        mappingCache = CacheBuilder.newBuilder()
+                .maximumSize(Long.getLong(MAPPING_CACHE_SIZE_PROPERTY, DEFAULT_MAPPING_CACHE_SIZE))
+                .recordStats()
+                .build();
+        importIndexFile(new OCFLConstants().getFedoraToOCFLIndexFile());
+    }
 
     /**
-     * Constructor.
+     * Import the tab-separated index file written by earlier versions, then rename it with an ".imported" suffix
+     * so it is not imported again but is kept in case the import has to be repeated.
      *
-     * On disk index file is a text file with 3 values per line separated by tabs.
+     * The file has 3 values per line separated by tabs.
      * 1. fedora identifier (ie. info:fedora/parent/object1 or info:fedora/object1)
      * 2. fedora root object ID (ie. info:fedora/parent or info:fedora/object1). Used for root of Archival groups.
      * 3. OCFL object ID (ie. parent/object1 or object1)
+     * Later lines replace earlier ones. Lines without exactly 3 values are ignored with a warning.
      *
-     * @throws IOException If we can't access the file.
+     * @param indexFile the index file
      */
-    public FedoraToOCFLObjectIndexImpl() throws IOException {
-        fedoraToOcflIndexFile = new OCFLConstants().getFedoraToOCFLIndexFile();
-        if (fedoraToOcflIndexFile.exists() && fedoraToOcflIndexFile.canRead()) {
-            try (var lines = Files.lines(fedoraToOcflIndexFile.toPath())) {
-               lines.filter(l -> {
-                    final String m = l.split("\t")[0];
-                    return (!fedoraOCFLMappingMap.containsKey(m));
-                }).forEach(l -> {
-                    final String[] map = l.split("\t");
-                    if (map.length == 3) {
-                        final FedoraOCFLMapping ocflMapping = new FedoraOCFLMapping(map[1], map[2]);
-                        fedoraOCFLMappingMap.put(map[0], ocflMapping);
-                    } else {
-                        LOGGER.warn("Expected 3 tab-separated values, found {}. Ignoring line.", map.length);
-                    }
-                });
-            }
+    private void importIndexFile(final File indexFile) {
+        if (!indexFile.exists() || !indexFile.canRead()) {
+            return;
+        }
+        LOGGER.info("Importing Fedora to OCFL mappings from {}", indexFile);
+        final Map<String, FedoraOCFLMapping> mappings = new LinkedHashMap<>();
+        try (var lines = Files.lines(indexFile.toPath())) {
+            lines.forEach(l -> {
+                final String[] map = l.split("\t");
+                if (map.length == 3) {
+                    mappings.put(map[0], new FedoraOCFLMapping(map[1], map[2]));
+                } else {
+                    LOGGER.warn("Expected 3 tab-separated values, found {}. Ignoring line.", map.length);
+                }
+            });
+        } catch (final IOException e) {
+            throw new RepositoryRuntimeException("Unable to import Fedora to OCFL mappings from " + indexFile, e);
         }
+        addMappings(mappings);
+        final Path imported = indexFile.toPath().resolveSibling(indexFile.getName() + ".imported");
+        try {
+            Files.move(indexFile.toPath(), imported, REPLACE_EXISTING);
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to rename imported Fedora to OCFL index file {} to {}: {}", indexFile, imported,
+                    e.getMessage());
+        }
+        LOGGER.info("Imported {} Fedora to OCFL mappings", mappings.size());
     }
 
     @Override
@@ -82,7 +192,7 @@ public class FedoraToOCFLObjectIndexImpl implements FedoraToOCFLObjectIndex {
             throws FedoraOCFLMappingNotFoundException {
 
         LOGGER.debug("getting {}", fedoraResourceIdentifier);
-        final FedoraOCFLMapping m = fedoraOCFLMappingMap.get(fedoraResourceIdentifier);
+        final FedoraOCFLMapping m = findMapping(fedoraResourceIdentifier);
         if (m == null) {
             throw new FedoraOCFLMappingNotFoundException(fedoraResourceIdentifier);
         }
@@ -90,54 +200,178 @@ public class FedoraToOCFLObjectIndexImpl implements FedoraToOCFLObjectIndex {
         return m;
     }
 
+    /**
+     * Find a mapping, from the cache if possible. A mapping read while the table was being written is not left in
+     * the cache, as it may be the one the write replaced.
+     * @param fedoraResourceIdentifier the fedora resource identifier
+     * @return the mapping or null if there is none
+     */
+    private FedoraOCFLMapping findMapping(final String fedoraResourceIdentifier) {
+        final FedoraOCFLMapping cached = mappingCache.getIfPresent(fedoraResourceIdentifier);
+        if (cached != null) {
+            return cached;
+        }
+        final long loadWrites = writes.get();
+        final List<FedoraOCFLMapping> found = jdbcTemplate.query(SELECT_MAPPING,
+                new MapSqlParameterSource("fedoraId", fedoraResourceIdentifier),
+                (rs, rowNum) -> new FedoraOCFLMapping(rs.getString(FEDORA_ROOT_ID_COLUMN),
+                        rs.getString(OCFL_ID_COLUMN)));
+        if (found.isEmpty()) {
+            return null;
+        }
+        mappingCache.put(fedoraResourceIdentifier, found.get(0));
+        if (writes.get() != loadWrites) {
+            mappingCache.invalidate(fedoraResourceIdentifier);
+        }
+        return found.get(0);
+    }
+
     @Override
     public FedoraOCFLMapping addMapping(final String fedoraResourceIdentifier,
                                         final String fedoraRootObjectResourceId,
                                         final String ocflObjectId) {
-        FedoraOCFLMapping mapping = fedoraOCFLMappingMap.get(fedoraRootObjectResourceId);
+        FedoraOCFLMapping mapping = findMapping(fedoraRootObjectResourceId);
 
         if (mapping == null) {
             mapping = new FedoraOCFLMapping(fedoraRootObjectResourceId, ocflObjectId);
-            fedoraOCFLMappingMap.put(fedoraRootObjectResourceId, mapping);
-            writeMappingToDisk(fedoraRootObjectResourceId, mapping);
+            try {
+                jdbcTemplate.update(INSERT_MAPPING, toParameterSource(fedoraRootObjectResourceId, mapping));
+                writes.incrementAndGet();
+                mappingCache.put(fedoraRootObjectResourceId, mapping);
+            } catch (final DuplicateKeyException e) {
+                // another thread added the root mapping at the same time, use theirs
+                mappingCache.invalidate(fedoraRootObjectResourceId);
+                mapping = findMapping(fedoraRootObjectResourceId);
+            }
         }
 
         if (!fedoraResourceIdentifier.equals(fedoraRootObjectResourceId)) {
-            fedoraOCFLMappingMap.put(fedoraResourceIdentifier, mapping);
-            writeMappingToDisk(fedoraResourceIdentifier, mapping);
+            writeMapping(fedoraResourceIdentifier, mapping);
         }
 
         LOGGER.debug("added mapping {} for {}", mapping, fedoraResourceIdentifier);
         return mapping;
     }
 
-    /**
-     * Write any added mappings to the on-disk index.
-     * @param fedoraId The internal Fedora identifier.
-     * @param fedoraOCFLMapping The Fedora to OCFL mapping object.
-     */
-    private void writeMappingToDisk(final String fedoraId, final FedoraOCFLMapping fedoraOCFLMapping) {
-        try {
-            if (!fedoraToOcflIndexFile.exists()) {
-                final File dir = fedoraToOcflIndexFile.getParentFile();
-                if (!dir.exists()) {
-                    dir.mkdirs();
+    @Override
+    public void addMappings(final Map<String, FedoraOCFLMapping> mappings) {
+        for (final var page : Lists.partition(new ArrayList<>(mappings.entrySet()), PAGE_SIZE)) {
+            jdbcTemplate.batchUpdate(MERGE_MAPPING, page.stream()
+                    .map(e -> toParameterSource(e.getKey(), e.getValue()))
+                    .toArray(SqlParameterSource[]::new));
+        }
+        writes.incrementAndGet();
+        mappingCache.invalidateAll(mappings.keySet());
+    }
+
+    private void writeMapping(final String fedoraId, final FedoraOCFLMapping mapping) {
+        jdbcTemplate.update(MERGE_MAPPING, toParameterSource(fedoraId, mapping));
+        writes.incrementAndGet();
+        mappingCache.put(fedoraId, mapping);
+    }
+
+    private static SqlParameterSource toParameterSource(final String fedoraId, final FedoraOCFLMapping mapping) {
+        return new MapSqlParameterSource()
+                .addValue("fedoraId", fedoraId)
+                .addValue("fedoraRootId", mapping.getRootObjectIdentifier())
+                .addValue("ocflId", mapping.getOcflObjectId());
+    }
+
+    @Override
+    public void removeMapping(final String fedoraResourceIdentifier) {
+        jdbcTemplate.update(DELETE_MAPPING, new MapSqlParameterSource("fedoraId", fedoraResourceIdentifier));
+        writes.incrementAndGet();
+        mappingCache.invalidate(fedoraResourceIdentifier);
+        LOGGER.debug("removed mapping for {}", fedoraResourceIdentifier);
+    }
+
+    @Override
+    public void removeMappings(final Collection<String> fedoraResourceIdentifiers) {
+        for (final var page : Lists.partition(new ArrayList<>(fedoraResourceIdentifiers), PAGE_SIZE)) {
+            jdbcTemplate.batchUpdate(DELETE_MAPPING, page.stream()
+                    .map(fedoraId -> new MapSqlParameterSource("fedoraId", fedoraId))
+                    .toArray(SqlParameterSource[]::new));
+        }
+        writes.incrementAndGet();
+        mappingCache.invalidateAll(fedoraResourceIdentifiers);
+    }
+
+    @Override
+    public Map<String, Integer> countMappings(final Collection<String> ocflObjectIds) {
+        final Map<String, Integer> counts = new HashMap<>();
+        for (final var page : Lists.partition(new ArrayList<>(ocflObjectIds), PAGE_SIZE)) {
+            jdbcTemplate.query(COUNT_MAPPINGS, new MapSqlParameterSource("ocflIds", page),
+                    rs -> {
+                        counts.put(rs.getString(OCFL_ID_COLUMN), rs.getInt("mappings"));
+                    });
+        }
+        return counts;
+    }
+
+    @Override
+    public Stream<Map.Entry<String, FedoraOCFLMapping>> getMappings() {
+        final Iterator<Map.Entry<String, FedoraOCFLMapping>> pages = new AbstractIterator<>() {
+
+            private Iterator<Map.Entry<String, FedoraOCFLMapping>> page;
+
+            private String after = "";
+
+            private boolean lastPage = false;
+
+            @Override
+            protected Map.Entry<String, FedoraOCFLMapping> computeNext() {
+                if ((page == null || !page.hasNext()) && !lastPage) {
+                    final var parameterSource = new MapSqlParameterSource()
+                            .addValue("after", after)
+                            .addValue("limit", PAGE_SIZE);
+                    final List<Map.Entry<String, FedoraOCFLMapping>> mappings = jdbcTemplate.query(
+                            SELECT_MAPPING_PAGE, parameterSource, (rs, rowNum) -> Map.entry(
+                                    rs.getString(FEDORA_ID_COLUMN), new FedoraOCFLMapping(
+                                            rs.getString(FEDORA_ROOT_ID_COLUMN), rs.getString(OCFL_ID_COLUMN))));
+                    lastPage = mappings.size() < PAGE_SIZE;
+                    if (!mappings.isEmpty()) {
+                        after = mappings.get(mappings.size() - 1).getKey();
+                    }
+                    page = mappings.iterator();
                 }
+                return page.hasNext() ? page.next() : endOfData();
             }
-            try (var fw = new FileWriter(fedoraToOcflIndexFile, true); var output= new BufferedWriter(fw)) {
-                output.write(String.format("%s\t%s\t%s\n", fedoraId, fedoraOCFLMapping.getRootObjectIdentifier(),
-                        fedoraOCFLMapping.getOcflObjectId()));
-            }
-        } catch (IOException exception) {
-            LOGGER.warn("Unable to create/write on disk FedoraToOCFL Mapping at {}", fedoraToOcflIndexFile);
-        }
+        };
+        return Streams.stream(pages);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList(SELECT_ANY, new MapSqlParameterSource(), String.class).isEmpty();
     }
 
     @Override
     public void reset() {
-        fedoraOCFLMappingMap.clear();
-        if (fedoraToOcflIndexFile.exists()) {
-            fedoraToOcflIndexFile.delete();
-        }
+        jdbcTemplate.update(TRUNCATE_MAPPINGS, new MapSqlParameterSource());
+        writes.incrementAndGet();
+        mappingCache.invalidateAll();
+    }
+
+    /**
+     * @return statistics for the cache of mappings
+     */
+    public CacheStats getMappingCacheStats() {
+        return mappingCache.stats();
+    }
+
+    /**
+     * Get the DataSource
+     * @return the DataSource
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Set the DataSource
+     * @param dataSource the DataSource
+     */
+    public void setDataSource(final DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream over a byte range of a file. The range is read with positioned reads on a {@link FileChannel}, so
+ * opening a range costs the same wherever it starts in the file.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+class FileRangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+
+    private long position;
+
+    // offset after the last byte of the range
+    private final long limit;
+
+    /**
+     * Constructor
+     *
+     * @param path the file
+     * @param start offset of the first byte of the range
+     * @param end offset of the last byte of the range, inclusive. -1 reads to the end of the file.
+     * @throws IOException if the file cannot be opened
+     */
+    FileRangeInputStream(final Path path, final long start, final long end) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        final long size = channel.size();
+        this.limit = end < 0 ? size : Math.min(end + 1, size);
+        this.position = Math.min(start, limit);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final var b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= limit) {
+            return -1;
+        }
+        final var buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, limit - position));
+        final int read = channel.read(buffer, position);
+        if (read < 0) {
+            return -1;
+        }
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) {
+        final long skipped = Math.max(0, Math.min(n, limit - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(limit - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
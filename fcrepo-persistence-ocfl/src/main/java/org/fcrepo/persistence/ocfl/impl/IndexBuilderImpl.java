@@ -19,7 +19,6 @@ package org.fcrepo.persistence.ocfl.impl;
 
 import edu.wisc.library.ocfl.api.OcflRepository;
 import org.fcrepo.kernel.api.ContainmentIndex;
-import org.fcrepo.kernel.api.TransactionManager;
 import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
@@ -30,11 +29,35 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
 
 import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.deserializeHeaders;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.isSidecarSubpath;
@@ -45,6 +68,17 @@ import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.isSide
  * 1) the link between a {@link org.fcrepo.kernel.api.identifiers.FedoraId} and an OCFL object identifier
  * 2) the containment relationships bewteen {@link org.fcrepo.kernel.api.identifiers.FedoraId}s
  *
+ * Objects are read in parallel, and the containment relationships of each batch of objects are written to the
+ * index together, outside of any transaction. Progress is logged periodically.
+ *
+ * A reconciliation brings the index up to date without resetting it. It records the head version and the inventory
+ * stamp of each OCFL object in {@link IndexCheckpoints}. A single walk of the storage root finds the objects whose
+ * inventories changed since, and only those objects are read.
+ *
+ * The state is also written to an {@link IndexSnapshot} periodically and at shutdown. A rebuild restores objects from
+ * the snapshot unless their inventory in storage was modified after it, and only reads the remaining objects from
+ * storage.
+ *
  * @author dbernstein
  * @since 6.0.0
  */
@@ -53,6 +87,12 @@ public class IndexBuilderImpl implements IndexBuilder {
 
     private static Logger LOGGER = LoggerFactory.getLogger(IndexBuilderImpl.class);
 
+    private static final Duration SNAPSHOT_MARGIN = Duration.ofMinutes(1);
+
+    private static final int SNAPSHOT_BATCH_SIZE = 1000;
+
+    private static final long PROGRESS_INTERVAL_SECONDS = 30;
+
     @Inject
     private OCFLObjectSessionFactory objectSessionFactory;
 
@@ -63,86 +103,499 @@ public class IndexBuilderImpl implements IndexBuilder {
     private ContainmentIndex containmentIndex;
 
     @Inject
-    private TransactionManager transactionManager;
+    private OcflRepository ocflRepository;
 
     @Inject
-    private OcflRepository ocflRepository;
+    private OCFLConstants ocflConstants;
+
+    private ScheduledExecutorService snapshotExecutor;
+
+    /**
+     * Start writing index snapshots periodically.
+     */
+    @PostConstruct
+    public void startSnapshots() {
+        final long interval = ocflConstants.getIndexSnapshotIntervalMillis();
+        if (interval > 0) {
+            snapshotExecutor = Executors.newSingleThreadScheduledExecutor(daemonThreads("index-snapshot"));
+            snapshotExecutor.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the periodic snapshots and write a final snapshot, so the next start-up can restore it.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
+        }
+        snapshotQuietly();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (final RepositoryRuntimeException e) {
+            LOGGER.warn(e.getMessage());
+        }
+    }
 
     @Override
-    public void rebuild() {
+    public synchronized void rebuild() {
 
         LOGGER.info("Initiating index rebuild.");
+        var snapshot = readSnapshot();
+        Set<String> changed = Set.of();
+        if (snapshot != null) {
+            changed = findChangedSince(snapshot);
+            if (changed == null) {
+                snapshot = null;
+            }
+        }
         fedoraToOCFLObjectIndex.reset();
-        final var transaction = transactionManager.create();
-        final var txId = transaction.getId();
-        LOGGER.debug("Reading object ids...");
+        // the checkpoints describe the index being replaced
+        deleteCheckpoints();
+        final var restorable = snapshot;
+        final var changedSinceSnapshot = changed;
+        final var progress = new RebuildProgress(snapshot == null ? 0 :
+                snapshot.size() + changed.stream().filter(id -> restorable.getEntries(id) == null).count(),
+                "restored from snapshot");
+        processObjects("rebuild", progress, (batch, p) -> rebuildBatch(batch, restorable, changedSinceSnapshot, p));
+        LOGGER.info("Index rebuild complete: {}", progress);
+    }
+
+    @Override
+    public synchronized void reconcile() {
+
+        final var file = ocflConstants.getIndexCheckpointFile();
+        LOGGER.info("Initiating index reconciliation against checkpoints in {}", file);
+        try (final var checkpoints = IndexCheckpoints.open(file)) {
+            final Set<String> unseen = ConcurrentHashMap.newKeySet();
+            unseen.addAll(checkpoints.getObjectIds());
+            final var changedInStorage = findChangedInStorage(checkpoints);
+            final long newObjects = changedInStorage == null ? 0 :
+                    changedInStorage.keySet().stream().filter(id -> checkpoints.get(id) == null).count();
+            final var progress = new RebuildProgress(unseen.size() + newObjects, "unchanged");
+            processObjects("reconciliation", progress,
+                    (batch, p) -> reconcileBatch(batch, checkpoints, changedInStorage, unseen, p));
+
+            // objects which were removed from storage
+            final var removedMappings = new ArrayList<String>();
+            for (final var ocflId : unseen) {
+                LOGGER.debug("Removing index entries of {}, which is no longer in storage", ocflId);
+                removedMappings.addAll(checkpoints.get(ocflId).getFedoraIds());
+            }
+            fedoraToOCFLObjectIndex.removeMappings(removedMappings);
+            containmentIndex.removeResources(null, removedMappings.stream().map(FedoraId::create).collect(toList()));
+            for (final var ocflId : unseen) {
+                checkpoints.remove(ocflId);
+            }
+            checkpoints.compact();
+            LOGGER.info("Index reconciliation complete: {}, {} objects removed", progress, unseen.size());
+        } catch (final IOException e) {
+            throw new RepositoryRuntimeException("Failed to record index checkpoints in " + file + ": " +
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Process every object in the OCFL repository, a batch at a time, on a pool of worker threads.
+     * Processing stops at the first batch which fails.
+     * @param operation the name of the operation, for logging
+     * @param progress records the objects processed
+     * @param batchProcessor processes a batch of OCFL object IDs and records them in the progress
+     */
+    private void processObjects(final String operation, final RebuildProgress progress,
+                                final BiConsumer<List<String>, RebuildProgress> batchProcessor) {
+        final int threads = ocflConstants.getIndexRebuildThreads();
+        final int batchSize = ocflConstants.getIndexRebuildBatchSize();
+        LOGGER.info("Index {} using {} threads", operation, threads);
+        // the queue is bounded so object ids are only read from storage as fast as they are processed
+        final var workers = new ThreadPoolExecutor(threads, threads, 0L, MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * threads), daemonThreads("index-" + operation),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        final var reporter = Executors.newSingleThreadScheduledExecutor(daemonThreads("index-progress"));
+        reporter.scheduleAtFixedRate(() -> LOGGER.info("Index {} progress: {}", operation, progress),
+                PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, SECONDS);
 
         try (final var ocflIds = ocflRepository.listObjectIds()) {
-            ocflIds.forEach(ocflId -> {
-                LOGGER.debug("Reading {}", ocflId);
-                final var objSession = objectSessionFactory.create(ocflId, null);
-
-                //list all the subpaths
-                try (final var subpaths = objSession.listHeadSubpaths()) {
-
-                    final var rootId = new AtomicReference<String>();
-                    final var fedoraIds = new ArrayList<String>();
-
-                    subpaths.forEach(subpath -> {
-                        if (isSidecarSubpath(subpath)) {
-                            //we're only interested in sidecar subpaths
-                            try {
-                                final var headers = deserializeHeaders(objSession.read(subpath));
-                                final var fedoraId = FedoraId.create(headers.getId());
-                                fedoraIds.add(fedoraId.getFullId());
-                                if (headers.isArchivalGroup() || headers.isObjectRoot()) {
-                                    rootId.set(headers.getId());
-                                }
+            final var batches = new LinkedList<Future<?>>();
+            final var iterator = ocflIds.iterator();
+            while (iterator.hasNext()) {
+                final var batch = new ArrayList<String>(batchSize);
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    batch.add(iterator.next());
+                }
+                batches.add(workers.submit(() -> batchProcessor.accept(batch, progress)));
+                // a failed batch stops the listing, instead of being found once all of storage was listed
+                final var pending = batches.iterator();
+                while (pending.hasNext()) {
+                    final var submitted = pending.next();
+                    if (submitted.isDone()) {
+                        submitted.get();
+                        pending.remove();
+                    }
+                }
+            }
+            for (final var batch : batches) {
+                batch.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryRuntimeException("Index " + operation + " interrupted", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RepositoryRuntimeException) {
+                throw (RepositoryRuntimeException) e.getCause();
+            }
+            throw new RepositoryRuntimeException("Index " + operation + " failed: " + e.getCause().getMessage(),
+                    e.getCause());
+        } finally {
+            workers.shutdownNow();
+            reporter.shutdownNow();
+        }
+    }
+
+    /**
+     * Index a batch of OCFL objects and write their mappings and containment relationships to the indexes together.
+     * @param ocflIds the OCFL object IDs
+     * @param snapshot the index snapshot, or null
+     * @param changed the OCFL object IDs which changed in storage since the snapshot
+     * @param progress the progress of the rebuild
+     */
+    private void rebuildBatch(final List<String> ocflIds, final IndexSnapshot snapshot, final Set<String> changed,
+                              final RebuildProgress progress) {
+        final var parents = new HashMap<FedoraId, FedoraId>();
+        final var mappings = new HashMap<String, FedoraOCFLMapping>();
+        long restored = 0;
+        for (final var ocflId : ocflIds) {
+            final var entries = snapshot == null ? null : snapshot.getEntries(ocflId);
+            if (entries != null && !changed.contains(ocflId)) {
+                restoreObject(ocflId, entries, mappings, parents);
+                restored++;
+            } else {
+                rebuildObject(ocflId, mappings, parents);
+            }
+        }
+        fedoraToOCFLObjectIndex.addMappings(mappings);
+        containmentIndex.addContainedBy(null, parents);
+        progress.add(restored, ocflIds.size() - restored);
+    }
+
+    /**
+     * Reconcile a batch of OCFL objects, reading only those whose inventories changed since their checkpoint or whose
+     * index entries are missing, and record their new checkpoints once the index is updated. If storage could not be
+     * scanned for changed inventories, the head version of each object is compared with its checkpoint instead.
+     * @param ocflIds the OCFL object IDs
+     * @param checkpoints the checkpoints
+     * @param changedInStorage the state of the objects whose inventories changed since their checkpoint, or null if
+     *                         storage could not be scanned
+     * @param unseen the OCFL object IDs with a checkpoint which have not been listed yet
+     * @param progress the progress of the reconciliation
+     */
+    private void reconcileBatch(final List<String> ocflIds, final IndexCheckpoints checkpoints,
+                                final Map<String, StorageChangeScanner.ObjectState> changedInStorage,
+                                final Set<String> unseen, final RebuildProgress progress) {
+        final var headVersions = new HashMap<String, String>();
+        final var unchanged = new ArrayList<IndexCheckpoints.Checkpoint>();
+        final var changed = new ArrayList<String>();
+        for (final var ocflId : ocflIds) {
+            unseen.remove(ocflId);
+            final var checkpoint = checkpoints.get(ocflId);
+            final boolean isUnchanged;
+            if (changedInStorage != null) {
+                // an object without a checkpoint is new, even if it was written after storage was scanned
+                isUnchanged = checkpoint != null && !changedInStorage.containsKey(ocflId);
+            } else {
+                final var headVersion = describeHeadVersion(ocflId);
+                headVersions.put(ocflId, headVersion);
+                isUnchanged = checkpoint != null && checkpoint.getHeadVersion().equals(headVersion);
+            }
+            if (isUnchanged) {
+                unchanged.add(checkpoint);
+            } else {
+                changed.add(ocflId);
+            }
+        }
+        // the object may be unchanged while the index lost track of it
+        changed.addAll(findIncomplete(unchanged));
+
+        final var mappings = new HashMap<String, FedoraOCFLMapping>();
+        final var parents = new HashMap<FedoraId, FedoraId>();
+        final var removed = new ArrayList<String>();
+        final var updated = new ArrayList<IndexCheckpoints.Checkpoint>();
+        for (final var ocflId : changed) {
+            LOGGER.debug("Reconciling {}", ocflId);
+            final var previous = checkpoints.get(ocflId);
+            // the version is read before the object, so a version written in between is found next time
+            final var headVersion = headVersions.containsKey(ocflId) ? headVersions.get(ocflId) :
+                    describeHeadVersion(ocflId);
+            final var fedoraIds = rebuildObject(ocflId, mappings, parents);
+            if (previous != null) {
+                final var current = new HashSet<>(fedoraIds);
+                for (final var fedoraId : previous.getFedoraIds()) {
+                    if (!current.contains(fedoraId)) {
+                        removed.add(fedoraId);
+                    }
+                }
+            }
+            final var state = changedInStorage == null ? null : changedInStorage.get(ocflId);
+            if (state != null) {
+                updated.add(new IndexCheckpoints.Checkpoint(ocflId, headVersion, state.getObjectRoot(),
+                        state.getInventoryStamp(), fedoraIds));
+            } else if (previous != null) {
+                updated.add(new IndexCheckpoints.Checkpoint(ocflId, headVersion, previous.getObjectRoot(),
+                        previous.getInventoryStamp(), fedoraIds));
+            } else {
+                // not seen in storage, so it is checked again by the next reconciliation
+                updated.add(new IndexCheckpoints.Checkpoint(ocflId, headVersion, "", "", fedoraIds));
+            }
+        }
+        fedoraToOCFLObjectIndex.removeMappings(removed);
+        fedoraToOCFLObjectIndex.addMappings(mappings);
+        containmentIndex.removeResources(null, removed.stream().map(FedoraId::create).collect(toList()));
+        containmentIndex.addContainedBy(null, parents);
+
+        try {
+            for (final var checkpoint : updated) {
+                checkpoints.record(checkpoint);
+            }
+            checkpoints.flush();
+        } catch (final IOException e) {
+            throw new RepositoryRuntimeException("Failed to record index checkpoints: " + e.getMessage(), e);
+        }
+        progress.add(ocflIds.size() - changed.size(), changed.size());
+    }
+
+    /**
+     * Find the objects whose fedora resources are missing from the fedora-to-ocfl index, or whose root resource is
+     * missing from the containment index. Both indexes are queried once for the whole batch.
+     * @param checkpoints the checkpoints of the objects
+     * @return the OCFL object IDs of the incomplete objects
+     */
+    private List<String> findIncomplete(final List<IndexCheckpoints.Checkpoint> checkpoints) {
+        final var incomplete = new ArrayList<String>();
+        if (checkpoints.isEmpty()) {
+            return incomplete;
+        }
+        final var mappingCounts = fedoraToOCFLObjectIndex.countMappings(checkpoints.stream()
+                .map(IndexCheckpoints.Checkpoint::getOcflObjectId).collect(toList()));
+        final var roots = new HashMap<String, String>();
+        for (final var checkpoint : checkpoints) {
+            final var fedoraIds = checkpoint.getFedoraIds();
+            final var ocflId = checkpoint.getOcflObjectId();
+            if (mappingCounts.getOrDefault(ocflId, 0) != fedoraIds.size()) {
+                incomplete.add(ocflId);
+            } else if (!fedoraIds.isEmpty() && !FedoraId.create(fedoraIds.get(0)).isRepositoryRoot()) {
+                roots.put(FedoraId.create(fedoraIds.get(0)).getFullId(), ocflId);
+            }
+        }
+        if (!roots.isEmpty()) {
+            final var contained = containmentIndex.getContainedBy(null,
+                    roots.keySet().stream().map(FedoraId::create).collect(toList()));
+            roots.forEach((rootId, ocflId) -> {
+                if (!contained.containsKey(rootId)) {
+                    incomplete.add(ocflId);
+                }
+            });
+        }
+        return incomplete;
+    }
+
+    private void deleteCheckpoints() {
+        final var file = ocflConstants.getIndexCheckpointFile();
+        if (file.exists() && !file.delete()) {
+            LOGGER.warn("Unable to delete index checkpoints at {}", file);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        final var count = new AtomicInteger();
+        return r -> {
+            final var thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public synchronized void snapshot() {
+        final var file = ocflConstants.getIndexSnapshotFile();
+        try (final var mappings = fedoraToOCFLObjectIndex.getMappings();
+             final var writer = IndexSnapshot.writer(file, Instant.now())) {
+            final var batch = new ArrayList<Map.Entry<String, FedoraOCFLMapping>>(SNAPSHOT_BATCH_SIZE);
+            final var iterator = mappings.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == SNAPSHOT_BATCH_SIZE || !iterator.hasNext()) {
+                    final var parents = containmentIndex.getContainedBy(null,
+                            batch.stream().map(m -> FedoraId.create(m.getKey())).collect(toList()));
+                    for (final var mapping : batch) {
+                        writer.add(new IndexSnapshot.Entry(mapping.getValue().getOcflObjectId(), mapping.getKey(),
+                                mapping.getValue().getRootObjectIdentifier(),
+                                parents.get(FedoraId.create(mapping.getKey()).getFullId())));
+                    }
+                    batch.clear();
+                }
+            }
+            LOGGER.info("Wrote index snapshot of {} resources to {}", writer.commit(), file);
+        } catch (final IOException e) {
+            throw new RepositoryRuntimeException("Failed to write index snapshot to " + file + ": " +
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the index snapshot, if there is a usable one.
+     * @return the snapshot or null
+     */
+    private IndexSnapshot readSnapshot() {
+        final var file = ocflConstants.getIndexSnapshotFile();
+        if (!file.exists()) {
+            LOGGER.info("No index snapshot found at {}. Reading all objects from storage.", file);
+            return null;
+        }
+        try {
+            final var snapshot = IndexSnapshot.read(file);
+            LOGGER.info("Read index snapshot of {} objects taken at {} from {}", snapshot.size(),
+                    snapshot.getCreated(), file);
+            return snapshot;
+        } catch (final IOException e) {
+            LOGGER.warn("Ignoring unusable index snapshot at {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read the head version of an OCFL object from its inventory.
+     * @param ocflId the OCFL object ID
+     * @return the head version ID
+     */
+    private String describeHeadVersion(final String ocflId) {
+        return ocflRepository.describeObject(ocflId).getHeadVersionId().toString();
+    }
+
+    /**
+     * Scan storage for the objects whose inventories changed since their checkpoints were recorded.
+     * @param checkpoints the checkpoints
+     * @return the current state of each changed object by OCFL object ID, or null if storage could not be scanned
+     */
+    private Map<String, StorageChangeScanner.ObjectState> findChangedInStorage(final IndexCheckpoints checkpoints) {
+        final var storageRoot = ocflConstants.getStorageRootDir().toPath();
+        try {
+            final var changed = StorageChangeScanner.findChanged(storageRoot, checkpoints.getInventoryStamps());
+            LOGGER.info("{} objects in {} changed since they were last reconciled", changed.size(), storageRoot);
+            return changed;
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to find the objects in {} changed since they were last reconciled, comparing the " +
+                    "head version of every object: {}", storageRoot, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Find the OCFL objects whose inventory in storage was modified after the snapshot was started, with a margin for
+     * the index updates that follow an OCFL commit.
+     * @param snapshot the index snapshot
+     * @return the OCFL object IDs, or null if storage could not be scanned and the snapshot should not be used
+     */
+    private Set<String> findChangedSince(final IndexSnapshot snapshot) {
+        final var storageRoot = ocflConstants.getStorageRootDir().toPath();
+        try {
+            final var changed = StorageChangeScanner.findChangedSince(storageRoot,
+                    snapshot.getCreated().minus(SNAPSHOT_MARGIN));
+            LOGGER.info("{} objects in {} changed since the index snapshot", changed.size(), storageRoot);
+            return changed;
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to find the objects in {} changed since the index snapshot, reading all objects " +
+                    "from storage: {}", storageRoot, e.getMessage());
+            return null;
+        }
+    }
+
+    private void restoreObject(final String ocflId, final List<IndexSnapshot.Entry> entries,
+                               final Map<String, FedoraOCFLMapping> mappings, final Map<FedoraId, FedoraId> parents) {
+        LOGGER.debug("Restoring {} from snapshot", ocflId);
+        for (final var entry : entries) {
+            mappings.put(entry.getFedoraId(), new FedoraOCFLMapping(entry.getRootObjectIdentifier(), ocflId));
+            if (entry.getParentId() != null) {
+                parents.put(FedoraId.create(entry.getFedoraId()), FedoraId.create(entry.getParentId()));
+            }
+        }
+    }
+
+    /**
+     * Index an OCFL object from the sidecars in its head version.
+     * @param ocflId the OCFL object ID
+     * @param mappings collects the fedora-to-ocfl mappings of the resources in the object, which replace any
+     *                 existing mappings when they are written
+     * @param parents collects the containment relationships of the object
+     * @return the fedora identifiers in the object, starting with the root object
+     */
+    private List<String> rebuildObject(final String ocflId, final Map<String, FedoraOCFLMapping> mappings,
+                                       final Map<FedoraId, FedoraId> parents) {
+        LOGGER.debug("Reading {}", ocflId);
+        final var objSession = objectSessionFactory.create(ocflId, null);
+
+        //list all the subpaths
+        try (final var subpaths = objSession.listHeadSubpaths()) {
 
-                                if (!fedoraId.isRepositoryRoot()) {
-                                    var parentId = headers.getParent();
+            final var rootId = new AtomicReference<String>();
+            final var fedoraIds = new ArrayList<String>();
 
-                                    if (parentId == null) {
-                                        if (headers.isObjectRoot()) {
-                                            parentId = FedoraId.getRepositoryRootId().getFullId();
-                                        }
-                                    }
+            subpaths.forEach(subpath -> {
+                if (isSidecarSubpath(subpath)) {
+                    //we're only interested in sidecar subpaths
+                    try {
+                        final var headers = deserializeHeaders(objSession.read(subpath));
+                        final var fedoraId = FedoraId.create(headers.getId());
+                        fedoraIds.add(fedoraId.getFullId());
+                        if (headers.isArchivalGroup() || headers.isObjectRoot()) {
+                            rootId.set(headers.getId());
+                        }
+
+                        if (!fedoraId.isRepositoryRoot()) {
+                            var parentId = headers.getParent();
 
-                                    if (parentId != null) {
-                                        this.containmentIndex.addContainedBy(txId, FedoraId.create(parentId),
-                                                FedoraId.create(headers.getId()));
-                                    }
+                            if (parentId == null) {
+                                if (headers.isObjectRoot()) {
+                                    parentId = FedoraId.getRepositoryRootId().getFullId();
                                 }
+                            }
 
-                            } catch (PersistentStorageException e) {
-                                throw new RepositoryRuntimeException(format("fedora-to-ocfl index rebuild failed: %s",
-                                        e.getMessage()), e);
+                            if (parentId != null) {
+                                parents.put(fedoraId, FedoraId.create(parentId));
                             }
                         }
-                    });
 
-                    // if a resource is not an AG then there should only be a single resource per OCFL object
-                    if (fedoraIds.size() == 1 && rootId.get() == null) {
-                        rootId.set(fedoraIds.get(0));
+                    } catch (PersistentStorageException e) {
+                        throw new RepositoryRuntimeException(format("fedora-to-ocfl index rebuild failed: %s",
+                                e.getMessage()), e);
                     }
+                }
+            });
 
-                    fedoraIds.forEach(fedoraIdentifier -> {
-                        var rootFedoraIdentifier = rootId.get();
-                        if (rootFedoraIdentifier == null) {
-                            rootFedoraIdentifier = fedoraIdentifier;
-                        }
-                        fedoraToOCFLObjectIndex.addMapping(fedoraIdentifier, rootFedoraIdentifier, ocflId);
-                        LOGGER.debug("Rebuilt fedora-to-ocfl object index entry for {}", fedoraIdentifier);
-                    });
+            // if a resource is not an AG then there should only be a single resource per OCFL object
+            if (fedoraIds.size() == 1 && rootId.get() == null) {
+                rootId.set(fedoraIds.get(0));
+            }
 
-                } catch (final PersistentStorageException e) {
-                    throw new RepositoryRuntimeException("Failed to rebuild fedora-to-ocfl index: " +
-                            e.getMessage(), e);
+            fedoraIds.forEach(fedoraIdentifier -> {
+                var rootFedoraIdentifier = rootId.get();
+                if (rootFedoraIdentifier == null) {
+                    rootFedoraIdentifier = fedoraIdentifier;
                 }
+                mappings.put(fedoraIdentifier, new FedoraOCFLMapping(rootFedoraIdentifier, ocflId));
+                LOGGER.debug("Rebuilt fedora-to-ocfl object index entry for {}", fedoraIdentifier);
             });
-        }
 
-        containmentIndex.commitTransaction(transaction);
-        LOGGER.info("Index rebuild complete");
+            if (rootId.get() != null && fedoraIds.remove(FedoraId.create(rootId.get()).getFullId())) {
+                fedoraIds.add(0, FedoraId.create(rootId.get()).getFullId());
+            }
+            return fedoraIds;
+        } catch (final PersistentStorageException e) {
+            throw new RepositoryRuntimeException("Failed to rebuild fedora-to-ocfl index: " +
+                    e.getMessage(), e);
+        }
     }
 }
@@ -0,0 +1,286 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * The OCFL object versions the indexes were last reconciled against, and the fedora resources found in each object.
+ *
+ * Checkpoints are appended to a text file as objects are reconciled, so an interrupted reconciliation can resume.
+ * Each line holds tab-separated values:
+ * 1. OCFL object ID (ie. parent/object1 or object1)
+ * 2. head version of the OCFL object (ie. v3)
+ * 3. path of the object root relative to the storage root, empty if not known
+ * 4. stamp of the object's inventories, see {@link StorageChangeScanner}, empty if not known
+ * 5. and on: the fedora identifiers in the object, starting with the root object
+ * 6. last: the number of values before it, which marks the line as complete
+ * A line holding only an OCFL object ID and its count removes the checkpoint of that object. Later lines replace
+ * earlier ones. Lines without a matching count, such as one torn by a crash, are ignored, so the objects they
+ * describe are read again.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+final class IndexCheckpoints implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexCheckpoints.class);
+
+    private final File file;
+
+    private final Map<String, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+
+    private FileOutputStream out;
+
+    private BufferedWriter log;
+
+    private IndexCheckpoints(final File file) throws IOException {
+        this.file = file;
+        if (file.exists()) {
+            try (var lines = Files.lines(file.toPath(), UTF_8)) {
+                lines.forEach(this::read);
+            }
+        } else {
+            file.getAbsoluteFile().getParentFile().mkdirs();
+        }
+        openLog(file, true);
+        if (endsWithTornLine(file)) {
+            // start on a new line rather than completing the torn one
+            log.write("\n");
+        }
+    }
+
+    private void read(final String line) {
+        final String[] values = line.split("\t");
+        if (!isComplete(values)) {
+            LOGGER.warn("Ignoring incomplete index checkpoint in {}: {}", file, line);
+            return;
+        }
+        if (values.length == 2) {
+            checkpoints.remove(values[0]);
+        } else if (values.length < 5) {
+            LOGGER.warn("Ignoring index checkpoint without an object root in {}: {}", file, line);
+        } else {
+            checkpoints.put(values[0], new Checkpoint(values[0], values[1], values[2], values[3],
+                    List.of(Arrays.copyOfRange(values, 4, values.length - 1))));
+        }
+    }
+
+    private static boolean isComplete(final String[] values) {
+        if (values.length < 2) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(values[values.length - 1]) == values.length - 1;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean endsWithTornLine(final File file) throws IOException {
+        try (var raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() == 0) {
+                return false;
+            }
+            raf.seek(raf.length() - 1);
+            return raf.read() != '\n';
+        }
+    }
+
+    private void openLog(final File target, final boolean append) throws IOException {
+        out = new FileOutputStream(target, append);
+        log = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+    }
+
+    /**
+     * Open the checkpoints, reading any recorded by an earlier reconciliation.
+     * @param file the checkpoint file
+     * @return the checkpoints
+     * @throws IOException if the file cannot be read or written
+     */
+    static IndexCheckpoints open(final File file) throws IOException {
+        return new IndexCheckpoints(file);
+    }
+
+    /**
+     * @param ocflObjectId the OCFL object ID
+     * @return the checkpoint of the object, or null if it has none
+     */
+    Checkpoint get(final String ocflObjectId) {
+        return checkpoints.get(ocflObjectId);
+    }
+
+    /**
+     * @return the inventory stamp of each checkpointed object, by the path of its object root
+     */
+    Map<String, String> getInventoryStamps() {
+        final var stamps = new HashMap<String, String>();
+        for (final Checkpoint checkpoint : checkpoints.values()) {
+            if (!checkpoint.getObjectRoot().isEmpty()) {
+                stamps.put(checkpoint.getObjectRoot(), checkpoint.getInventoryStamp());
+            }
+        }
+        return stamps;
+    }
+
+    /**
+     * @return the OCFL object IDs with a checkpoint
+     */
+    Set<String> getObjectIds() {
+        return new HashSet<>(checkpoints.keySet());
+    }
+
+    /**
+     * Record the checkpoint of a reconciled object.
+     * @param checkpoint the checkpoint
+     * @throws IOException if the checkpoint cannot be written
+     */
+    synchronized void record(final Checkpoint checkpoint) throws IOException {
+        checkpoints.put(checkpoint.getOcflObjectId(), checkpoint);
+        write(checkpoint);
+    }
+
+    /**
+     * Remove the checkpoint of an object which is no longer in the OCFL repository.
+     * @param ocflObjectId the OCFL object ID
+     * @throws IOException if the removal cannot be written
+     */
+    synchronized void remove(final String ocflObjectId) throws IOException {
+        checkpoints.remove(ocflObjectId);
+        log.write(ocflObjectId + "\t1\n");
+    }
+
+    /**
+     * Make the checkpoints recorded so far durable.
+     * @throws IOException if the checkpoints cannot be written
+     */
+    synchronized void flush() throws IOException {
+        log.flush();
+        out.getChannel().force(false);
+    }
+
+    /**
+     * Rewrite the file with only the current checkpoints.
+     * @throws IOException if the checkpoints cannot be written
+     */
+    synchronized void compact() throws IOException {
+        log.close();
+        final var tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            openLog(tmp, false);
+            for (final Checkpoint checkpoint : checkpoints.values()) {
+                write(checkpoint);
+            }
+            flush();
+            log.close();
+            Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+            openLog(file, true);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    private void write(final Checkpoint checkpoint) throws IOException {
+        final var ids = checkpoint.getFedoraIds();
+        final var line = new StringBuilder(checkpoint.getOcflObjectId()).append('\t')
+                .append(checkpoint.getHeadVersion()).append('\t')
+                .append(checkpoint.getObjectRoot()).append('\t')
+                .append(checkpoint.getInventoryStamp());
+        ids.forEach(id -> line.append('\t').append(id));
+        line.append('\t').append(ids.size() + 4).append('\n');
+        log.write(line.toString());
+    }
+
+    /**
+     * The version of a single OCFL object the indexes were reconciled against.
+     */
+    static final class Checkpoint {
+
+        private final String ocflObjectId;
+
+        private final String headVersion;
+
+        private final String objectRoot;
+
+        private final String inventoryStamp;
+
+        private final List<String> fedoraIds;
+
+        /**
+         * Constructor
+         * @param ocflObjectId the OCFL object ID
+         * @param headVersion the head version of the object
+         * @param objectRoot the path of the object root relative to the storage root, or empty if not known
+         * @param inventoryStamp the stamp of the object's inventories, or empty if not known
+         * @param fedoraIds the fedora identifiers in the object, starting with the root object
+         */
+        Checkpoint(final String ocflObjectId, final String headVersion, final String objectRoot,
+                   final String inventoryStamp, final List<String> fedoraIds) {
+            this.ocflObjectId = ocflObjectId;
+            this.headVersion = headVersion;
+            this.objectRoot = objectRoot;
+            this.inventoryStamp = inventoryStamp;
+            this.fedoraIds = fedoraIds;
+        }
+
+        String getOcflObjectId() {
+            return ocflObjectId;
+        }
+
+        String getHeadVersion() {
+            return headVersion;
+        }
+
+        String getObjectRoot() {
+            return objectRoot;
+        }
+
+        String getInventoryStamp() {
+            return inventoryStamp;
+        }
+
+        List<String> getFedoraIds() {
+            return fedoraIds;
+        }
+    }
+}
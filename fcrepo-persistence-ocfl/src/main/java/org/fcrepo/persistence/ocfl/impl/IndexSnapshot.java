@@ -0,0 +1,257 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A point in time copy of the fedora-to-ocfl mappings and the containment relationships, grouped by OCFL object.
+ *
+ * The snapshot is a gzipped text file. The first line holds 3 tab-separated values: the format name, the format
+ * version and the time the snapshot was started in milliseconds since the epoch. Each following line holds 4
+ * tab-separated values:
+ * 1. OCFL object ID (ie. parent/object1 or object1)
+ * 2. fedora identifier (ie. info:fedora/parent/object1 or info:fedora/object1)
+ * 3. fedora root object ID (ie. info:fedora/parent or info:fedora/object1)
+ * 4. fedora identifier of the containing resource, or empty if the resource has no container
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+public final class IndexSnapshot {
+
+    static final String FORMAT = "fcrepo-index-snapshot";
+
+    static final int VERSION = 1;
+
+    private final Instant created;
+
+    private final Map<String, List<Entry>> entriesByObject;
+
+    private IndexSnapshot(final Instant created, final Map<String, List<Entry>> entriesByObject) {
+        this.created = created;
+        this.entriesByObject = entriesByObject;
+    }
+
+    /**
+     * @return the time the snapshot was started. Changes made after this time may be missing from the snapshot.
+     */
+    public Instant getCreated() {
+        return created;
+    }
+
+    /**
+     * @param ocflObjectId the OCFL object ID
+     * @return the entries recorded for the OCFL object, or null if the object is not in the snapshot
+     */
+    public List<Entry> getEntries(final String ocflObjectId) {
+        return entriesByObject.get(ocflObjectId);
+    }
+
+    /**
+     * @return the number of OCFL objects in the snapshot
+     */
+    public int size() {
+        return entriesByObject.size();
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file cannot be read, or is not a snapshot in a supported version
+     */
+    public static IndexSnapshot read(final File file) throws IOException {
+        try (var reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file.toPath())), UTF_8))) {
+            final String header = reader.readLine();
+            final String[] values = header == null ? new String[0] : header.split("\t");
+            if (values.length != 3 || !FORMAT.equals(values[0])) {
+                throw new IOException(file + " is not an index snapshot");
+            }
+            if (!String.valueOf(VERSION).equals(values[1])) {
+                throw new IOException("Unsupported index snapshot version " + values[1] + " in " + file);
+            }
+            final Instant created;
+            try {
+                created = Instant.ofEpochMilli(Long.parseLong(values[2]));
+            } catch (final NumberFormatException e) {
+                throw new IOException("Invalid index snapshot time " + values[2] + " in " + file, e);
+            }
+
+            final Map<String, List<Entry>> entriesByObject = new HashMap<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] entry = line.split("\t", -1);
+                if (entry.length != 4) {
+                    throw new IOException("Expected 4 tab-separated values, found " + entry.length + " in " + file);
+                }
+                entriesByObject.computeIfAbsent(entry[0], k -> new ArrayList<>())
+                        .add(new Entry(entry[0], entry[1], entry[2], entry[3].isEmpty() ? null : entry[3]));
+            }
+            return new IndexSnapshot(created, entriesByObject);
+        }
+    }
+
+    /**
+     * Start writing a snapshot. The snapshot is written next to the file and only moved into place by
+     * {@link Writer#commit()}, so an interrupted write leaves the previous snapshot intact.
+     *
+     * @param file the snapshot file
+     * @param created the time the snapshot was started
+     * @return the writer
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static Writer writer(final File file, final Instant created) throws IOException {
+        return new Writer(file, created);
+    }
+
+    /**
+     * Writes the entries of a snapshot.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final File file;
+
+        private final Path tmp;
+
+        private final BufferedWriter output;
+
+        private long count = 0;
+
+        private Writer(final File file, final Instant created) throws IOException {
+            this.file = file;
+            final File dir = file.getAbsoluteFile().getParentFile();
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            tmp = File.createTempFile(file.getName(), ".tmp", dir).toPath();
+            output = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(tmp)),
+                    UTF_8));
+            output.write(FORMAT + "\t" + VERSION + "\t" + created.toEpochMilli() + "\n");
+        }
+
+        /**
+         * Write an entry.
+         *
+         * @param entry the entry
+         * @throws IOException if the entry cannot be written
+         */
+        public void add(final Entry entry) throws IOException {
+            output.write(entry.getOcflObjectId() + "\t" + entry.getFedoraId() + "\t" +
+                    entry.getRootObjectIdentifier() + "\t" +
+                    (entry.getParentId() == null ? "" : entry.getParentId()) + "\n");
+            count++;
+        }
+
+        /**
+         * Replace the snapshot file with the entries written.
+         *
+         * @return the number of entries written
+         * @throws IOException if the snapshot cannot be written
+         */
+        public long commit() throws IOException {
+            output.close();
+            Files.move(tmp, file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * The index state of a single fedora resource.
+     */
+    public static final class Entry {
+
+        private final String ocflObjectId;
+
+        private final String fedoraId;
+
+        private final String rootObjectIdentifier;
+
+        private final String parentId;
+
+        /**
+         * Constructor
+         *
+         * @param ocflObjectId the OCFL object ID
+         * @param fedoraId the fedora identifier
+         * @param rootObjectIdentifier the fedora root object ID
+         * @param parentId the fedora identifier of the containing resource, or null
+         */
+        public Entry(final String ocflObjectId, final String fedoraId, final String rootObjectIdentifier,
+                     final String parentId) {
+            this.ocflObjectId = ocflObjectId;
+            this.fedoraId = fedoraId;
+            this.rootObjectIdentifier = rootObjectIdentifier;
+            this.parentId = parentId;
+        }
+
+        /**
+         * @return the OCFL object ID
+         */
+        public String getOcflObjectId() {
+            return ocflObjectId;
+        }
+
+        /**
+         * @return the fedora identifier
+         */
+        public String getFedoraId() {
+            return fedoraId;
+        }
+
+        /**
+         * @return the fedora root object ID
+         */
+        public String getRootObjectIdentifier() {
+            return rootObjectIdentifier;
+        }
+
+        /**
+         * @return the fedora identifier of the containing resource, or null
+         */
+        public String getParentId() {
+            return parentId;
+        }
+    }
+}
@@ -19,9 +19,20 @@ package org.fcrepo.persistence.ocfl.impl;
 
 import java.io.File;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.apache.jena.riot.RDFFormat;
+
+import static java.lang.Integer.getInteger;
+import static java.lang.Long.getLong;
 import static java.lang.System.getProperty;
+import static org.apache.jena.riot.RDFFormat.NTRIPLES;
+import static org.apache.jena.riot.RDFFormat.RDF_THRIFT;
 import static org.apache.commons.lang3.SystemUtils.JAVA_IO_TMPDIR;
+import static org.fcrepo.kernel.api.utils.ContentDigest.DIGEST_ALGORITHM.fromScheme;
+import static org.fcrepo.kernel.api.utils.ContentDigest.DIGEST_ALGORITHM.getScheme;
+import static org.fcrepo.kernel.api.utils.ContentDigest.DIGEST_ALGORITHM.isSupportedAlgorithm;
 
 /**
  * OCFL Constants.
@@ -35,6 +46,41 @@ public final class OCFLConstants {
     public static final String OCFL_STORAGE_ROOT_DIR_KEY = "fcrepo.ocfl.storage.root.dir";
     public static final String OCFL_WORK_DIR_KEY = "fcrepo.ocfl.work.dir";
     private static final String FEDORA_TO_OCFL_INDEX_FILENAME = "fedoraToOcflIndex.tsv";
+    public static final String INDEX_POOL_MAX_SIZE_KEY = "fcrepo.ocfl.index.pool.max.size";
+    public static final String INDEX_POOL_MAX_WAIT_KEY = "fcrepo.ocfl.index.pool.max.wait.ms";
+    public static final String INDEX_POOL_STATEMENT_CACHE_SIZE_KEY = "fcrepo.ocfl.index.pool.statement.cache.size";
+    private static final int DEFAULT_INDEX_POOL_MAX_SIZE = 20;
+    private static final long DEFAULT_INDEX_POOL_MAX_WAIT = 30000L;
+    private static final int DEFAULT_INDEX_POOL_STATEMENT_CACHE_SIZE = 100;
+    public static final String INDEX_SNAPSHOT_FILE_KEY = "fcrepo.ocfl.index.snapshot.file";
+    public static final String INDEX_SNAPSHOT_INTERVAL_KEY = "fcrepo.ocfl.index.snapshot.interval.ms";
+    private static final String INDEX_SNAPSHOT_FILENAME = "indexSnapshot.gz";
+    private static final long DEFAULT_INDEX_SNAPSHOT_INTERVAL = 3600000L;
+    public static final String INDEX_REBUILD_THREADS_KEY = "fcrepo.ocfl.index.rebuild.threads";
+    public static final String INDEX_REBUILD_BATCH_SIZE_KEY = "fcrepo.ocfl.index.rebuild.batch.size";
+    private static final int DEFAULT_INDEX_REBUILD_BATCH_SIZE = 100;
+    public static final String INDEX_RECONCILE_KEY = "fcrepo.ocfl.index.reconcile";
+    private static final String INDEX_CHECKPOINT_FILENAME = "indexCheckpoints.tsv";
+    public static final String READ_ONLY_SESSION_CACHE_SIZE_KEY = "fcrepo.ocfl.session.readonly.cache.size";
+    public static final String READ_ONLY_SESSION_CACHE_EXPIRE_KEY = "fcrepo.ocfl.session.readonly.cache.expire.ms";
+    private static final long DEFAULT_READ_ONLY_SESSION_CACHE_SIZE = 10000L;
+    private static final long DEFAULT_READ_ONLY_SESSION_CACHE_EXPIRE = 600000L;
+    public static final String HEADERS_CACHE_SIZE_KEY = "fcrepo.ocfl.headers.cache.size";
+    private static final long DEFAULT_HEADERS_CACHE_SIZE = 50000L;
+    public static final String TRIPLES_CACHE_SIZE_KEY = "fcrepo.ocfl.triples.cache.size";
+    private static final long DEFAULT_TRIPLES_CACHE_SIZE = 1000000L;
+    public static final String TRIPLES_CACHE_ENTRY_MAX_KEY = "fcrepo.ocfl.triples.cache.entry.max";
+    private static final int DEFAULT_TRIPLES_CACHE_ENTRY_MAX = 10000;
+    public static final String COMMIT_THREADS_KEY = "fcrepo.ocfl.commit.threads";
+    public static final String RDF_FORMAT_KEY = "fcrepo.ocfl.rdf.format";
+    private static final String RDF_FORMAT_THRIFT = "thrift";
+    public static final String STAGING_MEMORY_THRESHOLD_KEY = "fcrepo.ocfl.staging.memory.threshold";
+    private static final int DEFAULT_STAGING_MEMORY_THRESHOLD = 8192;
+    public static final String STAGING_MEMORY_SESSION_MAX_KEY = "fcrepo.ocfl.staging.memory.session.max";
+    private static final long DEFAULT_STAGING_MEMORY_SESSION_MAX = 1048576L;
+    public static final String STAGING_MEMORY_MAX_KEY = "fcrepo.ocfl.staging.memory.max";
+    private static final long DEFAULT_STAGING_MEMORY_MAX = 67108864L;
+    public static final String DIGEST_ALGORITHMS_KEY = "fcrepo.ocfl.digest.algorithms";
 
     /**
      * Return the system property key path as file or a file of the temporary directory + "system property key"
@@ -76,10 +122,193 @@ public final class OCFLConstants {
     }
 
     /**
-     * Fedora to OCFL index file
+     * Fedora to OCFL index file written by earlier versions, imported into the index database on start-up
      * @return Fedora to OCFL index file
      */
     public File getFedoraToOCFLIndexFile() {
         return new File(getWorkDir() + File.separator +  FEDORA_TO_OCFL_INDEX_FILENAME);
     }
+
+    /**
+     * Maximum number of pooled connections to the index database
+     * @return maximum number of connections
+     */
+    public int getIndexPoolMaxSize() {
+        return getInteger(INDEX_POOL_MAX_SIZE_KEY, DEFAULT_INDEX_POOL_MAX_SIZE);
+    }
+
+    /**
+     * Maximum time to wait for a pooled index database connection
+     * @return maximum wait in milliseconds, or a negative value to wait indefinitely
+     */
+    public long getIndexPoolMaxWaitMillis() {
+        return getLong(INDEX_POOL_MAX_WAIT_KEY, DEFAULT_INDEX_POOL_MAX_WAIT);
+    }
+
+    /**
+     * Number of prepared statements cached per pooled index database connection
+     * @return statement cache size, 0 to disable statement caching
+     */
+    public int getIndexPoolStatementCacheSize() {
+        return getInteger(INDEX_POOL_STATEMENT_CACHE_SIZE_KEY, DEFAULT_INDEX_POOL_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Index snapshot file, used to restore the indexes on start-up without reading the whole OCFL repository
+     * @return Index snapshot file
+     */
+    public File getIndexSnapshotFile() {
+        final String path = getProperty(INDEX_SNAPSHOT_FILE_KEY);
+        if (path != null) {
+            return new File(path);
+        }
+        return new File(getWorkDir() + File.separator + INDEX_SNAPSHOT_FILENAME);
+    }
+
+    /**
+     * Time between index snapshots written while the repository is running
+     * @return interval in milliseconds, 0 or less to only write a snapshot at shutdown
+     */
+    public long getIndexSnapshotIntervalMillis() {
+        return getLong(INDEX_SNAPSHOT_INTERVAL_KEY, DEFAULT_INDEX_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Number of threads reading OCFL objects during an index rebuild
+     * @return number of threads, by default the number of available processors
+     */
+    public int getIndexRebuildThreads() {
+        return Math.max(1, getInteger(INDEX_REBUILD_THREADS_KEY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Number of OCFL objects whose containment relationships are written to the index together during a rebuild
+     * @return number of objects per batch
+     */
+    public int getIndexRebuildBatchSize() {
+        return Math.max(1, getInteger(INDEX_REBUILD_BATCH_SIZE_KEY, DEFAULT_INDEX_REBUILD_BATCH_SIZE));
+    }
+
+    /**
+     * Whether the indexes are reconciled against the OCFL repository on start-up
+     * @return true if reconciliation is enabled
+     */
+    public boolean isIndexReconcileEnabled() {
+        return Boolean.getBoolean(INDEX_RECONCILE_KEY);
+    }
+
+    /**
+     * Index checkpoint file, recording the OCFL object versions the indexes were last reconciled against
+     * @return Index checkpoint file
+     */
+    public File getIndexCheckpointFile() {
+        return new File(getWorkDir() + File.separator + INDEX_CHECKPOINT_FILENAME);
+    }
+
+    /**
+     * Maximum number of OCFL object sessions the shared read-only session keeps
+     * @return maximum number of cached object sessions
+     */
+    public long getReadOnlySessionCacheSize() {
+        return Math.max(0, getLong(READ_ONLY_SESSION_CACHE_SIZE_KEY, DEFAULT_READ_ONLY_SESSION_CACHE_SIZE));
+    }
+
+    /**
+     * Time after which an OCFL object session of the shared read-only session is dropped if it has not been used
+     * @return idle time in milliseconds
+     */
+    public long getReadOnlySessionCacheExpireMillis() {
+        return Math.max(0, getLong(READ_ONLY_SESSION_CACHE_EXPIRE_KEY, DEFAULT_READ_ONLY_SESSION_CACHE_EXPIRE));
+    }
+
+    /**
+     * Maximum number of resource headers cached for all sessions
+     * @return maximum number of cached headers
+     */
+    public long getHeadersCacheSize() {
+        return Math.max(0, getLong(HEADERS_CACHE_SIZE_KEY, DEFAULT_HEADERS_CACHE_SIZE));
+    }
+
+    /**
+     * Maximum number of parsed triples cached for all sessions
+     * @return maximum number of cached triples
+     */
+    public long getTriplesCacheSize() {
+        return Math.max(0, getLong(TRIPLES_CACHE_SIZE_KEY, DEFAULT_TRIPLES_CACHE_SIZE));
+    }
+
+    /**
+     * Maximum number of triples of a single resource to cache. Larger resources are read from storage every time.
+     * @return maximum number of triples per cached resource
+     */
+    public int getTriplesCacheEntryMax() {
+        return Math.max(0, getInteger(TRIPLES_CACHE_ENTRY_MAX_KEY, DEFAULT_TRIPLES_CACHE_ENTRY_MAX));
+    }
+
+    /**
+     * The encoding used when writing the RDF of a resource. "thrift" selects the binary RDF Thrift encoding, anything
+     * else N-Triples. Files are read in whichever encoding they were written in.
+     * @return the RDF format to write
+     */
+    public RDFFormat getRdfFormat() {
+        return RDF_FORMAT_THRIFT.equalsIgnoreCase(getProperty(RDF_FORMAT_KEY)) ? RDF_THRIFT : NTRIPLES;
+    }
+
+    /**
+     * Number of OCFL objects of a transaction committed concurrently. With the default of 1 they are committed one
+     * after another, in the order they were first touched.
+     * @return number of commit threads
+     */
+    public int getCommitThreads() {
+        return Math.max(1, getInteger(COMMIT_THREADS_KEY, 1));
+    }
+
+    /**
+     * Largest file in bytes that a transaction stages in memory rather than in the staging directory. Larger files
+     * are moved to the staging directory as soon as they outgrow it. 0 stages every file on disk.
+     * @return staging memory threshold in bytes
+     */
+    public int getStagingMemoryThreshold() {
+        return Math.max(0, getInteger(STAGING_MEMORY_THRESHOLD_KEY, DEFAULT_STAGING_MEMORY_THRESHOLD));
+    }
+
+    /**
+     * Most bytes the staged files of one OCFL object in a transaction may take in memory. Once it is used up, further
+     * files are staged in the staging directory.
+     * @return staging memory budget of an object session in bytes
+     */
+    public long getStagingMemorySessionMax() {
+        return Math.max(0, getLong(STAGING_MEMORY_SESSION_MAX_KEY, DEFAULT_STAGING_MEMORY_SESSION_MAX));
+    }
+
+    /**
+     * Most bytes the staged files of all transactions together may take in memory. Once it is used up, further files
+     * are staged in the staging directory until memory is released by a commit or rollback.
+     * @return total staging memory budget in bytes
+     */
+    public long getStagingMemoryMax() {
+        return Math.max(0, getLong(STAGING_MEMORY_MAX_KEY, DEFAULT_STAGING_MEMORY_MAX));
+    }
+
+    /**
+     * MessageDigest algorithms computed for every binary while it is written, given as a comma separated list such as
+     * "sha-512,md5". None are computed by default, as OCFL hashes the content again when it is committed.
+     * Unsupported algorithms are ignored.
+     * @return digest algorithms
+     */
+    public List<String> getDigestAlgorithms() {
+        final var algorithms = new ArrayList<String>();
+        final var configured = getProperty(DIGEST_ALGORITHMS_KEY);
+        if (configured != null) {
+            for (final var name : configured.split(",")) {
+                if (isSupportedAlgorithm(name.trim())) {
+                    final var algorithm = fromScheme(getScheme(name.trim())).algorithm;
+                    if (!algorithms.contains(algorithm)) {
+                        algorithms.add(algorithm);
+                    }
+                }
+            }
+        }
+        return algorithms;
+    }
 }
@@ -21,7 +21,6 @@ import edu.wisc.library.ocfl.api.MutableOcflRepository;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import javax.sql.DataSource;
 
@@ -54,12 +53,26 @@ public class OCFLPersistenceConfig {
         return new OCFLConstants();
     }
 
-    @Bean
+    /**
+     * Create the pooled DataSource backing the containment and Fedora to OCFL indexes
+     * @param ocflConstants the OCFL configuration
+     * @return the data source
+     */
+    @Bean(destroyMethod = "close")
     public DataSource dataSource(final OCFLConstants ocflConstants) {
-        final var dataSource = new DriverManagerDataSource();
+        final var dataSource = new PooledDataSource();
         final var workDir = ocflConstants.getWorkDir().getAbsolutePath();
         dataSource.setUrl("jdbc:h2:" + workDir + File.separator + "containment.idx;FILE_LOCK=SOCKET");
-        dataSource.setDriverClassName("org.h2.jdbcx.JdbcDataSource");
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setMaxTotal(ocflConstants.getIndexPoolMaxSize());
+        dataSource.setMaxIdle(ocflConstants.getIndexPoolMaxSize());
+        dataSource.setMaxWaitMillis(ocflConstants.getIndexPoolMaxWaitMillis());
+        final var statementCacheSize = ocflConstants.getIndexPoolStatementCacheSize();
+        if (statementCacheSize > 0) {
+            dataSource.setPoolPreparedStatements(true);
+            dataSource.setMaxOpenPreparedStatements(statementCacheSize);
+        }
+        dataSource.setJmxName("org.fcrepo:type=ContainmentIndexDataSource");
         return dataSource;
     }
 
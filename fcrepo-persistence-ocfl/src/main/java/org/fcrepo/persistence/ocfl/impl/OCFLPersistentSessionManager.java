@@ -17,29 +17,58 @@
  */
 package org.fcrepo.persistence.ocfl.impl;
 
+import com.google.common.cache.CacheStats;
+import org.apache.jena.graph.Triple;
+import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.PersistentStorageSessionManager;
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * OCFL implementation of PersistentStorageSessionManager
  *
+ * The statistics of the session caches are published through {@link OCFLPersistentSessionManagerMXBean}.
+ *
  * @author whikloj
  * @author dbernstein
  * @since 2019-09-20
  */
 @Component
-public class OCFLPersistentSessionManager implements PersistentStorageSessionManager {
+public class OCFLPersistentSessionManager implements PersistentStorageSessionManager,
+        OCFLPersistentSessionManagerMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCFLPersistentSessionManager.class);
+
+    /**
+     * The name the cache statistics are published under, unless another one is set.
+     */
+    static final String DEFAULT_JMX_NAME = "org.fcrepo:type=OCFLPersistentSessionManager";
+
+    private String jmxName = DEFAULT_JMX_NAME;
 
-    private volatile PersistentStorageSession readOnlySession;
+    private volatile ObjectName registeredName;
 
-    private Map<String, PersistentStorageSession> sessionMap;
+    private volatile OCFLPersistentStorageSession readOnlySession;
+
+    private Map<String, OCFLPersistentStorageSession> sessionMap;
 
     @Inject
     private OCFLObjectSessionFactory objectSessionFactory;
@@ -47,11 +76,100 @@ public class OCFLPersistentSessionManager implements PersistentStorageSessionMan
     @Inject
     private FedoraToOCFLObjectIndex fedoraOcflIndex;
 
+    /**
+     * Removes the staging directories of released sessions, off the request thread.
+     */
+    private final ExecutorService cleanupExecutor;
+
+    /**
+     * Commits the OCFL objects of a transaction concurrently, null when they are committed one after another.
+     */
+    private final ExecutorService commitExecutor;
+
+    /**
+     * Committed resource headers, shared by all sessions.
+     */
+    private final CommittedStateCache<ResourceHeaders> headersCache;
+
+    /**
+     * Parsed committed triples, shared by all sessions and bounded by the number of triples.
+     */
+    private final CommittedStateCache<List<Triple>> triplesCache;
+
     /**
      * Default constructor
      */
     public OCFLPersistentSessionManager() {
         this.sessionMap = new ConcurrentHashMap<>();
+        final var ocflConstants = new OCFLConstants();
+        this.headersCache = new CommittedStateCache<>(ocflConstants.getHeadersCacheSize());
+        this.triplesCache = new CommittedStateCache<>(ocflConstants.getTriplesCacheSize(),
+                (id, triples) -> triples.size());
+        this.cleanupExecutor = Executors.newSingleThreadExecutor(r -> {
+            final var thread = new Thread(r, "ocfl-session-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.commitExecutor = createCommitExecutor(ocflConstants.getCommitThreads());
+    }
+
+    private static ExecutorService createCommitExecutor(final int threads) {
+        if (threads < 2) {
+            return null;
+        }
+        final var count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            final var thread = new Thread(r, "ocfl-commit-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Set the JMX name the cache statistics are published under.
+     *
+     * @param jmxName the name, or null to not publish them
+     */
+    public void setJmxName(final String jmxName) {
+        this.jmxName = jmxName;
+    }
+
+    /**
+     * Publish the cache statistics to the platform MBean server
+     */
+    @PostConstruct
+    public void registerMBean() {
+        if (jmxName == null) {
+            return;
+        }
+        try {
+            final var name = new ObjectName(jmxName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredName = name;
+        } catch (final JMException e) {
+            LOGGER.warn("Unable to publish the persistent session statistics as {}: {}", jmxName, e.getMessage());
+        }
+    }
+
+    /**
+     * Stop cleaning up released sessions and committing concurrently, and stop publishing the cache statistics
+     */
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdown();
+        if (commitExecutor != null) {
+            commitExecutor.shutdown();
+        }
+        final var name = registeredName;
+        if (name != null) {
+            registeredName = null;
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (final JMException e) {
+                LOGGER.warn("Unable to stop publishing the persistent session statistics as {}: {}", name,
+                        e.getMessage());
+            }
+        }
     }
 
     @Override
@@ -64,7 +182,10 @@ public class OCFLPersistentSessionManager implements PersistentStorageSessionMan
         return sessionMap.computeIfAbsent(sessionId, key -> new OCFLPersistentStorageSession(
                 key,
                 fedoraOcflIndex,
-                objectSessionFactory));
+                objectSessionFactory,
+                headersCache,
+                triplesCache,
+                commitExecutor));
     }
 
     @Override
@@ -75,7 +196,8 @@ public class OCFLPersistentSessionManager implements PersistentStorageSessionMan
             synchronized (this) {
                 localSession = this.readOnlySession;
                 if (localSession == null) {
-                    this.readOnlySession = new OCFLPersistentStorageSession(fedoraOcflIndex, objectSessionFactory);
+                    this.readOnlySession = new OCFLPersistentStorageSession(null, fedoraOcflIndex,
+                            objectSessionFactory, headersCache, triplesCache);
                     localSession = this.readOnlySession;
                 }
             }
@@ -83,4 +205,111 @@ public class OCFLPersistentSessionManager implements PersistentStorageSessionMan
 
         return localSession;
     }
+
+    @Override
+    public void removeSession(final String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        final var session = sessionMap.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        LOGGER.debug("Removed persistent storage session {}, {} sessions remain", sessionId, sessionMap.size());
+        cleanupExecutor.execute(() -> {
+            try {
+                session.close();
+                objectSessionFactory.cleanupStaging(sessionId);
+            } catch (final PersistentStorageException e) {
+                LOGGER.warn("Unable to clean up persistent storage session {}: {}", sessionId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return the number of persistent storage sessions that have not been removed yet
+     */
+    public int getSessionCount() {
+        return sessionMap.size();
+    }
+
+    /**
+     * @return the total size of the files staged by all sessions
+     */
+    public long getStagedBytes() {
+        return objectSessionFactory.getStagedBytes();
+    }
+
+    /**
+     * Statistics of the OCFL object sessions kept by the read-only session, including how many were evicted.
+     *
+     * @return the statistics, all zero if the read-only session has not been used yet
+     */
+    public CacheStats getReadOnlySessionCacheStats() {
+        final var localSession = this.readOnlySession;
+        return localSession == null ? new CacheStats(0, 0, 0, 0, 0, 0) : localSession.getObjectSessionCacheStats();
+    }
+
+    @Override
+    public long getReadOnlySessionCacheHitCount() {
+        return getReadOnlySessionCacheStats().hitCount();
+    }
+
+    @Override
+    public long getReadOnlySessionCacheMissCount() {
+        return getReadOnlySessionCacheStats().missCount();
+    }
+
+    @Override
+    public long getReadOnlySessionCacheEvictionCount() {
+        return getReadOnlySessionCacheStats().evictionCount();
+    }
+
+    /**
+     * Hit, miss and eviction statistics of the resource headers cache.
+     *
+     * @return the statistics
+     */
+    public CacheStats getHeadersCacheStats() {
+        return headersCache.stats();
+    }
+
+    @Override
+    public long getHeadersCacheHitCount() {
+        return getHeadersCacheStats().hitCount();
+    }
+
+    @Override
+    public long getHeadersCacheMissCount() {
+        return getHeadersCacheStats().missCount();
+    }
+
+    @Override
+    public long getHeadersCacheEvictionCount() {
+        return getHeadersCacheStats().evictionCount();
+    }
+
+    /**
+     * Hit, miss and eviction statistics of the parsed triples cache.
+     *
+     * @return the statistics
+     */
+    public CacheStats getTriplesCacheStats() {
+        return triplesCache.stats();
+    }
+
+    @Override
+    public long getTriplesCacheHitCount() {
+        return getTriplesCacheStats().hitCount();
+    }
+
+    @Override
+    public long getTriplesCacheMissCount() {
+        return getTriplesCacheStats().missCount();
+    }
+
+    @Override
+    public long getTriplesCacheEvictionCount() {
+        return getTriplesCacheStats().evictionCount();
+    }
 }
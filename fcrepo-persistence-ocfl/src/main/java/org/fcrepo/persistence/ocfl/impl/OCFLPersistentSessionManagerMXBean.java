@@ -0,0 +1,73 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+/**
+ * Management interface exposing the statistics of the caches kept by the persistent storage sessions.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+public interface OCFLPersistentSessionManagerMXBean {
+
+    /**
+     * @return the number of OCFL object session lookups of the read-only session that found a cached session
+     */
+    long getReadOnlySessionCacheHitCount();
+
+    /**
+     * @return the number of OCFL object session lookups of the read-only session that created a session
+     */
+    long getReadOnlySessionCacheMissCount();
+
+    /**
+     * @return the number of OCFL object sessions the read-only session dropped for size or idle time
+     */
+    long getReadOnlySessionCacheEvictionCount();
+
+    /**
+     * @return the number of resource headers reads served from the committed headers cache
+     */
+    long getHeadersCacheHitCount();
+
+    /**
+     * @return the number of resource headers reads that missed the committed headers cache
+     */
+    long getHeadersCacheMissCount();
+
+    /**
+     * @return the number of resource headers dropped from the committed headers cache to stay within its size
+     */
+    long getHeadersCacheEvictionCount();
+
+    /**
+     * @return the number of triples reads served from the committed triples cache
+     */
+    long getTriplesCacheHitCount();
+
+    /**
+     * @return the number of triples reads that missed the committed triples cache
+     */
+    long getTriplesCacheMissCount();
+
+    /**
+     * @return the number of resources whose triples were dropped from the committed triples cache to stay within
+     *         its size
+     */
+    long getTriplesCacheEvictionCount();
+}
@@ -18,15 +18,21 @@
 package org.fcrepo.persistence.ocfl.impl;
 
 import static java.lang.String.format;
+import static java.util.Spliterator.IMMUTABLE;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterators.spliteratorUnknownSize;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.StreamSupport.stream;
+import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
 import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
 import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.deserializeHeaders;
-import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getSidecarSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.readSidecar;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveExtensions;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveVersionId;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getBinaryStream;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getRdfStream;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveTopic;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resovleOCFLSubpathFromResourceId;
 
 import java.io.InputStream;
@@ -34,12 +40,22 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
+import org.apache.jena.graph.Triple;
 import org.fcrepo.kernel.api.RdfStream;
 import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.kernel.api.operations.ResourceOperation;
+import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentSessionClosedException;
@@ -52,9 +68,13 @@ import org.fcrepo.persistence.ocfl.api.Persister;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 
@@ -79,6 +99,12 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
 
     private final Map<String, OCFLObjectSession> sessionMap;
 
+    /**
+     * OCFL object sessions of the read-only session. The read-only session lives as long as the repository, so its
+     * object sessions are dropped once there are too many of them or they have not been used for a while.
+     */
+    private final LoadingCache<String, OCFLObjectSession> readOnlySessionCache;
+
     private final Phaser phaser = new Phaser();
 
     private final List<Persister> persisterList = new ArrayList<>();
@@ -89,6 +115,14 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
 
     private final OCFLObjectSessionFactory objectSessionFactory;
 
+    private final CommittedStateCache<ResourceHeaders> headersCache;
+
+    private final CommittedStateCache<List<Triple>> triplesCache;
+
+    private final int maxCachedTriples;
+
+    private final Executor commitExecutor;
+
     private static Comparator<OCFLObjectSession> CREATION_TIME_ORDER =
             (final OCFLObjectSession o1, final OCFLObjectSession o2)->o1.getCreated().compareTo(o2.getCreated());
 
@@ -113,10 +147,50 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
      */
     protected OCFLPersistentStorageSession(final String sessionId, final FedoraToOCFLObjectIndex fedoraOcflIndex,
                                            final OCFLObjectSessionFactory objectSessionFactory) {
+        this(sessionId, fedoraOcflIndex, objectSessionFactory, new CommittedStateCache<>(0),
+                new CommittedStateCache<>(0));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sessionId            session id.
+     * @param fedoraOcflIndex      the index
+     * @param objectSessionFactory the session factory
+     * @param headersCache         the cache of committed headers shared by all sessions
+     * @param triplesCache         the cache of committed triples shared by all sessions
+     */
+    OCFLPersistentStorageSession(final String sessionId, final FedoraToOCFLObjectIndex fedoraOcflIndex,
+                                 final OCFLObjectSessionFactory objectSessionFactory,
+                                 final CommittedStateCache<ResourceHeaders> headersCache,
+                                 final CommittedStateCache<List<Triple>> triplesCache) {
+        this(sessionId, fedoraOcflIndex, objectSessionFactory, headersCache, triplesCache, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sessionId            session id.
+     * @param fedoraOcflIndex      the index
+     * @param objectSessionFactory the session factory
+     * @param headersCache         the cache of committed headers shared by all sessions
+     * @param triplesCache         the cache of committed triples shared by all sessions
+     * @param commitExecutor       commits the OCFL objects concurrently. If null, they are committed one after another.
+     */
+    OCFLPersistentStorageSession(final String sessionId, final FedoraToOCFLObjectIndex fedoraOcflIndex,
+                                 final OCFLObjectSessionFactory objectSessionFactory,
+                                 final CommittedStateCache<ResourceHeaders> headersCache,
+                                 final CommittedStateCache<List<Triple>> triplesCache,
+                                 final Executor commitExecutor) {
         this.sessionId = sessionId;
+        this.commitExecutor = commitExecutor;
         this.fedoraOcflIndex = fedoraOcflIndex;
         this.objectSessionFactory = objectSessionFactory;
+        this.headersCache = headersCache;
+        this.triplesCache = triplesCache;
+        this.maxCachedTriples = new OCFLConstants().getTriplesCacheEntryMax();
         this.sessionMap = new ConcurrentHashMap<>();
+        this.readOnlySessionCache = sessionId == null ? createReadOnlySessionCache(new OCFLConstants()) : null;
 
         //load the persister list if empty
         persisterList.add(new CreateRDFSourcePersister(this.fedoraOcflIndex));
@@ -175,11 +249,44 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
     }
 
 
+    private LoadingCache<String, OCFLObjectSession> createReadOnlySessionCache(final OCFLConstants ocflConstants) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(ocflConstants.getReadOnlySessionCacheSize())
+                .expireAfterAccess(ocflConstants.getReadOnlySessionCacheExpireMillis(), MILLISECONDS)
+                .recordStats()
+                .removalListener(this::onReadOnlySessionRemoval)
+                .build(CacheLoader.from(key -> this.objectSessionFactory.create(key, getId())));
+    }
+
+    /**
+     * Evicted read-only object sessions are not closed: a reader may still be using one, and there is nothing staged
+     * in them to clean up.
+     */
+    private void onReadOnlySessionRemoval(final RemovalNotification<String, OCFLObjectSession> notification) {
+        LOGGER.trace("Dropped read-only session for OCFL object {}: {}", notification.getKey(),
+                notification.getCause());
+    }
+
     OCFLObjectSession findOrCreateSession(final String ocflId) {
+        if (this.readOnlySessionCache != null) {
+            return this.readOnlySessionCache.getUnchecked(ocflId);
+        }
         return this.sessionMap.computeIfAbsent(ocflId,
                 key -> this.objectSessionFactory.create(key, getId()));
     }
 
+    /**
+     * Statistics of the OCFL object sessions kept by the read-only session, including how many were evicted.
+     *
+     * @return the statistics, all zero if this is not the read-only session
+     */
+    public CacheStats getObjectSessionCacheStats() {
+        if (this.readOnlySessionCache == null) {
+            return new CacheStats(0, 0, 0, 0, 0, 0);
+        }
+        return this.readOnlySessionCache.stats();
+    }
+
     @Override
     public ResourceHeaders getHeaders(final String identifier, final Instant version)
             throws PersistentStorageException {
@@ -187,20 +294,21 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
         ensureCommitNotStarted();
 
         final FedoraOCFLMapping mapping = getFedoraOCFLMapping(identifier);
+        if (version == null && !isReadOnly()) {
+            // the head may have been changed within this session
+            return readHeaders(mapping, identifier, null);
+        }
+        return headersCache.get(mapping.getOcflObjectId(), identifier, version,
+                () -> readHeaders(mapping, identifier, version));
+    }
+
+    private ResourceHeaders readHeaders(final FedoraOCFLMapping mapping, final String identifier,
+                                        final Instant version) throws PersistentStorageException {
         final OCFLObjectSession objSession = findOrCreateSession(mapping.getOcflObjectId());
         final var rootIdentifier = mapping.getRootObjectIdentifier();
         final var ocflSubpath = resovleOCFLSubpathFromResourceId(rootIdentifier, identifier);
-        final var sidecarSubpath = getSidecarSubpath(ocflSubpath);
-
-        final InputStream headerStream;
-        if (version != null) {
-            final var versionId = resolveVersionId(objSession, version);
-            headerStream = objSession.read(sidecarSubpath, versionId);
-        } else {
-            headerStream = objSession.read(sidecarSubpath);
-        }
-
-        return deserializeHeaders(headerStream);
+        final var versionId = resolveVersionId(objSession, version);
+        return deserializeHeaders(readSidecar(objSession, ocflSubpath, versionId));
     }
 
     private FedoraOCFLMapping getFedoraOCFLMapping(final String identifier) throws PersistentStorageException {
@@ -221,7 +329,56 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
         final var objSession = findOrCreateSession(mapping.getOcflObjectId());
         final var ocflSubpath = resovleOCFLSubpathFromResourceId(rootIdentifier, identifier);
         final var filePath = resolveExtensions(ocflSubpath, true);
-        return getRdfStream(identifier, objSession, filePath, version);
+        if (version == null && !isReadOnly()) {
+            // the head may have been changed within this session
+            return getRdfStream(identifier, objSession, filePath, null);
+        }
+        final var ocflId = mapping.getOcflObjectId();
+        final var cached = triplesCache.getIfPresent(ocflId, identifier, version);
+        if (cached != null) {
+            return new DefaultRdfStream(createURI(resolveTopic(identifier)), cached.stream());
+        }
+        final long loadGeneration = triplesCache.generation();
+        final var rdfStream = getRdfStream(identifier, objSession, filePath, version);
+        return new DefaultRdfStream(rdfStream.topic(), cacheOnCompletion(rdfStream,
+                triples -> triplesCache.put(ocflId, identifier, version, triples, loadGeneration)));
+    }
+
+    /**
+     * Pass the triples through as they are parsed, handing them all to the consumer once the stream has been read to
+     * the end. Resources with more than maxCachedTriples triples are only streamed, so they never need to be held in
+     * memory as a whole.
+     */
+    private Stream<Triple> cacheOnCompletion(final RdfStream rdfStream, final Consumer<List<Triple>> onCompletion) {
+        final Iterator<Triple> source = rdfStream.iterator();
+        final Iterator<Triple> triples = new Iterator<>() {
+
+            private List<Triple> read = new ArrayList<>();
+
+            @Override
+            public boolean hasNext() {
+                final boolean hasNext = source.hasNext();
+                if (!hasNext && read != null) {
+                    onCompletion.accept(List.copyOf(read));
+                    read = null;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Triple next() {
+                final Triple triple = source.next();
+                if (read != null) {
+                    if (read.size() < maxCachedTriples) {
+                        read.add(triple);
+                    } else {
+                        read = null;
+                    }
+                }
+                return triple;
+            }
+        };
+        return stream(spliteratorUnknownSize(triples, IMMUTABLE | NONNULL), false).onClose(rdfStream::close);
     }
 
     @Override
@@ -257,6 +414,19 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
         return getBinaryStream(objSession, ocflSubpath, version);
     }
 
+    @Override
+    public InputStream getBinaryContent(final String identifier, final Instant version, final long start,
+                                        final long end) throws PersistentStorageException {
+        ensureCommitNotStarted();
+
+        final var mapping = getFedoraOCFLMapping(identifier);
+        final var rootIdentifier = mapping.getRootObjectIdentifier();
+        final var objSession = findOrCreateSession(mapping.getOcflObjectId());
+        final var ocflSubpath = resovleOCFLSubpathFromResourceId(rootIdentifier, identifier);
+
+        return getBinaryStream(objSession, ocflSubpath, version, start, end);
+    }
+
     @Override
     public synchronized void commit() throws PersistentStorageException {
         ensureCommitNotStarted();
@@ -296,13 +466,16 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
         }
 
         try {
-            this.sessionsToRollback = new ArrayList<>(sessions.size());
-
+            this.sessionsToRollback = Collections.synchronizedList(new ArrayList<>(sessions.size()));
 
             //perform commit
-            for (final OCFLObjectSession objectSession : sessions) {
-                objectSession.commit();
-                sessionsToRollback.add(objectSession);
+            if (commitExecutor == null || sessions.size() < 2) {
+                for (final OCFLObjectSession objectSession : sessions) {
+                    objectSession.commit();
+                    sessionsToRollback.add(objectSession);
+                }
+            } else {
+                commitConcurrently(sessions);
             }
 
             state = State.COMMITTED;
@@ -310,6 +483,50 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
         } catch (final Exception e) {
             this.state = State.COMMIT_FAILED;
             throw new PersistentStorageException("Commit failed due to : " + e.getMessage(), e);
+        } finally {
+            // objects committed before a failure have changed too
+            headersCache.invalidate(this.sessionMap.keySet());
+            triplesCache.invalidate(this.sessionMap.keySet());
+        }
+    }
+
+    /**
+     * Commit the object sessions on the commit executor. As with a serial commit, objects that have not started
+     * committing when one fails are left uncommitted, and only objects that committed successfully are recorded for
+     * rollback. Returns once every started commit has finished.
+     */
+    private void commitConcurrently(final List<OCFLObjectSession> sessions) throws PersistentStorageException {
+        final var failed = new AtomicBoolean();
+        final List<CompletableFuture<Void>> commits = new ArrayList<>(sessions.size());
+        for (final OCFLObjectSession objectSession : sessions) {
+            commits.add(CompletableFuture.runAsync(() -> {
+                if (failed.get()) {
+                    return;
+                }
+                try {
+                    objectSession.commit();
+                    sessionsToRollback.add(objectSession);
+                } catch (final PersistentStorageException | RuntimeException e) {
+                    failed.set(true);
+                    throw new CompletionException(e);
+                }
+            }, commitExecutor));
+        }
+
+        Throwable failure = null;
+        for (final var commit : commits) {
+            try {
+                commit.join();
+            } catch (final CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure instanceof PersistentStorageException) {
+            throw (PersistentStorageException) failure;
+        } else if (failure != null) {
+            throw new PersistentStorageException("Commit failed due to : " + failure.getMessage(), failure);
         }
     }
 
@@ -385,6 +602,21 @@ public class OCFLPersistentStorageSession implements PersistentStorageSession {
 
     }
 
+    /**
+     * Close the OCFL object sessions of this session, discarding anything they still have staged. Used once the
+     * session has been committed or rolled back and is no longer needed.
+     */
+    void close() {
+        for (final OCFLObjectSession objectSession : this.sessionMap.values()) {
+            try {
+                objectSession.close();
+            } catch (final PersistentStorageException e) {
+                LOGGER.warn("Unable to close {} in {}: {}", objectSession, this, e.getMessage());
+            }
+        }
+        this.sessionMap.clear();
+    }
+
     /**
      * Check if we are in a read-only session.
      *
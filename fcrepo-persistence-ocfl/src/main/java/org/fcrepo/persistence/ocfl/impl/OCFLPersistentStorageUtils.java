@@ -21,9 +21,10 @@ import edu.wisc.library.ocfl.api.MutableOcflRepository;
 import edu.wisc.library.ocfl.core.OcflRepositoryBuilder;
 import edu.wisc.library.ocfl.core.extension.layout.config.DefaultLayoutConfig;
 import edu.wisc.library.ocfl.core.storage.filesystem.FileSystemOcflStorage;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.lang.RiotParsers;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.apache.jena.riot.system.StreamRDF;
 import org.fcrepo.kernel.api.FedoraTypes;
 import org.fcrepo.kernel.api.RdfStream;
@@ -37,25 +38,33 @@ import org.fcrepo.persistence.ocfl.api.OCFLVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
+import static java.util.Spliterator.IMMUTABLE;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterators.spliteratorUnknownSize;
+import static java.util.stream.StreamSupport.stream;
 import static org.apache.jena.graph.NodeFactory.createURI;
-import static org.apache.jena.rdf.model.ModelFactory.createDefaultModel;
 import static org.apache.jena.riot.RDFFormat.NTRIPLES;
+import static org.apache.jena.riot.RDFFormat.RDF_THRIFT;
 import static org.apache.jena.riot.system.StreamRDFWriter.getWriterStream;
 import static org.fcrepo.kernel.api.FedoraTypes.FCR_ACL;
 import static org.fcrepo.kernel.api.FedoraTypes.FCR_METADATA;
 import static org.fcrepo.kernel.api.FedoraTypes.FEDORA_ID_PREFIX;
+import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.BINARY_RESOURCE_HEADER_EXTENSION;
 import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.RESOURCE_HEADER_EXTENSION;
+import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.getResourceHeaderExtension;
 import static org.fcrepo.persistence.ocfl.api.OCFLPersistenceConstants.DEFAULT_REPOSITORY_ROOT_OCFL_OBJECT_ID;
 
 /**
@@ -77,11 +86,19 @@ public class OCFLPersistentStorageUtils {
      */
     private static final String INTERNAL_FEDORA_DIRECTORY = ".fcrepo";
     /**
-     * The default RDF on disk format
-     * TODO Make this value configurable
+     * The RDF on disk format used for writing, N-Triples unless configured otherwise
      */
+    private static final RDFFormat DEFAULT_RDF_FORMAT = new OCFLConstants().getRdfFormat();
 
-    private static RDFFormat DEFAULT_RDF_FORMAT = NTRIPLES;
+    /**
+     * The extension of RDF files encoded as N-Triples
+     */
+    private static final String RDF_FILE_EXTENSION = "." + NTRIPLES.getLang().getFileExtensions().get(0);
+
+    /**
+     * The extension of RDF files encoded as RDF Thrift
+     */
+    private static final String RDF_THRIFT_FILE_EXTENSION = ".trdf";
 
     private static final String FEDORA_METADATA_SUFFIX = "/" + FedoraTypes.FCR_METADATA;
 
@@ -191,21 +208,22 @@ public class OCFLPersistentStorageUtils {
      */
     public static WriteOutcome writeRDF(final OCFLObjectSession session, final RdfStream triples, final String subpath)
             throws PersistentStorageException {
-        try (final var os = new ByteArrayOutputStream()) {
+        // serialize straight into the staged file rather than buffering the whole graph
+        final var outcome = session.writeWith(resolveExtensions(subpath, true), os -> {
             final StreamRDF streamRDF = getWriterStream(os, getRdfFormat());
             streamRDF.start();
             if (triples != null) {
                 triples.forEach(streamRDF::triple);
             }
             streamRDF.finish();
-
-            final var is = new ByteArrayInputStream(os.toByteArray());
-            final var outcome = session.write(resolveExtensions(subpath, true), is);
-            log.debug("wrote {} to {}", subpath, session);
-            return outcome;
-        } catch (final IOException ex) {
-            throw new PersistentStorageException(format("failed to write subpath %s in %s", subpath, session), ex);
+        });
+        // drop a copy written with the other RDF format so that reads cannot pick up stale triples
+        final var alternate = alternateRdfSubpath(resolveExtensions(subpath, true));
+        if (session.exists(alternate)) {
+            session.delete(alternate);
         }
+        log.debug("wrote {} to {}", subpath, session);
+        return outcome;
     }
 
     private static InputStream readFile(final OCFLObjectSession objSession, final String subpath, final String version)
@@ -213,6 +231,43 @@ public class OCFLPersistentStorageUtils {
         return version == null ? objSession.read(subpath) : objSession.read(subpath, version);
     }
 
+    /**
+     * Returns the same RDF subpath with the extension of the other RDF encoding, so that a resource written before the
+     * configured RDF format changed can still be found.
+     *
+     * @param subpath an RDF subpath, including its extension
+     * @return the subpath with the other RDF extension, or null if the subpath does not have an RDF extension
+     */
+    public static String alternateRdfSubpath(final String subpath) {
+        if (subpath.endsWith(RDF_THRIFT_FILE_EXTENSION)) {
+            return subpath.substring(0, subpath.length() - RDF_THRIFT_FILE_EXTENSION.length()) + RDF_FILE_EXTENSION;
+        }
+        if (subpath.endsWith(RDF_FILE_EXTENSION)) {
+            return subpath.substring(0, subpath.length() - RDF_FILE_EXTENSION.length()) + RDF_THRIFT_FILE_EXTENSION;
+        }
+        return null;
+    }
+
+    /**
+     * Deletes an RDF file from the object, whichever RDF extension it was written with.
+     *
+     * @param objSession The OCFL object session
+     * @param subpath The subpath of the RDF file, with the extension of the configured RDF format
+     * @throws PersistentStorageException If the file cannot be found or deleted.
+     */
+    public static void deleteRdf(final OCFLObjectSession objSession, final String subpath)
+            throws PersistentStorageException {
+        try {
+            objSession.delete(subpath);
+        } catch (final PersistentItemNotFoundException e) {
+            final var alternate = alternateRdfSubpath(subpath);
+            if (alternate == null) {
+                throw e;
+            }
+            objSession.delete(alternate);
+        }
+    }
+
     /**
      * Get the content of the specified binary file.
      *
@@ -229,7 +284,25 @@ public class OCFLPersistentStorageUtils {
     }
 
     /**
-     * Get an RDF stream for the specified file.
+     * Get a byte range of the content of the specified binary file.
+     *
+     * @param objSession The OCFL object session
+     * @param subpath The path to the desired file
+     * @param version The version. If null, the head state will be returned.
+     * @param start offset of the first byte of the range
+     * @param end offset of the last byte of the range, inclusive. -1 reads to the end of the file.
+     * @return the content stream of the range
+     * @throws PersistentStorageException If unable to read the specified binary stream.
+     */
+    public static InputStream getBinaryStream(final OCFLObjectSession objSession, final String subpath,
+            final Instant version, final long start, final long end) throws PersistentStorageException {
+        final String versionId = resolveVersionId(objSession, version);
+        return objSession.readRange(subpath, versionId, start, end);
+    }
+
+    /**
+     * Get an RDF stream for the specified file. The triples are parsed as the stream is consumed, and the file is
+     * closed once the stream is exhausted or closed.
      *
      * @param identifier The resource identifier
      * @param version    The version.  If null, the head state will be returned.
@@ -243,13 +316,55 @@ public class OCFLPersistentStorageUtils {
                                          final String subpath,
                                          final Instant version) throws PersistentStorageException {
         final String versionId = resolveVersionId(objSession, version);
-        try (final InputStream is = readFile(objSession, subpath, versionId)) {
-            final Model model = createDefaultModel();
-            RDFDataMgr.read(model, is, DEFAULT_RDF_FORMAT.getLang());
-            final String topic = resolveTopic(identifier);
-            return DefaultRdfStream.fromModel(createURI(topic), model);
-        } catch (final IOException ex) {
-            throw new PersistentStorageException(format("unable to read %s ;  version = %s", identifier, version), ex);
+        var rdfSubpath = subpath;
+        InputStream file;
+        try {
+            file = readFile(objSession, subpath, versionId);
+        } catch (final PersistentItemNotFoundException e) {
+            // the resource may have been written while a different RDF format was configured
+            rdfSubpath = alternateRdfSubpath(subpath);
+            if (rdfSubpath == null) {
+                throw e;
+            }
+            file = readFile(objSession, rdfSubpath, versionId);
+        }
+        final InputStream is = new BufferedInputStream(file);
+        final Iterator<Triple> parser = parseTriples(is, rdfSubpath);
+        final Iterator<Triple> triples = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                final boolean hasNext = parser.hasNext();
+                if (!hasNext) {
+                    closeRdfFile(is);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Triple next() {
+                return parser.next();
+            }
+        };
+        final String topic = resolveTopic(identifier);
+        return new DefaultRdfStream(createURI(topic),
+                stream(spliteratorUnknownSize(triples, IMMUTABLE | NONNULL), false).onClose(() -> closeRdfFile(is)));
+    }
+
+    /**
+     * Start parsing an RDF file in the encoding given by its extension.
+     */
+    private static Iterator<Triple> parseTriples(final InputStream is, final String subpath) {
+        if (subpath.endsWith(RDF_THRIFT_FILE_EXTENSION)) {
+            return new ThriftTripleIterator(is);
+        }
+        return RiotParsers.createIteratorNTriples(is, StreamRDFLib.sinkNull());
+    }
+
+    private static void closeRdfFile(final InputStream is) {
+        try {
+            is.close();
+        } catch (final IOException e) {
+            log.warn("Unable to close RDF file: {}", e.getMessage());
         }
     }
 
@@ -291,7 +406,36 @@ public class OCFLPersistentStorageUtils {
      * @return The subpath to the (sidecar) metadata file.
      */
     public static String getSidecarSubpath(final String subpath) {
-        return getInternalFedoraDirectory() + subpath + RESOURCE_HEADER_EXTENSION;
+        return getInternalFedoraDirectory() + subpath + getResourceHeaderExtension();
+    }
+
+    /**
+     * Returns the subpath the metadata file of the specified subpath has when written in the header encoding that is
+     * not configured, as by a repository that was configured differently.
+     * @param subpath The subpath to the ocfl resource
+     * @return The subpath to the (sidecar) metadata file in the other header encoding.
+     */
+    public static String getAlternateSidecarSubpath(final String subpath) {
+        final var extension = RESOURCE_HEADER_EXTENSION.equals(getResourceHeaderExtension()) ?
+                BINARY_RESOURCE_HEADER_EXTENSION : RESOURCE_HEADER_EXTENSION;
+        return getInternalFedoraDirectory() + subpath + extension;
+    }
+
+    /**
+     * Reads the metadata file of the specified subpath, whichever header encoding it was written in.
+     * @param objSession The OCFL object session
+     * @param subpath The subpath to the ocfl resource whose metadata file you wish to read
+     * @param version The OCFL version id. If null, the head state will be returned.
+     * @return the content of the metadata file
+     * @throws PersistentStorageException If the metadata file cannot be found or read.
+     */
+    public static InputStream readSidecar(final OCFLObjectSession objSession, final String subpath,
+                                          final String version) throws PersistentStorageException {
+        try {
+            return readFile(objSession, getSidecarSubpath(subpath), version);
+        } catch (final PersistentItemNotFoundException e) {
+            return readFile(objSession, getAlternateSidecarSubpath(subpath), version);
+        }
     }
 
     /**
@@ -300,7 +444,8 @@ public class OCFLPersistentStorageUtils {
      * @return True if the subpath is a sidecar file.
      */
     public static boolean isSidecarSubpath(final String subpath) {
-        return subpath.startsWith(getInternalFedoraDirectory()) && subpath.endsWith(RESOURCE_HEADER_EXTENSION);
+        return subpath.startsWith(getInternalFedoraDirectory()) &&
+                (subpath.endsWith(RESOURCE_HEADER_EXTENSION) || subpath.endsWith(BINARY_RESOURCE_HEADER_EXTENSION));
     }
 
     /**
@@ -315,23 +460,40 @@ public class OCFLPersistentStorageUtils {
      */
     public static List<Instant> listVersions(final OCFLObjectSession objSession, final String subpath)
             throws PersistentStorageException {
-        return  objSession.listVersions(subpath).stream()
-                .map(OCFLVersion::getCreated)
-                .collect(Collectors.toList());
+        final var alternate = subpath == null ? null : alternateRdfSubpath(subpath);
+        if (alternate == null) {
+            return objSession.listVersions(subpath).stream()
+                    .map(OCFLVersion::getCreated)
+                    .collect(Collectors.toList());
+        }
+        // an RDF resource may have versions written in either RDF format
+        final var versions = new TreeSet<Instant>();
+        PersistentItemNotFoundException notFound = null;
+        for (final var rdfSubpath : List.of(subpath, alternate)) {
+            try {
+                objSession.listVersions(rdfSubpath).forEach(v -> versions.add(v.getCreated()));
+            } catch (final PersistentItemNotFoundException e) {
+                notFound = e;
+            }
+        }
+        if (versions.isEmpty() && notFound != null) {
+            throw notFound;
+        }
+        return new ArrayList<>(versions);
     }
 
     /**
-     * @return the RDF Format. By default NTRIPLES are returned.
+     * @return the RDF Format written. By default NTRIPLES are returned.
      */
     public static RDFFormat getRdfFormat() {
         return DEFAULT_RDF_FORMAT;
     }
 
     /**
-     * @return the RDF file extension.
+     * @return the extension of RDF files written in the configured RDF format.
      */
     public static String getRDFFileExtension() {
-        return "." + DEFAULT_RDF_FORMAT.getLang().getFileExtensions().get(0);
+        return RDF_THRIFT.equals(getRdfFormat()) ? RDF_THRIFT_FILE_EXTENSION : RDF_FILE_EXTENSION;
     }
 
     /**
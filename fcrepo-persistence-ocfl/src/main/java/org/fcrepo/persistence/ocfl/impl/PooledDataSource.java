@@ -0,0 +1,62 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * A pooled DataSource for the index database, which also reports how long callers wait for connections.
+ *
+ * When a JMX name is set the pool statistics are published through {@link PooledDataSourceMXBean}.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+public class PooledDataSource extends BasicDataSource implements PooledDataSourceMXBean {
+
+    @Override
+    public long getBorrowedCount() {
+        final var pool = getConnectionPool();
+        return pool == null ? 0 : pool.getBorrowedCount();
+    }
+
+    @Override
+    public long getMeanBorrowWaitTimeMillis() {
+        final var pool = getConnectionPool();
+        return pool == null ? 0 : pool.getMeanBorrowWaitTimeMillis();
+    }
+
+    @Override
+    public long getMaxBorrowWaitTimeMillis() {
+        final var pool = getConnectionPool();
+        return pool == null ? 0 : pool.getMaxBorrowWaitTimeMillis();
+    }
+
+    @Override
+    public int getNumWaiters() {
+        final var pool = getConnectionPool();
+        return pool == null ? 0 : pool.getNumWaiters();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledDataSource{active=" + getNumActive() + ", idle=" + getNumIdle() + ", waiters=" +
+                getNumWaiters() + ", borrowed=" + getBorrowedCount() + ", meanBorrowWaitMillis=" +
+                getMeanBorrowWaitTimeMillis() + ", maxBorrowWaitMillis=" + getMaxBorrowWaitTimeMillis() + "}";
+    }
+}
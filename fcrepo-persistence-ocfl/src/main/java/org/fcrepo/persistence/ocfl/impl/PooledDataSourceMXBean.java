@@ -0,0 +1,49 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.apache.commons.dbcp2.BasicDataSourceMXBean;
+
+/**
+ * Management interface exposing the usage of the pooled index database connections.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+public interface PooledDataSourceMXBean extends BasicDataSourceMXBean {
+
+    /**
+     * @return the total number of connections borrowed from the pool
+     */
+    long getBorrowedCount();
+
+    /**
+     * @return the mean time, in milliseconds, callers waited to borrow a connection
+     */
+    long getMeanBorrowWaitTimeMillis();
+
+    /**
+     * @return the longest time, in milliseconds, a caller waited to borrow a connection
+     */
+    long getMaxBorrowWaitTimeMillis();
+
+    /**
+     * @return the number of callers currently blocked waiting for a connection
+     */
+    int getNumWaiters();
+}
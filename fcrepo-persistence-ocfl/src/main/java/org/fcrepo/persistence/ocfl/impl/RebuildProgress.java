@@ -0,0 +1,117 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Tracks how many objects an index rebuild has processed, and how quickly. The objects are not counted up front, since
+ * that would take another walk of the storage root, so the estimated time remaining is based on an approximate total
+ * such as the number of objects in the last snapshot.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+class RebuildProgress {
+
+    private final long approximateTotal;
+
+    private final String skippedDescription;
+
+    private final long startNanos;
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private final AtomicLong rebuilt = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param approximateTotal the approximate number of objects to process, or 0 if not known
+     * @param skippedDescription describes the objects which did not need to be read from storage
+     */
+    RebuildProgress(final long approximateTotal, final String skippedDescription) {
+        this.approximateTotal = approximateTotal;
+        this.skippedDescription = skippedDescription;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Record processed objects
+     * @param skippedObjects the number of objects which did not need to be read from storage
+     * @param rebuiltObjects the number of objects read from storage
+     */
+    void add(final long skippedObjects, final long rebuiltObjects) {
+        skipped.addAndGet(skippedObjects);
+        rebuilt.addAndGet(rebuiltObjects);
+    }
+
+    /**
+     * @return the number of objects processed so far
+     */
+    long getProcessed() {
+        return skipped.get() + rebuilt.get();
+    }
+
+    /**
+     * @return the number of objects which did not need to be read from storage so far
+     */
+    long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * @return the number of objects read from storage so far
+     */
+    long getRebuilt() {
+        return rebuilt.get();
+    }
+
+    /**
+     * @return the objects processed per second since the rebuild started
+     */
+    double getRate() {
+        final long elapsed = System.nanoTime() - startNanos;
+        return elapsed == 0 ? 0 : getProcessed() * (double) NANOSECONDS.convert(1, SECONDS) / elapsed;
+    }
+
+    /**
+     * @return the approximate seconds until the rebuild is complete, or -1 if there is no estimate: the total is not
+     *         known, nothing has been processed yet, or more objects were processed than expected
+     */
+    long getRemainingSeconds() {
+        final double rate = getRate();
+        final long remaining = approximateTotal - getProcessed();
+        return rate == 0 || remaining <= 0 ? -1 : (long) Math.ceil(remaining / rate);
+    }
+
+    @Override
+    public String toString() {
+        final var progress = format("%d objects (%d %s, %d read from storage), %.1f objects/sec",
+                getProcessed(), getSkipped(), skippedDescription, getRebuilt(), getRate());
+        final long remaining = getRemainingSeconds();
+        if (remaining < 0) {
+            return progress;
+        }
+        return progress + format(", approximately %d:%02d:%02d remaining of about %d objects", remaining / 3600,
+                remaining / 60 % 60, remaining % 60, approximateTotal);
+    }
+}
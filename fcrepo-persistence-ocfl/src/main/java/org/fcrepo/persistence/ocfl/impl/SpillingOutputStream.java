@@ -0,0 +1,125 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Output stream for a staged file, which keeps the content in memory until it grows past a threshold and then moves
+ * it to a file in the staging directory.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+class SpillingOutputStream extends OutputStream {
+
+    private final int threshold;
+
+    private final Path spillPath;
+
+    private ByteArrayOutputStream buffer;
+
+    private OutputStream fileStream;
+
+    private long size;
+
+    /**
+     * Constructor
+     *
+     * @param threshold largest number of bytes kept in memory. 0 writes straight to the file.
+     * @param spillPath file the content is written to once it outgrows the threshold
+     * @throws IOException if the file cannot be created
+     */
+    SpillingOutputStream(final int threshold, final Path spillPath) throws IOException {
+        this.threshold = threshold;
+        this.spillPath = spillPath;
+        if (threshold > 0) {
+            buffer = new ByteArrayOutputStream(Math.min(threshold, 1024));
+        } else {
+            spill();
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        reserve(1).write(b);
+        size++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        reserve(len).write(b, off, len);
+        size += len;
+    }
+
+    private OutputStream reserve(final int len) throws IOException {
+        if (fileStream == null && size + len > threshold) {
+            spill();
+        }
+        return fileStream == null ? buffer : fileStream;
+    }
+
+    private void spill() throws IOException {
+        Files.createDirectories(spillPath.getParent());
+        fileStream = new BufferedOutputStream(Files.newOutputStream(spillPath));
+        if (buffer != null) {
+            buffer.writeTo(fileStream);
+            buffer = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileStream != null) {
+            fileStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileStream != null) {
+            fileStream.close();
+        }
+    }
+
+    /**
+     * @return true if the content was moved to the file
+     */
+    boolean isSpilled() {
+        return fileStream != null;
+    }
+
+    /**
+     * @return the content, if it was kept in memory
+     */
+    byte[] toByteArray() {
+        return buffer.toByteArray();
+    }
+
+    /**
+     * @return number of bytes written
+     */
+    long size() {
+        return size;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits for staging files of object sessions in memory, and the number of bytes currently staged in memory and in
+ * staging directories by all sessions sharing it.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+public class StagingMemory {
+
+    private final int fileThreshold;
+
+    private final long sessionBudget;
+
+    private final long totalBudget;
+
+    private final AtomicLong stagedBytes = new AtomicLong();
+
+    private final AtomicLong stagedFileBytes = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param fileThreshold largest file in bytes which is staged in memory
+     * @param sessionBudget most bytes one object session may stage in memory, further files are staged on disk
+     * @param totalBudget most bytes all sessions together may stage in memory, further files are staged on disk
+     */
+    public StagingMemory(final int fileThreshold, final long sessionBudget, final long totalBudget) {
+        this.fileThreshold = fileThreshold;
+        this.sessionBudget = sessionBudget;
+        this.totalBudget = totalBudget;
+    }
+
+    /**
+     * @return largest file in bytes which is staged in memory
+     */
+    public int getFileThreshold() {
+        return fileThreshold;
+    }
+
+    /**
+     * @return most bytes one object session may stage in memory
+     */
+    public long getSessionBudget() {
+        return sessionBudget;
+    }
+
+    /**
+     * @return most bytes all sessions together may stage in memory
+     */
+    public long getTotalBudget() {
+        return totalBudget;
+    }
+
+    /**
+     * Reserve memory for a file about to be staged, as much as is left of the total budget up to the requested
+     * number of bytes. The reservation counts as staged until it is released, so that concurrent sessions cannot
+     * together stage more than the total budget.
+     *
+     * @param bytes the number of bytes wanted
+     * @return the number of bytes reserved, 0 if the total budget is used up
+     */
+    long reserve(final long bytes) {
+        while (true) {
+            final long staged = stagedBytes.get();
+            final long reserved = Math.max(0, Math.min(bytes, totalBudget - staged));
+            if (reserved == 0 || stagedBytes.compareAndSet(staged, staged + reserved)) {
+                return reserved;
+            }
+        }
+    }
+
+    /**
+     * Release memory reserved with {@link #reserve(long)}
+     *
+     * @param bytes the number of bytes reserved
+     */
+    void release(final long bytes) {
+        stagedBytes.addAndGet(-bytes);
+    }
+
+    /**
+     * @return number of bytes currently staged in memory by all sessions
+     */
+    public long getStagedBytes() {
+        return stagedBytes.get();
+    }
+
+    /**
+     * Record a change in the number of bytes staged in memory
+     *
+     * @param delta bytes added, negative for bytes released
+     */
+    void addStagedBytes(final long delta) {
+        stagedBytes.addAndGet(delta);
+    }
+
+    /**
+     * @return number of bytes currently staged in files on disk by all sessions
+     */
+    public long getStagedFileBytes() {
+        return stagedFileBytes.get();
+    }
+
+    /**
+     * Record a change in the number of bytes staged in files on disk
+     *
+     * @param delta bytes added, negative for bytes released
+     */
+    void addStagedFileBytes(final long delta) {
+        stagedFileBytes.addAndGet(delta);
+    }
+}
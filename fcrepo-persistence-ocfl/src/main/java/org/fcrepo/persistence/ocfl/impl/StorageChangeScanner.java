@@ -0,0 +1,223 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the OCFL objects changed since a point in time, or since their inventories were last seen, from the
+ * modification times and sizes of their inventories, without reading the objects through the OCFL repository.
+ *
+ * The storage root is walked until an object root is found, recognised by its namaste file, and object roots are not
+ * descended into. An object's inventories are its root inventory and the inventory of a mutable head kept in one of
+ * its extensions. Only the inventories of changed objects are read, for their IDs.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+final class StorageChangeScanner {
+
+    private static final String OBJECT_NAMASTE_FILE = "0=ocfl_object_1.0";
+
+    private static final String INVENTORY_FILE = "inventory.json";
+
+    private static final String EXTENSIONS_DIR = "extensions";
+
+    private static final String MUTABLE_HEAD_DIR = "head";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private StorageChangeScanner() {
+    }
+
+    /**
+     * @param storageRoot the OCFL storage root
+     * @param since the time to compare inventory modification times with
+     * @return the IDs of the OCFL objects whose inventory was modified after the time
+     * @throws IOException if the storage root cannot be walked or an inventory cannot be read
+     */
+    static Set<String> findChangedSince(final Path storageRoot, final Instant since) throws IOException {
+        final Set<String> changed = new HashSet<>();
+        walkObjectRoots(storageRoot, objectRoot -> {
+            final var inventory = objectRoot.resolve(INVENTORY_FILE);
+            if (modifiedAfter(inventory, since) || mutableHeadModifiedAfter(objectRoot, since)) {
+                changed.add(readObjectId(inventory));
+            }
+        });
+        return changed;
+    }
+
+    /**
+     * @param storageRoot the OCFL storage root
+     * @param knownStates the inventory stamp last seen at each object root, by the path of the object root relative to
+     *                    the storage root
+     * @return the current state of each object whose object root is not known, or whose inventory stamp differs from
+     *         the one last seen, by OCFL object ID
+     * @throws IOException if the storage root cannot be walked or an inventory cannot be read
+     */
+    static Map<String, ObjectState> findChanged(final Path storageRoot, final Map<String, String> knownStates)
+            throws IOException {
+        final Map<String, ObjectState> changed = new HashMap<>();
+        walkObjectRoots(storageRoot, objectRoot -> {
+            final var relativeRoot = storageRoot.relativize(objectRoot).toString();
+            final var stamp = inventoryStamp(objectRoot);
+            if (!stamp.equals(knownStates.get(relativeRoot))) {
+                changed.put(readObjectId(objectRoot.resolve(INVENTORY_FILE)), new ObjectState(relativeRoot, stamp));
+            }
+        });
+        return changed;
+    }
+
+    private static void walkObjectRoots(final Path storageRoot, final ObjectRootVisitor visitor) throws IOException {
+        Files.walkFileTree(storageRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                    throws IOException {
+                if (!Files.exists(dir.resolve(OBJECT_NAMASTE_FILE))) {
+                    return FileVisitResult.CONTINUE;
+                }
+                visitor.visit(dir);
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+        });
+    }
+
+    /**
+     * Describe the modification time and size of each of an object's inventories, so that any write to them changes
+     * the description.
+     */
+    private static String inventoryStamp(final Path objectRoot) throws IOException {
+        final var stamp = new StringBuilder();
+        appendStamp(stamp, objectRoot.resolve(INVENTORY_FILE));
+        final var extensions = objectRoot.resolve(EXTENSIONS_DIR);
+        if (Files.isDirectory(extensions)) {
+            final List<Path> heads = new ArrayList<>();
+            try (final var extensionDirs = Files.newDirectoryStream(extensions, Files::isDirectory)) {
+                for (final var extension : extensionDirs) {
+                    final var head = extension.resolve(MUTABLE_HEAD_DIR).resolve(INVENTORY_FILE);
+                    if (Files.exists(head)) {
+                        heads.add(head);
+                    }
+                }
+            }
+            heads.sort(null);
+            for (final var head : heads) {
+                stamp.append(',');
+                appendStamp(stamp, head);
+            }
+        }
+        return stamp.toString();
+    }
+
+    private static void appendStamp(final StringBuilder stamp, final Path file) throws IOException {
+        if (Files.exists(file)) {
+            final var attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            stamp.append(attrs.lastModifiedTime().toMillis()).append(':').append(attrs.size());
+        }
+    }
+
+    private static boolean modifiedAfter(final Path file, final Instant since) throws IOException {
+        return Files.exists(file) && Files.getLastModifiedTime(file).toInstant().isAfter(since);
+    }
+
+    private static boolean mutableHeadModifiedAfter(final Path objectRoot, final Instant since) throws IOException {
+        final var extensions = objectRoot.resolve(EXTENSIONS_DIR);
+        if (!Files.isDirectory(extensions)) {
+            return false;
+        }
+        try (final var extensionDirs = Files.newDirectoryStream(extensions, Files::isDirectory)) {
+            for (final var extension : extensionDirs) {
+                if (modifiedAfter(extension.resolve(MUTABLE_HEAD_DIR).resolve(INVENTORY_FILE), since)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the id of an OCFL object from the top level of its inventory, without parsing the rest of it.
+     */
+    private static String readObjectId(final Path inventory) throws IOException {
+        try (final var parser = JSON_FACTORY.createParser(inventory.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Inventory " + inventory + " is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final var field = parser.getCurrentName();
+                parser.nextToken();
+                if ("id".equals(field)) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new IOException("Inventory " + inventory + " has no id");
+    }
+
+    /**
+     * Visits an object root found in the storage root.
+     */
+    @FunctionalInterface
+    private interface ObjectRootVisitor {
+        void visit(Path objectRoot) throws IOException;
+    }
+
+    /**
+     * Where an OCFL object is in the storage root, and the stamp of its inventories when it was seen there.
+     */
+    static final class ObjectState {
+
+        private final String objectRoot;
+
+        private final String inventoryStamp;
+
+        /**
+         * Constructor
+         * @param objectRoot the path of the object root relative to the storage root
+         * @param inventoryStamp the modification times and sizes of the object's inventories
+         */
+        ObjectState(final String objectRoot, final String inventoryStamp) {
+            this.objectRoot = objectRoot;
+            this.inventoryStamp = inventoryStamp;
+        }
+
+        String getObjectRoot() {
+            return objectRoot;
+        }
+
+        String getInventoryStamp() {
+            return inventoryStamp;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.PrefixMapFactory;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.thrift.TRDF;
+import org.apache.jena.riot.thrift.Thrift2StreamRDF;
+import org.apache.jena.riot.thrift.wire.RDF_StreamRow;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * Reads the triples of an RDF Thrift encoded file one row at a time, so that the file is parsed as the triples are
+ * consumed.
+ *
+ * @author agent
+ * @since 6.0.0
+ */
+final class ThriftTripleIterator implements Iterator<Triple> {
+
+    private final TProtocol protocol;
+
+    private final Queue<Triple> triples = new ArrayDeque<>();
+
+    private final Thrift2StreamRDF rows;
+
+    private boolean exhausted;
+
+    /**
+     * Constructor
+     *
+     * @param inputStream the RDF Thrift encoded content
+     */
+    ThriftTripleIterator(final InputStream inputStream) {
+        this.protocol = TRDF.protocol(inputStream);
+        this.rows = new Thrift2StreamRDF(PrefixMapFactory.create(), new StreamRDFBase() {
+            @Override
+            public void triple(final Triple triple) {
+                triples.add(triple);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (triples.isEmpty() && !exhausted) {
+            readRow();
+        }
+        return !triples.isEmpty();
+    }
+
+    @Override
+    public Triple next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return triples.remove();
+    }
+
+    private void readRow() {
+        final var row = new RDF_StreamRow();
+        try {
+            row.read(protocol);
+        } catch (final TTransportException e) {
+            if (e.getType() == TTransportException.END_OF_FILE) {
+                exhausted = true;
+                return;
+            }
+            throw new RiotException(e);
+        } catch (final TException e) {
+            throw new RiotException(e);
+        }
+        // prefix declarations are recorded by the visitor, triples end up in the queue
+        TRDF.visit(row, rows);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fcrepo.kernel.api.models.ResourceHeaders;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ * @since 6.0.0
+ */
+public class CommittedStateCacheTest {
+
+    private static final String OCFL_ID_1 = "ocfl-id-1";
+    private static final String OCFL_ID_2 = "ocfl-id-2";
+    private static final String RESOURCE_ID_1 = "info:fedora/resource1";
+    private static final String RESOURCE_ID_2 = "info:fedora/resource2";
+    private static final Instant VERSION = Instant.parse("2020-01-01T00:00:00Z");
+
+    private CommittedStateCache<ResourceHeaders> cache;
+
+    private AtomicInteger loads;
+
+    @Before
+    public void setup() {
+        cache = new CommittedStateCache<>(100);
+        loads = new AtomicInteger();
+    }
+
+    private ResourceHeaders load() {
+        loads.incrementAndGet();
+        return mock(ResourceHeaders.class);
+    }
+
+    @Test
+    public void testHeadIsCached() throws Exception {
+        final var headers = cache.get(OCFL_ID_1, RESOURCE_ID_1, null, this::load);
+        assertSame(headers, cache.get(OCFL_ID_1, RESOURCE_ID_1, null, this::load));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void testInvalidateDropsHeadOfChangedObjects() throws Exception {
+        final var head1 = cache.get(OCFL_ID_1, RESOURCE_ID_1, null, this::load);
+        final var memento1 = cache.get(OCFL_ID_1, RESOURCE_ID_1, VERSION, this::load);
+        final var head2 = cache.get(OCFL_ID_2, RESOURCE_ID_2, null, this::load);
+
+        cache.invalidate(List.of(OCFL_ID_1));
+
+        assertEquals(3, loads.get());
+        assertSame(memento1, cache.get(OCFL_ID_1, RESOURCE_ID_1, VERSION, this::load));
+        assertSame(head2, cache.get(OCFL_ID_2, RESOURCE_ID_2, null, this::load));
+        assertEquals(3, loads.get());
+        final var reloaded = cache.get(OCFL_ID_1, RESOURCE_ID_1, null, this::load);
+        assertEquals(4, loads.get());
+        assertNotSame(head1, reloaded);
+    }
+
+    @Test
+    public void testReadOverlappingCommitIsNotCached() throws Exception {
+        cache.get(OCFL_ID_1, RESOURCE_ID_1, null, () -> {
+            final var headers = load();
+            cache.invalidate(List.of(OCFL_ID_1));
+            return headers;
+        });
+        cache.get(OCFL_ID_1, RESOURCE_ID_1, null, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testWeight() throws Exception {
+        final CommittedStateCache<List<String>> weighed = new CommittedStateCache<>(3, (id, value) -> value.size());
+        weighed.get(OCFL_ID_1, RESOURCE_ID_1, null, () -> List.of("a", "b"));
+        weighed.get(OCFL_ID_2, RESOURCE_ID_2, null, () -> List.of("c", "d"));
+        assertEquals(1, weighed.stats().evictionCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        cache = new CommittedStateCache<>(1);
+        cache.get(OCFL_ID_1, RESOURCE_ID_1, null, this::load);
+        cache.get(OCFL_ID_2, RESOURCE_ID_2, null, this::load);
+        assertEquals(1, cache.stats().evictionCount());
+
+        // the evicted entry is no longer tracked for its object
+        cache.invalidate(List.of(OCFL_ID_1, OCFL_ID_2));
+        cache.get(OCFL_ID_2, RESOURCE_ID_2, null, this::load);
+        assertEquals(3, loads.get());
+    }
+}
@@ -19,6 +19,7 @@ package org.fcrepo.persistence.ocfl.impl;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
+import static org.apache.commons.codec.digest.DigestUtils.sha512Hex;
 import static org.fcrepo.kernel.api.FedoraTypes.FEDORA_ID_PREFIX;
 import static org.fcrepo.kernel.api.RdfLexicon.NON_RDF_SOURCE;
 import static org.fcrepo.kernel.api.operations.ResourceOperationType.CREATE;
@@ -259,6 +260,41 @@ public class CreateNonRdfSourcePersisterTest {
                 resultHeaders.getDigests().contains(CONTENT_SHA1_URI));
     }
 
+    @Test
+    public void testInternalComputesConfiguredDigests() throws Exception {
+        mockSessionWriteConsumeStream();
+
+        final InputStream content = IOUtils.toInputStream(CONTENT_BODY, UTF_8);
+
+        when(nonRdfSourceOperation.getContentDigests()).thenReturn(asList(CONTENT_SHA1_URI));
+        when(nonRdfSourceOperation.getContentStream()).thenReturn(content);
+
+        System.setProperty(OCFLConstants.DIGEST_ALGORITHMS_KEY, "sha-512");
+        try {
+            new CreateNonRdfSourcePersister(index).persist(psSession, nonRdfSourceOperation);
+        } finally {
+            System.clearProperty(OCFLConstants.DIGEST_ALGORITHMS_KEY);
+        }
+
+        final var resultHeaders = retrievePersistedHeaders("child");
+        assertEquals(asList(CONTENT_SHA1_URI, URI.create("urn:sha-512:" + sha512Hex(CONTENT_BODY))),
+                resultHeaders.getDigests());
+    }
+
+    @Test
+    public void testInternalComputesNoDigestsByDefault() throws Exception {
+        mockSessionWriteConsumeStream();
+
+        final InputStream content = IOUtils.toInputStream(CONTENT_BODY, UTF_8);
+
+        when(nonRdfSourceOperation.getContentStream()).thenReturn(content);
+
+        persister.persist(psSession, nonRdfSourceOperation);
+
+        verify(session).write("child", content);
+        assertTrue(retrievePersistedHeaders("child").getDigests().isEmpty());
+    }
+
     @Test(expected = InvalidChecksumException.class)
     public void testInternalWithInvalidDigest() throws Exception {
         // During write, ensure that input stream is consumed
@@ -18,10 +18,14 @@
 package org.fcrepo.persistence.ocfl.impl;
 
 import edu.wisc.library.ocfl.api.MutableOcflRepository;
+import edu.wisc.library.ocfl.api.OcflObjectUpdater;
 import edu.wisc.library.ocfl.api.OcflObjectVersion;
+import edu.wisc.library.ocfl.api.OcflObjectVersionFile;
+import edu.wisc.library.ocfl.api.io.FixityCheckInputStream;
 import static edu.wisc.library.ocfl.api.OcflOption.MOVE_SOURCE;
 import edu.wisc.library.ocfl.api.model.ObjectDetails;
 import edu.wisc.library.ocfl.api.model.ObjectVersionId;
+import edu.wisc.library.ocfl.api.model.VersionDetails;
 import edu.wisc.library.ocfl.api.model.VersionId;
 import edu.wisc.library.ocfl.core.OcflRepositoryBuilder;
 import edu.wisc.library.ocfl.core.extension.layout.config.DefaultLayoutConfig;
@@ -35,6 +39,8 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.apache.commons.io.IOUtils;
 import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
@@ -49,13 +55,22 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 
 /**
  * @author bbpennel
@@ -136,6 +151,19 @@ public class DefaultOCFLObjectSessionTest {
         assertFileInHeadVersion(OBJ_ID, FILE1_SUBPATH, FILE_CONTENT2);
     }
 
+    @Test
+    public void writeWith_ToNewVersion_NewObject() throws Exception {
+        final var outcome = session.writeWith(FILE1_SUBPATH,
+                out -> out.write(FILE_CONTENT1.getBytes()));
+        assertEquals(FILE_CONTENT1.length(), outcome.getContentSize().longValue());
+        assertStreamMatches(FILE_CONTENT1, session.read(FILE1_SUBPATH));
+
+        final String versionId = commit(NEW_VERSION);
+
+        assertEquals("v1", versionId);
+        assertFileInHeadVersion(OBJ_ID, FILE1_SUBPATH, FILE_CONTENT1);
+    }
+
     @Test
     public void write_ReplaceFile_NewVersion_ExistingObject() throws Exception {
         final var preStagingPath = tempFolder.newFolder("prestage").toPath();
@@ -448,6 +476,22 @@ public class DefaultOCFLObjectSessionTest {
         session.delete(FILE1_SUBPATH);
     }
 
+    @Test
+    public void exists_StagedCommittedAndDeleted() throws Exception {
+        assertFalse(session.exists(FILE1_SUBPATH));
+        session.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        assertTrue(session.exists(FILE1_SUBPATH));
+        commit(NEW_VERSION);
+
+        final var session2 = makeNewSession();
+        assertTrue(session2.exists(FILE1_SUBPATH));
+        assertFalse(session2.exists(FILE2_SUBPATH));
+        session2.delete(FILE1_SUBPATH);
+        assertFalse(session2.exists(FILE1_SUBPATH));
+        session2.write(FILE1_SUBPATH, fileStream(FILE_CONTENT2));
+        assertTrue(session2.exists(FILE1_SUBPATH));
+    }
+
     @Test
     public void deleteObject_ObjectExists() throws Exception {
         session.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
@@ -810,6 +854,213 @@ public class DefaultOCFLObjectSessionTest {
         assertFileNotInVersion(obj2ID, "v1", FILE1_SUBPATH);
     }
 
+    @Test
+    public void cachedCommittedState_ReadsInventoryOnce() throws Exception {
+        final var repository = mock(MutableOcflRepository.class);
+        final var objDetails = mock(ObjectDetails.class);
+        final var headVersion = mock(VersionDetails.class);
+        final var headObject = mock(OcflObjectVersion.class);
+        final var headFile = mock(OcflObjectVersionFile.class);
+        when(repository.describeObject(OBJ_ID)).thenReturn(objDetails);
+        when(repository.getObject(any())).thenReturn(headObject);
+        when(objDetails.getHeadVersion()).thenReturn(headVersion);
+        when(headVersion.containsFile(anyString())).thenReturn(true);
+        when(headObject.getFile(FILE2_SUBPATH)).thenReturn(headFile);
+        final var headStream = mock(FixityCheckInputStream.class);
+        when(headFile.getStream()).thenReturn(headStream);
+        when(headStream.enableFixityCheck(false)).thenReturn(headStream);
+
+        final var cachingSession = new DefaultOCFLObjectSession(OBJ_ID, tempFolder.newFolder("cached").toPath(),
+                repository, UNVERSIONED, true);
+        cachingSession.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        cachingSession.delete(FILE1_SUBPATH);
+        cachingSession.delete("other.txt");
+        assertSame(headStream, cachingSession.read(FILE2_SUBPATH));
+        assertSame(headStream, cachingSession.read(FILE2_SUBPATH));
+
+        verify(repository).describeObject(OBJ_ID);
+        verify(repository).getObject(any());
+    }
+
+    @Test
+    public void cachedCommittedState_CommitSeesObjectCreatedByOtherSession() throws Exception {
+        final var repository = mock(MutableOcflRepository.class);
+        final var objDetails = mock(ObjectDetails.class);
+        final var headVersion = mock(VersionDetails.class);
+        final var committedVersion = mock(ObjectVersionId.class);
+        when(committedVersion.getVersionId()).thenReturn(mock(VersionId.class));
+        when(objDetails.getHeadVersion()).thenReturn(headVersion);
+        // the object exists once the first session has created it
+        final var created = new AtomicBoolean();
+        when(repository.describeObject(OBJ_ID)).thenAnswer(invocation -> created.get() ? objDetails : null);
+        when(repository.putObject(any(), any(), any(), any())).thenAnswer(invocation -> {
+            created.set(true);
+            return committedVersion;
+        });
+        when(repository.updateObject(any(), any(), any())).thenReturn(committedVersion);
+
+        final var session1 = new DefaultOCFLObjectSession(OBJ_ID, tempFolder.newFolder("tx1").toPath(),
+                repository, NEW_VERSION, true);
+        final var session2 = new DefaultOCFLObjectSession(OBJ_ID, tempFolder.newFolder("tx2").toPath(),
+                repository, NEW_VERSION, true);
+        // both sessions see the object as new
+        session1.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        session2.write(FILE2_SUBPATH, fileStream(FILE_CONTENT2));
+
+        session1.commit();
+        session2.commit();
+
+        // the second commit must add to the object rather than replace it
+        verify(repository, times(1)).putObject(any(), any(), any(), any());
+        verify(repository).updateObject(any(), any(), any());
+    }
+
+    @Test
+    public void memoryStaging_SmallFilesHandedToUpdaterAtCommit() throws Exception {
+        final var repository = mock(MutableOcflRepository.class);
+        final var updater = mock(OcflObjectUpdater.class);
+        final var committedVersion = mock(ObjectVersionId.class);
+        when(committedVersion.getVersionId()).thenReturn(mock(VersionId.class));
+        when(repository.updateObject(any(), any(), any())).thenAnswer(invocation -> {
+            final Consumer<OcflObjectUpdater> updateFunc = invocation.getArgument(2);
+            updateFunc.accept(updater);
+            return committedVersion;
+        });
+        final var largeContent = FILE_CONTENT2 + FILE_CONTENT2;
+
+        final var memorySession = new DefaultOCFLObjectSession(OBJ_ID, stagingPath, repository, NEW_VERSION,
+                true, new StagingMemory(FILE_CONTENT1.length(), 1024, 1024));
+        final var outcome = memorySession.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        memorySession.write(FILE2_SUBPATH, fileStream(largeContent));
+
+        assertEquals(FILE_CONTENT1.length(), outcome.getContentSize().longValue());
+        final var objStagingPath = stagingPath.resolve(OBJ_ID);
+        assertFalse(Files.exists(objStagingPath.resolve(FILE1_SUBPATH)));
+        assertTrue(Files.exists(objStagingPath.resolve(FILE2_SUBPATH)));
+        assertStreamMatches(FILE_CONTENT1, memorySession.read(FILE1_SUBPATH));
+        assertStreamMatches(largeContent, memorySession.read(FILE2_SUBPATH));
+
+        memorySession.commit();
+
+        final var streamCaptor = ArgumentCaptor.forClass(InputStream.class);
+        verify(updater).writeFile(streamCaptor.capture(), eq(FILE1_SUBPATH));
+        assertStreamMatches(FILE_CONTENT1, streamCaptor.getValue());
+        verify(updater).addPath(objStagingPath, "", MOVE_SOURCE);
+    }
+
+    @Test
+    public void readRange_StagedAndCommittedFiles() throws Exception {
+        final var repository = mock(MutableOcflRepository.class);
+        final var objDetails = mock(ObjectDetails.class);
+        final var headVersion = mock(VersionDetails.class);
+        final var headObject = mock(OcflObjectVersion.class);
+        final var headFile = mock(OcflObjectVersionFile.class);
+        when(repository.describeObject(OBJ_ID)).thenReturn(objDetails);
+        when(objDetails.getHeadVersion()).thenReturn(headVersion);
+        when(repository.getObject(any())).thenReturn(headObject);
+        when(headObject.getFile(FILE2_SUBPATH)).thenReturn(headFile);
+        when(headFile.getStorageRelativePath()).thenReturn("obj1/v1/content/" + FILE2_SUBPATH);
+
+        final var storageRoot = tempFolder.newFolder("storage-root").toPath();
+        final var committedPath = storageRoot.resolve("obj1/v1/content/" + FILE2_SUBPATH);
+        Files.createDirectories(committedPath.getParent());
+        Files.writeString(committedPath, FILE_CONTENT2);
+
+        final var rangeSession = new DefaultOCFLObjectSession(OBJ_ID, stagingPath, repository, NEW_VERSION,
+                true, new StagingMemory(FILE_CONTENT1.length(), 1024, 1024), storageRoot);
+        rangeSession.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        rangeSession.write("large.txt", fileStream(FILE_CONTENT1 + FILE_CONTENT2));
+
+        assertStreamMatches("content", rangeSession.readRange(FILE1_SUBPATH, null, 5, 11));
+        assertStreamMatches(FILE_CONTENT2, rangeSession.readRange("large.txt", null,
+                FILE_CONTENT1.length(), -1));
+        assertStreamMatches("6.0", rangeSession.readRange(FILE2_SUBPATH, null, 9, 20));
+        assertStreamMatches("", rangeSession.readRange(FILE2_SUBPATH, "v1", 40, 50));
+    }
+
+    @Test
+    public void memoryStaging_BudgetUsedUpStagesOnDisk() throws Exception {
+        final var repository = mock(MutableOcflRepository.class);
+        final var stagingMemory = new StagingMemory(FILE_CONTENT1.length(), FILE_CONTENT1.length() + 4, 1024);
+
+        final var memorySession = new DefaultOCFLObjectSession(OBJ_ID, stagingPath, repository, NEW_VERSION,
+                true, stagingMemory);
+        memorySession.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        memorySession.write(FILE2_SUBPATH, fileStream(FILE_CONTENT2));
+
+        final var objStagingPath = stagingPath.resolve(OBJ_ID);
+        assertFalse(Files.exists(objStagingPath.resolve(FILE1_SUBPATH)));
+        assertTrue(Files.exists(objStagingPath.resolve(FILE2_SUBPATH)));
+        assertEquals(FILE_CONTENT1.length(), stagingMemory.getStagedBytes());
+        assertEquals(FILE_CONTENT2.length(), stagingMemory.getStagedFileBytes());
+
+        // replacing a file in memory reuses its share of the budget
+        memorySession.write(FILE1_SUBPATH, fileStream(FILE_CONTENT2));
+        assertFalse(Files.exists(objStagingPath.resolve(FILE1_SUBPATH)));
+        assertEquals(FILE_CONTENT2.length(), stagingMemory.getStagedBytes());
+
+        // replacing a file on disk counts only its new size
+        memorySession.write(FILE2_SUBPATH, fileStream(FILE_CONTENT1 + FILE_CONTENT2));
+        assertEquals(FILE_CONTENT1.length() + FILE_CONTENT2.length(), stagingMemory.getStagedFileBytes());
+
+        memorySession.close();
+        assertEquals(0, stagingMemory.getStagedBytes());
+        assertEquals(0, stagingMemory.getStagedFileBytes());
+    }
+
+    @Test
+    public void memoryStaging_TotalBudgetSharedBySessions() throws Exception {
+        final var repository = mock(MutableOcflRepository.class);
+        final var stagingMemory = new StagingMemory(FILE_CONTENT1.length(), 1024, FILE_CONTENT1.length() + 4);
+
+        final var session1 = new DefaultOCFLObjectSession(OBJ_ID, stagingPath, repository, NEW_VERSION,
+                true, stagingMemory);
+        final var session2 = new DefaultOCFLObjectSession("obj2", stagingPath, repository, NEW_VERSION,
+                true, stagingMemory);
+        session1.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        session2.write(FILE1_SUBPATH, fileStream(FILE_CONTENT2));
+
+        // the second session is within its own budget, but the total is used up
+        assertFalse(Files.exists(stagingPath.resolve(OBJ_ID).resolve(FILE1_SUBPATH)));
+        assertTrue(Files.exists(stagingPath.resolve("obj2").resolve(FILE1_SUBPATH)));
+        assertEquals(FILE_CONTENT1.length(), stagingMemory.getStagedBytes());
+        assertEquals(FILE_CONTENT2.length(), stagingMemory.getStagedFileBytes());
+        assertStreamMatches(FILE_CONTENT2, session2.read(FILE1_SUBPATH));
+
+        // memory released by one session can be used by another
+        session1.close();
+        assertEquals(0, stagingMemory.getStagedBytes());
+        session2.write(FILE2_SUBPATH, fileStream(FILE_CONTENT1));
+        assertFalse(Files.exists(stagingPath.resolve("obj2").resolve(FILE2_SUBPATH)));
+        assertEquals(FILE_CONTENT1.length(), stagingMemory.getStagedBytes());
+
+        session2.close();
+        assertEquals(0, stagingMemory.getStagedBytes());
+        assertEquals(0, stagingMemory.getStagedFileBytes());
+    }
+
+    @Test
+    public void memoryStaging_SpilledFileReplacedInMemory() throws Exception {
+        final var repository = mock(MutableOcflRepository.class);
+        final var stagingMemory = new StagingMemory(FILE_CONTENT1.length(), 1024, 1024);
+
+        final var memorySession = new DefaultOCFLObjectSession(OBJ_ID, stagingPath, repository, NEW_VERSION,
+                true, stagingMemory);
+        final var staged = stagingPath.resolve(OBJ_ID).resolve(FILE1_SUBPATH);
+        memorySession.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1 + FILE_CONTENT2));
+        assertTrue(Files.exists(staged));
+
+        // the file spilled to disk is removed once it is replaced by content small enough for memory
+        memorySession.write(FILE1_SUBPATH, fileStream(FILE_CONTENT1));
+        assertFalse(Files.exists(staged));
+        assertEquals(0, stagingMemory.getStagedFileBytes());
+        assertStreamMatches(FILE_CONTENT1, memorySession.read(FILE1_SUBPATH));
+        assertStreamMatches("content", memorySession.readRange(FILE1_SUBPATH, null, 5, 11));
+
+        memorySession.delete(FILE1_SUBPATH);
+        assertEquals(0, stagingMemory.getStagedBytes());
+    }
+
     private static InputStream fileStream(final String content) {
         return new ByteArrayInputStream(content.getBytes());
     }
@@ -20,6 +20,7 @@ package org.fcrepo.persistence.ocfl.impl;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -30,6 +31,7 @@ import java.util.stream.Stream;
 
 import org.fcrepo.kernel.api.operations.ResourceOperation;
 import org.fcrepo.persistence.api.PersistentStorageSession;
+import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
@@ -124,6 +126,25 @@ public class DeleteResourcePersisterTest {
         verify(session).write(eq(".fcrepo/some-subpath.json"), any());
     }
 
+    @Test
+    public void testDeleteSubPathRdfWrittenAsThrift() throws Exception {
+        final String header_string = "{\"parent\":\"info:fedora/an-ocfl-object\",\"id\":" +
+            "\"info:fedora/an-ocfl-object/some-subpath\",\"lastModifiedDate\":\"2020-04-14T03:42:00.765231Z\"," +
+            "\"interactionModel\":\"http://www.w3.org/ns/ldp#BasicContainer\",\"createdDate\":" +
+            "\"2020-04-14T03:42:00.765231Z\",\"stateToken\":\"6763672ED325A4B632B450545518B34B\"," +
+            "\"archivalGroup\":false,\"objectRoot\":false}";
+        final InputStream header_stream = new ByteArrayInputStream(header_string.getBytes());
+        when(session.read(".fcrepo/some-subpath.json")).thenReturn(header_stream);
+        doThrow(new PersistentItemNotFoundException("not found")).when(session).delete("some-subpath.nt");
+        when(mapping.getOcflObjectId()).thenReturn("some-ocfl-id");
+        when(mapping.getRootObjectIdentifier()).thenReturn("info:fedora/an-ocfl-object");
+        when(operation.getResourceId()).thenReturn("info:fedora/an-ocfl-object/some-subpath");
+        when(index.getMapping(anyString())).thenReturn(mapping);
+        persister.persist(psSession, operation);
+        verify(session).delete("some-subpath.trdf");
+        verify(session).write(eq(".fcrepo/some-subpath.json"), any());
+    }
+
     @Test(expected = PersistentStorageException.class)
     public void testDeleteSubPathDoesNotExist() throws Exception {
         when(mapping.getOcflObjectId()).thenReturn("some-ocfl-id");
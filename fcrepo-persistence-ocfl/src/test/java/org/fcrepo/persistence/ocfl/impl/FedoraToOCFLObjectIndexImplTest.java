@@ -22,17 +22,23 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.springframework.test.util.ReflectionTestUtils.invokeMethod;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
-import java.nio.file.Files;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
 
 import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 /**
  * @author dbernstein
@@ -49,15 +55,26 @@ public class FedoraToOCFLObjectIndexImplTest {
 
     private File fedoraToOcflIndexFile;
 
+    private DataSource dataSource;
+
     @Before
     public void setup() {
         fedoraToOcflIndexFile = new OCFLConstants().getFedoraToOCFLIndexFile();
         removeIndexMappingFile();
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:ocfl-index-" + System.nanoTime() +
+                ";DB_CLOSE_DELAY=-1");
+    }
+
+    private FedoraToOCFLObjectIndexImpl createIndex() {
+        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+        setField(index, "dataSource", dataSource);
+        invokeMethod(index, "setup");
+        return index;
     }
 
     @Test
     public void test() throws Exception {
-        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+        final FedoraToOCFLObjectIndexImpl index = createIndex();
 
         index.addMapping(RESOURCE_ID_1, ROOT_RESOURCE_ID, OCFL_ID);
         index.addMapping(RESOURCE_ID_2, ROOT_RESOURCE_ID, OCFL_ID);
@@ -88,28 +105,26 @@ public class FedoraToOCFLObjectIndexImplTest {
 
     @Test(expected = FedoraOCFLMappingNotFoundException.class)
     public void testNotExists() throws Exception {
-        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+        final FedoraToOCFLObjectIndexImpl index = createIndex();
         index.getMapping(RESOURCE_ID_1);
     }
 
     @Test
     public void testSaveToIndex() throws Exception {
-        assertFalse(fedoraToOcflIndexFile.exists());
-
-        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+        final FedoraToOCFLObjectIndexImpl index = createIndex();
+        assertTrue(index.isEmpty());
 
         index.addMapping(RESOURCE_ID_1, ROOT_RESOURCE_ID, OCFL_ID);
         index.addMapping(RESOURCE_ID_2, ROOT_RESOURCE_ID, OCFL_ID);
         index.addMapping(RESOURCE_ID_3, RESOURCE_ID_3, OCFL_ID_RESOURCE_3);
 
-        assertTrue(fedoraToOcflIndexFile.exists());
-
-        final List<String> lines;
-        try (var l = Files.lines(fedoraToOcflIndexFile.toPath())) {
-            lines = l.collect(Collectors.toList());
-        }
+        assertFalse(fedoraToOcflIndexFile.exists());
 
-        assertEquals(4, lines.size());
+        final FedoraToOCFLObjectIndexImpl reloaded = createIndex();
+        assertFalse(reloaded.isEmpty());
+        assertEquals(4, reloaded.getMappings().count());
+        verifyMapping(reloaded.getMapping(RESOURCE_ID_2), ROOT_RESOURCE_ID, OCFL_ID);
+        verifyMapping(reloaded.getMapping(RESOURCE_ID_3), RESOURCE_ID_3, OCFL_ID_RESOURCE_3);
     }
 
     @Test
@@ -118,11 +133,16 @@ public class FedoraToOCFLObjectIndexImplTest {
 
         final BufferedWriter output = new BufferedWriter(new FileWriter(fedoraToOcflIndexFile, true));
         output.write(String.format("%s\t%s\t%s\n", RESOURCE_ID_2, ROOT_RESOURCE_ID, OCFL_ID));
+        output.write(String.format("%s\t%s\t%s\n", RESOURCE_ID_3, RESOURCE_ID_3, OCFL_ID_RESOURCE_3));
+        output.write(String.format("%s\n", RESOURCE_ID_3));
         output.close();
 
         assertTrue(fedoraToOcflIndexFile.exists());
 
-        final FedoraToOCFLObjectIndexImpl index = new FedoraToOCFLObjectIndexImpl();
+        final FedoraToOCFLObjectIndexImpl index = createIndex();
+        assertFalse(fedoraToOcflIndexFile.exists());
+        assertTrue(importedIndexFile().exists());
+
         try {
             index.getMapping(RESOURCE_ID_1);
             fail();
@@ -134,18 +154,86 @@ public class FedoraToOCFLObjectIndexImplTest {
         assertEquals(ROOT_RESOURCE_ID, mapping.getRootObjectIdentifier());
         assertEquals(OCFL_ID, mapping.getOcflObjectId());
 
+        // a line without 3 values is ignored rather than removing the mapping
+        verifyMapping(index.getMapping(RESOURCE_ID_3), RESOURCE_ID_3, OCFL_ID_RESOURCE_3);
+    }
+
+    @Test
+    public void testRemoveMapping() throws Exception {
+        final FedoraToOCFLObjectIndexImpl index = createIndex();
+        index.addMapping(RESOURCE_ID_1, ROOT_RESOURCE_ID, OCFL_ID);
+        index.addMapping(RESOURCE_ID_3, RESOURCE_ID_3, OCFL_ID);
+        index.removeMapping(RESOURCE_ID_3);
+        index.addMapping(RESOURCE_ID_3, RESOURCE_ID_3, OCFL_ID_RESOURCE_3);
+        index.removeMapping(RESOURCE_ID_1);
+
+        final FedoraToOCFLObjectIndexImpl reloaded = createIndex();
+        for (final var i : List.of(index, reloaded)) {
+            try {
+                i.getMapping(RESOURCE_ID_1);
+                fail();
+            } catch (FedoraOCFLMappingNotFoundException e) {
+                // We're okay
+            }
+            verifyMapping(i.getMapping(ROOT_RESOURCE_ID), ROOT_RESOURCE_ID, OCFL_ID);
+            verifyMapping(i.getMapping(RESOURCE_ID_3), RESOURCE_ID_3, OCFL_ID_RESOURCE_3);
+        }
+    }
+
+    @Test
+    public void testRemoveMappings() throws Exception {
+        final FedoraToOCFLObjectIndexImpl index = createIndex();
+        index.addMapping(RESOURCE_ID_1, ROOT_RESOURCE_ID, OCFL_ID);
+        index.addMapping(RESOURCE_ID_2, ROOT_RESOURCE_ID, OCFL_ID);
+        index.addMapping(RESOURCE_ID_3, RESOURCE_ID_3, OCFL_ID_RESOURCE_3);
+        index.getMapping(RESOURCE_ID_1);
+        index.removeMappings(List.of(RESOURCE_ID_1, RESOURCE_ID_3, "info:fedora/missing"));
+
         try {
-            index.getMapping(RESOURCE_ID_3);
+            index.getMapping(RESOURCE_ID_1);
             fail();
         } catch (FedoraOCFLMappingNotFoundException e) {
             // We're okay
         }
+        verifyMapping(index.getMapping(RESOURCE_ID_2), ROOT_RESOURCE_ID, OCFL_ID);
+        assertEquals(Map.of(OCFL_ID, 2), index.countMappings(List.of(OCFL_ID, OCFL_ID_RESOURCE_3)));
+    }
+
+    @Test
+    public void testGetMappingsAcrossPages() throws Exception {
+        final FedoraToOCFLObjectIndexImpl index = createIndex();
+        IntStream.range(0, 2500).forEach(i -> index.addMapping(ROOT_RESOURCE_ID + "/" + i, ROOT_RESOURCE_ID, OCFL_ID));
+
+        final Map<String, FedoraOCFLMapping> mappings = index.getMappings()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        assertEquals(2501, mappings.size());
+        verifyMapping(mappings.get(ROOT_RESOURCE_ID + "/2499"), ROOT_RESOURCE_ID, OCFL_ID);
+
+        index.reset();
+        assertTrue(index.isEmpty());
+        assertEquals(0, index.getMappings().count());
+    }
+
+    @Test
+    public void testCountMappings() throws Exception {
+        final FedoraToOCFLObjectIndexImpl index = createIndex();
+        index.addMapping(RESOURCE_ID_1, ROOT_RESOURCE_ID, OCFL_ID);
+        index.addMapping(RESOURCE_ID_2, ROOT_RESOURCE_ID, OCFL_ID);
+        index.addMapping("info:fedora/other", "info:fedora/other", "other");
+
+        assertEquals(Map.of(OCFL_ID, 3, "other", 1), index.countMappings(List.of(OCFL_ID, "other", "missing")));
+        assertEquals(Map.of("other", 1), index.countMappings(List.of("other")));
+    }
+
+    private File importedIndexFile() {
+        return new File(fedoraToOcflIndexFile.getPath() + ".imported");
     }
 
     private void removeIndexMappingFile() {
-        if (fedoraToOcflIndexFile.exists() &&
-                !fedoraToOcflIndexFile.delete()) {
-            throw new RuntimeException("Could not delete file " + fedoraToOcflIndexFile);
+        for (final File file : List.of(fedoraToOcflIndexFile, importedIndexFile())) {
+            if (file.exists() && !file.delete()) {
+                throw new RuntimeException("Could not delete file " + file);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author agent
+ * @since 6.0.0
+ */
+public class FileRangeInputStreamTest {
+
+    private static final String CONTENT = "0123456789";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setup() throws Exception {
+        file = tempFolder.newFile().toPath();
+        Files.writeString(file, CONTENT);
+    }
+
+    private String readRange(final long start, final long end) throws Exception {
+        try (final var stream = new FileRangeInputStream(file, start, end)) {
+            return IOUtils.toString(stream, UTF_8);
+        }
+    }
+
+    @Test
+    public void readsRange() throws Exception {
+        assertEquals("3456", readRange(3, 6));
+    }
+
+    @Test
+    public void readsToEndOfFile() throws Exception {
+        assertEquals("789", readRange(7, -1));
+        assertEquals("789", readRange(7, 100));
+    }
+
+    @Test
+    public void rangeAfterEndOfFileIsEmpty() throws Exception {
+        assertEquals("", readRange(20, 30));
+    }
+
+    @Test
+    public void readsSingleBytesAndSkips() throws Exception {
+        try (final var stream = new FileRangeInputStream(file, 2, 8)) {
+            assertEquals('2', stream.read());
+            assertEquals(3, stream.skip(3));
+            assertEquals(3, stream.available());
+            assertEquals("678", IOUtils.toString(stream, UTF_8));
+            assertEquals(-1, stream.read());
+        }
+    }
+}
@@ -18,8 +18,6 @@
 package org.fcrepo.persistence.ocfl.impl;
 
 import org.fcrepo.kernel.api.ContainmentIndex;
-import org.fcrepo.kernel.api.Transaction;
-import org.fcrepo.kernel.api.TransactionManager;
 import org.fcrepo.kernel.api.identifiers.FedoraId;
 import org.fcrepo.kernel.api.operations.CreateResourceOperation;
 import org.fcrepo.kernel.api.operations.NonRdfSourceOperation;
@@ -30,25 +28,32 @@ import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.IndexBuilder;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.lang.System.currentTimeMillis;
 import static org.fcrepo.kernel.api.operations.ResourceOperationType.CREATE;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.createRepository;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
+import static org.springframework.test.util.ReflectionTestUtils.invokeMethod;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 /**
@@ -62,15 +67,11 @@ public class IndexBuilderImplTest {
     private FedoraToOCFLObjectIndex index;
     private IndexBuilder indexBuilder;
 
-    @Mock
-    private TransactionManager transactionManager;
-
-    @Mock
-    private Transaction transaction;
-
     @Mock
     private ContainmentIndex containmentIndex;
 
+    private final Map<FedoraId, FedoraId> containment = new ConcurrentHashMap<>();
+
     private final String session1Id = "session1";
     private final FedoraId resource1 = FedoraId.create("info:fedora/resource1");
     private final FedoraId resource2 =  FedoraId.create(resource1 + "/resource2");
@@ -86,6 +87,9 @@ public class IndexBuilderImplTest {
         final var repository = createRepository(repoDir, workDir);
 
         index = new FedoraToOCFLObjectIndexImpl();
+        setField(index, "dataSource", new DriverManagerDataSource("jdbc:h2:mem:ocfl-index-" + currentTimeMillis() +
+                ";DB_CLOSE_DELAY=-1"));
+        invokeMethod(index, "setup");
         index.reset();
 
         final var ocflObjectSessionFactory = new DefaultOCFLObjectSessionFactory(staging);
@@ -100,10 +104,18 @@ public class IndexBuilderImplTest {
         setField(indexBuilder, "fedoraToOCFLObjectIndex", index);
         setField(indexBuilder, "objectSessionFactory", ocflObjectSessionFactory);
         setField(indexBuilder, "containmentIndex", containmentIndex);
-        setField(indexBuilder, "transactionManager", transactionManager);
+        System.setProperty(OCFLConstants.INDEX_SNAPSHOT_FILE_KEY, new File(dataDir, "indexSnapshot.gz").getPath());
+        setField(indexBuilder, "ocflConstants", new OCFLConstants());
+
+        doAnswer(invocation -> {
+            containment.putAll(invocation.getArgument(1));
+            return null;
+        }).when(containmentIndex).addContainedBy(isNull(), anyMap());
+    }
 
-        when(transaction.getId()).thenReturn("tx-id");
-        when(transactionManager.create()).thenReturn(transaction);
+    @After
+    public void teardown() {
+        System.clearProperty(OCFLConstants.INDEX_SNAPSHOT_FILE_KEY);
     }
 
     @Test
@@ -128,11 +140,7 @@ public class IndexBuilderImplTest {
         assertHasOcflId("resource1", resource1);
         assertHasOcflId("resource1", resource2);
 
-        verify(transaction).getId();
-        verify(transactionManager).create();
-        verify(containmentIndex).addContainedBy(transaction.getId(), FedoraId.getRepositoryRootId(), resource1);
-        verify(containmentIndex).addContainedBy(transaction.getId(), resource1, resource2);
-        verify(containmentIndex).commitTransaction(transaction);
+        assertEquals(Map.of(resource1, FedoraId.getRepositoryRootId(), resource2, resource1), containment);
     }
 
     @Test
@@ -157,11 +165,7 @@ public class IndexBuilderImplTest {
         assertHasOcflId("resource1", resource1);
         assertHasOcflId("resource1_resource2", resource2);
 
-        verify(transaction).getId();
-        verify(transactionManager).create();
-        verify(containmentIndex).addContainedBy(transaction.getId(), FedoraId.getRepositoryRootId(), resource1);
-        verify(containmentIndex).addContainedBy(transaction.getId(), resource1, resource2);
-        verify(containmentIndex).commitTransaction(transaction);
+        assertEquals(Map.of(resource1, FedoraId.getRepositoryRootId(), resource2, resource1), containment);
     }
 
     private void assertDoesNotHaveOcflId(final FedoraId resourceId) {
@@ -0,0 +1,106 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author agent
+ * @since 6.0.0
+ */
+public class IndexCheckpointsTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testRecordAndReopen() throws Exception {
+        final File file = new File(tempFolder.getRoot(), "checkpoints.tsv");
+        try (final var checkpoints = IndexCheckpoints.open(file)) {
+            checkpoints.record(new IndexCheckpoints.Checkpoint("object1", "v1", "ab/object1", "1000:20,2000:30",
+                    List.of("info:fedora/object1", "info:fedora/object1/child")));
+            // not seen in storage
+            checkpoints.record(new IndexCheckpoints.Checkpoint("object2", "v3", "", "", List.of()));
+            checkpoints.record(new IndexCheckpoints.Checkpoint("object3", "v1", "cd/object3", "1000:20",
+                    List.of("info:fedora/object3")));
+            checkpoints.remove("object3");
+            checkpoints.flush();
+        }
+
+        try (final var checkpoints = IndexCheckpoints.open(file)) {
+            assertEquals(Set.of("object1", "object2"), checkpoints.getObjectIds());
+            assertEquals("v1", checkpoints.get("object1").getHeadVersion());
+            assertEquals(List.of("info:fedora/object1", "info:fedora/object1/child"),
+                    checkpoints.get("object1").getFedoraIds());
+            assertEquals(List.of(), checkpoints.get("object2").getFedoraIds());
+            assertEquals("ab/object1", checkpoints.get("object1").getObjectRoot());
+            assertEquals("1000:20,2000:30", checkpoints.get("object1").getInventoryStamp());
+            assertEquals("", checkpoints.get("object2").getObjectRoot());
+            assertEquals(Map.of("ab/object1", "1000:20,2000:30"), checkpoints.getInventoryStamps());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        final File file = new File(tempFolder.getRoot(), "checkpoints.tsv");
+        try (final var checkpoints = IndexCheckpoints.open(file)) {
+            checkpoints.record(new IndexCheckpoints.Checkpoint("object1", "v1", "ab/object1", "1000:20",
+                    List.of("info:fedora/object1")));
+            checkpoints.flush();
+        }
+        // a crash while appending leaves part of a record, without its count or line end
+        Files.writeString(file.toPath(), "object2\tv2\tinfo:fedora/obj", UTF_8, StandardOpenOption.APPEND);
+
+        try (final var checkpoints = IndexCheckpoints.open(file)) {
+            assertEquals(Set.of("object1"), checkpoints.getObjectIds());
+            assertNull(checkpoints.get("object2"));
+            checkpoints.record(new IndexCheckpoints.Checkpoint("object3", "v1", "cd/object3", "1000:20",
+                    List.of("info:fedora/object3")));
+            checkpoints.flush();
+        }
+
+        // records appended after the torn one are not merged into it
+        try (final var checkpoints = IndexCheckpoints.open(file)) {
+            assertEquals(Set.of("object1", "object3"), checkpoints.getObjectIds());
+        }
+    }
+
+    @Test
+    public void testRecordWithoutCountIsIgnored() throws Exception {
+        final File file = new File(tempFolder.getRoot(), "checkpoints.tsv");
+        Files.writeString(file.toPath(), "object1\tv1\tab/object1\t1000:20\tinfo:fedora/object1\n" +
+                "object2\tv1\tab/object2\t1000:20\tinfo:fedora/object2\t5\n", UTF_8);
+
+        try (final var checkpoints = IndexCheckpoints.open(file)) {
+            assertEquals(Set.of("object2"), checkpoints.getObjectIds());
+        }
+    }
+}
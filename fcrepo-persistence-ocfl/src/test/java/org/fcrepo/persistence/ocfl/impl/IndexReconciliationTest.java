@@ -0,0 +1,310 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import edu.wisc.library.ocfl.api.OcflRepository;
+import edu.wisc.library.ocfl.api.model.ObjectDetails;
+import edu.wisc.library.ocfl.api.model.VersionId;
+import org.fcrepo.kernel.api.ContainmentIndex;
+import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
+import org.fcrepo.kernel.api.identifiers.FedoraId;
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+import org.fcrepo.persistence.common.ResourceHeadersImpl;
+import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.serializeHeaders;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getSidecarSubpath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+/**
+ * @author agent
+ * @since 6.0.0
+ */
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class IndexReconciliationTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Mock
+    private OcflRepository ocflRepository;
+
+    @Mock
+    private OCFLObjectSessionFactory objectSessionFactory;
+
+    @Mock
+    private ContainmentIndex containmentIndex;
+
+    private final Map<FedoraId, FedoraId> containment = new ConcurrentHashMap<>();
+
+    private final Map<String, String> headVersions = new ConcurrentHashMap<>();
+
+    private final AtomicLong modified = new AtomicLong(Instant.parse("2020-01-01T00:00:00Z").getEpochSecond());
+
+    private File storageRoot;
+
+    private TestOcflObjectIndex index;
+
+    private IndexBuilderImpl indexBuilder;
+
+    private final String resource1 = "info:fedora/resource1";
+
+    private final String resource2 = "info:fedora/resource1/resource2";
+
+    private final String resource3 = "info:fedora/resource3";
+
+    @Before
+    public void setup() throws IOException {
+        System.setProperty(OCFLConstants.OCFL_WORK_DIR_KEY, tempFolder.newFolder().getPath());
+        storageRoot = tempFolder.newFolder();
+        System.setProperty(OCFLConstants.OCFL_STORAGE_ROOT_DIR_KEY, storageRoot.getPath());
+        System.setProperty(OCFLConstants.INDEX_REBUILD_THREADS_KEY, "2");
+        System.setProperty(OCFLConstants.INDEX_REBUILD_BATCH_SIZE_KEY, "1");
+
+        index = new TestOcflObjectIndex();
+        indexBuilder = new IndexBuilderImpl();
+        setField(indexBuilder, "ocflRepository", ocflRepository);
+        setField(indexBuilder, "fedoraToOCFLObjectIndex", index);
+        setField(indexBuilder, "objectSessionFactory", objectSessionFactory);
+        setField(indexBuilder, "containmentIndex", containmentIndex);
+        setField(indexBuilder, "ocflConstants", new OCFLConstants());
+
+        doAnswer(invocation -> {
+            containment.putAll(invocation.getArgument(1));
+            return null;
+        }).when(containmentIndex).addContainedBy(isNull(), anyMap());
+        doAnswer(invocation -> {
+            invocation.<Collection<FedoraId>>getArgument(1).forEach(containment::remove);
+            return null;
+        }).when(containmentIndex).removeResources(isNull(), anyCollection());
+        when(containmentIndex.getContainedBy(isNull(), anyCollection())).thenAnswer(invocation -> {
+            final var parents = new HashMap<String, String>();
+            for (final FedoraId child : invocation.<Collection<FedoraId>>getArgument(1)) {
+                if (containment.containsKey(child)) {
+                    parents.put(child.getFullId(), containment.get(child).getFullId());
+                }
+            }
+            return parents;
+        });
+        when(ocflRepository.listObjectIds()).thenAnswer(invocation -> headVersions.keySet().stream().sorted());
+    }
+
+    @After
+    public void teardown() {
+        System.clearProperty(OCFLConstants.OCFL_WORK_DIR_KEY);
+        System.clearProperty(OCFLConstants.OCFL_STORAGE_ROOT_DIR_KEY);
+        System.clearProperty(OCFLConstants.INDEX_REBUILD_THREADS_KEY);
+        System.clearProperty(OCFLConstants.INDEX_REBUILD_BATCH_SIZE_KEY);
+    }
+
+    @Test
+    public void testReconcileOnlyReadsChangedObjects() throws Exception {
+        mockObject("resource1", "v1", resource1, resource2);
+        mockObject("resource3", "v1", resource3);
+
+        indexBuilder.reconcile();
+        assertEquals("resource1", index.getMapping(resource2).getOcflObjectId());
+        assertEquals(FedoraId.create(resource1), containment.get(FedoraId.create(resource2)));
+
+        indexBuilder.reconcile();
+        verify(objectSessionFactory, times(1)).create("resource1", null);
+        verify(objectSessionFactory, times(1)).create("resource3", null);
+        // the storage root is walked once per reconciliation, not again to count the objects
+        verify(ocflRepository, times(2)).listObjectIds();
+        // unchanged inventories are not read through the OCFL repository
+        verify(ocflRepository, times(2)).describeObject(any());
+
+        // resource2 was removed from resource1 out of band
+        mockObject("resource1", "v2", resource1);
+        indexBuilder.reconcile();
+        verify(objectSessionFactory, times(2)).create("resource1", null);
+        verify(objectSessionFactory, times(1)).create("resource3", null);
+        verify(ocflRepository, times(2)).describeObject("resource1");
+        verify(ocflRepository, times(1)).describeObject("resource3");
+        assertMissing(resource2);
+        assertFalse(containment.containsKey(FedoraId.create(resource2)));
+        assertEquals("resource1", index.getMapping(resource1).getOcflObjectId());
+    }
+
+    @Test
+    public void testReconcileRemovesDeletedObjects() throws Exception {
+        mockObject("resource1", "v1", resource1, resource2);
+        mockObject("resource3", "v1", resource3);
+        indexBuilder.reconcile();
+
+        headVersions.remove("resource3");
+        deleteStoredObject("resource3");
+        indexBuilder.reconcile();
+
+        assertMissing(resource3);
+        assertFalse(containment.containsKey(FedoraId.create(resource3)));
+        assertEquals("resource1", index.getMapping(resource1).getOcflObjectId());
+    }
+
+    @Test
+    public void testReconcileRepairsLostIndexes() throws Exception {
+        mockObject("resource1", "v1", resource1, resource2);
+        mockObject("resource3", "v1", resource3);
+        indexBuilder.reconcile();
+
+        index.reset();
+        containment.remove(FedoraId.create(resource3));
+        indexBuilder.reconcile();
+
+        verify(objectSessionFactory, times(2)).create("resource1", null);
+        verify(objectSessionFactory, times(2)).create("resource3", null);
+        verify(ocflRepository, times(2)).describeObject("resource1");
+        verify(ocflRepository, times(2)).describeObject("resource3");
+        assertEquals("resource1", index.getMapping(resource2).getOcflObjectId());
+        assertEquals(FedoraId.getRepositoryRootId(), containment.get(FedoraId.create(resource3)));
+    }
+
+    @Test
+    public void testReconcileResumesAfterFailure() throws Exception {
+        mockObject("resource1", "v1", resource1, resource2);
+        mockObject("resource3", "v1", resource3);
+        final var broken = mock(OCFLObjectSession.class);
+        when(broken.listHeadSubpaths()).thenThrow(new PersistentStorageException("unreadable"));
+        when(objectSessionFactory.create("resource3", null)).thenReturn(broken);
+        try {
+            indexBuilder.reconcile();
+            fail("reconciliation should fail");
+        } catch (final RepositoryRuntimeException e) {
+            // expected
+        }
+
+        mockObject("resource3", "v1", resource3);
+        indexBuilder.reconcile();
+
+        verify(objectSessionFactory, times(1)).create("resource1", null);
+        verify(objectSessionFactory, times(2)).create("resource3", null);
+        assertEquals("resource3", index.getMapping(resource3).getOcflObjectId());
+    }
+
+    @Test
+    public void testReconcileComparesHeadVersionsWithoutStorageScan() throws Exception {
+        mockObject("resource1", "v1", resource1, resource2);
+        mockObject("resource3", "v1", resource3);
+        indexBuilder.reconcile();
+
+        // storage cannot be walked, so every object is described, but only the changed ones are read
+        deleteStoredObject("resource1");
+        deleteStoredObject("resource3");
+        Files.delete(storageRoot.toPath());
+        mockObject("resource1", "v2", resource1);
+        indexBuilder.reconcile();
+
+        verify(ocflRepository, times(2)).describeObject("resource1");
+        verify(ocflRepository, times(2)).describeObject("resource3");
+        verify(objectSessionFactory, times(2)).create("resource1", null);
+        verify(objectSessionFactory, times(1)).create("resource3", null);
+        assertMissing(resource2);
+    }
+
+    private void assertMissing(final String fedoraId) {
+        try {
+            index.getMapping(fedoraId);
+            fail(fedoraId + " should not exist in index");
+        } catch (final FedoraOCFLMappingNotFoundException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Mock an OCFL object whose first resource is the root, and a direct child of the repository root, and write its
+     * inventory to the storage root with a later modification time than any written before.
+     */
+    private void mockObject(final String ocflId, final String headVersion, final String... fedoraIds)
+            throws Exception {
+        headVersions.put(ocflId, headVersion);
+        if (storageRoot.exists()) {
+            final var objectRoot = storageRoot.toPath().resolve(ocflId);
+            Files.createDirectories(objectRoot);
+            Files.writeString(objectRoot.resolve("0=ocfl_object_1.0"), "ocfl_object_1.0\n");
+            final var inventory = objectRoot.resolve("inventory.json");
+            Files.writeString(inventory, "{\"id\":\"" + ocflId + "\",\"head\":\"" + headVersion + "\"}");
+            Files.setLastModifiedTime(inventory, FileTime.from(Instant.ofEpochSecond(modified.incrementAndGet())));
+        }
+        final var details = mock(ObjectDetails.class);
+        final var versionId = mock(VersionId.class);
+        when(versionId.toString()).thenReturn(headVersion);
+        when(details.getHeadVersionId()).thenReturn(versionId);
+        when(ocflRepository.describeObject(ocflId)).thenReturn(details);
+
+        final var session = mock(OCFLObjectSession.class);
+        final var subpaths = List.of(fedoraIds).stream()
+                .map(fedoraId -> getSidecarSubpath(fedoraId.substring(fedoraId.lastIndexOf('/') + 1)))
+                .toArray(String[]::new);
+        for (int i = 0; i < fedoraIds.length; i++) {
+            final var headers = new ResourceHeadersImpl();
+            headers.setId(fedoraIds[i]);
+            if (i == 0) {
+                headers.setArchivalGroup(fedoraIds.length > 1);
+                headers.setObjectRoot(true);
+            } else {
+                headers.setParent(fedoraIds[0]);
+            }
+            final var subpath = subpaths[i];
+            when(session.read(subpath)).thenAnswer(invocation -> serializeHeaders(headers));
+        }
+        when(session.listHeadSubpaths()).thenAnswer(invocation -> Stream.of(subpaths));
+        when(objectSessionFactory.create(ocflId, null)).thenReturn(session);
+    }
+
+    private void deleteStoredObject(final String ocflId) throws IOException {
+        final var objectRoot = storageRoot.toPath().resolve(ocflId);
+        Files.delete(objectRoot.resolve("0=ocfl_object_1.0"));
+        Files.delete(objectRoot.resolve("inventory.json"));
+        Files.delete(objectRoot);
+    }
+}
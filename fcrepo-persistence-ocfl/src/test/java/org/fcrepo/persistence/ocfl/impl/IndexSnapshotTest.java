@@ -0,0 +1,249 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import edu.wisc.library.ocfl.api.OcflRepository;
+import org.fcrepo.kernel.api.ContainmentIndex;
+import org.fcrepo.kernel.api.exception.RepositoryRuntimeException;
+import org.fcrepo.kernel.api.identifiers.FedoraId;
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+import org.fcrepo.persistence.common.ResourceHeadersImpl;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.time.temporal.ChronoUnit.HOURS;
+import static org.fcrepo.persistence.common.ResourceHeaderSerializationUtils.serializeHeaders;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getSidecarSubpath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+/**
+ * @author agent
+ * @since 6.0.0
+ */
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class IndexSnapshotTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Mock
+    private OcflRepository ocflRepository;
+
+    @Mock
+    private OCFLObjectSessionFactory objectSessionFactory;
+
+    @Mock
+    private ContainmentIndex containmentIndex;
+
+    private final Map<FedoraId, FedoraId> containment = new ConcurrentHashMap<>();
+
+    private TestOcflObjectIndex index;
+
+    private IndexBuilderImpl indexBuilder;
+
+    private File snapshotFile;
+
+    private File storageRoot;
+
+    private final String rootId = FedoraId.getRepositoryRootId().getFullId();
+
+    private final String resource1 = "info:fedora/resource1";
+
+    private final String resource2 = "info:fedora/resource1/resource2";
+
+    private final String resource3 = "info:fedora/resource3";
+
+    @Before
+    public void setup() throws IOException {
+        snapshotFile = new File(tempFolder.newFolder(), "indexSnapshot.gz");
+        System.setProperty(OCFLConstants.INDEX_SNAPSHOT_FILE_KEY, snapshotFile.getPath());
+        storageRoot = tempFolder.newFolder();
+        System.setProperty(OCFLConstants.OCFL_STORAGE_ROOT_DIR_KEY, storageRoot.getPath());
+        System.setProperty(OCFLConstants.INDEX_REBUILD_THREADS_KEY, "2");
+        System.setProperty(OCFLConstants.INDEX_REBUILD_BATCH_SIZE_KEY, "1");
+
+        index = new TestOcflObjectIndex();
+        indexBuilder = new IndexBuilderImpl();
+        setField(indexBuilder, "ocflRepository", ocflRepository);
+        setField(indexBuilder, "fedoraToOCFLObjectIndex", index);
+        setField(indexBuilder, "objectSessionFactory", objectSessionFactory);
+        setField(indexBuilder, "containmentIndex", containmentIndex);
+        setField(indexBuilder, "ocflConstants", new OCFLConstants());
+
+        doAnswer(invocation -> {
+            containment.putAll(invocation.getArgument(1));
+            return null;
+        }).when(containmentIndex).addContainedBy(isNull(), anyMap());
+    }
+
+    @After
+    public void teardown() {
+        System.clearProperty(OCFLConstants.INDEX_SNAPSHOT_FILE_KEY);
+        System.clearProperty(OCFLConstants.OCFL_STORAGE_ROOT_DIR_KEY);
+        System.clearProperty(OCFLConstants.INDEX_REBUILD_THREADS_KEY);
+        System.clearProperty(OCFLConstants.INDEX_REBUILD_BATCH_SIZE_KEY);
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final var created = Instant.now();
+        try (final var writer = IndexSnapshot.writer(snapshotFile, created)) {
+            writer.add(new IndexSnapshot.Entry("resource1", resource1, resource1, rootId));
+            writer.add(new IndexSnapshot.Entry("resource1", resource2, resource1, resource1));
+            writer.add(new IndexSnapshot.Entry("root", rootId, rootId, null));
+            assertEquals(3, writer.commit());
+        }
+
+        final var snapshot = IndexSnapshot.read(snapshotFile);
+        assertEquals(created.toEpochMilli(), snapshot.getCreated().toEpochMilli());
+        assertEquals(2, snapshot.size());
+        assertEquals(2, snapshot.getEntries("resource1").size());
+        assertEquals(resource1, snapshot.getEntries("resource1").get(1).getParentId());
+        assertNull(snapshot.getEntries("root").get(0).getParentId());
+        assertNull(snapshot.getEntries("resource3"));
+    }
+
+    @Test
+    public void testUnfinishedWriteKeepsPreviousSnapshot() throws Exception {
+        try (final var writer = IndexSnapshot.writer(snapshotFile, Instant.now())) {
+            writer.add(new IndexSnapshot.Entry("resource1", resource1, resource1, rootId));
+            writer.commit();
+        }
+        try (final var writer = IndexSnapshot.writer(snapshotFile, Instant.now())) {
+            writer.add(new IndexSnapshot.Entry("resource3", resource3, resource3, rootId));
+        }
+
+        final var snapshot = IndexSnapshot.read(snapshotFile);
+        assertEquals(1, snapshot.size());
+        assertEquals(1, snapshot.getEntries("resource1").size());
+        assertEquals(1, snapshotFile.getParentFile().list().length);
+    }
+
+    @Test
+    public void testRebuildRestoresUnchangedObjects() throws Exception {
+        index.addMapping(resource1, resource1, "resource1");
+        index.addMapping(resource2, resource1, "resource1");
+        index.addMapping(resource3, resource3, "resource3");
+        when(containmentIndex.getContainedBy(eq(null), anyCollection())).thenReturn(Map.of(
+                resource1, rootId, resource2, resource1, resource3, rootId));
+        indexBuilder.snapshot();
+        assertTrue(snapshotFile.exists());
+
+        index.reset();
+        when(ocflRepository.listObjectIds())
+                .thenAnswer(invocation -> Stream.of("resource1", "resource3", "resource4"));
+        mockStoredObject("resource1", Instant.now().minus(2, HOURS));
+        // resource3 was updated after the snapshot and resource4 was created after it
+        mockStoredObject("resource3", Instant.now());
+        mockStoredObject("resource4", Instant.now());
+        mockObjectSession("resource3", resource3);
+        mockObjectSession("resource4", "info:fedora/resource4");
+
+        indexBuilder.rebuild();
+
+        assertEquals("resource1", index.getMapping(resource1).getOcflObjectId());
+        assertEquals(resource1, index.getMapping(resource2).getRootObjectIdentifier());
+        assertEquals("resource3", index.getMapping(resource3).getOcflObjectId());
+        assertEquals("resource4", index.getMapping("info:fedora/resource4").getOcflObjectId());
+        verify(objectSessionFactory, never()).create(eq("resource1"), any());
+        verify(objectSessionFactory).create("resource3", null);
+        verify(objectSessionFactory).create("resource4", null);
+        verify(ocflRepository, never()).describeObject(any());
+        assertEquals(FedoraId.getRepositoryRootId(), containment.get(FedoraId.create(resource1)));
+        assertEquals(FedoraId.create(resource1), containment.get(FedoraId.create(resource2)));
+        assertEquals(FedoraId.getRepositoryRootId(), containment.get(FedoraId.create(resource3)));
+        assertEquals(FedoraId.getRepositoryRootId(), containment.get(FedoraId.create("info:fedora/resource4")));
+    }
+
+    @Test
+    public void testRebuildIgnoresUnusableSnapshot() throws Exception {
+        Files.writeString(snapshotFile.toPath(), "not a snapshot");
+        when(ocflRepository.listObjectIds()).thenAnswer(invocation -> Stream.of("resource3"));
+        mockObjectSession("resource3", resource3);
+
+        indexBuilder.rebuild();
+
+        assertEquals("resource3", index.getMapping(resource3).getOcflObjectId());
+        verify(ocflRepository, never()).describeObject(any());
+    }
+
+    @Test(expected = RepositoryRuntimeException.class)
+    public void testRebuildFailsWhenAnObjectCannotBeRead() throws Exception {
+        when(ocflRepository.listObjectIds()).thenAnswer(invocation -> Stream.of("resource3", "resource4"));
+        mockObjectSession("resource3", resource3);
+        final var session = mock(OCFLObjectSession.class);
+        when(objectSessionFactory.create("resource4", null)).thenReturn(session);
+        when(session.listHeadSubpaths()).thenThrow(new PersistentStorageException("unreadable"));
+
+        indexBuilder.rebuild();
+    }
+
+    /**
+     * Write the root of an OCFL object to the storage root, with an inventory last modified at the given time.
+     */
+    private void mockStoredObject(final String ocflId, final Instant modified) throws IOException {
+        final var objectRoot = storageRoot.toPath().resolve("ab").resolve(ocflId);
+        Files.createDirectories(objectRoot);
+        Files.writeString(objectRoot.resolve("0=ocfl_object_1.0"), "ocfl_object_1.0\n");
+        final var inventory = objectRoot.resolve("inventory.json");
+        Files.writeString(inventory, "{\"type\":\"https://ocfl.io/1.0/spec/#inventory\",\"manifest\":{}," +
+                "\"id\":\"" + ocflId + "\",\"head\":\"v1\"}");
+        Files.setLastModifiedTime(inventory, FileTime.from(modified));
+    }
+
+    private void mockObjectSession(final String ocflId, final String fedoraId) throws Exception {
+        final var headers = new ResourceHeadersImpl();
+        headers.setId(fedoraId);
+        headers.setObjectRoot(true);
+        final var subpath = getSidecarSubpath(ocflId);
+        final var session = mock(OCFLObjectSession.class);
+        when(objectSessionFactory.create(ocflId, null)).thenReturn(session);
+        when(session.listHeadSubpaths()).thenReturn(Stream.of(subpath));
+        when(session.read(subpath)).thenReturn(serializeHeaders(headers));
+    }
+}
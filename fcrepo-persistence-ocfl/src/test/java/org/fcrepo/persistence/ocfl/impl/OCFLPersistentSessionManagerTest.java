@@ -21,7 +21,9 @@ import org.fcrepo.kernel.api.operations.ResourceOperation;
 import org.fcrepo.persistence.api.PersistentStorageSession;
 import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,7 +31,18 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
 import static java.util.UUID.randomUUID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Test class for {@link OCFLPersistentSessionManager}
@@ -39,6 +52,8 @@ import static java.util.UUID.randomUUID;
 @RunWith(MockitoJUnitRunner.class)
 public class OCFLPersistentSessionManagerTest {
 
+    private static final String JMX_NAME = "org.fcrepo:type=OCFLPersistentSessionManagerTest";
+
     @InjectMocks
     private OCFLPersistentSessionManager sessionManager;
 
@@ -60,12 +75,22 @@ public class OCFLPersistentSessionManagerTest {
     @Mock
     private OCFLObjectSessionFactory objectSessionFactory;
 
+    @Mock
+    private OCFLObjectSession objectSession;
+
     @Before
     public void setUp() {
+        this.sessionManager.setJmxName(JMX_NAME);
+        this.sessionManager.registerMBean();
         readWriteSession = this.sessionManager.getSession(testSessionId);
         readOnlySession = this.sessionManager.getReadOnlySession();
     }
 
+    @After
+    public void tearDown() {
+        this.sessionManager.shutdown();
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void testUnsupportedOperationOnUnrecognizedOperation() throws Exception {
         readWriteSession.persist(mockOperation);
@@ -81,4 +106,40 @@ public class OCFLPersistentSessionManagerTest {
         this.sessionManager.getSession(null);
     }
 
+    @Test
+    public void testRemoveSession() throws Exception {
+        when(objectSessionFactory.create("ocfl-id", testSessionId)).thenReturn(objectSession);
+        ((OCFLPersistentStorageSession) readWriteSession).findOrCreateSession("ocfl-id");
+        assertEquals(1, this.sessionManager.getSessionCount());
+
+        this.sessionManager.removeSession(testSessionId);
+        this.sessionManager.removeSession("unknown-session");
+
+        assertEquals(0, this.sessionManager.getSessionCount());
+        verify(objectSession, timeout(5000)).close();
+        verify(objectSessionFactory, timeout(5000)).cleanupStaging(testSessionId);
+        verify(objectSessionFactory, never()).cleanupStaging("unknown-session");
+        assertNotSame(readWriteSession, this.sessionManager.getSession(testSessionId));
+    }
+
+    @Test
+    public void testCacheStatsPublishedOverJmx() throws Exception {
+        when(objectSessionFactory.create("ocfl-id", null)).thenReturn(objectSession);
+        ((OCFLPersistentStorageSession) readOnlySession).findOrCreateSession("ocfl-id");
+        ((OCFLPersistentStorageSession) readOnlySession).findOrCreateSession("ocfl-id");
+
+        final var server = ManagementFactory.getPlatformMBeanServer();
+        final var name = new ObjectName(JMX_NAME);
+        assertTrue(server.isRegistered(name));
+        assertEquals(1L, server.getAttribute(name, "ReadOnlySessionCacheHitCount"));
+        assertEquals(1L, server.getAttribute(name, "ReadOnlySessionCacheMissCount"));
+        assertEquals(0L, server.getAttribute(name, "ReadOnlySessionCacheEvictionCount"));
+        assertEquals(0L, server.getAttribute(name, "HeadersCacheHitCount"));
+        assertEquals(0L, server.getAttribute(name, "HeadersCacheMissCount"));
+        assertEquals(0L, server.getAttribute(name, "TriplesCacheHitCount"));
+        assertEquals(0L, server.getAttribute(name, "TriplesCacheMissCount"));
+
+        this.sessionManager.shutdown();
+        assertFalse(server.isRegistered(name));
+    }
 }
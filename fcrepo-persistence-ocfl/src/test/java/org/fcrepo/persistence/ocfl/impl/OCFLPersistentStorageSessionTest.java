@@ -21,6 +21,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.jena.graph.NodeFactory.createLiteral;
 import static org.apache.jena.graph.NodeFactory.createURI;
 import static org.fcrepo.kernel.api.operations.ResourceOperationType.CREATE;
+import static org.fcrepo.kernel.api.operations.ResourceOperationType.UPDATE;
 import static org.fcrepo.persistence.api.CommitOption.NEW_VERSION;
 import static org.fcrepo.persistence.api.CommitOption.UNVERSIONED;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.createRepository;
@@ -28,13 +29,20 @@ import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.mintOC
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasItems;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
@@ -46,8 +54,11 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.commons.io.IOUtils;
 import org.apache.jena.graph.Node;
@@ -55,6 +66,7 @@ import org.apache.jena.graph.Triple;
 import org.apache.jena.vocabulary.DC;
 import org.fcrepo.kernel.api.FedoraTypes;
 import org.fcrepo.kernel.api.RdfStream;
+import org.fcrepo.kernel.api.models.ResourceHeaders;
 import org.fcrepo.kernel.api.operations.CreateRdfSourceOperation;
 import org.fcrepo.kernel.api.operations.CreateResourceOperation;
 import org.fcrepo.kernel.api.operations.NonRdfSourceOperation;
@@ -68,6 +80,7 @@ import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
 import org.fcrepo.persistence.ocfl.api.FedoraOCFLMappingNotFoundException;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession.ContentWriter;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSessionFactory;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -161,6 +174,8 @@ public class OCFLPersistentStorageSessionTest {
 
         when(objectSession1.write(anyString(), any(InputStream.class))).thenReturn(writeOutcome);
         when(objectSession2.write(anyString(), any(InputStream.class))).thenReturn(writeOutcome);
+        when(objectSession1.writeWith(anyString(), any(ContentWriter.class))).thenReturn(writeOutcome);
+        when(objectSession2.writeWith(anyString(), any(ContentWriter.class))).thenReturn(writeOutcome);
     }
 
     private OCFLPersistentStorageSession createSession(final FedoraToOCFLObjectIndex index,
@@ -404,6 +419,82 @@ public class OCFLPersistentStorageSessionTest {
         }
     }
 
+    @Test
+    public void commitObjectSessionsConcurrently() throws Exception {
+        final var ocflId1 = mintOCFLObjectId(RESOURCE_ID);
+        final var ocflId2 = mintOCFLObjectId(RESOURCE_ID2);
+        mockMappingAndIndex(ocflId1, RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        mockResourceOperation(rdfSourceOperation, RESOURCE_ID);
+        mockMappingAndIndex(ocflId2, RESOURCE_ID2, ROOT_OBJECT_ID_2, mapping2);
+        mockResourceOperation(rdfSourceOperation2, RESOURCE_ID2);
+        when(mockSessionFactory.create(eq(ocflId1), anyString())).thenReturn(objectSession1);
+        when(mockSessionFactory.create(eq(ocflId2), anyString())).thenReturn(objectSession2);
+        mockOCFLObjectSession(objectSession1, UNVERSIONED);
+        mockOCFLObjectSession(objectSession2, UNVERSIONED);
+
+        // each commit only completes once both are in progress
+        final var bothCommitting = new CountDownLatch(2);
+        final Answer<String> awaitOther = invocation -> {
+            bothCommitting.countDown();
+            assertTrue(bothCommitting.await(5, TimeUnit.SECONDS));
+            return "v1";
+        };
+        when(objectSession1.commit()).thenAnswer(awaitOther);
+        when(objectSession2.commit()).thenAnswer(awaitOther);
+
+        final var executor = Executors.newFixedThreadPool(2);
+        try {
+            final var session1 = new OCFLPersistentStorageSession("tx", index, mockSessionFactory,
+                    new CommittedStateCache<>(0), new CommittedStateCache<>(0), executor);
+            session1.persist(rdfSourceOperation);
+            session1.persist(rdfSourceOperation2);
+            session1.commit();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(objectSession1).commit();
+        verify(objectSession2).commit();
+    }
+
+    @Test
+    public void rollbackAfterConcurrentCommitFails() throws Exception {
+        final var ocflId1 = mintOCFLObjectId(RESOURCE_ID);
+        final var ocflId2 = mintOCFLObjectId(RESOURCE_ID2);
+        mockMappingAndIndex(ocflId1, RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        mockResourceOperation(rdfSourceOperation, RESOURCE_ID);
+        mockMappingAndIndex(ocflId2, RESOURCE_ID2, ROOT_OBJECT_ID_2, mapping2);
+        mockResourceOperation(rdfSourceOperation2, RESOURCE_ID2);
+        when(mockSessionFactory.create(eq(ocflId1), anyString())).thenReturn(objectSession1);
+        when(mockSessionFactory.create(eq(ocflId2), anyString())).thenReturn(objectSession2);
+        mockOCFLObjectSession(objectSession1, UNVERSIONED);
+        mockOCFLObjectSession(objectSession2, UNVERSIONED);
+        when(objectSession1.commit()).thenThrow(new PersistentStorageException("commit failure"));
+        when(objectSession2.commit()).thenThrow(new PersistentStorageException("commit failure"));
+
+        final var executor = Executors.newFixedThreadPool(2);
+        try {
+            final var session1 = new OCFLPersistentStorageSession("tx", index, mockSessionFactory,
+                    new CommittedStateCache<>(0), new CommittedStateCache<>(0), executor);
+            session1.persist(rdfSourceOperation);
+            session1.persist(rdfSourceOperation2);
+            try {
+                session1.commit();
+                fail("session1.commit(...) invocation should fail.");
+            } catch (final PersistentStorageException e) {
+                // expected
+            }
+
+            // nothing was committed, so the uncommitted object sessions are closed and the rollback succeeds
+            session1.rollback();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(objectSession1).close();
+        verify(objectSession2).close();
+    }
+
     private void mockOCFLObjectSession(final OCFLObjectSession objectSession, final CommitOption option) {
         objectSessionFactory.setAutoVersioningEnabled(option == NEW_VERSION);
         when(objectSession.getCreated()).thenReturn(timestep.next());
@@ -735,6 +826,118 @@ public class OCFLPersistentStorageSessionTest {
         assertEquals(BINARY_CONTENT, result);
     }
 
+    @Test
+    public void readOnlySessionEvictsObjectSessions() throws Exception {
+        System.setProperty(OCFLConstants.READ_ONLY_SESSION_CACHE_SIZE_KEY, "2");
+        try {
+            final var readOnlySession = new OCFLPersistentStorageSession(index, mockSessionFactory);
+            when(mockSessionFactory.create(anyString(), isNull()))
+                    .thenAnswer(invocation -> mock(OCFLObjectSession.class));
+
+            final var first = readOnlySession.findOrCreateSession("object1");
+            assertSame(first, readOnlySession.findOrCreateSession("object1"));
+            readOnlySession.findOrCreateSession("object2");
+            readOnlySession.findOrCreateSession("object3");
+
+            final var stats = readOnlySession.getObjectSessionCacheStats();
+            assertEquals(1, stats.hitCount());
+            assertEquals(3, stats.missCount());
+            assertEquals(1, stats.evictionCount());
+            verify(mockSessionFactory, times(3)).create(anyString(), isNull());
+            verify(first, never()).close();
+        } finally {
+            System.clearProperty(OCFLConstants.READ_ONLY_SESSION_CACHE_SIZE_KEY);
+        }
+    }
+
+    @Test
+    public void headersCacheCountsHitsAndInvalidationOnCommit() throws Exception {
+        final var headersCache = new CommittedStateCache<ResourceHeaders>(100);
+        final var triplesCache = new CommittedStateCache<List<Triple>>(100, (id, triples) -> triples.size());
+        mockMappingAndIndex(mintOCFLObjectId(RESOURCE_ID), RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+
+        final var createSession = new OCFLPersistentStorageSession("create", index, objectSessionFactory,
+                headersCache, triplesCache);
+        mockResourceOperation(rdfSourceOperation, RESOURCE_ID);
+        createSession.persist(rdfSourceOperation);
+        createSession.commit();
+
+        final var readOnlySession = new OCFLPersistentStorageSession(null, index, objectSessionFactory,
+                headersCache, triplesCache);
+        final var headers = readOnlySession.getHeaders(RESOURCE_ID, null);
+        assertSame(headers, readOnlySession.getHeaders(RESOURCE_ID, null));
+        assertEquals(1, headersCache.stats().hitCount());
+        assertEquals(1, headersCache.stats().missCount());
+
+        // committing a change to the object drops its cached headers
+        final var updateSession = new OCFLPersistentStorageSession("update", index, objectSessionFactory,
+                headersCache, triplesCache);
+        when(rdfSourceOperation2.getTriples()).thenReturn(new DefaultRdfStream(createURI(RESOURCE_ID),
+                Stream.empty()));
+        when(rdfSourceOperation2.getResourceId()).thenReturn(RESOURCE_ID);
+        when(rdfSourceOperation2.getType()).thenReturn(UPDATE);
+        when(rdfSourceOperation2.getUserPrincipal()).thenReturn(USER_PRINCIPAL);
+        updateSession.persist(rdfSourceOperation2);
+        updateSession.commit();
+
+        final var updated = readOnlySession.getHeaders(RESOURCE_ID, null);
+        assertNotSame(headers, updated);
+        assertEquals(1, headersCache.stats().hitCount());
+        assertEquals(2, headersCache.stats().missCount());
+        assertSame(updated, readOnlySession.getHeaders(RESOURCE_ID, null));
+        assertEquals(2, headersCache.stats().hitCount());
+    }
+
+    @Test
+    public void readOnlySessionCachesCommittedTriples() throws Exception {
+        final var triplesCache = new CommittedStateCache<List<Triple>>(100, (id, triples) -> triples.size());
+        final var readOnlySession = new OCFLPersistentStorageSession(null, index, mockSessionFactory,
+                new CommittedStateCache<>(100), triplesCache);
+        mockMappingAndIndex("ocfl-id", RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        when(mockSessionFactory.create("ocfl-id", null)).thenReturn(objectSession1);
+        when(objectSession1.read(anyString())).thenAnswer(invocation -> new ByteArrayInputStream(
+                ("<" + RESOURCE_ID + "> <" + DC.title.getURI() + "> \"title\" .\n").getBytes(UTF_8)));
+
+        for (int i = 0; i < 2; i++) {
+            final var triples = readOnlySession.getTriples(RESOURCE_ID, null).collect(Collectors.toList());
+            assertEquals(1, triples.size());
+            assertEquals(DC.title.asNode(), triples.get(0).getPredicate());
+        }
+
+        verify(objectSession1, times(1)).read(anyString());
+        assertEquals(1, triplesCache.stats().hitCount());
+    }
+
+    @Test
+    public void readOnlySessionStreamsTriplesLazily() throws Exception {
+        final var triplesCache = new CommittedStateCache<List<Triple>>(100, (id, triples) -> triples.size());
+        final var readOnlySession = new OCFLPersistentStorageSession(null, index, mockSessionFactory,
+                new CommittedStateCache<>(100), triplesCache);
+        mockMappingAndIndex("ocfl-id", RESOURCE_ID, ROOT_OBJECT_ID, mapping);
+        when(mockSessionFactory.create("ocfl-id", null)).thenReturn(objectSession1);
+        final var content = ("<" + RESOURCE_ID + "> <" + DC.title.getURI() + "> \"title\" .\n" +
+                "<" + RESOURCE_ID + "> <" + DC.subject.getURI() + "> \"subject\" .\n").getBytes(UTF_8);
+        final var closed = new AtomicBoolean();
+        when(objectSession1.read(anyString())).thenAnswer(invocation -> new ByteArrayInputStream(content) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        });
+
+        try (final var triples = readOnlySession.getTriples(RESOURCE_ID, null)) {
+            assertEquals(DC.title.asNode(), triples.findFirst().get().getPredicate());
+            assertFalse(closed.get());
+        }
+        assertTrue(closed.get());
+
+        // a partially read resource is not cached
+        assertEquals(2, readOnlySession.getTriples(RESOURCE_ID, null).count());
+        assertEquals(2, readOnlySession.getTriples(RESOURCE_ID, null).count());
+        verify(objectSession1, times(2)).read(anyString());
+        assertEquals(1, triplesCache.stats().hitCount());
+    }
+
     private NonRdfSourceOperation mockNonRdfSourceOperation(final String content,
             final String userPrincipal, final String resourceId) {
         final var binOperation = mock(NonRdfSourceOperation.class,
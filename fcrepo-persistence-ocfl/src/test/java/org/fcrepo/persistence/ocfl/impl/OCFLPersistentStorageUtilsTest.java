@@ -17,11 +17,46 @@
  */
 package org.fcrepo.persistence.ocfl.impl;
 
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.vocabulary.DC;
+import org.fcrepo.persistence.api.exceptions.PersistentItemNotFoundException;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.apache.jena.graph.NodeFactory.createLiteral;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.apache.jena.riot.RDFFormat.NTRIPLES;
+import static org.apache.jena.riot.RDFFormat.RDF_THRIFT;
+import static org.apache.jena.riot.system.StreamRDFWriter.getWriterStream;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.alternateRdfSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getRDFFileExtension;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getAlternateSidecarSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getRdfStream;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getSidecarSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.isSidecarSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.readSidecar;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.relativizeSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveExtensions;
 import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.resolveOCFLSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.writeRDF;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Test class for {@link OCFLPersistentStorageUtils}
@@ -129,4 +164,101 @@ public class OCFLPersistentStorageUtilsTest {
         assertEquals("nested-description", resolveOCFLSubpath(rootObjectId, fedoraSubpath));
     }
 
+    @Test
+    public void testRdfFileExtension() {
+        assertEquals(".nt", getRDFFileExtension());
+    }
+
+    @Test
+    public void testAlternateRdfSubpath() {
+        assertEquals("object.trdf", alternateRdfSubpath("object.nt"));
+        assertEquals("object.nt", alternateRdfSubpath("object.trdf"));
+        assertNull(alternateRdfSubpath("binary"));
+    }
+
+    @Test
+    public void testSidecarSubpaths() {
+        assertEquals(".fcrepo/object.json", getSidecarSubpath("object"));
+        assertEquals(".fcrepo/object.hdr", getAlternateSidecarSubpath("object"));
+        assertTrue(isSidecarSubpath(".fcrepo/object.json"));
+        assertTrue(isSidecarSubpath(".fcrepo/object.hdr"));
+        assertFalse(isSidecarSubpath("object.nt"));
+    }
+
+    @Test
+    public void testReadSidecarFallsBackToOtherEncoding() throws Exception {
+        final var session = mock(OCFLObjectSession.class);
+        final var content = new ByteArrayInputStream(new byte[0]);
+        when(session.read(".fcrepo/object.hdr", "v2")).thenReturn(content);
+        when(session.read(".fcrepo/object.json", "v2")).thenThrow(new PersistentItemNotFoundException("not found"));
+        assertSame(content, readSidecar(session, "object", "v2"));
+    }
+
+    @Test
+    public void testWriteRdfDeletesExistingAlternate() throws Exception {
+        final var session = mock(OCFLObjectSession.class);
+        final var alternate = alternateRdfSubpath(resolveExtensions("object", true));
+        when(session.exists(alternate)).thenReturn(true);
+        writeRDF(session, null, "object");
+        verify(session).delete(alternate);
+    }
+
+    @Test
+    public void testWriteRdfWithoutAlternate() throws Exception {
+        final var session = mock(OCFLObjectSession.class);
+        writeRDF(session, null, "object");
+        verify(session, never()).delete(anyString());
+    }
+
+    @Test
+    public void testGetRdfStreamNTriples() throws Exception {
+        assertReadsTriplesWrittenAs(NTRIPLES, "object.nt", "object.nt");
+    }
+
+    @Test
+    public void testGetRdfStreamThrift() throws Exception {
+        assertReadsTriplesWrittenAs(RDF_THRIFT, "object.trdf", "object.trdf");
+    }
+
+    @Test
+    public void testGetRdfStreamFallsBackToOtherExtension() throws Exception {
+        assertReadsTriplesWrittenAs(RDF_THRIFT, "object.trdf", "object.nt");
+        assertReadsTriplesWrittenAs(NTRIPLES, "object.nt", "object.trdf");
+    }
+
+    @Test(expected = PersistentItemNotFoundException.class)
+    public void testGetRdfStreamNotFound() throws Exception {
+        final var session = mock(OCFLObjectSession.class);
+        when(session.read(anyString())).thenThrow(new PersistentItemNotFoundException("not found"));
+        getRdfStream("info:fedora/test/object", session, "object.nt", null);
+    }
+
+    @Test
+    public void testGetRdfStreamEmptyFile() throws Exception {
+        final var session = mock(OCFLObjectSession.class);
+        when(session.read("object.nt")).thenReturn(new ByteArrayInputStream(new byte[0]));
+        assertEquals(0, getRdfStream("info:fedora/test/object", session, "object.nt", null).count());
+    }
+
+    private void assertReadsTriplesWrittenAs(final RDFFormat format, final String storedSubpath,
+                                             final String requestedSubpath) throws Exception {
+        final var resourceId = "info:fedora/test/object";
+        final var subject = createURI(resourceId);
+        final var triples = List.of(
+                Triple.create(subject, DC.title.asNode(), createLiteral("title")),
+                Triple.create(subject, DC.subject.asNode(), createURI("http://example.org/subject")));
+        final var os = new ByteArrayOutputStream();
+        final StreamRDF streamRDF = getWriterStream(os, format);
+        streamRDF.start();
+        triples.forEach(streamRDF::triple);
+        streamRDF.finish();
+
+        final var session = mock(OCFLObjectSession.class);
+        when(session.read(anyString())).thenThrow(new PersistentItemNotFoundException("not found"));
+        doReturn(new ByteArrayInputStream(os.toByteArray())).when(session).read(storedSubpath);
+
+        try (final var rdfStream = getRdfStream(resourceId, session, requestedSubpath, null)) {
+            assertEquals(triples, rdfStream.collect(Collectors.toList()));
+        }
+    }
 }
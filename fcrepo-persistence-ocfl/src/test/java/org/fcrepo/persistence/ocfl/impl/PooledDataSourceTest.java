@@ -0,0 +1,111 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @since 6.0.0
+ */
+public class PooledDataSourceTest {
+
+    private static final String JMX_NAME = "org.fcrepo:type=PooledDataSourceTest";
+
+    private static final long HOLD_MILLIS = 50;
+
+    private PooledDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        dataSource = new PooledDataSource();
+        dataSource.setUrl("jdbc:h2:mem:pooledDataSourceTest;DB_CLOSE_DELAY=-1");
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setMaxTotal(1);
+        dataSource.setMaxIdle(1);
+        dataSource.setMaxWaitMillis(10000);
+        dataSource.setJmxName(JMX_NAME);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSource.close();
+    }
+
+    @Test
+    public void testMetricsBeforePoolStarts() {
+        assertEquals(0, dataSource.getBorrowedCount());
+        assertEquals(0, dataSource.getNumWaiters());
+        assertEquals(0, dataSource.getMaxBorrowWaitTimeMillis());
+    }
+
+    @Test
+    public void testWaitForConnectionIsRecorded() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final var first = dataSource.getConnection();
+            assertEquals(1, dataSource.getBorrowedCount());
+            assertEquals(1, dataSource.getNumActive());
+
+            final var second = executor.submit(() -> {
+                try (final Connection connection = dataSource.getConnection()) {
+                    return connection.isValid(1);
+                }
+            });
+            final long deadline = System.nanoTime() + MILLISECONDS.toNanos(10000);
+            while (dataSource.getNumWaiters() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, dataSource.getNumWaiters());
+            Thread.sleep(HOLD_MILLIS);
+            first.close();
+
+            assertTrue(second.get());
+            assertEquals(2, dataSource.getBorrowedCount());
+            assertEquals(0, dataSource.getNumWaiters());
+            assertTrue(dataSource.getMaxBorrowWaitTimeMillis() >= HOLD_MILLIS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMetricsPublishedOverJmx() throws Exception {
+        dataSource.getConnection().close();
+        dataSource.getConnection().close();
+
+        final var server = ManagementFactory.getPlatformMBeanServer();
+        final var name = new ObjectName(JMX_NAME);
+        assertTrue(server.isRegistered(name));
+        assertEquals(2L, server.getAttribute(name, "BorrowedCount"));
+        assertEquals(0, server.getAttribute(name, "NumWaiters"));
+        assertEquals(1, server.getAttribute(name, "NumIdle"));
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.apache.jena.graph.NodeFactory.createLiteral;
+import static org.apache.jena.graph.NodeFactory.createLiteralByValue;
+import static org.apache.jena.graph.NodeFactory.createURI;
+import static org.apache.jena.riot.RDFFormat.NTRIPLES;
+import static org.apache.jena.riot.RDFFormat.RDF_THRIFT;
+import static org.apache.jena.riot.system.StreamRDFWriter.getWriterStream;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.alternateRdfSubpath;
+import static org.fcrepo.persistence.ocfl.impl.OCFLPersistentStorageUtils.getRdfStream;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.vocabulary.DC;
+import org.apache.jena.vocabulary.RDF;
+import org.fcrepo.persistence.api.exceptions.PersistentStorageException;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+
+/**
+ * Compares the RDF encodings resources can be stored with, N-Triples and RDF Thrift, on a few representative
+ * resources. A JMH benchmark measures how long reading the triples back takes, and the bytes each encoding takes on
+ * disk are logged as each trial is set up. Run with the benchmarks profile, {@code mvn test -Pbenchmarks}.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RdfFormatBenchmark {
+
+    private static final Logger LOGGER = getLogger(RdfFormatBenchmark.class);
+
+    private static final String RESOURCE_ID = "info:fedora/collection/object";
+
+    private static final String FEDORA = "http://fedora.info/definitions/v4/repository#";
+
+    private static final String LDP = "http://www.w3.org/ns/ldp#";
+
+    private static final String NT_SUBPATH = "object.nt";
+
+    @Param({"container", "describedObject", "largeContainer"})
+    public String resource;
+
+    @Param({"N-Triples", "RDF-Thrift"})
+    public String format;
+
+    private Path directory;
+
+    private String subpath;
+
+    private OCFLObjectSession session;
+
+    @Test
+    public void testRdfFormats() throws Exception {
+        new Runner(new OptionsBuilder().include(RdfFormatBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Store the resource's triples in the format, and report the bytes they take on disk
+     */
+    @Setup
+    public void store() throws Exception {
+        final List<Triple> triples;
+        switch (resource) {
+            case "container":
+                triples = container();
+                break;
+            case "describedObject":
+                triples = describedObject(200);
+                break;
+            default:
+                triples = largeContainer(10000);
+        }
+        final RDFFormat rdfFormat = format.equals("N-Triples") ? NTRIPLES : RDF_THRIFT;
+        subpath = rdfFormat == NTRIPLES ? NT_SUBPATH : alternateRdfSubpath(NT_SUBPATH);
+
+        directory = Files.createTempDirectory("rdf-format-benchmark");
+        final Path file = directory.resolve(subpath);
+        try (final OutputStream os = Files.newOutputStream(file)) {
+            final var streamRDF = getWriterStream(os, rdfFormat);
+            streamRDF.start();
+            triples.forEach(streamRDF::triple);
+            streamRDF.finish();
+        }
+        session = mock(OCFLObjectSession.class);
+        when(session.read(subpath)).thenAnswer(invocation -> Files.newInputStream(file));
+        LOGGER.info("{}, {} triples as {}: {} bytes on disk", resource, triples.size(), format, Files.size(file));
+    }
+
+    @TearDown
+    public void delete() throws Exception {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    /**
+     * @return the number of triples read, so that the reading is not optimised away
+     */
+    @Benchmark
+    public long readAll() throws PersistentStorageException {
+        try (final var rdfStream = getRdfStream(RESOURCE_ID, session, subpath, null)) {
+            return rdfStream.count();
+        }
+    }
+
+    /**
+     * @return the server managed and user triples of a typical container
+     */
+    private static List<Triple> container() {
+        final Node subject = createURI(RESOURCE_ID);
+        final List<Triple> triples = new ArrayList<>();
+        triples.add(new Triple(subject, RDF.type.asNode(), createURI(FEDORA + "Container")));
+        triples.add(new Triple(subject, RDF.type.asNode(), createURI(FEDORA + "Resource")));
+        triples.add(new Triple(subject, RDF.type.asNode(), createURI(LDP + "RDFSource")));
+        triples.add(new Triple(subject, RDF.type.asNode(), createURI(LDP + "BasicContainer")));
+        triples.add(new Triple(subject, createURI(FEDORA + "created"),
+                createLiteral("2020-03-04T10:15:30.123Z", XSDDatatype.XSDdateTime)));
+        triples.add(new Triple(subject, createURI(FEDORA + "lastModified"),
+                createLiteral("2020-03-05T08:01:12.456Z", XSDDatatype.XSDdateTime)));
+        triples.add(new Triple(subject, createURI(FEDORA + "createdBy"), createLiteral("fedoraAdmin")));
+        triples.add(new Triple(subject, createURI(FEDORA + "lastModifiedBy"), createLiteral("fedoraAdmin")));
+        triples.add(new Triple(subject, DC.title.asNode(), createLiteral("Annual report", "en")));
+        triples.add(new Triple(subject, DC.creator.asNode(), createLiteral("Records Office")));
+        return triples;
+    }
+
+    /**
+     * @return a resource with descriptive metadata: language tagged text, dates, numbers and links
+     */
+    private static List<Triple> describedObject(final int fields) {
+        final Node subject = createURI(RESOURCE_ID);
+        final List<Triple> triples = container();
+        for (int i = 0; i < fields; i++) {
+            switch (i % 4) {
+                case 0:
+                    triples.add(new Triple(subject, DC.description.asNode(), createLiteral(
+                            "Page " + i + " of the scanned report, with handwritten notes in the margin", "en")));
+                    break;
+                case 1:
+                    triples.add(new Triple(subject, DC.subject.asNode(),
+                            createURI("http://id.loc.gov/authorities/subjects/sh" + (85000000 + i))));
+                    break;
+                case 2:
+                    triples.add(new Triple(subject, createURI("http://example.org/terms/pageCount"),
+                            createLiteralByValue(i, XSDDatatype.XSDinteger)));
+                    break;
+                default:
+                    triples.add(new Triple(subject, DC.date.asNode(),
+                            createLiteral("19" + (10 + i % 90) + "-01-01", XSDDatatype.XSDdate)));
+            }
+        }
+        return triples;
+    }
+
+    /**
+     * @return a container with many children, whose triples repeat long IRIs
+     */
+    private static List<Triple> largeContainer(final int children) {
+        final Node subject = createURI(RESOURCE_ID);
+        final List<Triple> triples = container();
+        for (int i = 0; i < children; i++) {
+            triples.add(new Triple(subject, createURI(LDP + "contains"),
+                    createURI(RESOURCE_ID + "/" + String.format("%08d", i))));
+        }
+        return triples;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ * @since 6.0.0
+ */
+public class RebuildProgressTest {
+
+    @Test
+    public void testEstimateFromApproximateTotal() throws Exception {
+        final var progress = new RebuildProgress(1000, "unchanged");
+        assertEquals(-1, progress.getRemainingSeconds());
+        assertFalse(progress.toString().contains("remaining"));
+
+        Thread.sleep(10);
+        progress.add(5, 5);
+        assertEquals(10, progress.getProcessed());
+        assertTrue(progress.getRate() > 0);
+        assertTrue(progress.getRemainingSeconds() >= 0);
+        assertTrue(progress.toString().contains("remaining of about 1000 objects"));
+
+        // more objects than the total suggested, so there is no estimate left
+        progress.add(0, 1000);
+        assertEquals(-1, progress.getRemainingSeconds());
+        assertFalse(progress.toString().contains("remaining"));
+    }
+
+    @Test
+    public void testNoEstimateWithoutTotal() {
+        final var progress = new RebuildProgress(0, "restored from snapshot");
+        progress.add(3, 4);
+        assertEquals(-1, progress.getRemainingSeconds());
+        assertTrue(progress.toString().startsWith("7 objects (3 restored from snapshot, 4 read from storage)"));
+        assertFalse(progress.toString().contains("remaining"));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author agent
+ * @since 6.0.0
+ */
+public class SpillingOutputStreamTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(UTF_8);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path spillPath;
+
+    @Before
+    public void setup() throws Exception {
+        spillPath = tempFolder.getRoot().toPath().resolve("staging/sub/file.txt");
+    }
+
+    @Test
+    public void contentWithinThresholdStaysInMemory() throws Exception {
+        final var stream = new SpillingOutputStream(CONTENT.length, spillPath);
+        try (stream) {
+            stream.write(CONTENT, 0, 4);
+            stream.write(CONTENT, 4, CONTENT.length - 4);
+        }
+
+        assertFalse(stream.isSpilled());
+        assertFalse(Files.exists(spillPath));
+        assertEquals(CONTENT.length, stream.size());
+        assertArrayEquals(CONTENT, stream.toByteArray());
+    }
+
+    @Test
+    public void contentPastThresholdSpillsToFile() throws Exception {
+        final var stream = new SpillingOutputStream(CONTENT.length - 1, spillPath);
+        try (stream) {
+            stream.write(CONTENT, 0, 4);
+            stream.write(CONTENT[4]);
+            stream.write(CONTENT, 5, CONTENT.length - 5);
+        }
+
+        assertTrue(stream.isSpilled());
+        assertEquals(CONTENT.length, stream.size());
+        assertArrayEquals(CONTENT, Files.readAllBytes(spillPath));
+    }
+
+    @Test
+    public void zeroThresholdWritesStraightToFile() throws Exception {
+        final var stream = new SpillingOutputStream(0, spillPath);
+        stream.close();
+
+        assertTrue(stream.isSpilled());
+        assertEquals(0, Files.size(spillPath));
+    }
+}
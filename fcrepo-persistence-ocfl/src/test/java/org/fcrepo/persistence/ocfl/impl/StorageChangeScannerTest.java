@@ -0,0 +1,104 @@
+/*
+ * Licensed to DuraSpace under one or more contributor license agreements.
+ * See the NOTICE file distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * DuraSpace licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fcrepo.persistence.ocfl.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent
+ * @since 6.0.0
+ */
+public class StorageChangeScannerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testFindChangedSince() throws Exception {
+        final var storageRoot = tempFolder.getRoot().toPath();
+        final var since = Instant.now().minus(1, HOURS);
+        final var old = since.minus(1, HOURS);
+        final var recent = since.plus(30, MINUTES);
+
+        writeObject(storageRoot.resolve("0a1/unchanged"), "unchanged", old);
+        writeObject(storageRoot.resolve("0a1/updated"), "parent/updated", recent);
+        final var mutable = writeObject(storageRoot.resolve("0b2/mutable"), "mutable", old);
+        final var headInventory = mutable.resolve("extensions/0004-mutable-head/head/inventory.json");
+        Files.createDirectories(headInventory.getParent());
+        Files.writeString(headInventory, "{}");
+        Files.setLastModifiedTime(headInventory, FileTime.from(recent));
+        // content within an object root is not mistaken for another object
+        writeObject(storageRoot.resolve("0a1/unchanged/v1/content/copy"), "copy", recent);
+
+        assertEquals(Set.of("parent/updated", "mutable"), StorageChangeScanner.findChangedSince(storageRoot, since));
+        assertEquals(Set.of("parent/updated", "mutable", "unchanged"),
+                StorageChangeScanner.findChangedSince(storageRoot, old.minus(1, HOURS)));
+    }
+
+    @Test
+    public void testFindChangedFromKnownStates() throws Exception {
+        final var storageRoot = tempFolder.getRoot().toPath();
+        final var modified = Instant.now().minus(1, HOURS);
+        writeObject(storageRoot.resolve("0a1/first"), "first", modified);
+        writeObject(storageRoot.resolve("0a1/second"), "parent/second", modified);
+
+        // nothing is known yet
+        final var initial = StorageChangeScanner.findChanged(storageRoot, Map.of());
+        assertEquals(Set.of("first", "parent/second"), initial.keySet());
+        assertEquals(Path.of("0a1", "second").toString(), initial.get("parent/second").getObjectRoot());
+        final var known = new HashMap<String, String>();
+        initial.values().forEach(state -> known.put(state.getObjectRoot(), state.getInventoryStamp()));
+        assertEquals(Map.of(), StorageChangeScanner.findChanged(storageRoot, known));
+
+        // a new version rewrites the inventory, and a mutable head adds an inventory
+        writeObject(storageRoot.resolve("0a1/first"), "first", modified.plus(1, MINUTES));
+        final var headInventory = storageRoot.resolve("0a1/second/extensions/0004-mutable-head/head/inventory.json");
+        Files.createDirectories(headInventory.getParent());
+        Files.writeString(headInventory, "{}");
+        final var changed = StorageChangeScanner.findChanged(storageRoot, known);
+        assertEquals(Set.of("first", "parent/second"), changed.keySet());
+        changed.values().forEach(state -> known.put(state.getObjectRoot(), state.getInventoryStamp()));
+        assertEquals(Map.of(), StorageChangeScanner.findChanged(storageRoot, known));
+    }
+
+    private static Path writeObject(final Path objectRoot, final String ocflId, final Instant modified)
+            throws IOException {
+        Files.createDirectories(objectRoot);
+        Files.writeString(objectRoot.resolve("0=ocfl_object_1.0"), "ocfl_object_1.0\n");
+        final var inventory = objectRoot.resolve("inventory.json");
+        Files.writeString(inventory, "{\"type\":\"https://ocfl.io/1.0/spec/#inventory\",\"fixity\":{\"md5\":{}}," +
+                "\"id\":\"" + ocflId + "\",\"head\":\"v1\"}");
+        Files.setLastModifiedTime(inventory, FileTime.from(modified));
+        return objectRoot;
+    }
+}
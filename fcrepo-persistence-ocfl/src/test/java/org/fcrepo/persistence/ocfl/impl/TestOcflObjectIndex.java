@@ -22,9 +22,11 @@ import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * An simple in-memory implementation of the {@link FedoraToOCFLObjectIndex} used for testing
@@ -67,6 +69,45 @@ public class TestOcflObjectIndex implements FedoraToOCFLObjectIndex {
         return mapping;
     }
 
+    @Override
+    public void addMappings(final Map<String, FedoraOCFLMapping> mappings) {
+        fedoraOCFLMappingMap.putAll(mappings);
+    }
+
+    @Override
+    public void removeMapping(final String fedoraResourceIdentifier) {
+        fedoraOCFLMappingMap.remove(fedoraResourceIdentifier);
+    }
+
+    @Override
+    public void removeMappings(final Collection<String> fedoraResourceIdentifiers) {
+        fedoraOCFLMappingMap.keySet().removeAll(fedoraResourceIdentifiers);
+    }
+
+    @Override
+    public Map<String, Integer> countMappings(final Collection<String> ocflObjectIds) {
+        final Map<String, Integer> counts = new HashMap<>();
+        synchronized (fedoraOCFLMappingMap) {
+            fedoraOCFLMappingMap.values().stream()
+                    .map(FedoraOCFLMapping::getOcflObjectId)
+                    .filter(ocflObjectIds::contains)
+                    .forEach(ocflId -> counts.merge(ocflId, 1, Integer::sum));
+        }
+        return counts;
+    }
+
+    @Override
+    public Stream<Map.Entry<String, FedoraOCFLMapping>> getMappings() {
+        synchronized (fedoraOCFLMappingMap) {
+            return new HashMap<>(fedoraOCFLMappingMap).entrySet().stream();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return fedoraOCFLMappingMap.isEmpty();
+    }
+
     @Override
     public void reset() {
         fedoraOCFLMappingMap.clear();
@@ -40,6 +40,8 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.stream.Stream;
 
@@ -57,6 +59,7 @@ import org.fcrepo.kernel.api.rdf.DefaultRdfStream;
 import org.fcrepo.persistence.api.WriteOutcome;
 import org.fcrepo.persistence.ocfl.api.FedoraToOCFLObjectIndex;
 import org.fcrepo.persistence.ocfl.api.OCFLObjectSession;
+import org.fcrepo.persistence.ocfl.api.OCFLObjectSession.ContentWriter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -99,7 +102,7 @@ public class UpdateRDFSourcePersisterTest {
     private WriteOutcome writeOutcome;
 
     @Captor
-    private ArgumentCaptor<InputStream> userTriplesIsCaptor;
+    private ArgumentCaptor<ContentWriter> userTriplesWriterCaptor;
 
     @Captor
     private ArgumentCaptor<InputStream> headersIsCaptor;
@@ -111,6 +114,7 @@ public class UpdateRDFSourcePersisterTest {
         operation = mock(RdfSourceOperation.class);
 
         when(session.write(anyString(), any(InputStream.class))).thenReturn(writeOutcome);
+        when(session.writeWith(anyString(), any(ContentWriter.class))).thenReturn(writeOutcome);
         when(psSession.findOrCreateSession(anyString())).thenReturn(session);
         when(index.getMapping(anyString())).thenReturn(mapping);
         when(operation.getType()).thenReturn(UPDATE);
@@ -181,8 +185,10 @@ public class UpdateRDFSourcePersisterTest {
     }
 
     private Model retrievePersistedUserModel(final String subpath) throws Exception {
-        verify(session).write(eq(subpath + getRDFFileExtension()), userTriplesIsCaptor.capture());
-        final InputStream userTriplesIs = userTriplesIsCaptor.getValue();
+        verify(session).writeWith(eq(subpath + getRDFFileExtension()), userTriplesWriterCaptor.capture());
+        final var userTriplesOs = new ByteArrayOutputStream();
+        userTriplesWriterCaptor.getValue().writeTo(userTriplesOs);
+        final var userTriplesIs = new ByteArrayInputStream(userTriplesOs.toByteArray());
 
         final Model userModel = createDefaultModel();
         RDFDataMgr.read(userModel, userTriplesIs, Lang.NTRIPLES);